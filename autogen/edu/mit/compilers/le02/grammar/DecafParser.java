@@ -0,0 +1,2338 @@
+// $ANTLR 2.7.7 (2006-11-01): "parser.g" -> "DecafParser.java"$
+
+package edu.mit.compilers.le02.grammar;
+import edu.mit.compilers.le02.ErrorReporting;
+
+import antlr.TokenBuffer;
+import antlr.TokenStreamException;
+import antlr.TokenStreamIOException;
+import antlr.ANTLRException;
+import antlr.LLkParser;
+import antlr.Token;
+import antlr.TokenStream;
+import antlr.RecognitionException;
+import antlr.NoViableAltException;
+import antlr.MismatchedTokenException;
+import antlr.SemanticException;
+import antlr.ParserSharedInputState;
+import antlr.collections.impl.BitSet;
+import antlr.collections.AST;
+import java.util.Hashtable;
+import antlr.ASTFactory;
+import antlr.ASTPair;
+import antlr.collections.impl.ASTArray;
+
+public class DecafParser extends antlr.LLkParser       implements DecafParserTokenTypes
+ {
+
+  // Do our own reporting of errors so the parser can return a non-zero status
+  // if any errors are detected.
+  /** Reports if any errors were reported during parse. */
+  private boolean error;
+
+  @Override
+  public void reportError (RecognitionException ex) {
+    ErrorReporting.reportError(new ParseException(ex));
+    error = true;
+  }
+  @Override
+  public void reportError (String s) {
+    ErrorReporting.reportError(new ParseException(s));
+    error = true;
+  }
+  public boolean getError () {
+    return error;
+  }
+
+  // Selectively turns on debug mode.
+
+  /** Whether to display debug information. */
+  private boolean trace = false;
+
+  public void setTrace(boolean shouldTrace) {
+    trace = shouldTrace;
+  }
+  @Override
+  public void traceIn(String rname) throws TokenStreamException {
+    if (trace) {
+      super.traceIn(rname);
+    }
+  }
+  @Override
+  public void traceOut(String rname) throws TokenStreamException {
+    if (trace) {
+      super.traceOut(rname);
+    }
+  }
+
+protected DecafParser(TokenBuffer tokenBuf, int k) {
+  super(tokenBuf,k);
+  tokenNames = _tokenNames;
+  buildTokenTypeASTClassMap();
+  astFactory = new ASTFactory(getTokenTypeToASTClassMap());
+}
+
+public DecafParser(TokenBuffer tokenBuf) {
+  this(tokenBuf,3);
+}
+
+protected DecafParser(TokenStream lexer, int k) {
+  super(lexer,k);
+  tokenNames = _tokenNames;
+  buildTokenTypeASTClassMap();
+  astFactory = new ASTFactory(getTokenTypeToASTClassMap());
+}
+
+public DecafParser(TokenStream lexer) {
+  this(lexer,3);
+}
+
+public DecafParser(ParserSharedInputState state) {
+  super(state,3);
+  tokenNames = _tokenNames;
+  buildTokenTypeASTClassMap();
+  astFactory = new ASTFactory(getTokenTypeToASTClassMap());
+}
+
+	public final void bool_literal() throws RecognitionException, TokenStreamException {
+		
+		traceIn("bool_literal");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST bool_literal_AST = null;
+			Token  t = null;
+			AST t_AST = null;
+			Token  f = null;
+			AST f_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case TK_true:
+				{
+					t = LT(1);
+					t_AST = astFactory.create(t);
+					match(TK_true);
+					bool_literal_AST = (AST)currentAST.root;
+					bool_literal_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(BOOLEAN_LITERAL,"Bool")).add(t_AST));
+					currentAST.root = bool_literal_AST;
+					currentAST.child = bool_literal_AST!=null &&bool_literal_AST.getFirstChild()!=null ?
+						bool_literal_AST.getFirstChild() : bool_literal_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				case TK_false:
+				{
+					f = LT(1);
+					f_AST = astFactory.create(f);
+					match(TK_false);
+					bool_literal_AST = (AST)currentAST.root;
+					bool_literal_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(BOOLEAN_LITERAL,"Bool")).add(f_AST));
+					currentAST.root = bool_literal_AST;
+					currentAST.child = bool_literal_AST!=null &&bool_literal_AST.getFirstChild()!=null ?
+						bool_literal_AST.getFirstChild() : bool_literal_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = bool_literal_AST;
+		} finally { // debugging
+			traceOut("bool_literal");
+		}
+	}
+	
+	public final void int_literal() throws RecognitionException, TokenStreamException {
+		
+		traceIn("int_literal");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST int_literal_AST = null;
+			Token  i = null;
+			AST i_AST = null;
+			
+			try {      // for error handling
+				i = LT(1);
+				i_AST = astFactory.create(i);
+				match(INT);
+				int_literal_AST = (AST)currentAST.root;
+				int_literal_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(INTEGER_LITERAL,"Int")).add(i_AST));
+				currentAST.root = int_literal_AST;
+				currentAST.child = int_literal_AST!=null &&int_literal_AST.getFirstChild()!=null ?
+					int_literal_AST.getFirstChild() : int_literal_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = int_literal_AST;
+		} finally { // debugging
+			traceOut("int_literal");
+		}
+	}
+	
+	public final void char_literal() throws RecognitionException, TokenStreamException {
+		
+		traceIn("char_literal");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST char_literal_AST = null;
+			Token  c = null;
+			AST c_AST = null;
+			
+			try {      // for error handling
+				c = LT(1);
+				c_AST = astFactory.create(c);
+				match(CHAR);
+				char_literal_AST = (AST)currentAST.root;
+				char_literal_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(CHAR_LITERAL,"Char")).add(c_AST));
+				currentAST.root = char_literal_AST;
+				currentAST.child = char_literal_AST!=null &&char_literal_AST.getFirstChild()!=null ?
+					char_literal_AST.getFirstChild() : char_literal_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = char_literal_AST;
+		} finally { // debugging
+			traceOut("char_literal");
+		}
+	}
+	
+	public final void string_literal() throws RecognitionException, TokenStreamException {
+		
+		traceIn("string_literal");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST string_literal_AST = null;
+			Token  s = null;
+			AST s_AST = null;
+			
+			try {      // for error handling
+				s = LT(1);
+				s_AST = astFactory.create(s);
+				match(STRING);
+				string_literal_AST = (AST)currentAST.root;
+				string_literal_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(STRING_LITERAL,"String")).add(s_AST));
+				currentAST.root = string_literal_AST;
+				currentAST.child = string_literal_AST!=null &&string_literal_AST.getFirstChild()!=null ?
+					string_literal_AST.getFirstChild() : string_literal_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_1);
+			}
+			returnAST = string_literal_AST;
+		} finally { // debugging
+			traceOut("string_literal");
+		}
+	}
+	
+	public final void literal() throws RecognitionException, TokenStreamException {
+		
+		traceIn("literal");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST literal_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case INT:
+				{
+					int_literal();
+					astFactory.addASTChild(currentAST, returnAST);
+					literal_AST = (AST)currentAST.root;
+					break;
+				}
+				case CHAR:
+				{
+					char_literal();
+					astFactory.addASTChild(currentAST, returnAST);
+					literal_AST = (AST)currentAST.root;
+					break;
+				}
+				case TK_false:
+				case TK_true:
+				{
+					bool_literal();
+					astFactory.addASTChild(currentAST, returnAST);
+					literal_AST = (AST)currentAST.root;
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = literal_AST;
+		} finally { // debugging
+			traceOut("literal");
+		}
+	}
+	
+	public final void type() throws RecognitionException, TokenStreamException {
+		
+		traceIn("type");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST type_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case TK_int:
+				{
+					AST tmp1_AST = null;
+					tmp1_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp1_AST);
+					match(TK_int);
+					type_AST = (AST)currentAST.root;
+					break;
+				}
+				case TK_boolean:
+				{
+					AST tmp2_AST = null;
+					tmp2_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp2_AST);
+					match(TK_boolean);
+					type_AST = (AST)currentAST.root;
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_2);
+			}
+			returnAST = type_AST;
+		} finally { // debugging
+			traceOut("type");
+		}
+	}
+	
+	public final void assign_op() throws RecognitionException, TokenStreamException {
+		
+		traceIn("assign_op");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST assign_op_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case ASSIGN:
+				{
+					AST tmp3_AST = null;
+					tmp3_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp3_AST);
+					match(ASSIGN);
+					assign_op_AST = (AST)currentAST.root;
+					break;
+				}
+				case INC_ASSIGN:
+				{
+					AST tmp4_AST = null;
+					tmp4_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp4_AST);
+					match(INC_ASSIGN);
+					assign_op_AST = (AST)currentAST.root;
+					break;
+				}
+				case DEC_ASSIGN:
+				{
+					AST tmp5_AST = null;
+					tmp5_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp5_AST);
+					match(DEC_ASSIGN);
+					assign_op_AST = (AST)currentAST.root;
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_3);
+			}
+			returnAST = assign_op_AST;
+		} finally { // debugging
+			traceOut("assign_op");
+		}
+	}
+	
+	public final void location() throws RecognitionException, TokenStreamException {
+		
+		traceIn("location");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST location_AST = null;
+			Token  n = null;
+			AST n_AST = null;
+			AST i_AST = null;
+			
+			try {      // for error handling
+				n = LT(1);
+				n_AST = astFactory.create(n);
+				match(ID);
+				{
+				switch ( LA(1)) {
+				case LCURLY:
+				case RSQUARE:
+				case RPAREN:
+				case EQUALS:
+				case NOT_EQUALS:
+				case LOGICAL_AND:
+				case LOGICAL_OR:
+				case PLUS:
+				case MINUS:
+				case TIMES:
+				case DIVIDE:
+				case MODULO:
+				case LT:
+				case GT:
+				case LE:
+				case GE:
+				case ASSIGN:
+				case INC_ASSIGN:
+				case DEC_ASSIGN:
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				case LSQUARE:
+				{
+					match(LSQUARE);
+					expr();
+					i_AST = (AST)returnAST;
+					match(RSQUARE);
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				location_AST = (AST)currentAST.root;
+				location_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(LOCATION,"Location")).add(n_AST).add(i_AST));
+				currentAST.root = location_AST;
+				currentAST.child = location_AST!=null &&location_AST.getFirstChild()!=null ?
+					location_AST.getFirstChild() : location_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_4);
+			}
+			returnAST = location_AST;
+		} finally { // debugging
+			traceOut("location");
+		}
+	}
+	
+	public final void expr() throws RecognitionException, TokenStreamException {
+		
+		traceIn("expr");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST expr_AST = null;
+			AST zero_AST = null;
+			AST prime_AST = null;
+			
+			try {      // for error handling
+				term_zero();
+				zero_AST = (AST)returnAST;
+				expr_prime();
+				prime_AST = (AST)returnAST;
+				expr_AST = (AST)currentAST.root;
+				expr_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(EXPR,"Expr")).add(zero_AST).add(prime_AST));
+				currentAST.root = expr_AST;
+				currentAST.child = expr_AST!=null &&expr_AST.getFirstChild()!=null ?
+					expr_AST.getFirstChild() : expr_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_5);
+			}
+			returnAST = expr_AST;
+		} finally { // debugging
+			traceOut("expr");
+		}
+	}
+	
+	public final void program() throws RecognitionException, TokenStreamException {
+		
+		traceIn("program");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST program_AST = null;
+			Token  n = null;
+			AST n_AST = null;
+			AST f_AST = null;
+			AST m_AST = null;
+			
+			try {      // for error handling
+				
+				AST f_accum = (AST)astFactory.make( (new ASTArray(1)).add(astFactory.create(PROGRAM_FIELDS,"Fields")));
+				AST m_accum = (AST)astFactory.make( (new ASTArray(1)).add(astFactory.create(PROGRAM_METHODS,"Methods")));
+				
+				match(TK_class);
+				n = LT(1);
+				n_AST = astFactory.create(n);
+				match(ID);
+				match(LCURLY);
+				{
+				_loop12:
+				do {
+					if ((LA(1)==TK_boolean||LA(1)==TK_int) && (LA(2)==ID) && (LA(3)==LSQUARE||LA(3)==SEMICOLON||LA(3)==COMMA)) {
+						field_decl();
+						f_AST = (AST)returnAST;
+						f_accum.addChild(f_AST);
+					}
+					else {
+						break _loop12;
+					}
+					
+				} while (true);
+				}
+				{
+				_loop14:
+				do {
+					if ((LA(1)==TK_boolean||LA(1)==TK_int||LA(1)==TK_void)) {
+						method_decl();
+						m_AST = (AST)returnAST;
+						m_accum.addChild(m_AST);
+					}
+					else {
+						break _loop14;
+					}
+					
+				} while (true);
+				}
+				match(RCURLY);
+				match(Token.EOF_TYPE);
+				program_AST = (AST)currentAST.root;
+				program_AST = (AST)astFactory.make( (new ASTArray(4)).add(astFactory.create(PROGRAM,"Prog")).add(n_AST).add(f_accum).add(m_accum));
+				currentAST.root = program_AST;
+				currentAST.child = program_AST!=null &&program_AST.getFirstChild()!=null ?
+					program_AST.getFirstChild() : program_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_6);
+			}
+			returnAST = program_AST;
+		} finally { // debugging
+			traceOut("program");
+		}
+	}
+	
+	public final void field_decl() throws RecognitionException, TokenStreamException {
+		
+		traceIn("field_decl");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST field_decl_AST = null;
+			AST t_AST = null;
+			Token  n1 = null;
+			AST n1_AST = null;
+			AST s1_AST = null;
+			Token  n2 = null;
+			AST n2_AST = null;
+			AST s2_AST = null;
+			
+			try {      // for error handling
+				type();
+				t_AST = (AST)returnAST;
+				{
+				n1 = LT(1);
+				n1_AST = astFactory.create(n1);
+				match(ID);
+				{
+				switch ( LA(1)) {
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				case LSQUARE:
+				{
+					match(LSQUARE);
+					int_literal();
+					s1_AST = (AST)returnAST;
+					match(RSQUARE);
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				AST t_copy = astFactory.create(t_AST);
+				astFactory.addASTChild(currentAST,
+				(AST)astFactory.make( (new ASTArray(4)).add(astFactory.create(FIELD_DECL,"FieldDecl")).add(t_copy).add(n1_AST).add(s1_AST)));
+				}
+				{
+				_loop21:
+				do {
+					if ((LA(1)==COMMA)) {
+						match(COMMA);
+						{
+						n2 = LT(1);
+						n2_AST = astFactory.create(n2);
+						match(ID);
+						{
+						switch ( LA(1)) {
+						case SEMICOLON:
+						case COMMA:
+						{
+							break;
+						}
+						case LSQUARE:
+						{
+							match(LSQUARE);
+							int_literal();
+							s2_AST = (AST)returnAST;
+							match(RSQUARE);
+							break;
+						}
+						default:
+						{
+							throw new NoViableAltException(LT(1), getFilename());
+						}
+						}
+						}
+						AST t_copy = astFactory.create(t_AST);
+						astFactory.addASTChild(currentAST,
+						(AST)astFactory.make( (new ASTArray(4)).add(astFactory.create(FIELD_DECL,"FieldDecl")).add(t_copy).add(n2_AST).add(s2_AST)));
+						}
+					}
+					else {
+						break _loop21;
+					}
+					
+				} while (true);
+				}
+				match(SEMICOLON);
+				field_decl_AST = (AST)currentAST.root;
+				field_decl_AST = (AST)currentAST.root;
+				currentAST.root = field_decl_AST;
+				currentAST.child = field_decl_AST!=null &&field_decl_AST.getFirstChild()!=null ?
+					field_decl_AST.getFirstChild() : field_decl_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_7);
+			}
+			returnAST = field_decl_AST;
+		} finally { // debugging
+			traceOut("field_decl");
+		}
+	}
+	
+	public final void method_decl() throws RecognitionException, TokenStreamException {
+		
+		traceIn("method_decl");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST method_decl_AST = null;
+			AST ty_AST = null;
+			Token  vo = null;
+			AST vo_AST = null;
+			AST name_AST = null;
+			AST arg1t_AST = null;
+			Token  arg1n = null;
+			AST arg1n_AST = null;
+			AST arg2t_AST = null;
+			Token  arg2n = null;
+			AST arg2n_AST = null;
+			AST body_AST = null;
+			
+			try {      // for error handling
+				AST darg_accum = (AST)astFactory.make( (new ASTArray(1)).add(astFactory.create(DECLARATION_ARGS,"Args")));
+				{
+				switch ( LA(1)) {
+				case TK_boolean:
+				case TK_int:
+				{
+					type();
+					ty_AST = (AST)returnAST;
+					break;
+				}
+				case TK_void:
+				{
+					vo = LT(1);
+					vo_AST = astFactory.create(vo);
+					match(TK_void);
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				method_name();
+				name_AST = (AST)returnAST;
+				match(LPAREN);
+				{
+				switch ( LA(1)) {
+				case RPAREN:
+				{
+					break;
+				}
+				case TK_boolean:
+				case TK_int:
+				{
+					type();
+					arg1t_AST = (AST)returnAST;
+					arg1n = LT(1);
+					arg1n_AST = astFactory.create(arg1n);
+					match(ID);
+					darg_accum.addChild((AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(DECLARATION_ARG,"Arg")).add(arg1t_AST).add(arg1n_AST)));
+					{
+					_loop26:
+					do {
+						if ((LA(1)==COMMA)) {
+							match(COMMA);
+							type();
+							arg2t_AST = (AST)returnAST;
+							arg2n = LT(1);
+							arg2n_AST = astFactory.create(arg2n);
+							match(ID);
+							darg_accum.addChild((AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(DECLARATION_ARG,"Arg")).add(arg2t_AST).add(arg2n_AST)));
+						}
+						else {
+							break _loop26;
+						}
+						
+					} while (true);
+					}
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				match(RPAREN);
+				block();
+				body_AST = (AST)returnAST;
+				method_decl_AST = (AST)currentAST.root;
+				method_decl_AST = (AST)astFactory.make( (new ASTArray(6)).add(astFactory.create(METHOD_DECL,"MethodDecl")).add(ty_AST).add(vo_AST).add(name_AST).add(darg_accum).add(body_AST));
+				currentAST.root = method_decl_AST;
+				currentAST.child = method_decl_AST!=null &&method_decl_AST.getFirstChild()!=null ?
+					method_decl_AST.getFirstChild() : method_decl_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_7);
+			}
+			returnAST = method_decl_AST;
+		} finally { // debugging
+			traceOut("method_decl");
+		}
+	}
+	
+	public final void method_name() throws RecognitionException, TokenStreamException {
+		
+		traceIn("method_name");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST method_name_AST = null;
+			
+			try {      // for error handling
+				AST tmp21_AST = null;
+				tmp21_AST = astFactory.create(LT(1));
+				astFactory.addASTChild(currentAST, tmp21_AST);
+				match(ID);
+				method_name_AST = (AST)currentAST.root;
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_8);
+			}
+			returnAST = method_name_AST;
+		} finally { // debugging
+			traceOut("method_name");
+		}
+	}
+	
+	public final void block() throws RecognitionException, TokenStreamException {
+		
+		traceIn("block");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST block_AST = null;
+			AST v_AST = null;
+			AST s_AST = null;
+			
+			try {      // for error handling
+				
+				AST bv_accum = (AST)astFactory.make( (new ASTArray(1)).add(astFactory.create(BLOCK_VARS,"Variables")));
+				AST bs_accum = (AST)astFactory.make( (new ASTArray(1)).add(astFactory.create(BLOCK_STMTS,"Statements")));
+				
+				match(LCURLY);
+				{
+				_loop32:
+				do {
+					if ((LA(1)==TK_boolean||LA(1)==TK_int)) {
+						var_decl();
+						v_AST = (AST)returnAST;
+						bv_accum.addChild(v_AST);
+					}
+					else {
+						break _loop32;
+					}
+					
+				} while (true);
+				}
+				{
+				_loop34:
+				do {
+					if ((_tokenSet_9.member(LA(1)))) {
+						statement();
+						s_AST = (AST)returnAST;
+						bs_accum.addChild(s_AST);
+					}
+					else {
+						break _loop34;
+					}
+					
+				} while (true);
+				}
+				match(RCURLY);
+				block_AST = (AST)currentAST.root;
+				block_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(BLOCK,"Block")).add(bv_accum).add(bs_accum));
+				currentAST.root = block_AST;
+				currentAST.child = block_AST!=null &&block_AST.getFirstChild()!=null ?
+					block_AST.getFirstChild() : block_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_10);
+			}
+			returnAST = block_AST;
+		} finally { // debugging
+			traceOut("block");
+		}
+	}
+	
+	public final void var_decl() throws RecognitionException, TokenStreamException {
+		
+		traceIn("var_decl");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST var_decl_AST = null;
+			AST t_AST = null;
+			Token  n1 = null;
+			AST n1_AST = null;
+			Token  n2 = null;
+			AST n2_AST = null;
+			
+			try {      // for error handling
+				type();
+				t_AST = (AST)returnAST;
+				n1 = LT(1);
+				n1_AST = astFactory.create(n1);
+				match(ID);
+				AST t_copy = astFactory.create(t_AST);
+				astFactory.addASTChild(currentAST,
+				(AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(LOCAL_VAR_DECL,"VarDecl")).add(t_copy).add(n1_AST)));
+				{
+				_loop29:
+				do {
+					if ((LA(1)==COMMA)) {
+						match(COMMA);
+						n2 = LT(1);
+						n2_AST = astFactory.create(n2);
+						match(ID);
+						AST t_copy2 = astFactory.create(t_AST);
+						astFactory.addASTChild(currentAST,
+						(AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(LOCAL_VAR_DECL,"VarDecl")).add(t_copy2).add(n2_AST)));
+					}
+					else {
+						break _loop29;
+					}
+					
+				} while (true);
+				}
+				match(SEMICOLON);
+				var_decl_AST = (AST)currentAST.root;
+				var_decl_AST = (AST)currentAST.root;
+				currentAST.root = var_decl_AST;
+				currentAST.child = var_decl_AST!=null &&var_decl_AST.getFirstChild()!=null ?
+					var_decl_AST.getFirstChild() : var_decl_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_11);
+			}
+			returnAST = var_decl_AST;
+		} finally { // debugging
+			traceOut("var_decl");
+		}
+	}
+	
+	public final void statement() throws RecognitionException, TokenStreamException {
+		
+		traceIn("statement");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST statement_AST = null;
+			AST m_AST = null;
+			Token  r = null;
+			AST r_AST = null;
+			AST v_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case TK_if:
+				{
+					if_stmt();
+					astFactory.addASTChild(currentAST, returnAST);
+					statement_AST = (AST)currentAST.root;
+					break;
+				}
+				case TK_for:
+				{
+					for_loop();
+					astFactory.addASTChild(currentAST, returnAST);
+					statement_AST = (AST)currentAST.root;
+					break;
+				}
+				case TK_return:
+				{
+					r = LT(1);
+					r_AST = astFactory.create(r);
+					match(TK_return);
+					{
+					switch ( LA(1)) {
+					case SEMICOLON:
+					{
+						break;
+					}
+					case TK_callout:
+					case TK_false:
+					case TK_true:
+					case LPAREN:
+					case MINUS:
+					case NOT:
+					case ID:
+					case CHAR:
+					case INT:
+					{
+						expr();
+						v_AST = (AST)returnAST;
+						break;
+					}
+					default:
+					{
+						throw new NoViableAltException(LT(1), getFilename());
+					}
+					}
+					}
+					match(SEMICOLON);
+					statement_AST = (AST)currentAST.root;
+					statement_AST = (AST)astFactory.make( (new ASTArray(2)).add(r_AST).add(v_AST));
+					currentAST.root = statement_AST;
+					currentAST.child = statement_AST!=null &&statement_AST.getFirstChild()!=null ?
+						statement_AST.getFirstChild() : statement_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				case TK_break:
+				{
+					AST tmp27_AST = null;
+					tmp27_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp27_AST);
+					match(TK_break);
+					match(SEMICOLON);
+					statement_AST = (AST)currentAST.root;
+					break;
+				}
+				case TK_continue:
+				{
+					AST tmp29_AST = null;
+					tmp29_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp29_AST);
+					match(TK_continue);
+					match(SEMICOLON);
+					statement_AST = (AST)currentAST.root;
+					break;
+				}
+				case LCURLY:
+				{
+					block();
+					astFactory.addASTChild(currentAST, returnAST);
+					statement_AST = (AST)currentAST.root;
+					break;
+				}
+				default:
+					if ((LA(1)==ID) && (_tokenSet_12.member(LA(2)))) {
+						assignment();
+						astFactory.addASTChild(currentAST, returnAST);
+						match(SEMICOLON);
+						statement_AST = (AST)currentAST.root;
+					}
+					else if ((LA(1)==TK_callout||LA(1)==ID) && (LA(2)==LPAREN)) {
+						method_call();
+						m_AST = (AST)returnAST;
+						match(SEMICOLON);
+						statement_AST = (AST)currentAST.root;
+						statement_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(CALL_STMT,"CallStatement")).add(m_AST));
+						currentAST.root = statement_AST;
+						currentAST.child = statement_AST!=null &&statement_AST.getFirstChild()!=null ?
+							statement_AST.getFirstChild() : statement_AST;
+						currentAST.advanceChildToEnd();
+					}
+				else {
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_13);
+			}
+			returnAST = statement_AST;
+		} finally { // debugging
+			traceOut("statement");
+		}
+	}
+	
+	public final void assignment() throws RecognitionException, TokenStreamException {
+		
+		traceIn("assignment");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST assignment_AST = null;
+			AST loc_AST = null;
+			AST op_AST = null;
+			AST value_AST = null;
+			
+			try {      // for error handling
+				location();
+				loc_AST = (AST)returnAST;
+				assign_op();
+				op_AST = (AST)returnAST;
+				expr();
+				value_AST = (AST)returnAST;
+				assignment_AST = (AST)currentAST.root;
+				assignment_AST = (AST)astFactory.make( (new ASTArray(4)).add(astFactory.create(ASSIGNMENT,"Assignment")).add(loc_AST).add(op_AST).add(value_AST));
+				currentAST.root = assignment_AST;
+				currentAST.child = assignment_AST!=null &&assignment_AST.getFirstChild()!=null ?
+					assignment_AST.getFirstChild() : assignment_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_14);
+			}
+			returnAST = assignment_AST;
+		} finally { // debugging
+			traceOut("assignment");
+		}
+	}
+	
+	public final void if_stmt() throws RecognitionException, TokenStreamException {
+		
+		traceIn("if_stmt");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST if_stmt_AST = null;
+			Token  i = null;
+			AST i_AST = null;
+			AST cond_AST = null;
+			AST b_true_AST = null;
+			AST b_false_AST = null;
+			
+			try {      // for error handling
+				i = LT(1);
+				i_AST = astFactory.create(i);
+				match(TK_if);
+				match(LPAREN);
+				expr();
+				cond_AST = (AST)returnAST;
+				match(RPAREN);
+				block();
+				b_true_AST = (AST)returnAST;
+				{
+				switch ( LA(1)) {
+				case TK_break:
+				case TK_callout:
+				case TK_continue:
+				case TK_for:
+				case TK_if:
+				case TK_return:
+				case LCURLY:
+				case RCURLY:
+				case ID:
+				{
+					break;
+				}
+				case TK_else:
+				{
+					match(TK_else);
+					block();
+					b_false_AST = (AST)returnAST;
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				if_stmt_AST = (AST)currentAST.root;
+				if_stmt_AST = (AST)astFactory.make( (new ASTArray(4)).add(i_AST).add(cond_AST).add(b_true_AST).add(b_false_AST));
+				currentAST.root = if_stmt_AST;
+				currentAST.child = if_stmt_AST!=null &&if_stmt_AST.getFirstChild()!=null ?
+					if_stmt_AST.getFirstChild() : if_stmt_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_13);
+			}
+			returnAST = if_stmt_AST;
+		} finally { // debugging
+			traceOut("if_stmt");
+		}
+	}
+	
+	public final void for_loop() throws RecognitionException, TokenStreamException {
+		
+		traceIn("for_loop");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST for_loop_AST = null;
+			Token  f = null;
+			AST f_AST = null;
+			Token  var = null;
+			AST var_AST = null;
+			AST init_AST = null;
+			AST max_AST = null;
+			AST loop_AST = null;
+			
+			try {      // for error handling
+				f = LT(1);
+				f_AST = astFactory.create(f);
+				match(TK_for);
+				var = LT(1);
+				var_AST = astFactory.create(var);
+				match(ID);
+				AST tmp36_AST = null;
+				tmp36_AST = astFactory.create(LT(1));
+				match(ASSIGN);
+				expr();
+				init_AST = (AST)returnAST;
+				match(COMMA);
+				expr();
+				max_AST = (AST)returnAST;
+				block();
+				loop_AST = (AST)returnAST;
+				for_loop_AST = (AST)currentAST.root;
+				for_loop_AST = (AST)astFactory.make( (new ASTArray(4)).add(f_AST).add((AST)astFactory.make( (new ASTArray(4)).add(astFactory.create(ASSIGNMENT,"Assignment")).add((AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(LOCATION,"Location")).add(var_AST))).add(astFactory.create(tmp36_AST)).add(init_AST))).add(max_AST).add(loop_AST));
+				currentAST.root = for_loop_AST;
+				currentAST.child = for_loop_AST!=null &&for_loop_AST.getFirstChild()!=null ?
+					for_loop_AST.getFirstChild() : for_loop_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_13);
+			}
+			returnAST = for_loop_AST;
+		} finally { // debugging
+			traceOut("for_loop");
+		}
+	}
+	
+	public final void method_call() throws RecognitionException, TokenStreamException {
+		
+		traceIn("method_call");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST method_call_AST = null;
+			Token  c = null;
+			AST c_AST = null;
+			AST cf_AST = null;
+			AST ca_AST = null;
+			AST m_AST = null;
+			AST a1_AST = null;
+			AST a2_AST = null;
+			
+			try {      // for error handling
+				AST carg_accum = (AST)astFactory.make( (new ASTArray(1)).add(astFactory.create(CALL_ARGS,"Args")));
+				{
+				switch ( LA(1)) {
+				case TK_callout:
+				{
+					c = LT(1);
+					c_AST = astFactory.create(c);
+					match(TK_callout);
+					match(LPAREN);
+					string_literal();
+					cf_AST = (AST)returnAST;
+					{
+					_loop46:
+					do {
+						if ((LA(1)==COMMA)) {
+							match(COMMA);
+							callout_arg();
+							ca_AST = (AST)returnAST;
+							carg_accum.addChild((AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(CALL_ARG,"Arg")).add(ca_AST)));
+						}
+						else {
+							break _loop46;
+						}
+						
+					} while (true);
+					}
+					match(RPAREN);
+					method_call_AST = (AST)currentAST.root;
+					method_call_AST = (AST)astFactory.make( (new ASTArray(3)).add(c_AST).add(cf_AST).add(carg_accum));
+					currentAST.root = method_call_AST;
+					currentAST.child = method_call_AST!=null &&method_call_AST.getFirstChild()!=null ?
+						method_call_AST.getFirstChild() : method_call_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				case ID:
+				{
+					method_name();
+					m_AST = (AST)returnAST;
+					match(LPAREN);
+					{
+					switch ( LA(1)) {
+					case RPAREN:
+					{
+						break;
+					}
+					case TK_callout:
+					case TK_false:
+					case TK_true:
+					case LPAREN:
+					case MINUS:
+					case NOT:
+					case ID:
+					case CHAR:
+					case INT:
+					{
+						{
+						expr();
+						a1_AST = (AST)returnAST;
+						carg_accum.addChild((AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(CALL_ARG,"Arg")).add(a1_AST)));
+						{
+						_loop50:
+						do {
+							if ((LA(1)==COMMA)) {
+								match(COMMA);
+								expr();
+								a2_AST = (AST)returnAST;
+								carg_accum.addChild((AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(CALL_ARG,"Arg")).add(a2_AST)));
+							}
+							else {
+								break _loop50;
+							}
+							
+						} while (true);
+						}
+						}
+						break;
+					}
+					default:
+					{
+						throw new NoViableAltException(LT(1), getFilename());
+					}
+					}
+					}
+					match(RPAREN);
+					method_call_AST = (AST)currentAST.root;
+					method_call_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(CALL,"Call")).add(m_AST).add(carg_accum));
+					currentAST.root = method_call_AST;
+					currentAST.child = method_call_AST!=null &&method_call_AST.getFirstChild()!=null ?
+						method_call_AST.getFirstChild() : method_call_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = method_call_AST;
+		} finally { // debugging
+			traceOut("method_call");
+		}
+	}
+	
+	public final void callout_arg() throws RecognitionException, TokenStreamException {
+		
+		traceIn("callout_arg");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST callout_arg_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case TK_callout:
+				case TK_false:
+				case TK_true:
+				case LPAREN:
+				case MINUS:
+				case NOT:
+				case ID:
+				case CHAR:
+				case INT:
+				{
+					expr();
+					astFactory.addASTChild(currentAST, returnAST);
+					callout_arg_AST = (AST)currentAST.root;
+					break;
+				}
+				case STRING:
+				{
+					string_literal();
+					astFactory.addASTChild(currentAST, returnAST);
+					callout_arg_AST = (AST)currentAST.root;
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_1);
+			}
+			returnAST = callout_arg_AST;
+		} finally { // debugging
+			traceOut("callout_arg");
+		}
+	}
+	
+	public final void term_zero() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_zero");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_zero_AST = null;
+			AST one_AST = null;
+			AST prime_AST = null;
+			
+			try {      // for error handling
+				term_one();
+				one_AST = (AST)returnAST;
+				term_zero_prime();
+				prime_AST = (AST)returnAST;
+				term_zero_AST = (AST)currentAST.root;
+				term_zero_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(TERM,"Term")).add(one_AST).add(prime_AST));
+				currentAST.root = term_zero_AST;
+				currentAST.child = term_zero_AST!=null &&term_zero_AST.getFirstChild()!=null ?
+					term_zero_AST.getFirstChild() : term_zero_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_15);
+			}
+			returnAST = term_zero_AST;
+		} finally { // debugging
+			traceOut("term_zero");
+		}
+	}
+	
+	public final void expr_prime() throws RecognitionException, TokenStreamException {
+		
+		traceIn("expr_prime");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST expr_prime_AST = null;
+			
+			try {      // for error handling
+				{
+				switch ( LA(1)) {
+				case LOGICAL_OR:
+				{
+					AST tmp44_AST = null;
+					tmp44_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp44_AST);
+					match(LOGICAL_OR);
+					term_zero();
+					astFactory.addASTChild(currentAST, returnAST);
+					expr_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case LCURLY:
+				case RSQUARE:
+				case RPAREN:
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				expr_prime_AST = (AST)currentAST.root;
+				expr_prime_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERM_PRIME,"Term'")).add(expr_prime_AST));
+				currentAST.root = expr_prime_AST;
+				currentAST.child = expr_prime_AST!=null &&expr_prime_AST.getFirstChild()!=null ?
+					expr_prime_AST.getFirstChild() : expr_prime_AST;
+				currentAST.advanceChildToEnd();
+				expr_prime_AST = (AST)currentAST.root;
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_5);
+			}
+			returnAST = expr_prime_AST;
+		} finally { // debugging
+			traceOut("expr_prime");
+		}
+	}
+	
+	public final void term_one() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_one");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_one_AST = null;
+			AST two_AST = null;
+			AST prime_AST = null;
+			
+			try {      // for error handling
+				term_two();
+				two_AST = (AST)returnAST;
+				term_one_prime();
+				prime_AST = (AST)returnAST;
+				term_one_AST = (AST)currentAST.root;
+				term_one_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(TERM,"Term")).add(two_AST).add(prime_AST));
+				currentAST.root = term_one_AST;
+				currentAST.child = term_one_AST!=null &&term_one_AST.getFirstChild()!=null ?
+					term_one_AST.getFirstChild() : term_one_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_16);
+			}
+			returnAST = term_one_AST;
+		} finally { // debugging
+			traceOut("term_one");
+		}
+	}
+	
+	public final void term_zero_prime() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_zero_prime");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_zero_prime_AST = null;
+			
+			try {      // for error handling
+				{
+				switch ( LA(1)) {
+				case LOGICAL_AND:
+				{
+					AST tmp45_AST = null;
+					tmp45_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp45_AST);
+					match(LOGICAL_AND);
+					term_one();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_zero_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case LCURLY:
+				case RSQUARE:
+				case RPAREN:
+				case LOGICAL_OR:
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				term_zero_prime_AST = (AST)currentAST.root;
+				term_zero_prime_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERM_PRIME,"Term'")).add(term_zero_prime_AST));
+				currentAST.root = term_zero_prime_AST;
+				currentAST.child = term_zero_prime_AST!=null &&term_zero_prime_AST.getFirstChild()!=null ?
+					term_zero_prime_AST.getFirstChild() : term_zero_prime_AST;
+				currentAST.advanceChildToEnd();
+				term_zero_prime_AST = (AST)currentAST.root;
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_15);
+			}
+			returnAST = term_zero_prime_AST;
+		} finally { // debugging
+			traceOut("term_zero_prime");
+		}
+	}
+	
+	public final void term_two() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_two");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_two_AST = null;
+			AST three_AST = null;
+			AST prime_AST = null;
+			
+			try {      // for error handling
+				term_three();
+				three_AST = (AST)returnAST;
+				term_two_prime();
+				prime_AST = (AST)returnAST;
+				term_two_AST = (AST)currentAST.root;
+				term_two_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(TERM,"Term")).add(three_AST).add(prime_AST));
+				currentAST.root = term_two_AST;
+				currentAST.child = term_two_AST!=null &&term_two_AST.getFirstChild()!=null ?
+					term_two_AST.getFirstChild() : term_two_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_17);
+			}
+			returnAST = term_two_AST;
+		} finally { // debugging
+			traceOut("term_two");
+		}
+	}
+	
+	public final void term_one_prime() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_one_prime");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_one_prime_AST = null;
+			
+			try {      // for error handling
+				{
+				switch ( LA(1)) {
+				case EQUALS:
+				{
+					AST tmp46_AST = null;
+					tmp46_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp46_AST);
+					match(EQUALS);
+					term_two();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_one_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case NOT_EQUALS:
+				{
+					AST tmp47_AST = null;
+					tmp47_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp47_AST);
+					match(NOT_EQUALS);
+					term_two();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_one_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case LCURLY:
+				case RSQUARE:
+				case RPAREN:
+				case LOGICAL_AND:
+				case LOGICAL_OR:
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				term_one_prime_AST = (AST)currentAST.root;
+				term_one_prime_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERM_PRIME,"Term'")).add(term_one_prime_AST));
+				currentAST.root = term_one_prime_AST;
+				currentAST.child = term_one_prime_AST!=null &&term_one_prime_AST.getFirstChild()!=null ?
+					term_one_prime_AST.getFirstChild() : term_one_prime_AST;
+				currentAST.advanceChildToEnd();
+				term_one_prime_AST = (AST)currentAST.root;
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_16);
+			}
+			returnAST = term_one_prime_AST;
+		} finally { // debugging
+			traceOut("term_one_prime");
+		}
+	}
+	
+	public final void term_three() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_three");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_three_AST = null;
+			AST four_AST = null;
+			AST prime_AST = null;
+			
+			try {      // for error handling
+				term_four();
+				four_AST = (AST)returnAST;
+				term_three_prime();
+				prime_AST = (AST)returnAST;
+				term_three_AST = (AST)currentAST.root;
+				term_three_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(TERM,"Term")).add(four_AST).add(prime_AST));
+				currentAST.root = term_three_AST;
+				currentAST.child = term_three_AST!=null &&term_three_AST.getFirstChild()!=null ?
+					term_three_AST.getFirstChild() : term_three_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_18);
+			}
+			returnAST = term_three_AST;
+		} finally { // debugging
+			traceOut("term_three");
+		}
+	}
+	
+	public final void term_two_prime() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_two_prime");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_two_prime_AST = null;
+			
+			try {      // for error handling
+				{
+				switch ( LA(1)) {
+				case LT:
+				{
+					AST tmp48_AST = null;
+					tmp48_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp48_AST);
+					match(LT);
+					term_three();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_two_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case GT:
+				{
+					AST tmp49_AST = null;
+					tmp49_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp49_AST);
+					match(GT);
+					term_three();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_two_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case LE:
+				{
+					AST tmp50_AST = null;
+					tmp50_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp50_AST);
+					match(LE);
+					term_three();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_two_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case GE:
+				{
+					AST tmp51_AST = null;
+					tmp51_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp51_AST);
+					match(GE);
+					term_three();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_two_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case LCURLY:
+				case RSQUARE:
+				case RPAREN:
+				case EQUALS:
+				case NOT_EQUALS:
+				case LOGICAL_AND:
+				case LOGICAL_OR:
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				term_two_prime_AST = (AST)currentAST.root;
+				term_two_prime_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERM_PRIME,"Term'")).add(term_two_prime_AST));
+				currentAST.root = term_two_prime_AST;
+				currentAST.child = term_two_prime_AST!=null &&term_two_prime_AST.getFirstChild()!=null ?
+					term_two_prime_AST.getFirstChild() : term_two_prime_AST;
+				currentAST.advanceChildToEnd();
+				term_two_prime_AST = (AST)currentAST.root;
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_17);
+			}
+			returnAST = term_two_prime_AST;
+		} finally { // debugging
+			traceOut("term_two_prime");
+		}
+	}
+	
+	public final void term_four() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_four");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_four_AST = null;
+			AST five_AST = null;
+			AST prime_AST = null;
+			
+			try {      // for error handling
+				term_five();
+				five_AST = (AST)returnAST;
+				term_four_prime();
+				prime_AST = (AST)returnAST;
+				term_four_AST = (AST)currentAST.root;
+				term_four_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(TERM,"Term")).add(five_AST).add(prime_AST));
+				currentAST.root = term_four_AST;
+				currentAST.child = term_four_AST!=null &&term_four_AST.getFirstChild()!=null ?
+					term_four_AST.getFirstChild() : term_four_AST;
+				currentAST.advanceChildToEnd();
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_19);
+			}
+			returnAST = term_four_AST;
+		} finally { // debugging
+			traceOut("term_four");
+		}
+	}
+	
+	public final void term_three_prime() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_three_prime");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_three_prime_AST = null;
+			
+			try {      // for error handling
+				{
+				switch ( LA(1)) {
+				case PLUS:
+				{
+					AST tmp52_AST = null;
+					tmp52_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp52_AST);
+					match(PLUS);
+					term_four();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_three_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case MINUS:
+				{
+					AST tmp53_AST = null;
+					tmp53_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp53_AST);
+					match(MINUS);
+					term_four();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_three_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case LCURLY:
+				case RSQUARE:
+				case RPAREN:
+				case EQUALS:
+				case NOT_EQUALS:
+				case LOGICAL_AND:
+				case LOGICAL_OR:
+				case LT:
+				case GT:
+				case LE:
+				case GE:
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				term_three_prime_AST = (AST)currentAST.root;
+				term_three_prime_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERM_PRIME,"Term'")).add(term_three_prime_AST));
+				currentAST.root = term_three_prime_AST;
+				currentAST.child = term_three_prime_AST!=null &&term_three_prime_AST.getFirstChild()!=null ?
+					term_three_prime_AST.getFirstChild() : term_three_prime_AST;
+				currentAST.advanceChildToEnd();
+				term_three_prime_AST = (AST)currentAST.root;
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_18);
+			}
+			returnAST = term_three_prime_AST;
+		} finally { // debugging
+			traceOut("term_three_prime");
+		}
+	}
+	
+	public final void term_five() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_five");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_five_AST = null;
+			AST t6_AST = null;
+			Token  n = null;
+			AST n_AST = null;
+			AST t5_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case TK_callout:
+				case TK_false:
+				case TK_true:
+				case LPAREN:
+				case MINUS:
+				case ID:
+				case CHAR:
+				case INT:
+				{
+					term_six();
+					t6_AST = (AST)returnAST;
+					term_five_AST = (AST)currentAST.root;
+					term_five_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERMF,"TermF")).add(t6_AST));
+					currentAST.root = term_five_AST;
+					currentAST.child = term_five_AST!=null &&term_five_AST.getFirstChild()!=null ?
+						term_five_AST.getFirstChild() : term_five_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				case NOT:
+				{
+					n = LT(1);
+					n_AST = astFactory.create(n);
+					match(NOT);
+					term_five();
+					t5_AST = (AST)returnAST;
+					term_five_AST = (AST)currentAST.root;
+					term_five_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(TERMF,"TermF")).add(n_AST).add((AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERMF,"TermF")).add(t5_AST))));
+					currentAST.root = term_five_AST;
+					currentAST.child = term_five_AST!=null &&term_five_AST.getFirstChild()!=null ?
+						term_five_AST.getFirstChild() : term_five_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = term_five_AST;
+		} finally { // debugging
+			traceOut("term_five");
+		}
+	}
+	
+	public final void term_four_prime() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_four_prime");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_four_prime_AST = null;
+			
+			try {      // for error handling
+				{
+				switch ( LA(1)) {
+				case TIMES:
+				{
+					AST tmp54_AST = null;
+					tmp54_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp54_AST);
+					match(TIMES);
+					term_five();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_four_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case DIVIDE:
+				{
+					AST tmp55_AST = null;
+					tmp55_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp55_AST);
+					match(DIVIDE);
+					term_five();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_four_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case MODULO:
+				{
+					AST tmp56_AST = null;
+					tmp56_AST = astFactory.create(LT(1));
+					astFactory.addASTChild(currentAST, tmp56_AST);
+					match(MODULO);
+					term_five();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_four_prime();
+					astFactory.addASTChild(currentAST, returnAST);
+					break;
+				}
+				case LCURLY:
+				case RSQUARE:
+				case RPAREN:
+				case EQUALS:
+				case NOT_EQUALS:
+				case LOGICAL_AND:
+				case LOGICAL_OR:
+				case PLUS:
+				case MINUS:
+				case LT:
+				case GT:
+				case LE:
+				case GE:
+				case SEMICOLON:
+				case COMMA:
+				{
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+				}
+				term_four_prime_AST = (AST)currentAST.root;
+				term_four_prime_AST = (AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERM_PRIME,"Term'")).add(term_four_prime_AST));
+				currentAST.root = term_four_prime_AST;
+				currentAST.child = term_four_prime_AST!=null &&term_four_prime_AST.getFirstChild()!=null ?
+					term_four_prime_AST.getFirstChild() : term_four_prime_AST;
+				currentAST.advanceChildToEnd();
+				term_four_prime_AST = (AST)currentAST.root;
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_19);
+			}
+			returnAST = term_four_prime_AST;
+		} finally { // debugging
+			traceOut("term_four_prime");
+		}
+	}
+	
+	public final void term_six() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_six");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_six_AST = null;
+			Token  m = null;
+			AST m_AST = null;
+			AST t_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case TK_callout:
+				case TK_false:
+				case TK_true:
+				case LPAREN:
+				case ID:
+				case CHAR:
+				case INT:
+				{
+					term_final();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_six_AST = (AST)currentAST.root;
+					break;
+				}
+				case MINUS:
+				{
+					m = LT(1);
+					m_AST = astFactory.create(m);
+					match(MINUS);
+					term_six();
+					t_AST = (AST)returnAST;
+					term_six_AST = (AST)currentAST.root;
+					term_six_AST = (AST)astFactory.make( (new ASTArray(3)).add(astFactory.create(TERMF,"TermF")).add(m_AST).add((AST)astFactory.make( (new ASTArray(2)).add(astFactory.create(TERMF,"TermF")).add(t_AST))));
+					currentAST.root = term_six_AST;
+					currentAST.child = term_six_AST!=null &&term_six_AST.getFirstChild()!=null ?
+						term_six_AST.getFirstChild() : term_six_AST;
+					currentAST.advanceChildToEnd();
+					break;
+				}
+				default:
+				{
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = term_six_AST;
+		} finally { // debugging
+			traceOut("term_six");
+		}
+	}
+	
+	public final void term_final() throws RecognitionException, TokenStreamException {
+		
+		traceIn("term_final");
+		try { // debugging
+			returnAST = null;
+			ASTPair currentAST = new ASTPair();
+			AST term_final_AST = null;
+			
+			try {      // for error handling
+				switch ( LA(1)) {
+				case TK_false:
+				case TK_true:
+				case CHAR:
+				case INT:
+				{
+					literal();
+					astFactory.addASTChild(currentAST, returnAST);
+					term_final_AST = (AST)currentAST.root;
+					break;
+				}
+				case LPAREN:
+				{
+					match(LPAREN);
+					expr();
+					astFactory.addASTChild(currentAST, returnAST);
+					match(RPAREN);
+					term_final_AST = (AST)currentAST.root;
+					break;
+				}
+				default:
+					if ((LA(1)==ID) && (_tokenSet_20.member(LA(2)))) {
+						location();
+						astFactory.addASTChild(currentAST, returnAST);
+						term_final_AST = (AST)currentAST.root;
+					}
+					else if ((LA(1)==TK_callout||LA(1)==ID) && (LA(2)==LPAREN)) {
+						method_call();
+						astFactory.addASTChild(currentAST, returnAST);
+						term_final_AST = (AST)currentAST.root;
+					}
+				else {
+					throw new NoViableAltException(LT(1), getFilename());
+				}
+				}
+			}
+			catch (RecognitionException ex) {
+				reportError(ex);
+				recover(ex,_tokenSet_0);
+			}
+			returnAST = term_final_AST;
+		} finally { // debugging
+			traceOut("term_final");
+		}
+	}
+	
+	
+	public static final String[] _tokenNames = {
+		"<0>",
+		"EOF",
+		"<2>",
+		"NULL_TREE_LOOKAHEAD",
+		"\"boolean\"",
+		"\"break\"",
+		"\"callout\"",
+		"\"class\"",
+		"\"continue\"",
+		"\"else\"",
+		"\"false\"",
+		"\"for\"",
+		"\"if\"",
+		"\"int\"",
+		"\"return\"",
+		"\"true\"",
+		"\"void\"",
+		"{",
+		"}",
+		"[",
+		"]",
+		"(",
+		")",
+		"==",
+		"!=",
+		"&&",
+		"||",
+		"+",
+		"-",
+		"*",
+		"/",
+		"%",
+		"!",
+		"<",
+		">",
+		"<=",
+		">=",
+		"=",
+		"+=",
+		"-=",
+		";",
+		",",
+		"an identifier",
+		"WS_",
+		"SL_COMMENT",
+		"a char",
+		"a string",
+		"an integer",
+		"ESC",
+		"PROGRAM",
+		"PROGRAM_FIELDS",
+		"PROGRAM_METHODS",
+		"CALL",
+		"CALL_ARGS",
+		"CALL_ARG",
+		"DECLARATION_ARGS",
+		"DECLARATION_ARG",
+		"EXPR",
+		"TERM",
+		"TERM_PRIME",
+		"TERMF",
+		"CALL_STMT",
+		"BLOCK",
+		"BLOCK_VARS",
+		"BLOCK_STMTS",
+		"ASSIGNMENT",
+		"METHOD_DECL",
+		"LOCAL_VAR_DECL",
+		"FIELD_DECL",
+		"LOCATION",
+		"BOOLEAN_LITERAL",
+		"CHAR_LITERAL",
+		"INTEGER_LITERAL",
+		"STRING_LITERAL"
+	};
+	
+	protected void buildTokenTypeASTClassMap() {
+		tokenTypeToASTClassMap=null;
+	};
+	
+	private static final long[] mk_tokenSet_0() {
+		long[] data = { 3431675854848L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_0 = new BitSet(mk_tokenSet_0());
+	private static final long[] mk_tokenSet_1() {
+		long[] data = { 2199027449856L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_1 = new BitSet(mk_tokenSet_1());
+	private static final long[] mk_tokenSet_2() {
+		long[] data = { 4398046511104L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_2 = new BitSet(mk_tokenSet_2());
+	private static final long[] mk_tokenSet_3() {
+		long[] data = { 180324472489024L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_3 = new BitSet(mk_tokenSet_3());
+	private static final long[] mk_tokenSet_4() {
+		long[] data = { 4393748529152L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_4 = new BitSet(mk_tokenSet_4());
+	private static final long[] mk_tokenSet_5() {
+		long[] data = { 3298540257280L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_5 = new BitSet(mk_tokenSet_5());
+	private static final long[] mk_tokenSet_6() {
+		long[] data = { 2L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_6 = new BitSet(mk_tokenSet_6());
+	private static final long[] mk_tokenSet_7() {
+		long[] data = { 335888L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_7 = new BitSet(mk_tokenSet_7());
+	private static final long[] mk_tokenSet_8() {
+		long[] data = { 2097152L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_8 = new BitSet(mk_tokenSet_8());
+	private static final long[] mk_tokenSet_9() {
+		long[] data = { 4398046665056L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_9 = new BitSet(mk_tokenSet_9());
+	private static final long[] mk_tokenSet_10() {
+		long[] data = { 4398047001456L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_10 = new BitSet(mk_tokenSet_10());
+	private static final long[] mk_tokenSet_11() {
+		long[] data = { 4398046935408L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_11 = new BitSet(mk_tokenSet_11());
+	private static final long[] mk_tokenSet_12() {
+		long[] data = { 962073198592L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_12 = new BitSet(mk_tokenSet_12());
+	private static final long[] mk_tokenSet_13() {
+		long[] data = { 4398046927200L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_13 = new BitSet(mk_tokenSet_13());
+	private static final long[] mk_tokenSet_14() {
+		long[] data = { 1099511627776L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_14 = new BitSet(mk_tokenSet_14());
+	private static final long[] mk_tokenSet_15() {
+		long[] data = { 3298607366144L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_15 = new BitSet(mk_tokenSet_15());
+	private static final long[] mk_tokenSet_16() {
+		long[] data = { 3298640920576L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_16 = new BitSet(mk_tokenSet_16());
+	private static final long[] mk_tokenSet_17() {
+		long[] data = { 3298666086400L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_17 = new BitSet(mk_tokenSet_17());
+	private static final long[] mk_tokenSet_18() {
+		long[] data = { 3427515105280L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_18 = new BitSet(mk_tokenSet_18());
+	private static final long[] mk_tokenSet_19() {
+		long[] data = { 3427917758464L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_19 = new BitSet(mk_tokenSet_19());
+	private static final long[] mk_tokenSet_20() {
+		long[] data = { 3431676379136L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_20 = new BitSet(mk_tokenSet_20());
+	
+	}
@@ -0,0 +1,79 @@
+// $ANTLR 2.7.7 (2006-11-01): "parser.g" -> "DecafParser.java"$
+
+package edu.mit.compilers.le02.grammar;
+import edu.mit.compilers.le02.ErrorReporting;
+
+public interface DecafParserTokenTypes {
+	int EOF = 1;
+	int NULL_TREE_LOOKAHEAD = 3;
+	int TK_boolean = 4;
+	int TK_break = 5;
+	int TK_callout = 6;
+	int TK_class = 7;
+	int TK_continue = 8;
+	int TK_else = 9;
+	int TK_false = 10;
+	int TK_for = 11;
+	int TK_if = 12;
+	int TK_int = 13;
+	int TK_return = 14;
+	int TK_true = 15;
+	int TK_void = 16;
+	int LCURLY = 17;
+	int RCURLY = 18;
+	int LSQUARE = 19;
+	int RSQUARE = 20;
+	int LPAREN = 21;
+	int RPAREN = 22;
+	int EQUALS = 23;
+	int NOT_EQUALS = 24;
+	int LOGICAL_AND = 25;
+	int LOGICAL_OR = 26;
+	int PLUS = 27;
+	int MINUS = 28;
+	int TIMES = 29;
+	int DIVIDE = 30;
+	int MODULO = 31;
+	int NOT = 32;
+	int LT = 33;
+	int GT = 34;
+	int LE = 35;
+	int GE = 36;
+	int ASSIGN = 37;
+	int INC_ASSIGN = 38;
+	int DEC_ASSIGN = 39;
+	int SEMICOLON = 40;
+	int COMMA = 41;
+	int ID = 42;
+	int WS_ = 43;
+	int SL_COMMENT = 44;
+	int CHAR = 45;
+	int STRING = 46;
+	int INT = 47;
+	int ESC = 48;
+	int PROGRAM = 49;
+	int PROGRAM_FIELDS = 50;
+	int PROGRAM_METHODS = 51;
+	int CALL = 52;
+	int CALL_ARGS = 53;
+	int CALL_ARG = 54;
+	int DECLARATION_ARGS = 55;
+	int DECLARATION_ARG = 56;
+	int EXPR = 57;
+	int TERM = 58;
+	int TERM_PRIME = 59;
+	int TERMF = 60;
+	int CALL_STMT = 61;
+	int BLOCK = 62;
+	int BLOCK_VARS = 63;
+	int BLOCK_STMTS = 64;
+	int ASSIGNMENT = 65;
+	int METHOD_DECL = 66;
+	int LOCAL_VAR_DECL = 67;
+	int FIELD_DECL = 68;
+	int LOCATION = 69;
+	int BOOLEAN_LITERAL = 70;
+	int CHAR_LITERAL = 71;
+	int INTEGER_LITERAL = 72;
+	int STRING_LITERAL = 73;
+}
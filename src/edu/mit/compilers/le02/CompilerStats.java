@@ -0,0 +1,299 @@
+package edu.mit.compilers.le02;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.mit.compilers.tools.CLI;
+
+/**
+ * Collects timing and size statistics for each compiler phase, and for
+ * each pass run over each method, when <tt>-stats</tt> is given.
+ *
+ * A measurement is started with begin() and finished with end().  Wall time
+ * and the bytes allocated by the current thread are recorded in between,
+ * along with the number of dataflow transfer function evaluations made by
+ * that thread while it was the innermost measurement.  Measurements on
+ * different threads are independent, so passes for different methods may be
+ * measured concurrently; note that with -parallel the allocation figure for
+ * an enclosing phase only covers the thread which started it.  When stats
+ * are disabled begin() returns null and none of this costs anything.
+ */
+public final class CompilerStats {
+  /** A measurement in progress, or finished. */
+  public static final class Pass {
+    private final String name;
+    private final String method;
+    private final Pass outer;
+    private final long startNanos;
+    private final long startBytes;
+
+    private long nanos;
+    private long bytes;
+    private long iterations;
+    private int blocks = -1;
+    private int statements = -1;
+
+    private Pass(String name, String method, Pass outer) {
+      this.name = name;
+      this.method = method;
+      this.outer = outer;
+      this.startBytes = allocatedBytes();
+      this.startNanos = System.nanoTime();
+    }
+  }
+
+  private static final ThreadMXBean threads =
+    ManagementFactory.getThreadMXBean();
+
+  /** The innermost unfinished measurement on each thread. */
+  private static final ThreadLocal<Pass> current = new ThreadLocal<Pass>();
+
+  /** Finished measurements which do not belong to a method, in order. */
+  private static final List<Pass> phases = new ArrayList<Pass>();
+
+  /** Finished per-method measurements, grouped by method name. */
+  private static final Map<String, List<Pass>> methods =
+    new TreeMap<String, List<Pass>>();
+
+  private CompilerStats() {}
+
+  /**
+   * Returns whether statistics are being collected.
+   */
+  public static boolean enabled() {
+    return CLI.stats || CLI.statsJson;
+  }
+
+  /**
+   * Starts measuring a compiler phase which is not specific to a method.
+   */
+  public static Pass begin(String name) {
+    return begin(name, null);
+  }
+
+  /**
+   * Starts measuring the pass called name over the given method.  Returns
+   * null if statistics are disabled.
+   */
+  public static Pass begin(String name, String method) {
+    if (!enabled()) {
+      return null;
+    }
+    Pass pass = new Pass(name, method, current.get());
+    current.set(pass);
+    return pass;
+  }
+
+  /**
+   * Finishes a measurement started by begin().
+   */
+  public static void end(Pass pass) {
+    end(pass, -1, -1);
+  }
+
+  /**
+   * Finishes a measurement started by begin(), recording the number of
+   * basic blocks and statements the method had once the pass was done.
+   */
+  public static void end(Pass pass, int blocks, int statements) {
+    if (pass == null) {
+      return;
+    }
+    pass.nanos = System.nanoTime() - pass.startNanos;
+    pass.bytes = Math.max(allocatedBytes() - pass.startBytes, 0);
+    pass.blocks = blocks;
+    pass.statements = statements;
+    current.set(pass.outer);
+
+    synchronized (methods) {
+      if (pass.method == null) {
+        phases.add(pass);
+      } else {
+        List<Pass> list = methods.get(pass.method);
+        if (list == null) {
+          list = new ArrayList<Pass>();
+          methods.put(pass.method, list);
+        }
+        list.add(pass);
+      }
+    }
+  }
+
+  /**
+   * Adds to the dataflow iteration count of the innermost measurement in
+   * progress on this thread, if any.
+   */
+  public static void countIterations(int iterations) {
+    if (!enabled()) {
+      return;
+    }
+    Pass pass = current.get();
+    if (pass != null) {
+      pass.iterations += iterations;
+    }
+  }
+
+  /**
+   * Prints everything collected so far in the format that was requested.
+   */
+  public static void print(PrintStream ps) {
+    synchronized (methods) {
+      if (CLI.statsJson) {
+        printJson(ps);
+      }
+      if (CLI.stats) {
+        printTable(ps);
+      }
+    }
+  }
+
+  /**
+   * Returns the total wall time in nanoseconds recorded for the pass called
+   * name, summed over all methods.
+   */
+  public static long getNanos(String name) {
+    Pass total;
+    synchronized (methods) {
+      total = totals().get(name);
+    }
+    return (total == null) ? 0 : total.nanos;
+  }
+
+  /**
+   * Drops everything collected so far.  Most useful for unit testing.
+   */
+  public static void clear() {
+    synchronized (methods) {
+      phases.clear();
+      methods.clear();
+    }
+  }
+
+  /**
+   * Sums each pass over all methods, keeping the order in which the passes
+   * first ran.
+   */
+  private static Map<String, Pass> totals() {
+    Map<String, Pass> totals = new LinkedHashMap<String, Pass>();
+    for (List<Pass> list : methods.values()) {
+      for (Pass pass : list) {
+        Pass total = totals.get(pass.name);
+        if (total == null) {
+          total = new Pass(pass.name, null, null);
+          totals.put(pass.name, total);
+        }
+        total.nanos += pass.nanos;
+        total.bytes += pass.bytes;
+        total.iterations += pass.iterations;
+      }
+    }
+    return totals;
+  }
+
+  private static void printTable(PrintStream ps) {
+    String format = "%-24s %10s %12s %8s %8s %10s%n";
+    ps.printf(format, "phase", "ms", "alloc KB", "blocks", "stmts",
+              "dfa iters");
+    for (Pass pass : phases) {
+      printRow(ps, format, pass.name, pass);
+    }
+
+    ps.println();
+    ps.printf(format, "pass (all methods)", "ms", "alloc KB", "", "",
+              "dfa iters");
+    for (Pass pass : totals().values()) {
+      printRow(ps, format, pass.name, pass);
+    }
+
+    for (Map.Entry<String, List<Pass>> e : methods.entrySet()) {
+      ps.println();
+      ps.printf(format, e.getKey(), "ms", "alloc KB", "blocks", "stmts",
+                "dfa iters");
+      for (Pass pass : e.getValue()) {
+        printRow(ps, format, "  " + pass.name, pass);
+      }
+    }
+  }
+
+  private static void printRow(PrintStream ps, String format, String label,
+                               Pass pass) {
+    ps.printf(format, label,
+              String.format("%.3f", pass.nanos / 1e6),
+              Long.toString(pass.bytes / 1024),
+              (pass.blocks < 0) ? "" : Integer.toString(pass.blocks),
+              (pass.statements < 0) ? "" : Integer.toString(pass.statements),
+              Long.toString(pass.iterations));
+  }
+
+  private static void printJson(PrintStream ps) {
+    ps.println("{");
+    ps.println("  \"file\": " + quote(CLI.getInputFilename()) + ",");
+    ps.println("  \"phases\": [");
+    printJsonList(ps, phases, "    ");
+    ps.println("  ],");
+
+    ps.println("  \"passes\": [");
+    printJsonList(ps, new ArrayList<Pass>(totals().values()), "    ");
+    ps.println("  ],");
+
+    ps.println("  \"methods\": {");
+    int count = 0;
+    for (Map.Entry<String, List<Pass>> e : methods.entrySet()) {
+      ps.println("    " + quote(e.getKey()) + ": [");
+      printJsonList(ps, e.getValue(), "      ");
+      ps.println("    ]" + ((++count < methods.size()) ? "," : ""));
+    }
+    ps.println("  }");
+    ps.println("}");
+  }
+
+  private static void printJsonList(PrintStream ps, List<Pass> passes,
+                                    String indent) {
+    for (int i = 0; i < passes.size(); i++) {
+      Pass pass = passes.get(i);
+      StringBuilder sb = new StringBuilder();
+      sb.append(indent).append("{\"name\": ").append(quote(pass.name))
+        .append(", \"nanos\": ").append(pass.nanos)
+        .append(", \"bytes\": ").append(pass.bytes)
+        .append(", \"iterations\": ").append(pass.iterations);
+      if (pass.blocks >= 0) {
+        sb.append(", \"blocks\": ").append(pass.blocks);
+      }
+      if (pass.statements >= 0) {
+        sb.append(", \"statements\": ").append(pass.statements);
+      }
+      sb.append("}");
+      if (i < passes.size() - 1) {
+        sb.append(",");
+      }
+      ps.println(sb.toString());
+    }
+  }
+
+  private static String quote(String s) {
+    return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  /**
+   * Returns the number of bytes allocated by the current thread so far, or
+   * 0 if the JVM cannot tell us.
+   */
+  @SuppressWarnings("deprecation")
+  private static long allocatedBytes() {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean t =
+        (com.sun.management.ThreadMXBean) threads;
+      if (t.isThreadAllocatedMemorySupported() &&
+          t.isThreadAllocatedMemoryEnabled()) {
+        return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return 0;
+  }
+}
@@ -3,10 +3,20 @@ package edu.mit.compilers.le02;
 
 public class GlobalLocation extends VariableLocation {
   private String symbol;
+  private boolean address;
 
   public GlobalLocation(String id) {
+    this(id, false);
+  }
+
+  /**
+   * A global symbol.  If address is true, this refers to the symbol's address
+   * rather than to the memory stored there.
+   */
+  public GlobalLocation(String id, boolean address) {
     this.type = LocationType.GLOBAL;
     this.symbol = id;
+    this.address = address;
   }
 
 
@@ -14,6 +24,10 @@ public class GlobalLocation extends VariableLocation {
     return this.symbol;
   }
 
+  public boolean isAddress() {
+    return this.address;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -17,6 +17,7 @@ import antlr.DumpASTVisitor;
 import antlr.Token;
 import antlr.TokenStreamRecognitionException;
 import antlr.debug.misc.ASTFrame;
+import edu.mit.compilers.le02.CompilerStats.Pass;
 import edu.mit.compilers.le02.asm.AsmFile;
 import edu.mit.compilers.le02.ast.ASTNode;
 import edu.mit.compilers.le02.ast.AstPrettyPrinter;
@@ -67,10 +68,23 @@ public class Main {
     GLOBAL_COMMON_SUBEXPR("gcse"),
     COPY_PROPAGATION("cp"),
     DEAD_CODE("dc"),
+    LOOP_INVARIANT_CODE("licm"),
     CONSECUTIVE_COPY("cc"),
     LOOP_ARRAY_BOUNDS_CHECKS("abc"),
+    PARALLELIZE("parallelize"),
+    GLOBAL_PROMOTION("promote"),
+    SSA("ssa"),
+    CONDITIONAL_CONSTANT("sccp"),
+    INDUCTION_VARIABLES("ivsr"),
+    DIVISION_STRENGTH_REDUCTION("divsr"),
+    COMPACT_ARRAYS("compact"),
     REGISTER_ALLOCATION("regalloc"),
+    LINEAR_SCAN("linearscan"),
     ASM_PEEPHOLE("asm_peephole"),
+    CONDITION_FLAGS("flags"),
+    BLOCK_LAYOUT("layout"),
+    INSTRUCTION_SCHEDULING("sched"),
+    FRAME_LOWERING("frame"),
     ;
     private String flagName;
 
@@ -142,6 +156,7 @@ public class Main {
         "Action " + CLI.target + " not yet implemented."));
     }
     ErrorReporting.printErrors(System.err);
+    CompilerStats.print(System.err);
     System.exit(retCode.numericCode());
   }
 
@@ -359,19 +374,31 @@ public class Main {
     boolean success = true;
     try {
       // Initialize and invoke the parser.
+      Pass pass = CompilerStats.begin("parse");
       DecafParser parser = initializeParser(inputStream);
       parser.program();
+      CompilerStats.end(pass);
 
+      pass = CompilerStats.begin("ir");
       ASTNode parent = IrGenerator.generateIR(parser.getAST());
+      CompilerStats.end(pass);
+      pass = CompilerStats.begin("symbol table");
       SymbolTableGenerator.generateSymbolTable(parent);
+      CompilerStats.end(pass);
+      pass = CompilerStats.begin("semantic checks");
       MasterChecker.checkAll(parent);
+      CompilerStats.end(pass);
 
       if (!ErrorReporting.noErrors()) {
         return false;
       }
 
+      pass = CompilerStats.begin("cfg");
       ControlFlowGraph lowCfg = CFGGenerator.generateCFG(parent, opts);
+      CompilerStats.end(pass);
+      pass = CompilerStats.begin("basic blocks");
       ControlFlowGraph cfg = BasicBlockGraph.makeBasicBlockGraph(lowCfg, opts);
+      CompilerStats.end(pass);
 
       if (CLI.graphics) {
         if (CLI.debug) {
@@ -401,25 +428,41 @@ public class Main {
     boolean success = true;
     try {
       // Initialize and invoke the parser.
+      Pass pass = CompilerStats.begin("parse");
       DecafParser parser = initializeParser(inputStream);
       parser.program();
+      CompilerStats.end(pass);
 
+      pass = CompilerStats.begin("ir");
       ASTNode parent = IrGenerator.generateIR(parser.getAST());
+      CompilerStats.end(pass);
+      pass = CompilerStats.begin("symbol table");
       SymbolTable st =
         SymbolTableGenerator.generateSymbolTable(parent).getSymbolTable();
+      CompilerStats.end(pass);
+      pass = CompilerStats.begin("semantic checks");
       MasterChecker.checkAll(parent);
+      CompilerStats.end(pass);
 
       if (!ErrorReporting.noErrors()) {
         return false;
       }
 
+      pass = CompilerStats.begin("cfg");
       ControlFlowGraph lowCfg = CFGGenerator.generateCFG(parent, opts);
+      CompilerStats.end(pass);
+      pass = CompilerStats.begin("basic blocks");
       ControlFlowGraph cfg = BasicBlockGraph.makeBasicBlockGraph(lowCfg, opts);
+      CompilerStats.end(pass);
       for (FieldDescriptor global : st.getFields()) {
         cfg.putGlobal("." + global.getId(), global);
       }
+      pass = CompilerStats.begin("asm");
       AsmFile asm = new AsmFile(cfg, st, new PrintStream(CLI.outfile), opts);
+      CompilerStats.end(pass);
+      pass = CompilerStats.begin("write");
       asm.write();
+      CompilerStats.end(pass);
     } catch (ANTLRException e) {
       ErrorReporting.reportErrorCompat(e);
       success = false;
@@ -0,0 +1,142 @@
+package edu.mit.compilers.le02;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.mit.compilers.tools.CLI;
+
+/**
+ * Holds the contents of a source file together with an index of where each
+ * line starts, so that diagnostics and assembly comments can look up the
+ * text for a SourceLocation without rereading the file.
+ * Each file is loaded at most once; use forFile() to obtain the shared copy.
+ */
+public final class SourceText {
+  /** The complete contents of the file. */
+  private final String text;
+
+  /** lineStarts[i] is the offset of the first character of line i + 1. */
+  private final int[] lineStarts;
+
+  /** Sentinel cached for files that could not be read. */
+  private static final SourceText EMPTY = new SourceText("");
+
+  /** All files loaded thus far, keyed by filename. */
+  private static Map<String, SourceText> cache =
+    new HashMap<String, SourceText>();
+
+  /**
+   * Builds the line index for the given file contents.
+   */
+  public SourceText(String text) {
+    this.text = text;
+
+    int lines = 1;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        lines++;
+      }
+    }
+
+    lineStarts = new int[lines];
+    int line = 1;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        lineStarts[line++] = i + 1;
+      }
+    }
+  }
+
+  /**
+   * Returns the SourceText for a filename, loading it on first use.  Files
+   * which cannot be read (including stdin) yield an empty SourceText.
+   */
+  public static synchronized SourceText forFile(String filename) {
+    SourceText source = cache.get(filename);
+    if (source == null) {
+      source = load(filename);
+      cache.put(filename, source);
+    }
+    return source;
+  }
+
+  /**
+   * Returns the contents of the line containing loc, or null if loc does
+   * not refer to a line which can be found.
+   */
+  public static String getLine(SourceLocation loc) {
+    if (loc == null || loc.getLine() < 0 || loc.getCol() < 0 ||
+        loc.getFilename() == null || loc.getFilename().equals(CLI.STDIN)) {
+      return null;
+    }
+    return forFile(loc.getFilename()).getLine(loc.getLine());
+  }
+
+  /**
+   * Returns the contents of a line (numbered from 1) without its line
+   * terminator, or null if there is no such line.
+   */
+  public String getLine(int line) {
+    if (line < 1 || line > lineStarts.length || this == EMPTY) {
+      return null;
+    }
+
+    int start = lineStarts[line - 1];
+    int end = (line < lineStarts.length) ? lineStarts[line] - 1
+                                         : text.length();
+    if (end > start && text.charAt(end - 1) == '\r') {
+      end--;
+    }
+    return text.substring(start, end);
+  }
+
+  /**
+   * Returns the number of lines in the file.
+   */
+  public int getLineCount() {
+    return lineStarts.length;
+  }
+
+  /**
+   * Drops all cached files.  Most useful for unit testing.
+   */
+  public static synchronized void clearCache() {
+    cache.clear();
+  }
+
+  private static SourceText load(String filename) {
+    File file = new File(filename);
+    if (!file.isFile()) {
+      return EMPTY;
+    }
+
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      byte[] bytes = new byte[(int) file.length()];
+      int read = 0;
+      while (read < bytes.length) {
+        int n = in.read(bytes, read, bytes.length - read);
+        if (n < 0) {
+          break;
+        }
+        read += n;
+      }
+      return new SourceText(new String(bytes, 0, read, "ISO-8859-1"));
+    } catch (IOException ioe) {
+      return EMPTY;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException ioe) {
+          // Nothing more we can do.
+        }
+      }
+    }
+  }
+}
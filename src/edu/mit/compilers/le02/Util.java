@@ -3,8 +3,16 @@ package edu.mit.compilers.le02;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import edu.mit.compilers.le02.cfg.CFGGenerator;
+import edu.mit.compilers.tools.CLI;
 
 public class Util {
 
@@ -71,4 +79,66 @@ public class Util {
             "\\\'", "\'").replace(
               "\\\\", "\\");
   }
+
+  /**
+   * Runs each task to completion.  If -parallel was given the tasks are
+   * spread over a fork-join pool with one worker per core, otherwise they
+   * run one after another on the calling thread.  Either way every task has
+   * finished when this returns, and any exception a task threw is rethrown.
+   */
+  public static void runTasks(List<? extends ForkJoinTask<?>> tasks) {
+    // Debug output from concurrent tasks would be interleaved.
+    if (!CLI.parallel || CLI.debug || (tasks.size() < 2)) {
+      for (ForkJoinTask<?> task : tasks) {
+        task.invoke();
+      }
+      return;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      for (ForkJoinTask<?> task : tasks) {
+        pool.execute(task);
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Runs the task for each of the given methods, as runTasks does, except
+   * that the workers of a parallel loop run on the same thread as the
+   * method they were outlined from, in the order given.  They share its
+   * locals and symbol table, which the tasks modify.
+   */
+  public static void runMethodTasks(List<String> methods,
+      final List<? extends ForkJoinTask<?>> tasks) {
+    Map<String, List<ForkJoinTask<?>>> owned =
+      new LinkedHashMap<String, List<ForkJoinTask<?>>>();
+    for (int i = 0; i < methods.size(); i++) {
+      String owner = CFGGenerator.getOwner(methods.get(i));
+      if (!owned.containsKey(owner)) {
+        owned.put(owner, new ArrayList<ForkJoinTask<?>>());
+      }
+      owned.get(owner).add(tasks.get(i));
+    }
+
+    List<RecursiveAction> groups = new ArrayList<RecursiveAction>();
+    for (final List<ForkJoinTask<?>> group : owned.values()) {
+      groups.add(new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+          for (ForkJoinTask<?> task : group) {
+            task.invoke();
+          }
+        }
+      });
+    }
+    runTasks(groups);
+  }
 }
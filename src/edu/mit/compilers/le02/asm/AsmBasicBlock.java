@@ -6,6 +6,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +16,7 @@ import java.util.Map.Entry;
 
 import edu.mit.compilers.le02.DecafType;
 import edu.mit.compilers.le02.ErrorReporting;
+import edu.mit.compilers.le02.GlobalLocation;
 import edu.mit.compilers.le02.RegisterLocation;
 import edu.mit.compilers.le02.SourceLocation;
 import edu.mit.compilers.le02.VariableLocation;
@@ -34,6 +36,7 @@ import edu.mit.compilers.le02.cfg.OpStatement;
 import edu.mit.compilers.le02.cfg.VariableArgument;
 import edu.mit.compilers.le02.cfg.Argument.ArgType;
 import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.ssa.SsaForm;
 import edu.mit.compilers.le02.symboltable.AnonymousDescriptor;
 import edu.mit.compilers.le02.symboltable.MethodDescriptor;
 import edu.mit.compilers.le02.symboltable.SymbolTable;
@@ -57,12 +60,22 @@ public class AsmBasicBlock implements AsmObject {
   private SymbolTable st;
 
   private List<AsmObject> instructions;
+  // The instructions which set up and tear down the stack frame.
+  private Set<AsmInstruction> frameInstructions;
+  // The instructions on paths which end in a runtime error.
+  private Set<AsmInstruction> errorInstructions;
+  // Conditional statements whose booleans are never stored, and so are
+  // only left in the flags for the branch after them.
+  private Set<OpStatement> flagsOnly;
   private EnumSet<Optimization> opts;
 
   public AsmBasicBlock(String methodName, BasicBlockNode methodNode,
       MethodDescriptor thisMethod, SymbolTable st,
       EnumSet<Optimization> opts) {
     instructions = new ArrayList<AsmObject>();
+    frameInstructions = new LinkedHashSet<AsmInstruction>();
+    errorInstructions = new HashSet<AsmInstruction>();
+    flagsOnly = new HashSet<OpStatement>();
 
     this.methodName = methodName;
     this.methodNode = methodNode;
@@ -77,8 +90,25 @@ public class AsmBasicBlock implements AsmObject {
     instructions.add(instruction);
   }
 
+  private void addFrameInstruction(AsmInstruction instruction) {
+    frameInstructions.add(instruction);
+    instructions.add(instruction);
+  }
+
+  /**
+   * Schedules the instructions within each straight-line run of this
+   * method to hide load and arithmetic latency.
+   */
   public void reorderInstructions() {
-    // TODO @mfrend Finish Method and add optimization check
+    InstructionScheduler.schedule(instructions);
+  }
+
+  /**
+   * Replaces the enter and leave of this method with a leaner frame, or
+   * none at all.
+   */
+  public void lowerFrame() {
+    FrameLowering.lower(instructions, frameInstructions, errorInstructions);
   }
 
   /**
@@ -200,35 +230,6 @@ public class AsmBasicBlock implements AsmObject {
         }
       }
       break;
-     case DIVIDE:
-      if (stmt.getArg2() instanceof ConstantArgument) {
-        ConstantArgument c2 = (ConstantArgument)stmt.getArg2();
-        int val2 = c2.getInt();
-        if (val2 > 0 && Integer.bitCount(val2) == 1) {
-          int shiftCount = 0;
-          while (val2 > 1) {
-            shiftCount++;
-            val2 >>= 1;
-          }
-          stmt.setArg2(stmt.getArg1());
-          stmt.setArg1(Argument.makeArgument(shiftCount));
-          stmt.setOp(AsmOp.SHR);
-          return;
-        }
-      }
-      break;
-     case MODULO:
-      if (stmt.getArg2() instanceof ConstantArgument) {
-        ConstantArgument c2 = (ConstantArgument)stmt.getArg2();
-        int val2 = c2.getInt();
-        if (val2 > 0 && Integer.bitCount(val2) == 1) {
-          stmt.setArg2(stmt.getArg1());
-          stmt.setArg1(Argument.makeArgument(val2 - 1));
-          stmt.setOp(AsmOp.BITWISE_AND);
-          return;
-        }
-      }
-      break;
     }
   }
 
@@ -237,37 +238,54 @@ public class AsmBasicBlock implements AsmObject {
   }
 
   private void processBlock() {
-    LinkedList<BasicBlockNode> nodesToProcess =
-      new LinkedList<BasicBlockNode>();
-    Set<BasicBlockNode> processed = new HashSet<BasicBlockNode>();
-    nodesToProcess.add(methodNode);
+    boolean layout = opts.contains(Optimization.BLOCK_LAYOUT);
+    List<BasicBlockNode> order;
+    if (layout) {
+      order = BlockLayout.layout(methodNode);
+    } else {
+      order = depthFirstOrder();
+    }
+    Set<BasicBlockNode> errorBlocks = BlockLayout.findColdBlocks(order);
+    if (opts.contains(Optimization.CONDITION_FLAGS)) {
+      findFlagsOnly(order);
+    }
 
-    while (!nodesToProcess.isEmpty()) {
-      // Pop top element of queue to process.
-      BasicBlockNode node = nodesToProcess.remove(0);
-      // If we've seen this node already, we don't need to output it again.
-      if (processed.contains(node)) {
-        continue;
+    for (int ii = 0; ii < order.size(); ii++) {
+      BasicBlockNode node = order.get(ii);
+      // Without a layout, every block ends with its jumps, and AsmFile
+      // comments out those which fall through.
+      BasicBlockNode following = null;
+      if (layout && ii + 1 < order.size()) {
+        following = order.get(ii + 1);
       }
-      // Mark this node processed.
-      processed.add(node);
-
-      // If this node has successors, queue them for processing.
       BasicBlockNode branch = node.getBranchTarget();
-      if (node.isBranch()) {
-        nodesToProcess.addFirst(branch);
-      }
       BasicBlockNode next = node.getNext();
-      if (next != null) {
-        nodesToProcess.addFirst(next);
+      if (layout) {
+        branch = BlockLayout.skipEmpty(branch);
+        next = BlockLayout.skipEmpty(next);
       }
 
       // Start the output.
+      int start = instructions.size();
       instructions.add(AsmFile.writeLabel(node.getId()));
 
-      // Process each statement.
-      for (BasicStatement stmt : node.getStatements()) {
-        processStatement(stmt, methodName, thisMethod);
+      // Process each statement, sharing one idivl between a division and
+      // a modulo of the same operands.
+      List<BasicStatement> stmts = node.getStatements();
+      Set<BasicStatement> paired = new HashSet<BasicStatement>();
+      for (int jj = 0; jj < stmts.size(); jj++) {
+        BasicStatement stmt = stmts.get(jj);
+        if (paired.contains(stmt)) {
+          continue;
+        }
+        int partner = findDivisionPartner(stmts, jj);
+        if (partner >= 0) {
+          paired.add(stmts.get(partner));
+          processDivisionPair((OpStatement) stmt,
+              (OpStatement) stmts.get(partner), thisMethod);
+        } else {
+          processStatement(stmt, methodName, thisMethod);
+        }
       }
 
       // Generate an appropriate SourceLocation for the block trailer.
@@ -282,17 +300,315 @@ public class AsmBasicBlock implements AsmObject {
       // If the node is a branch, write the branch trailer.
       // Otherwise, if there's a next node, write an unconditional
       // jump. Finally, if there's no next node, insert an implicit return.
-      if (node.isBranch() && !node.getBranchTarget().equals(node.getNext())) {
-        processBranch(node, branch, next, methodName, loc);
+      if (node.isBranch() && !branch.equals(next)) {
+        processBranch(node, branch, next, following, methodName, loc);
       } else if (next != null) {
-        addInstruction(new AsmInstruction(
-            AsmOpCode.JMP, new StringAsmArg(next.getId()), loc));
+        if (next != following) {
+          addInstruction(new AsmInstruction(
+              AsmOpCode.JMP, new StringAsmArg(next.getId()), loc));
+        }
       } else if (!(node.getLastStatement() instanceof OpStatement &&
           ((OpStatement) node.getLastStatement()).getOp() == AsmOp.RETURN)) {
         // Insert an implicit return.
         MethodDescriptor returnMethod = st.getMethod(methodName);
         generateMethodReturn(null, returnMethod, loc);
       }
+
+      if (errorBlocks.contains(node)) {
+        List<AsmObject> written =
+          instructions.subList(start, instructions.size());
+        for (AsmObject obj : written) {
+          if (obj instanceof AsmInstruction) {
+            errorInstructions.add((AsmInstruction) obj);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the blocks of this method in depth-first order, the next
+   * block of each before its branch target.
+   */
+  private List<BasicBlockNode> depthFirstOrder() {
+    List<BasicBlockNode> order = new ArrayList<BasicBlockNode>();
+    LinkedList<BasicBlockNode> nodesToProcess =
+      new LinkedList<BasicBlockNode>();
+    Set<BasicBlockNode> processed = new HashSet<BasicBlockNode>();
+    nodesToProcess.add(methodNode);
+
+    while (!nodesToProcess.isEmpty()) {
+      // Pop top element of queue to process.
+      BasicBlockNode node = nodesToProcess.remove(0);
+      // If we've seen this node already, we don't need to output it again.
+      if (processed.contains(node)) {
+        continue;
+      }
+      // Mark this node processed.
+      processed.add(node);
+      order.add(node);
+
+      // If this node has successors, queue them for processing.
+      if (node.isBranch()) {
+        nodesToProcess.addFirst(node.getBranchTarget());
+      }
+      if (node.getNext() != null) {
+        nodesToProcess.addFirst(node.getNext());
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Finds the conditionals whose booleans need not be stored because
+   * nothing reads where they would go: the branch after them tests their
+   * flags, or the value they move, instead.  Leaving out a move may leave
+   * the comparison before it unread in turn, so this repeats until nothing
+   * changes.
+   */
+  private void findFlagsOnly(List<BasicBlockNode> order) {
+    List<OpStatement> candidates = new ArrayList<OpStatement>();
+    // Conditional moves of a result whose flags the branch uses instead.
+    Set<OpStatement> chained = new HashSet<OpStatement>();
+    for (BasicBlockNode node : order) {
+      if (!node.isBranch() ||
+          !(node.getConditional() instanceof OpStatement)) {
+        continue;
+      }
+      OpStatement cond = (OpStatement) node.getConditional();
+      OpStatement source = flagSource(node);
+      if (source != null) {
+        candidates.add(source);
+      }
+      if (cond.getOp() == AsmOp.MOVE &&
+          cond.getArg1().getType() == ArgType.VARIABLE &&
+          cond.getArg2().getType() == ArgType.VARIABLE) {
+        candidates.add(cond);
+        if (source != null) {
+          chained.add(cond);
+        }
+      }
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      Set<VariableLocation> read = new HashSet<VariableLocation>();
+      for (BasicBlockNode node : order) {
+        for (BasicStatement stmt : node.getStatements()) {
+          if (chained.contains(stmt) && flagsOnly.contains(stmt)) {
+            continue;
+          }
+          for (TypedDescriptor var : SsaForm.usedVariables(stmt)) {
+            read.add(var.getLocation());
+          }
+          if (stmt instanceof ArgReassignStatement) {
+            for (Register reg :
+                 ((ArgReassignStatement) stmt).getRegMap().keySet()) {
+              read.add(new RegisterLocation(reg));
+            }
+          }
+        }
+      }
+      for (OpStatement op : candidates) {
+        if (flagsOnly.contains(op)) {
+          continue;
+        }
+        VariableLocation target = location(op.getTarget());
+        if (target != null && !read.contains(target) &&
+            target.getLocationType() != LocationType.GLOBAL) {
+          flagsOnly.add(op);
+          changed = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the comparison or NOT which left the flags the branch at the
+   * end of the given block can use: its conditional, or the statement
+   * just before a conditional move of that statement's result, since
+   * moves leave the flags alone.  Returns null if there is none.
+   */
+  private static OpStatement flagSource(BasicBlockNode node) {
+    if (!(node.getConditional() instanceof OpStatement)) {
+      return null;
+    }
+    OpStatement cond = (OpStatement) node.getConditional();
+    if (setsFlags(cond)) {
+      return cond;
+    }
+    List<BasicStatement> stmts = node.getStatements();
+    if (cond.getOp() != AsmOp.MOVE ||
+        cond.getArg2().getType() != ArgType.VARIABLE ||
+        stmts.size() < 2 ||
+        !(stmts.get(stmts.size() - 2) instanceof OpStatement)) {
+      return null;
+    }
+    OpStatement prev = (OpStatement) stmts.get(stmts.size() - 2);
+    if (!setsFlags(prev) || prev.getResult() == null ||
+        !prev.getResult().getLocation().equals(location(cond.getArg1()))) {
+      return null;
+    }
+    return prev;
+  }
+
+  /**
+   * Returns whether the statement leaves its boolean result in the flags.
+   */
+  private static boolean setsFlags(OpStatement op) {
+    return op.getOp() == AsmOp.NOT || comparisonJump(op.getOp()) != null;
+  }
+
+  /**
+   * Returns the index of the statement after the given one which computes
+   * the other half of its division, the quotient of a remainder or the
+   * remainder of a quotient, or -1 if there is none.  The two can only
+   * share an idivl if the partner can be moved up to the first: nothing in
+   * between may write the operands, or touch the partner's result.
+   */
+  private static int findDivisionPartner(List<BasicStatement> stmts,
+                                         int at) {
+    OpStatement first = divisionOf(stmts.get(at));
+    if (first == null ||
+        first.getArg1().getType() == ArgType.ARRAY_VARIABLE ||
+        first.getArg2().getType() == ArgType.ARRAY_VARIABLE ||
+        first.getResult().getLocation().equals(location(first.getArg1())) ||
+        first.getResult().getLocation().equals(location(first.getArg2()))) {
+      return -1;
+    }
+    for (int ii = at + 1; ii < stmts.size(); ii++) {
+      BasicStatement stmt = stmts.get(ii);
+      OpStatement second = divisionOf(stmt);
+      if (second != null && second.getOp() != first.getOp() &&
+          second.getArg1().equals(first.getArg1()) &&
+          second.getArg2().equals(first.getArg2())) {
+        // Both results are written at once, so they must not collide.
+        return second.getResult().getLocation().equals(
+            first.getResult().getLocation()) ? -1 : ii;
+      }
+      if (stmt instanceof NOPStatement) {
+        continue;
+      }
+      if (!(stmt instanceof OpStatement)) {
+        return -1;
+      }
+      OpStatement op = (OpStatement) stmt;
+      if (op.getOp() == AsmOp.RETURN || op.getOp() == AsmOp.ENTER) {
+        return -1;
+      }
+      VariableLocation written = location(op.getTarget());
+      if (written != null &&
+          (written.equals(location(first.getArg1())) ||
+           written.equals(location(first.getArg2())))) {
+        return -1;
+      }
+      // The partner's result may share a location with anything here.
+      if (reachesPartnerResult(op, stmts, ii + 1, first)) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns whether the statement reads or writes the result location of
+   * any division or modulo of the same operands among the statements
+   * from the given index.
+   */
+  private static boolean reachesPartnerResult(OpStatement op,
+      List<BasicStatement> stmts, int from, OpStatement first) {
+    for (int ii = from; ii < stmts.size(); ii++) {
+      OpStatement second = divisionOf(stmts.get(ii));
+      if (second == null || second.getOp() == first.getOp() ||
+          !second.getArg1().equals(first.getArg1()) ||
+          !second.getArg2().equals(first.getArg2())) {
+        continue;
+      }
+      VariableLocation result = second.getResult().getLocation();
+      for (Argument arg : new Argument[] {op.getArg1(), op.getArg2(),
+                                          op.getTarget()}) {
+        if (arg == null) {
+          continue;
+        }
+        if (result.equals(location(arg)) ||
+            (arg.getType() == ArgType.ARRAY_VARIABLE &&
+            result.equals(location(
+                ((ArrayVariableArgument) arg).getIndex())))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Returns the statement if it is a division or modulo, else null. */
+  private static OpStatement divisionOf(BasicStatement stmt) {
+    if (!(stmt instanceof OpStatement)) {
+      return null;
+    }
+    OpStatement op = (OpStatement) stmt;
+    if ((op.getOp() != AsmOp.DIVIDE && op.getOp() != AsmOp.MODULO) ||
+        op.getResult() == null) {
+      return null;
+    }
+    return op;
+  }
+
+  /** Returns the location an argument names, or null for constants. */
+  private static VariableLocation location(Argument arg) {
+    if (arg == null || !arg.isVariable() || arg.getDesc() == null) {
+      return null;
+    }
+    return arg.getDesc().getLocation();
+  }
+
+  /**
+   * Writes a division and a modulo of the same operands with a single
+   * idivl, taking the quotient from EAX and the remainder from EDX.
+   */
+  private void processDivisionPair(OpStatement first, OpStatement second,
+      MethodDescriptor thisMethod) {
+    SourceLocation sl = SourceLocation.getSourceLocationWithoutDetails();
+    if (first.getNode() != null) {
+      sl = first.getNode().getSourceLoc();
+    }
+    OpStatement quotient = (first.getOp() == AsmOp.DIVIDE) ? first : second;
+    OpStatement remainder = (quotient == first) ? second : first;
+
+    AsmArg arg1 = prepareArgument(first.getArg1(), first.getArg2(), true,
+        first.getOp(), null, false, sl);
+    AsmArg arg2 = prepareArgument(first.getArg1(), first.getArg2(), false,
+        first.getOp(), null, false, sl);
+    // Anything live after either statement must survive the idivl.
+    List<Register> live = first.getNonDyingRegisters();
+    live.addAll(second.getNonDyingRegisters());
+    boolean saveRdx = divisionSavesRdx(thisMethod, live,
+        quotient.getResult(), remainder.getResult());
+    divide(arg1, arg2, saveRdx, sl);
+
+    // Write the remainder out of EDX first if the quotient goes there.
+    VariableLocation quotientLoc = quotient.getResult().getLocation();
+    if (quotientLoc instanceof RegisterLocation &&
+        quotientLoc.getRegister().sixtyFour().equals(Register.RDX)) {
+      writeDivisionResult(remainder, Register.EDX, sl);
+      writeDivisionResult(quotient, Register.EAX, sl);
+    } else {
+      writeDivisionResult(quotient, Register.EAX, sl);
+      writeDivisionResult(remainder, Register.EDX, sl);
+    }
+    if (saveRdx) {
+      addInstruction(new AsmInstruction(AsmOpCode.POPQ, Register.RDX, sl));
+    }
+  }
+
+  private void writeDivisionResult(OpStatement op, Register from,
+                                   SourceLocation sl) {
+    VariableLocation loc = op.getResult().getLocation();
+    if (!(loc instanceof RegisterLocation) ||
+        !from.equals(loc.getRegister().thirtyTwo())) {
+      addInstruction(new AsmInstruction(AsmOpCode.MOVL, from,
+          convertVariableLocation(loc, true), sl));
     }
   }
 
@@ -392,9 +708,12 @@ public class AsmBasicBlock implements AsmObject {
 
   /**
    * Writes a trailer for the current block, assuming ends in a branch.
+   * If following is the block written next, the jump to it is left out,
+   * inverting the condition if it is the branch target.
    */
   protected void processBranch(BasicBlockNode node, BasicBlockNode branch,
-      BasicBlockNode next, String methodName, SourceLocation loc) {
+      BasicBlockNode next, BasicBlockNode following, String methodName,
+      SourceLocation loc) {
     // If the last operation carried out was a conditional, the flags from
     // that comparison will still be set; we just need to retrieve the op
     // so we can perform the correct jump using those flags.
@@ -405,7 +724,12 @@ public class AsmBasicBlock implements AsmObject {
     AsmOpCode conditionalJump = null;
     Register resultRegister = null;
 
-    if (node.getConditional() instanceof OpStatement) {
+    if (opts.contains(Optimization.CONDITION_FLAGS)) {
+      conditionalJump = testCondition(node, loc);
+      if (conditionalJump == null) {
+        return;
+      }
+    } else if (node.getConditional() instanceof OpStatement) {
       OpStatement condition = (OpStatement) node.getConditional();
       switch (condition.getOp()) {
       case EQUAL:
@@ -456,21 +780,29 @@ public class AsmBasicBlock implements AsmObject {
     // If we had a CMP earlier, perform the conditional jump now.
     // Otherwise, we need to compare the boolean to true and jump if it is
     // in fact true ($1).
-    if (conditionalJump != null) {
-      addInstruction(new AsmInstruction(
-          conditionalJump, new StringAsmArg(branch.getId()), loc));
-    } else {
+    if (conditionalJump == null) {
       addInstruction(new AsmInstruction(
           AsmOpCode.CMPL, new StringAsmArg("$1"), resultRegister, loc));
+      conditionalJump = AsmOpCode.JE;
+    }
+
+    // If the branch target comes next, jump to the next block when the
+    // condition fails instead and fall through to the target.
+    if (next != null && branch == following) {
       addInstruction(new AsmInstruction(
-          AsmOpCode.JE, new StringAsmArg(branch.getId()), loc));
+          negateJump(conditionalJump), new StringAsmArg(next.getId()), loc));
+      return;
     }
+    addInstruction(new AsmInstruction(
+        conditionalJump, new StringAsmArg(branch.getId()), loc));
 
     // Write the alternate unconditional jump to the next block since by
     // this point we've failed the conditional jump check.
     if (next != null) {
-      addInstruction(new AsmInstruction(
-          AsmOpCode.JMP, new StringAsmArg(next.getId()), loc));
+      if (next != following) {
+        addInstruction(new AsmInstruction(
+            AsmOpCode.JMP, new StringAsmArg(next.getId()), loc));
+      }
     } else {
       // Insert an implicit return, since there are no more basicblocks
       // left in this method to jump to.
@@ -479,6 +811,118 @@ public class AsmBasicBlock implements AsmObject {
     }
   }
 
+  /**
+   * Sets the flags for the branch at the end of the given block without
+   * comparing a stored boolean to true, and returns the jump to take if
+   * the condition holds.  A comparison or NOT has already set them, even
+   * if a move of its result follows; anything else is tested here.
+   */
+  private AsmOpCode testCondition(BasicBlockNode node, SourceLocation loc) {
+    OpStatement source = flagSource(node);
+    if (source != null) {
+      if (source.getOp() != AsmOp.NOT) {
+        return comparisonJump(source.getOp());
+      }
+      // Either the operand of the NOT was tested, or its result was set.
+      return flagsOnly.contains(source) ? AsmOpCode.JE : AsmOpCode.JNE;
+    }
+
+    if (!(node.getConditional() instanceof OpStatement)) {
+      // The return value of a call is still in EAX.
+      addInstruction(new AsmInstruction(
+          AsmOpCode.TESTL, Register.EAX, Register.EAX, loc));
+      return AsmOpCode.JNE;
+    }
+    OpStatement condition = (OpStatement) node.getConditional();
+    if (condition.getOp() != AsmOp.MOVE) {
+      ErrorReporting.reportError(new AsmException(loc,
+          "Bad opcode for conditional"));
+      return null;
+    }
+    if (flagsOnly.contains(condition)) {
+      testValue(condition.getArg1(), loc);
+    } else if (condition.getArg2().isRegister()) {
+      Register reg = condition.getArg2().getDesc().getLocation()
+        .getRegister().thirtyTwo();
+      addInstruction(new AsmInstruction(AsmOpCode.TESTL, reg, reg, loc));
+    } else {
+      // The value moved to memory is still in R10.
+      addInstruction(new AsmInstruction(
+          AsmOpCode.TESTL, Register.R10D, Register.R10D, loc));
+    }
+    return AsmOpCode.JNE;
+  }
+
+  /**
+   * Sets the flags from a boolean where it is, so that JNE jumps if it is
+   * true.
+   */
+  private void testValue(Argument arg, SourceLocation sl) {
+    if (arg.isRegister()) {
+      Register reg = arg.getDesc().getLocation().getRegister().thirtyTwo();
+      addInstruction(new AsmInstruction(AsmOpCode.TESTL, reg, reg, sl));
+    } else if (arg.getType() == ArgType.VARIABLE) {
+      addInstruction(new AsmInstruction(AsmOpCode.CMPL,
+          new StringAsmArg("$0"),
+          convertVariableLocation(arg.getDesc().getLocation(), true), sl));
+    } else {
+      AsmArg value = prepareArgument(arg, null, true, AsmOp.NOT, null,
+                                     false, sl);
+      if (!(value instanceof Register)) {
+        addInstruction(new AsmInstruction(
+            AsmOpCode.MOVL, value, Register.R10D, sl));
+        value = Register.R10D;
+      }
+      Register reg = ((Register) value).thirtyTwo();
+      addInstruction(new AsmInstruction(AsmOpCode.TESTL, reg, reg, sl));
+    }
+  }
+
+  /**
+   * Returns the conditional jump taken when the given comparison holds,
+   * or null if it is not a comparison.
+   */
+  private static AsmOpCode comparisonJump(AsmOp op) {
+    switch (op) {
+     case EQUAL:
+      return AsmOpCode.JE;
+     case NOT_EQUAL:
+      return AsmOpCode.JNE;
+     case LESS_THAN:
+      return AsmOpCode.JL;
+     case LESS_OR_EQUAL:
+      return AsmOpCode.JLE;
+     case GREATER_THAN:
+      return AsmOpCode.JG;
+     case GREATER_OR_EQUAL:
+      return AsmOpCode.JGE;
+     default:
+      return null;
+    }
+  }
+
+  /**
+   * Returns the conditional jump taken exactly when the given one is not.
+   */
+  private static AsmOpCode negateJump(AsmOpCode jump) {
+    switch (jump) {
+     case JE:
+      return AsmOpCode.JNE;
+     case JNE:
+      return AsmOpCode.JE;
+     case JL:
+      return AsmOpCode.JGE;
+     case JGE:
+      return AsmOpCode.JL;
+     case JLE:
+      return AsmOpCode.JG;
+     case JG:
+      return AsmOpCode.JLE;
+     default:
+      throw new IllegalArgumentException("Not a conditional jump: " + jump);
+    }
+  }
+
   /** Contains the registers used for argument passing in order. */
   public static Register[] argumentRegisters = {
     Register.RDI, // 1st arg
@@ -495,7 +939,7 @@ public class AsmBasicBlock implements AsmObject {
    */
   protected void generateMethodHeader(MethodDescriptor desc, int numLocals) {
     SourceLocation sl = desc.getSourceLocation();
-    addInstruction(new AsmInstruction(
+    addFrameInstruction(new AsmInstruction(
         AsmOpCode.ENTER,
         new StringAsmArg("$" + numLocals), new StringAsmArg("$0"), sl));
 
@@ -504,7 +948,7 @@ public class AsmBasicBlock implements AsmObject {
 
     for (Register reg : desc.getUsedCalleeRegisters()) {
       // Save registers used in method.
-      addInstruction(new AsmInstruction(AsmOpCode.PUSHQ, reg, sl));
+      addFrameInstruction(new AsmInstruction(AsmOpCode.PUSHQ, reg, sl));
     }
 
     if (!opts.contains(Optimization.REGISTER_ALLOCATION)) {
@@ -523,7 +967,7 @@ public class AsmBasicBlock implements AsmObject {
   protected void generateMethodReturn(AsmArg arg1, MethodDescriptor desc,
       SourceLocation sl) {
     if (desc.getType() != DecafType.VOID && arg1 == null) {
-      addInstruction(new AsmInstruction(AsmOpCode.MOVQ,
+      addFrameInstruction(new AsmInstruction(AsmOpCode.MOVQ,
           new StringAsmArg("$." + desc.getId()  + "_name"), Register.R12, sl));
       addInstruction(new AsmInstruction(
           AsmOpCode.JLE,
@@ -554,11 +998,11 @@ public class AsmBasicBlock implements AsmObject {
     List<Register> usedRegisters = desc.getUsedCalleeRegisters();
     Collections.reverse(usedRegisters);
     for (Register reg : usedRegisters) {
-      addInstruction(new AsmInstruction(AsmOpCode.POPQ, reg, sl));
+      addFrameInstruction(new AsmInstruction(AsmOpCode.POPQ, reg, sl));
     }
 
     // Push old base pointer.
-    addInstruction(new AsmInstruction(AsmOpCode.LEAVE, sl));
+    addFrameInstruction(new AsmInstruction(AsmOpCode.LEAVE, sl));
     // Caller cleans up arguments.
     addInstruction(new AsmInstruction(AsmOpCode.RET, sl));
   }
@@ -568,6 +1012,18 @@ public class AsmBasicBlock implements AsmObject {
    */
   protected void processOpStatement(OpStatement op, String methodName,
       MethodDescriptor thisMethod, SourceLocation sl) {
+    if (flagsOnly.contains(op)) {
+      switch (op.getOp()) {
+       case MOVE:
+        // The branch tests the value, or the flags, instead.
+        return;
+       case NOT:
+        // The branch jumps if the operand is false instead.
+        testValue(op.getArg1(), sl);
+        return;
+      }
+    }
+
     // prepareArgument loads an argument from memory/another register
     // into R10 or R11 and returns the reg it stored the argument in.
     AsmArg arg1 = null;
@@ -576,7 +1032,8 @@ public class AsmBasicBlock implements AsmObject {
           op.getOp(), op.getDyingRegisters(), op.getResult(), false, sl);
     }
     AsmArg arg2 = null;
-    if (op.getArg2() != null && op.getOp() != AsmOp.MOVE) {
+    if (op.getArg2() != null && op.getOp() != AsmOp.MOVE &&
+        op.getOp() != AsmOp.MULTIPLY_HIGH) {
       arg2 = prepareArgument(op.getArg1(), op.getArg2(), false, op.getOp(),
           op.getDyingRegisters(), op.getResult(), false, sl);
     }
@@ -612,32 +1069,23 @@ public class AsmBasicBlock implements AsmObject {
      case MULTIPLY:
       addInstruction(new AsmInstruction(AsmOpCode.IMULL, arg1, arg2, sl));
       break;
-     case DIVIDE:
-     case MODULO:
-      // TODO: Get register liveness information here and check before reg spill
-      // Save the existing value in RAX
+     case MULTIPLY_HIGH:
+      // The high half of the 64-bit product of arg1 with the magic number
+      // in arg2, which is taken as unsigned.
       addInstruction(new AsmInstruction(
-        AsmOpCode.PUSHQ, Register.RAX, sl));
-      // Division needs to use EAX for the dividend, and overwrites
-      // EAX/EDX to store its outputs.
+        AsmOpCode.MOVSXD, arg1, Register.R11, sl));
+      addInstruction(new AsmInstruction(AsmOpCode.MOVL,
+        new StringAsmArg("$" + ((ConstantArgument) op.getArg2()).getInt()),
+        Register.R10D, sl));
       addInstruction(new AsmInstruction(
-        AsmOpCode.MOVL, arg1, Register.EAX, sl));
-      // Unfortunately, RDX may contain the first argument to the
-      // function. We need to push it to memory to save it.
-      if (!(op.getResult().getLocation() instanceof RegisterLocation) ||
-          !op.getResult().getLocation().getRegister().sixtyFour().equals(
-              Register.RDX)) {
-        addInstruction(new AsmInstruction(AsmOpCode.PUSHQ, Register.RDX, sl));
-      }
-      if ((arg2 instanceof Register) &&
-          ((Register)arg2).sixtyFour().equals(Register.RDX)) {
-        addInstruction(new AsmInstruction(
-            AsmOpCode.MOVL, arg2, Register.R11D, sl));
-        arg2 = Register.R11D;
-      }
+        AsmOpCode.IMULQ, Register.R11, Register.R10, sl));
       addInstruction(new AsmInstruction(
-        AsmOpCode.CDQ, sl));
-      addInstruction(new AsmInstruction(AsmOpCode.IDIVL, arg2, sl));
+        AsmOpCode.SARQ, new StringAsmArg("$32"), Register.R10, sl));
+      break;
+     case DIVIDE:
+     case MODULO:
+      divide(arg1, arg2, divisionSavesRdx(thisMethod,
+          op.getNonDyingRegisters(), op.getResult()), sl);
       break;
      case UNARY_MINUS:
       // Unary operations use R10 for input and output.
@@ -653,6 +1101,10 @@ public class AsmBasicBlock implements AsmObject {
      case LESS_OR_EQUAL:
      case GREATER_THAN:
      case GREATER_OR_EQUAL:
+      if (flagsOnly.contains(op)) {
+        addInstruction(new AsmInstruction(AsmOpCode.CMPL, arg2, arg1, sl));
+        return;
+      }
       processBoolean(op.getOp(), arg1, arg2, sl);
       break;
      case RETURN:
@@ -683,14 +1135,58 @@ public class AsmBasicBlock implements AsmObject {
           new AsmString("  /* Ignoring result assignment of conditional. */"));
     }
 
-    if (op.getOp() == AsmOp.DIVIDE || op.getOp() == AsmOp.MODULO) {
-      // Restore the registers we displaced for division/modulo.
-      if (!(op.getResult().getLocation() instanceof RegisterLocation) ||
-          !resultReg.sixtyFour().equals(Register.RDX)) {
-        addInstruction(new AsmInstruction(AsmOpCode.POPQ, Register.RDX, sl));
+    if ((op.getOp() == AsmOp.DIVIDE || op.getOp() == AsmOp.MODULO) &&
+        divisionSavesRdx(thisMethod, op.getNonDyingRegisters(),
+                         op.getResult())) {
+      addInstruction(new AsmInstruction(AsmOpCode.POPQ, Register.RDX, sl));
+    }
+  }
+
+  /**
+   * Divides arg1 by arg2, leaving the quotient in EAX and the remainder in
+   * EDX.  Nothing is kept in RAX from one statement to the next, so it is
+   * never saved; RDX is pushed if saveRdx is set, and the caller pops it
+   * once the results have been written.
+   */
+  private void divide(AsmArg arg1, AsmArg arg2, boolean saveRdx,
+                      SourceLocation sl) {
+    addInstruction(new AsmInstruction(AsmOpCode.MOVL, arg1, Register.EAX, sl));
+    if (saveRdx) {
+      addInstruction(new AsmInstruction(AsmOpCode.PUSHQ, Register.RDX, sl));
+    }
+    // CDQ overwrites EDX before the divisor is read.
+    if ((arg2 instanceof Register) &&
+        ((Register)arg2).sixtyFour().equals(Register.RDX)) {
+      addInstruction(new AsmInstruction(
+          AsmOpCode.MOVL, arg2, Register.R11D, sl));
+      arg2 = Register.R11D;
+    }
+    addInstruction(new AsmInstruction(AsmOpCode.CDQ, sl));
+    addInstruction(new AsmInstruction(AsmOpCode.IDIVL, arg2, sl));
+  }
+
+  /**
+   * Returns whether a division writing the given results must save RDX
+   * first.  With register allocation, that is only when RDX holds a value
+   * which lives past the division, given the registers still live after
+   * the statement.  The coloring allocator makes such values interfere with
+   * RDX, so this only happens under linear scan.  Without allocation, RDX
+   * may hold a parameter.  Either way it need not be saved if it receives
+   * one of the results.
+   */
+  private boolean divisionSavesRdx(MethodDescriptor thisMethod,
+      List<Register> live, TypedDescriptor... results) {
+    for (TypedDescriptor result : results) {
+      if (result.getLocation() instanceof RegisterLocation &&
+          result.getLocation().getRegister().sixtyFour().equals(
+              Register.RDX)) {
+        return false;
       }
-      addInstruction(new AsmInstruction(AsmOpCode.POPQ, Register.RAX, sl));
     }
+    if (opts.contains(Optimization.REGISTER_ALLOCATION)) {
+      return live.contains(Register.RDX);
+    }
+    return thisMethod.getUsedCallerRegisters().contains(Register.RDX);
   }
 
   /**
@@ -717,6 +1213,8 @@ public class AsmBasicBlock implements AsmObject {
      case MODULO:
       // RDX is fixed to hold the remainder.
       return Register.EDX;
+     case MULTIPLY_HIGH:
+      return Register.R10D;
      case MOVE:
      default:
       return ((Register)second).thirtyTwo();
@@ -968,9 +1466,18 @@ public class AsmBasicBlock implements AsmObject {
         }
         index = indexReg.sixtyFour();
       }
-      addInstruction(new AsmInstruction(AsmOpCode.MOVQ,
-          new StringAsmArg("(" + Register.R12 + ", " + index + ", 8)"),
-          tempStorage, sl));
+      if (opts.contains(Optimization.COMPACT_ARRAYS)) {
+        if (signExtend) {
+          addInstruction(new AsmInstruction(AsmOpCode.MOVSXD,
+              arrayElement(index), tempStorage, sl));
+        } else {
+          addInstruction(new AsmInstruction(AsmOpCode.MOVL,
+              arrayElement(index), tempStorage.thirtyTwo(), sl));
+        }
+      } else {
+        addInstruction(new AsmInstruction(AsmOpCode.MOVQ,
+            arrayElement(index), tempStorage, sl));
+      }
       break;
     }
     return signExtend ? tempStorage : tempStorage.thirtyTwo();
@@ -1018,7 +1525,8 @@ public class AsmBasicBlock implements AsmObject {
           new StringAsmArg("$" + symbol), Register.R12, sl));
 
       // Finally, perform the indirection to save to memory+offset.
-      if (signExtend) {
+      boolean compact = opts.contains(Optimization.COMPACT_ARRAYS);
+      if (signExtend && !compact) {
         addInstruction(new AsmInstruction(AsmOpCode.MOVSXD, Register.R10D,
           Register.R10, sl));
       }
@@ -1030,12 +1538,27 @@ public class AsmBasicBlock implements AsmObject {
         }
         index = indexReg.sixtyFour();
       }
-      addInstruction(new AsmInstruction(AsmOpCode.MOVQ, Register.R10,
-          new StringAsmArg("("  + Register.R12 + ", " + index + ", 8)"), sl));
+      if (compact) {
+        addInstruction(new AsmInstruction(AsmOpCode.MOVL, Register.R10D,
+            arrayElement(index), sl));
+      } else {
+        addInstruction(new AsmInstruction(AsmOpCode.MOVQ, Register.R10,
+            arrayElement(index), sl));
+      }
       break;
     }
   }
 
+  /**
+   * Returns the operand for an element of the array whose address is in
+   * R12. Elements are four bytes wide with -opt compact, else eight.
+   */
+  private AsmArg arrayElement(AsmArg index) {
+    int scale = opts.contains(Optimization.COMPACT_ARRAYS) ? 4 : 8;
+    return new StringAsmArg(
+        "(" + Register.R12 + ", " + index + ", " + scale + ")");
+  }
+
   /**
    * Converts a VariableLocation object to the corresponding ASM string
    * required to look it up as an op's argument.
@@ -1044,7 +1567,8 @@ public class AsmBasicBlock implements AsmObject {
       VariableLocation loc, boolean thirtyTwo) {
     switch (loc.getLocationType()) {
     case GLOBAL:
-      if (loc.getSymbol().startsWith(".str")) {
+      if (loc.getSymbol().startsWith(".str") ||
+          ((GlobalLocation) loc).isAddress()) {
         return new StringAsmArg("$" + loc.getSymbol());
       } else {
         return new StringAsmArg("." + loc.getSymbol());
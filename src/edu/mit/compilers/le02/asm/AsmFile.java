@@ -4,8 +4,13 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
+import edu.mit.compilers.le02.CompilerStats;
 import edu.mit.compilers.le02.SourceLocation;
+import edu.mit.compilers.le02.CompilerStats.Pass;
+import edu.mit.compilers.le02.Util;
 import edu.mit.compilers.le02.Main.Optimization;
 import edu.mit.compilers.le02.RegisterLocation.Register;
 import edu.mit.compilers.le02.ast.StringNode;
@@ -35,7 +40,6 @@ public class AsmFile {
   private List<AsmObject> methods = new ArrayList<AsmObject>();
   private List<AsmObject> errors = new ArrayList<AsmObject>();
 
-  private AsmBasicBlock current;
 
   public AsmFile(ControlFlowGraph graph, SymbolTable table,
       PrintStream writer, EnumSet<Optimization> opts) {
@@ -45,7 +49,7 @@ public class AsmFile {
 
     writeHeader();
     writeStrings();
-    writeGlobals();
+    writeGlobals(opts);
     writeMethods(opts);
     writeErrors();
   }
@@ -90,11 +94,17 @@ public class AsmFile {
 
   /**
    * Reserves space for global variables and zero-initializes them.
+   * Array elements take eight bytes each, or four with -opt compact.
    */
-  public void writeGlobals() {
+  public void writeGlobals(EnumSet<Optimization> opts) {
+    boolean compact = opts.contains(Optimization.COMPACT_ARRAYS);
     for (String globalName : cfg.getGlobals()) {
       // Globals belong in bss (zero-initialized, writeable memory)
       globals.add(new AsmString(".bss"));
+      if (compact) {
+        // Arrays may leave the next global off an eight-byte boundary.
+        globals.add(new AsmString(".align 8"));
+      }
       globals.add(writeLabel(globalName));
       FieldDescriptor desc = cfg.getGlobal(globalName);
       switch (desc.getType()) {
@@ -108,7 +118,7 @@ public class AsmFile {
         // Initialize the values in the array's memory range to zero.
         int size = desc.getLength();
         globals.add(new AsmString("  .rept " + size));
-        globals.add(new AsmString("  .quad 0"));
+        globals.add(new AsmString(compact ? "  .long 0" : "  .quad 0"));
         globals.add(new AsmString("  .endr"));
       }
     }
@@ -116,22 +126,62 @@ public class AsmFile {
 
   /**
    * Writes the blocks associated with each method to the assembly file.
+   * Methods are independent of each other, apart from the workers of
+   * parallel loops, so with -parallel they are generated concurrently; they
+   * are still emitted in the usual order.
    */
-  public void writeMethods(EnumSet<Optimization> opts) {
+  public void writeMethods(final EnumSet<Optimization> opts) {
     methods.add(new AsmString(".section .rodata"));
-    for (String methodName : cfg.getMethods()) {
-      BasicBlockNode methodNode =
-        (BasicBlockNode) cfg.getMethod(methodName);
-      MethodDescriptor thisMethod = st.getMethod(methodName);
-
-      current = new AsmBasicBlock(
-        methodName, methodNode, thisMethod, st, opts);
-      if (opts.contains(Optimization.ASM_PEEPHOLE)) {
-        current.peepholeInstructions();
-      }
-      //current.reorderInstructions();
-      methods.add(current);
+
+    List<String> methodNames = cfg.getMethods();
+    List<ForkJoinTask<AsmBasicBlock>> tasks =
+      new ArrayList<ForkJoinTask<AsmBasicBlock>>();
+    for (final String methodName : methodNames) {
+      tasks.add(new RecursiveTask<AsmBasicBlock>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected AsmBasicBlock compute() {
+          return writeMethod(methodName, opts);
+        }
+      });
+    }
+
+    Util.runMethodTasks(methodNames, tasks);
+    for (ForkJoinTask<AsmBasicBlock> task : tasks) {
+      methods.add(task.join());
+    }
+  }
+
+  private AsmBasicBlock writeMethod(String methodName,
+                                    EnumSet<Optimization> opts) {
+    BasicBlockNode methodNode =
+      (BasicBlockNode) cfg.getMethod(methodName);
+    MethodDescriptor thisMethod = st.getMethod(methodName);
+
+    Pass pass = CompilerStats.begin("codegen", methodName);
+    AsmBasicBlock block = new AsmBasicBlock(
+      methodName, methodNode, thisMethod, st, opts);
+    CompilerStats.end(pass);
+    if (opts.contains(Optimization.ASM_PEEPHOLE)) {
+      pass = CompilerStats.begin(Optimization.ASM_PEEPHOLE.flagName(),
+                                 methodName);
+      block.peepholeInstructions();
+      CompilerStats.end(pass);
+    }
+    if (opts.contains(Optimization.INSTRUCTION_SCHEDULING)) {
+      pass = CompilerStats.begin(
+        Optimization.INSTRUCTION_SCHEDULING.flagName(), methodName);
+      block.reorderInstructions();
+      CompilerStats.end(pass);
+    }
+    if (opts.contains(Optimization.FRAME_LOWERING)) {
+      pass = CompilerStats.begin(Optimization.FRAME_LOWERING.flagName(),
+                                 methodName);
+      block.lowerFrame();
+      CompilerStats.end(pass);
     }
+    return block;
   }
 
   /**
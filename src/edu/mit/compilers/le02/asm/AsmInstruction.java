@@ -1,12 +1,10 @@
 package edu.mit.compilers.le02.asm;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import edu.mit.compilers.le02.SourceLocation;
+import edu.mit.compilers.le02.SourceText;
 import edu.mit.compilers.tools.CLI;
 
 /**
@@ -27,19 +25,22 @@ public class AsmInstruction implements AsmObject {
   private List<Integer> children;
   private int heuristic;
 
+  /** The name getReads() and getWrites() use for the condition flags. */
+  public static final String FLAGS = "compare";
+
   public int getHeuristic() {
- return heuristic;
-}
+    return heuristic;
+  }
 
-public void setHeuristic(int heuristic) {
- this.heuristic = heuristic;
-}
+  public void setHeuristic(int heuristic) {
+    this.heuristic = heuristic;
+  }
 
-public List<Integer> getChildren() {
- return children;
-}
+  public List<Integer> getChildren() {
+    return children;
+  }
 
-public AsmInstruction(AsmOpCode opCode, SourceLocation loc) {
+  public AsmInstruction(AsmOpCode opCode, SourceLocation loc) {
     this(opCode, "", "", loc);
   }
 
@@ -63,105 +64,274 @@ public AsmInstruction(AsmOpCode opCode, SourceLocation loc) {
     this.second_operand = second_operand;
     this.loc = loc;
     this.heuristic = 0;
+    this.parents = new ArrayList<Integer>();
+    this.children = new ArrayList<Integer>();
+  }
+
+  /**
+   * Returns everything this instruction reads: registers (by their 64-bit
+   * names), FLAGS, and memory operands (as written).  Registers used to
+   * form an address are reads even if the memory is only written.
+   */
+  public List<String> getReads() {
+    List<String> reads = new ArrayList<String>();
+    switch (opcode) {
+     case ADDQ:
+     case ADDL:
+     case ANDL:
+     case IMULL:
+     case IMULQ:
+     case SUBL:
+     case SUBQ:
+     case SHLL:
+     case SARL:
+     case SARQ:
+     case XCHGQ:
+      use(reads, first_operand);
+      use(reads, second_operand);
+      break;
+     case XORL:
+     case XORQ:
+      // xor of a register with itself just zeroes it.
+      if (!first_operand.equals(second_operand)) {
+        use(reads, first_operand);
+        use(reads, second_operand);
+      }
+      break;
+     case CMPL:
+     case TESTL:
+      use(reads, first_operand);
+      use(reads, second_operand);
+      break;
+     case CMOVEL:
+     case CMOVGEL:
+     case CMOVGL:
+     case CMOVLEL:
+     case CMOVLL:
+     case CMOVNEL:
+      use(reads, first_operand);
+      use(reads, second_operand);
+      reads.add(FLAGS);
+      break;
+     case MOVQ:
+     case MOVL:
+     case MOVSXD:
+      use(reads, first_operand);
+      addressOf(reads, second_operand);
+      break;
+     case LEAL:
+      addressOf(reads, first_operand);
+      break;
+     case NEGL:
+      use(reads, first_operand);
+      break;
+     case CDQ:
+      reads.add("%rax");
+      break;
+     case IDIVL:
+      use(reads, first_operand);
+      reads.add("%rax");
+      reads.add("%rdx");
+      break;
+     case JE:
+     case JG:
+     case JGE:
+     case JL:
+     case JLE:
+     case JNE:
+      reads.add(FLAGS);
+      break;
+    }
+    return reads;
+  }
+
+  /**
+   * Returns everything this instruction writes, named as in getReads().
+   */
+  public List<String> getWrites() {
+    List<String> writes = new ArrayList<String>();
+    switch (opcode) {
+     case ADDQ:
+     case ADDL:
+     case ANDL:
+     case IMULL:
+     case IMULQ:
+     case SUBL:
+     case SUBQ:
+     case SHLL:
+     case SARL:
+     case SARQ:
+     case XORL:
+     case XORQ:
+      def(writes, second_operand);
+      writes.add(FLAGS);
+      break;
+     case CMPL:
+     case TESTL:
+      writes.add(FLAGS);
+      break;
+     case CMOVEL:
+     case CMOVGEL:
+     case CMOVGL:
+     case CMOVLEL:
+     case CMOVLL:
+     case CMOVNEL:
+     case MOVQ:
+     case MOVL:
+     case MOVSXD:
+     case LEAL:
+      def(writes, second_operand);
+      break;
+     case NEGL:
+      def(writes, first_operand);
+      writes.add(FLAGS);
+      break;
+     case XCHGQ:
+      def(writes, first_operand);
+      def(writes, second_operand);
+      break;
+     case CDQ:
+      writes.add("%rdx");
+      break;
+     case IDIVL:
+      writes.add("%rax");
+      writes.add("%rdx");
+      writes.add(FLAGS);
+      break;
+    }
+    return writes;
+  }
+
+  /**
+   * Returns whether this instruction may be reordered with its neighbours
+   * subject to the dependences given by getReads() and getWrites().
+   * Control transfers, and anything which touches the stack pointer or
+   * frame pointer, must stay where they are.
+   */
+  public boolean moveable() {
+    switch (opcode) {
+     case JE:
+     case JG:
+     case JGE:
+     case JL:
+     case JLE:
+     case JMP:
+     case JNE:
+     case CALL:
+     case ENTER:
+     case LEAVE:
+     case RET:
+     case PUSHQ:
+     case POPQ:
+      return false;
+     default:
+      List<String> writes = getWrites();
+      return !writes.contains("%rsp") && !writes.contains("%rbp");
+    }
+  }
+
+  /**
+   * Returns an estimate of the number of cycles before the result of this
+   * instruction can be used, based on recent x86-64 cores.
+   */
+  public int getLatency() {
+    // Loads take about four cycles on top of the operation itself.
+    int load = isMemory(first_operand) ? 4 : 0;
+    switch (opcode) {
+     case MOVQ:
+     case MOVL:
+     case MOVSXD:
+      return Math.max(load, 1);
+     case IMULL:
+     case IMULQ:
+      return 3 + load;
+     case IDIVL:
+      return 26 + load;
+     case XCHGQ:
+      return 2;
+     case LEAL:
+      return 1;
+     default:
+      return 1 + load;
+    }
+  }
+
+  /**
+   * Returns whether an operand refers to memory, as opposed to a register
+   * or an immediate.
+   */
+  public static boolean isMemory(String operand) {
+    return !operand.equals("") && !operand.startsWith("%") &&
+           !operand.startsWith("$");
+  }
+
+  /**
+   * Returns the 64-bit name of a register operand.
+   */
+  static String canonicalRegister(String reg) {
+    if (reg.startsWith("%e")) {
+      return "%r" + reg.substring(2);
+    } else if (reg.startsWith("%r") && reg.endsWith("d")) {
+      return reg.substring(0, reg.length() - 1);
+    }
+    return reg;
   }
 
-  public List<String> getReads(){
-   ArrayList<String> reads = new ArrayList<String>();
-   switch(opcode){
-   case ADDQ:
-   case ADDL:
-   case CMPL:
-   case IDIVL:
-   case IMULL:
-   case SUBL:
-    reads.add(second_operand);
-    reads.add(first_operand);
-    break;
-   case MOVQ:
-   case MOVL:
-   case MOVSXD:
-   case SARL:
-   case SHLL:
-
-    reads.add(first_operand);
-    break;
-   case CMOVEL:
-   case CMOVGEL:
-   case CMOVGL:
-   case CMOVLEL:
-   case CMOVLL:
-   case CMOVNEL:
-    reads.add("compare");
-   //case read0:
-
-   }
-
-   return reads;
-
-  }
-
-  public List<String> getWrites(){
-   ArrayList<String> writes = new ArrayList<String>();
-   switch(opcode){
-   case ADDQ:
-   case ADDL:
-   case CMOVEL:
-   case CMOVGEL:
-   case CMOVGL:
-   case CMOVLEL:
-   case CMOVLL:
-   case CMOVNEL:
-   case IDIVL:
-   case IMULL:
-   case SUBL:
-    writes.add(second_operand);
-    break;
-   case SARL:
-   case SHLL:
-    writes.add(first_operand);
-    break;
-   case CMPL:
-    writes.add("compare");
-    break;
-
-   }
-
-   return writes;
-  }
-
-  public boolean moveable(){
-   switch(opcode){
-   case JE:
-   case JG:
-   case JGE:
-   case JL:
-   case JLE:
-   case JMP:
-   case JNE:
-    return false;
-   default:
-    return true;
-   }
-  }
-
-  public void addParent(int id){
-   parents.add(id);
+  /** Adds what reading operand reads to reads. */
+  private static void use(List<String> reads, String operand) {
+    if (operand.startsWith("%")) {
+      reads.add(canonicalRegister(operand));
+    } else if (isMemory(operand)) {
+      reads.add(operand);
+      addressOf(reads, operand);
+    }
+  }
+
+  /** Adds what writing operand writes to writes. */
+  private static void def(List<String> writes, String operand) {
+    if (operand.startsWith("%")) {
+      writes.add(canonicalRegister(operand));
+    } else if (isMemory(operand)) {
+      writes.add(operand);
+    }
+  }
+
+  /** Adds the registers used to form a memory operand's address to reads. */
+  private static void addressOf(List<String> reads, String operand) {
+    if (!isMemory(operand)) {
+      return;
+    }
+    int start = operand.indexOf('(');
+    if (start < 0) {
+      return;
+    }
+    for (String part : operand.substring(start + 1, operand.length() - 1)
+                              .split(",")) {
+      part = part.trim();
+      if (part.startsWith("%")) {
+        reads.add(canonicalRegister(part));
+      }
+    }
+  }
+
+  public void addParent(int id) {
+    parents.add(id);
   }
 
   public List<Integer> getParents() {
- return parents;
-}
+    return parents;
+  }
 
-public void addChild(int id){
-   children.add(id);
+  public void addChild(int id) {
+    children.add(id);
   }
 
-  public void setID(int it){
-   this.id = id;
+  public void setID(int id) {
+    this.id = id;
   }
 
-  public int getID(){
-   return id;
+  public int getID() {
+    return id;
   }
 
   public String toString() {
@@ -179,27 +349,15 @@ public void addChild(int id){
    * Attempts to pull the original source line corresponding to an ASM op.
    */
   protected static String getOriginalSource(SourceLocation loc) {
-    if (loc.getLine() >= 0 && loc.getCol() >= 0
-        && !loc.getFilename().equals(CLI.STDIN)) {
-      try {
-        BufferedReader reader = new BufferedReader(
-            new FileReader(loc.getFilename()));
-        int line = 0;
-        String lineContents = "";
-        while (line < loc.getLine()) {
-          lineContents = reader.readLine();
-          line++;
-        }
-        return " # " + lineContents.substring(0, loc.getCol()) +
-          "@"  + lineContents.substring(loc.getCol());
-      } catch (IOException ioe) {
-        return "";
-      } catch (StringIndexOutOfBoundsException oob) {
-        return "";
-      }
-    } else {
+    if (!CLI.sourceComments) {
+      return "";
+    }
+    String lineContents = SourceText.getLine(loc);
+    if (lineContents == null || loc.getCol() > lineContents.length()) {
       return "";
     }
+    return " # " + lineContents.substring(0, loc.getCol()) +
+      "@"  + lineContents.substring(loc.getCol());
   }
 
 }
@@ -16,6 +16,7 @@ public enum AsmOpCode {
   ENTER,
   IDIVL,
   IMULL,
+  IMULQ,
   JE,
   JG,
   JGE,
@@ -34,7 +35,10 @@ public enum AsmOpCode {
   RET,
   SHLL,
   SARL,
+  SARQ,
   SUBL,
+  SUBQ,
+  TESTL,
   XCHGQ,
   XORQ,
   XORL,
@@ -0,0 +1,330 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.HaltStatement;
+import edu.mit.compilers.le02.cfg.NOPStatement;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.ssa.DominatorTree;
+
+/**
+ * Chooses the order in which the blocks of a method are written out.
+ *
+ * Without a profile, each branch is guessed from the shape of the CFG:
+ * paths ending in a runtime error are unlikely, back edges and edges into
+ * a loop are likely, and a successor which stays inside the innermost
+ * loop is preferred to one which leaves it.  Otherwise the fall-through
+ * successor is preferred.
+ * Blocks are then placed in traces, each block followed by its likeliest
+ * unplaced successor, so that AsmBasicBlock can drop the jump to it and
+ * invert the branch when needed.  A loop whose header is the exit test is
+ * rotated by starting its trace at the body, which leaves the header, and
+ * so the test, at the bottom of the loop next to its exit.
+ *
+ * Blocks with nothing but no-ops, and moves of registers to themselves,
+ * only jump to their successor, so they are not placed at all; jumps to
+ * them go straight to their target instead.
+ */
+public class BlockLayout {
+  private final BasicBlockNode methodEnter;
+  private final DominatorTree dom;
+  private final Map<BasicBlockNode, Set<BasicBlockNode>> loops =
+    new HashMap<BasicBlockNode, Set<BasicBlockNode>>();
+  private final Map<BasicBlockNode, List<BasicBlockNode>> latches =
+    new HashMap<BasicBlockNode, List<BasicBlockNode>>();
+  // The body of the innermost loop around each block, if any.
+  private final Map<BasicBlockNode, Set<BasicBlockNode>> innermost =
+    new HashMap<BasicBlockNode, Set<BasicBlockNode>>();
+  private final Set<BasicBlockNode> cold = new HashSet<BasicBlockNode>();
+
+  private final Set<BasicBlockNode> placed =
+    new LinkedHashSet<BasicBlockNode>();
+  private final Set<BasicBlockNode> rotated = new HashSet<BasicBlockNode>();
+  private final LinkedList<BasicBlockNode> pending =
+    new LinkedList<BasicBlockNode>();
+
+  private BlockLayout(BasicBlockNode methodEnter) {
+    this.methodEnter = methodEnter;
+    this.dom = new DominatorTree(methodEnter);
+  }
+
+  /**
+   * Returns the blocks of a method in the order they should be written,
+   * starting with the method entry.
+   */
+  public static List<BasicBlockNode> layout(BasicBlockNode methodEnter) {
+    BlockLayout layout = new BlockLayout(methodEnter);
+    layout.findLoops();
+    layout.cold.addAll(findColdBlocks(layout.dom.getBlocks()));
+
+    // The entry must come first, however likely its successors are.
+    layout.placed.add(methodEnter);
+    layout.queueSuccessors(methodEnter);
+    while (!layout.pending.isEmpty()) {
+      layout.trace(layout.pending.removeFirst());
+    }
+    return new ArrayList<BasicBlockNode>(layout.placed);
+  }
+
+  /**
+   * Returns the block control really goes to when it reaches the given
+   * one, skipping over empty blocks which only fall through to their
+   * successor.
+   */
+  public static BasicBlockNode skipEmpty(BasicBlockNode node) {
+    Set<BasicBlockNode> seen = new HashSet<BasicBlockNode>();
+    BasicBlockNode target = node;
+    while (target != null && isEmpty(target)) {
+      if (!seen.add(target)) {
+        // An empty infinite loop; it must be written out as it is.
+        return node;
+      }
+      target = target.getNext();
+    }
+    return target;
+  }
+
+  private static boolean isEmpty(BasicBlockNode node) {
+    if (node.isBranch() || node.getNext() == null) {
+      return false;
+    }
+    for (BasicStatement stmt : node.getStatements()) {
+      if (!(stmt instanceof NOPStatement || isSelfMove(stmt))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether a statement moves a register to itself, as the moves
+   * register allocation leaves on its split edges often do.
+   */
+  private static boolean isSelfMove(BasicStatement stmt) {
+    if (!(stmt instanceof OpStatement)) {
+      return false;
+    }
+    OpStatement op = (OpStatement) stmt;
+    return op.getOp() == AsmOp.MOVE && op.getArg1().isRegister() &&
+      op.getArg2().isRegister() &&
+      op.getArg1().getDesc().getLocation().getRegister() ==
+        op.getArg2().getDesc().getLocation().getRegister();
+  }
+
+  /**
+   * Places a trace of blocks starting at the given one, following the
+   * likeliest unplaced successor of each.
+   */
+  private void trace(BasicBlockNode start) {
+    BasicBlockNode node = start;
+    while (node != null && !placed.contains(node)) {
+      BasicBlockNode body = rotationTarget(node);
+      if (body != null) {
+        // Come back to the header once the body has been placed.
+        rotated.add(node);
+        pending.addFirst(node);
+        node = body;
+        continue;
+      }
+      placed.add(node);
+      node = queueSuccessors(node);
+    }
+  }
+
+  /**
+   * Queues the unplaced successors of a block, and returns the one which
+   * should follow it, or null if none should.
+   */
+  private BasicBlockNode queueSuccessors(BasicBlockNode node) {
+    BasicBlockNode follow = null;
+    List<BasicBlockNode> succs = likelySuccessors(node);
+    for (int ii = succs.size() - 1; ii >= 0; ii--) {
+      BasicBlockNode succ = succs.get(ii);
+      if (placed.contains(succ)) {
+        continue;
+      }
+      if (cold.contains(succ) && !cold.contains(node)) {
+        // Error paths go after everything else.
+        pending.addLast(succ);
+      } else {
+        pending.addFirst(succ);
+        follow = succ;
+      }
+    }
+    return follow;
+  }
+
+  /**
+   * Returns the successors of a block, skipping empty blocks, with the
+   * likeliest first.
+   */
+  private List<BasicBlockNode> likelySuccessors(BasicBlockNode node) {
+    List<BasicBlockNode> succs = new ArrayList<BasicBlockNode>(2);
+    BasicBlockNode next = skipEmpty(node.getNext());
+    if (next != null) {
+      succs.add(next);
+    }
+    if (!node.isBranch()) {
+      return succs;
+    }
+    BasicBlockNode branch = skipEmpty(node.getBranchTarget());
+    if (next == null || branch == next) {
+      if (next == null) {
+        succs.add(branch);
+      }
+      return succs;
+    }
+    if (prefer(branch, next, node)) {
+      succs.add(0, branch);
+    } else {
+      succs.add(branch);
+    }
+    return succs;
+  }
+
+  /**
+   * Returns whether a branch from node is more likely to go to a than to
+   * the fall-through successor b.
+   */
+  private boolean prefer(BasicBlockNode a, BasicBlockNode b,
+                         BasicBlockNode node) {
+    if (cold.contains(a) != cold.contains(b)) {
+      return cold.contains(b);
+    }
+    boolean aBack = dom.dominates(a, node);
+    boolean bBack = dom.dominates(b, node);
+    if (aBack != bBack) {
+      return aBack;
+    }
+    boolean aEnters = enters(node, a);
+    boolean bEnters = enters(node, b);
+    if (aEnters != bEnters) {
+      return aEnters;
+    }
+    Set<BasicBlockNode> loop = innermost.get(node);
+    if (loop != null && loop.contains(a) != loop.contains(b)) {
+      return loop.contains(a);
+    }
+    return false;
+  }
+
+  /** Returns whether the edge from node to succ enters a loop. */
+  private boolean enters(BasicBlockNode node, BasicBlockNode succ) {
+    Set<BasicBlockNode> body = loops.get(succ);
+    return body != null && !body.contains(node);
+  }
+
+  /**
+   * Returns the successor to start a loop's trace at instead of its
+   * header, when the header tests whether to leave the loop and the
+   * latches jump back to it unconditionally; otherwise returns null.
+   */
+  private BasicBlockNode rotationTarget(BasicBlockNode header) {
+    Set<BasicBlockNode> body = loops.get(header);
+    if (body == null || header == methodEnter || !header.isBranch() ||
+        rotated.contains(header)) {
+      return null;
+    }
+    for (BasicBlockNode latch : latches.get(header)) {
+      if (latch.isBranch()) {
+        // The loop already has its test at the bottom.
+        return null;
+      }
+    }
+    BasicBlockNode inside = null;
+    BasicBlockNode outside = null;
+    for (BasicBlockNode succ : likelySuccessors(header)) {
+      if (body.contains(succ)) {
+        inside = succ;
+      } else {
+        outside = succ;
+      }
+    }
+    if (inside == null || outside == null || inside == header ||
+        placed.contains(inside) || cold.contains(outside)) {
+      return null;
+    }
+    return inside;
+  }
+
+  /**
+   * Records the natural loops of the dominator tree with the latches of
+   * each, and the innermost loop around each block.
+   */
+  private void findLoops() {
+    Map<BasicBlockNode, Set<BasicBlockNode>> natural = dom.naturalLoops();
+    for (BasicBlockNode header : natural.keySet()) {
+      Set<BasicBlockNode> body = natural.get(header);
+      List<BasicBlockNode> tails = new ArrayList<BasicBlockNode>();
+      for (BasicBlockNode pred : dom.getPredecessors(header)) {
+        if (body.contains(pred)) {
+          tails.add(pred);
+        }
+      }
+      loops.put(header, body);
+      latches.put(header, tails);
+    }
+    // An empty header is never placed; its test is in the block after it.
+    List<BasicBlockNode> headers =
+      new ArrayList<BasicBlockNode>(loops.keySet());
+    for (BasicBlockNode header : headers) {
+      BasicBlockNode test = skipEmpty(header);
+      if (test != header && loops.get(header).contains(test) &&
+          !loops.containsKey(test)) {
+        loops.put(test, loops.get(header));
+        latches.put(test, latches.get(header));
+      }
+    }
+    for (Set<BasicBlockNode> body : loops.values()) {
+      for (BasicBlockNode node : body) {
+        Set<BasicBlockNode> current = innermost.get(node);
+        if (current == null || current.size() > body.size()) {
+          innermost.put(node, body);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns those of the given blocks from which every path ends in a
+   * runtime error.
+   */
+  public static Set<BasicBlockNode> findColdBlocks(
+      List<BasicBlockNode> blocks) {
+    Set<BasicBlockNode> cold = new HashSet<BasicBlockNode>();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (BasicBlockNode node : blocks) {
+        if (cold.contains(node)) {
+          continue;
+        }
+        boolean isCold = false;
+        for (BasicStatement stmt : node.getStatements()) {
+          if (stmt instanceof HaltStatement) {
+            isCold = true;
+          }
+        }
+        if (!isCold && node.getNext() != null) {
+          isCold = cold.contains(node.getNext()) &&
+            (!node.isBranch() || cold.contains(node.getBranchTarget()));
+        }
+        if (isCold) {
+          cold.add(node);
+          changed = true;
+        }
+      }
+    }
+    return cold;
+  }
+}
@@ -0,0 +1,220 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.mit.compilers.le02.RegisterLocation.Register;
+import edu.mit.compilers.le02.symboltable.MethodDescriptor;
+
+/**
+ * Replaces the enter and leave of a finished method with a leaner frame.
+ *
+ * Callee-saved registers which the method body never mentions are no
+ * longer saved; R12 in particular is only needed by array accesses.  A
+ * method which makes calls gets a push/mov/sub prologue in place of enter,
+ * which is microcoded.  A leaf method whose body leaves RSP alone gets no
+ * frame pointer at all: its stack slots are addressed off RSP, in the red
+ * zone below it when they fit, and if it has no stack slots it has no
+ * frame to set up.
+ */
+public class FrameLowering {
+  /** Bytes below RSP a leaf method may use without moving RSP. */
+  private static final int RED_ZONE = 128;
+
+  private static final Pattern FRAME_SLOT =
+    Pattern.compile("(-?\\d*)\\(%rbp\\)");
+
+  private final List<AsmObject> instructions;
+  private final Set<AsmInstruction> frame;
+  private final Set<AsmInstruction> errorPath;
+
+  private FrameLowering(List<AsmObject> instructions,
+                        Set<AsmInstruction> frame,
+                        Set<AsmInstruction> errorPath) {
+    this.instructions = instructions;
+    this.frame = frame;
+    this.errorPath = errorPath;
+  }
+
+  /**
+   * Lowers the frame of a method.  frame holds the instructions which
+   * AsmBasicBlock wrote to set up and tear it down: the enter, the saves
+   * and restores of callee-saved registers, each leave, and the loads of
+   * R12 made on the way to the runtime error handler, which never returns.
+   * errorPath holds the instructions of blocks which always end in a
+   * runtime error; since they never return, their calls and pushes may
+   * clobber the frame of a leaf method.
+   */
+  public static void lower(List<AsmObject> instructions,
+                           Set<AsmInstruction> frame,
+                           Set<AsmInstruction> errorPath) {
+    new FrameLowering(instructions, frame, errorPath).lower();
+  }
+
+  private void lower() {
+    AsmInstruction enter = null;
+    for (AsmInstruction inst : frame) {
+      if (inst.opcode == AsmOpCode.ENTER) {
+        enter = inst;
+      }
+    }
+    if (enter == null) {
+      return;
+    }
+    int size = Integer.parseInt(enter.first_operand.substring(1));
+
+    boolean leaf = true;
+    boolean needsFramePointer = false;
+    boolean usesFrame = false;
+    List<String> used = new ArrayList<String>();
+    for (AsmObject obj : instructions) {
+      if (!(obj instanceof AsmInstruction) || frame.contains(obj)) {
+        continue;
+      }
+      AsmInstruction inst = (AsmInstruction) obj;
+      boolean error = errorPath.contains(inst);
+      switch (inst.opcode) {
+       case CALL:
+        leaf &= error;
+        break;
+       case PUSHQ:
+       case POPQ:
+        needsFramePointer |= !error;
+        break;
+      }
+      for (String operand : new String[] {inst.first_operand,
+                                          inst.second_operand}) {
+        if (operand.contains("%rsp")) {
+          needsFramePointer |= !error;
+        }
+        Matcher m = FRAME_SLOT.matcher(operand);
+        if (m.find() && !error) {
+          usesFrame = true;
+          size = Math.max(size, -offset(m));
+        } else if (operand.contains("%rbp")) {
+          // The error path may have moved RSP before reading the frame.
+          needsFramePointer = true;
+        }
+        for (Register reg : MethodDescriptor.calleeSaved) {
+          if (operand.contains(reg.toString()) ||
+              operand.contains(reg.thirtyTwo().toString())) {
+            used.add(reg.toString());
+          }
+        }
+      }
+    }
+
+    // Drop the saves and restores of registers the body never touches.
+    int saved = 0;
+    for (AsmInstruction inst : frame) {
+      if (inst.opcode == AsmOpCode.PUSHQ) {
+        if (used.contains(inst.first_operand)) {
+          saved++;
+        } else {
+          instructions.remove(inst);
+        }
+      } else if (inst.opcode == AsmOpCode.POPQ &&
+                 !used.contains(inst.first_operand)) {
+        instructions.remove(inst);
+      }
+    }
+
+    if (leaf && !needsFramePointer) {
+      omitFramePointer(enter, size, saved, usesFrame);
+    } else {
+      int at = instructions.indexOf(enter);
+      instructions.set(at, new AsmInstruction(
+          AsmOpCode.PUSHQ, Register.RBP, enter.loc));
+      instructions.add(++at, new AsmInstruction(
+          AsmOpCode.MOVQ, Register.RSP, Register.RBP, enter.loc));
+      if (size > 0) {
+        instructions.add(++at, new AsmInstruction(AsmOpCode.SUBQ,
+            new StringAsmArg("$" + size), Register.RSP, enter.loc));
+      }
+    }
+  }
+
+  /**
+   * Sets up the frame of a leaf method without RBP.  Stack slots below the
+   * old frame pointer are placed at the bottom of the frame, and those
+   * above it, the arguments passed on the stack, are found above the saved
+   * registers.
+   */
+  private void omitFramePointer(AsmInstruction enter, int size, int saved,
+                                boolean usesFrame) {
+    int reserved = 0;
+    if (usesFrame && size > RED_ZONE) {
+      reserved = size;
+    }
+
+    // Reserve the frame after saving registers.
+    int at = instructions.indexOf(enter);
+    instructions.remove(at);
+    while (at < instructions.size() && frame.contains(instructions.get(at))
+           && ((AsmInstruction) instructions.get(at)).opcode ==
+             AsmOpCode.PUSHQ) {
+      at++;
+    }
+    if (reserved > 0) {
+      instructions.add(at, new AsmInstruction(AsmOpCode.SUBQ,
+          new StringAsmArg("$" + reserved), Register.RSP, enter.loc));
+    }
+
+    // Free it again before each set of restores.
+    for (AsmInstruction leave : frame) {
+      if (leave.opcode != AsmOpCode.LEAVE) {
+        continue;
+      }
+      at = instructions.indexOf(leave);
+      instructions.remove(at);
+      if (reserved == 0) {
+        continue;
+      }
+      while (at > 0 && frame.contains(instructions.get(at - 1)) &&
+             ((AsmInstruction) instructions.get(at - 1)).opcode ==
+               AsmOpCode.POPQ) {
+        at--;
+      }
+      instructions.add(at, new AsmInstruction(AsmOpCode.ADDQ,
+          new StringAsmArg("$" + reserved), Register.RSP, leave.loc));
+    }
+
+    if (!usesFrame) {
+      return;
+    }
+    for (AsmObject obj : instructions) {
+      if (obj instanceof AsmInstruction && !frame.contains(obj)) {
+        AsmInstruction inst = (AsmInstruction) obj;
+        inst.first_operand = rebase(inst.first_operand, reserved, saved);
+        inst.second_operand = rebase(inst.second_operand, reserved, saved);
+      }
+    }
+  }
+
+  /**
+   * Rewrites an operand addressed off RBP to be addressed off RSP instead.
+   */
+  private static String rebase(String operand, int reserved, int saved) {
+    Matcher m = FRAME_SLOT.matcher(operand);
+    if (!m.find()) {
+      return operand;
+    }
+    int offset = offset(m);
+    if (offset < 0) {
+      offset += reserved;
+    } else {
+      // Above RBP were the saved RBP and then the return address.
+      offset += reserved + 8 * saved - 8;
+    }
+    return operand.substring(0, m.start()) + offset + "(%rsp)" +
+           operand.substring(m.end());
+  }
+
+  private static int offset(Matcher frameSlot) {
+    String offset = frameSlot.group(1);
+    return offset.isEmpty() ? 0 : Integer.parseInt(offset);
+  }
+}
@@ -0,0 +1,221 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * List scheduler for straight-line runs of moveable instructions.
+ *
+ * A dependence DAG is built from the reads and writes of each instruction,
+ * with true dependences weighted by the producer's latency.  Each
+ * instruction's heuristic is then the latency-weighted length of the
+ * longest path from it to the end of the run, and instructions are issued
+ * one per cycle, always choosing the ready instruction with the largest
+ * heuristic.  This moves loads and multiplies away from their uses and
+ * starts long dependence chains (such as idivl) as early as possible.
+ *
+ * Since every read-after-write, write-after-read and write-after-write
+ * dependence is kept, each register, memory location and the flags hold
+ * the same values at the end of the run as before.
+ */
+public class InstructionScheduler {
+  /** Longest run scheduled at once, to bound the quadratic DAG build. */
+  private static final int MAX_REGION = 256;
+
+  private static final Pattern STACK_SLOT =
+    Pattern.compile("(-?\\d*)\\(%rbp\\)");
+
+  private final List<AsmInstruction> region;
+  private final int[][] delay;
+
+  private InstructionScheduler(List<AsmInstruction> region) {
+    this.region = region;
+    this.delay = new int[region.size()][];
+  }
+
+  /**
+   * Reorders the instructions of a basic block.  Labels, comments and
+   * instructions which cannot move split the block into runs, and each run
+   * is scheduled independently.
+   */
+  public static void schedule(List<AsmObject> instructions) {
+    List<AsmObject> result = new ArrayList<AsmObject>(instructions.size());
+    List<AsmInstruction> region = new ArrayList<AsmInstruction>();
+    for (AsmObject obj : instructions) {
+      if (obj instanceof AsmInstruction &&
+          ((AsmInstruction) obj).moveable()) {
+        region.add((AsmInstruction) obj);
+        if (region.size() == MAX_REGION) {
+          result.addAll(new InstructionScheduler(region).run());
+          region = new ArrayList<AsmInstruction>();
+        }
+        continue;
+      }
+      result.addAll(new InstructionScheduler(region).run());
+      region = new ArrayList<AsmInstruction>();
+      result.add(obj);
+    }
+    result.addAll(new InstructionScheduler(region).run());
+
+    instructions.clear();
+    instructions.addAll(result);
+  }
+
+  private List<AsmInstruction> run() {
+    int n = region.size();
+    if (n < 2) {
+      return region;
+    }
+
+    buildGraph();
+
+    // Heights, from the bottom of the run up.
+    for (int i = n - 1; i >= 0; i--) {
+      AsmInstruction inst = region.get(i);
+      int height = inst.getLatency();
+      for (int c : inst.getChildren()) {
+        height = Math.max(height, delay[i][c] + region.get(c).getHeuristic());
+      }
+      inst.setHeuristic(height);
+    }
+
+    int[] predsLeft = new int[n];
+    int[] earliest = new int[n];
+    boolean[] done = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      predsLeft[i] = region.get(i).getParents().size();
+    }
+
+    List<AsmInstruction> order = new ArrayList<AsmInstruction>(n);
+    int cycle = 0;
+    while (order.size() < n) {
+      int best = -1;
+      int nextCycle = Integer.MAX_VALUE;
+      for (int i = 0; i < n; i++) {
+        if (done[i] || predsLeft[i] > 0) {
+          continue;
+        }
+        if (earliest[i] > cycle) {
+          nextCycle = Math.min(nextCycle, earliest[i]);
+          continue;
+        }
+        if (best < 0 || region.get(i).getHeuristic() >
+                        region.get(best).getHeuristic()) {
+          best = i;
+        }
+      }
+      if (best < 0) {
+        // Nothing can issue yet; stall until something can.
+        cycle = nextCycle;
+        continue;
+      }
+
+      AsmInstruction inst = region.get(best);
+      done[best] = true;
+      order.add(inst);
+      for (int c : inst.getChildren()) {
+        predsLeft[c]--;
+        earliest[c] = Math.max(earliest[c], cycle + delay[best][c]);
+      }
+      cycle++;
+    }
+    return order;
+  }
+
+  /**
+   * Links every pair of instructions which must stay in order, recording
+   * how many cycles the later one must wait.
+   */
+  private void buildGraph() {
+    int n = region.size();
+    List<List<String>> reads = new ArrayList<List<String>>(n);
+    List<List<String>> writes = new ArrayList<List<String>>(n);
+    for (int i = 0; i < n; i++) {
+      AsmInstruction inst = region.get(i);
+      inst.setID(i);
+      reads.add(inst.getReads());
+      writes.add(inst.getWrites());
+      delay[i] = new int[n];
+    }
+
+    for (int j = 0; j < n; j++) {
+      for (int i = 0; i < j; i++) {
+        int d;
+        if (conflicts(writes.get(i), reads.get(j))) {
+          d = region.get(i).getLatency();
+        } else if (conflicts(reads.get(i), writes.get(j)) ||
+                   conflicts(writes.get(i), writes.get(j))) {
+          d = 0;
+        } else {
+          continue;
+        }
+        delay[i][j] = d;
+        region.get(i).addChild(j);
+        region.get(j).addParent(i);
+      }
+    }
+  }
+
+  private static boolean conflicts(List<String> a, List<String> b) {
+    for (String x : a) {
+      for (String y : b) {
+        boolean xMem = AsmInstruction.isMemory(x) &&
+                       !x.equals(AsmInstruction.FLAGS);
+        boolean yMem = AsmInstruction.isMemory(y) &&
+                       !y.equals(AsmInstruction.FLAGS);
+        if (xMem && yMem) {
+          if (mayAlias(x, y)) {
+            return true;
+          }
+        } else if (x.equals(y)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether two memory operands might overlap.  Distinct frame
+   * slots never overlap each other, and neither do distinct globals.
+   * Arrays only ever live in global storage, so indexed operands not based
+   * on %rbp or %rsp cannot touch the frame.
+   */
+  static boolean mayAlias(String a, String b) {
+    if (a.equals(b)) {
+      return true;
+    }
+    Integer slotA = stackSlot(a);
+    Integer slotB = stackSlot(b);
+    if (slotA != null && slotB != null) {
+      // Slots are at most eight bytes wide.
+      return Math.abs(slotA - slotB) < 8;
+    }
+    boolean globalA = a.indexOf('(') < 0;
+    boolean globalB = b.indexOf('(') < 0;
+    if (globalA && globalB) {
+      return false;
+    }
+    if ((slotA != null && (globalB || !usesFrame(b))) ||
+        (slotB != null && (globalA || !usesFrame(a)))) {
+      return false;
+    }
+    return true;
+  }
+
+  /** Returns the offset of a constant %rbp-relative operand, or null. */
+  private static Integer stackSlot(String operand) {
+    Matcher m = STACK_SLOT.matcher(operand);
+    if (!m.matches()) {
+      return null;
+    }
+    return m.group(1).equals("") ? 0 : Integer.parseInt(m.group(1));
+  }
+
+  private static boolean usesFrame(String operand) {
+    return operand.contains("%rbp") || operand.contains("%rsp") ||
+           operand.contains("%ebp") || operand.contains("%esp");
+  }
+}
@@ -1,11 +1,16 @@
 package edu.mit.compilers.le02.cfg;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RecursiveAction;
 
+import edu.mit.compilers.le02.CompilerStats;
+import edu.mit.compilers.le02.CompilerStats.Pass;
 import edu.mit.compilers.le02.ErrorReporting;
+import edu.mit.compilers.le02.Util;
 import edu.mit.compilers.le02.Main.Optimization;
 import edu.mit.compilers.le02.ast.ASTNode;
 import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
@@ -14,17 +19,37 @@ import edu.mit.compilers.le02.dfa.Liveness;
 import edu.mit.compilers.le02.opt.BasicBlockVisitor;
 import edu.mit.compilers.le02.opt.CpVisitor;
 import edu.mit.compilers.le02.opt.CseVisitor;
+import edu.mit.compilers.le02.opt.DivisionStrengthReduction;
 import edu.mit.compilers.le02.opt.GlobalCseVisitor;
+import edu.mit.compilers.le02.opt.GlobalPromotion;
+import edu.mit.compilers.le02.opt.InductionVariableReduction;
+import edu.mit.compilers.le02.opt.LoopInvariantCodeMotion;
 import edu.mit.compilers.le02.opt.RegisterVisitor;
+import edu.mit.compilers.le02.ssa.ConditionalConstantPropagation;
+import edu.mit.compilers.le02.ssa.SsaForm;
 import edu.mit.compilers.le02.symboltable.MethodDescriptor;
 import edu.mit.compilers.le02.symboltable.SymbolTable;
 
+/**
+ * Groups the statements of a low-level CFG into basic blocks and runs the
+ * per-method optimizations over them.
+ *
+ * Blocks for every method are built first, one method after another, so
+ * block labels are numbered the same way on every run.  After that each
+ * method is optimized using only state reachable from that method, or from
+ * the method a parallel loop's worker was outlined from, so when parallel
+ * compilation is enabled each method and its workers are handed out to a
+ * fork-join pool together and the result is identical to the serial one.
+ */
 public class BasicBlockGraph {
-  private static int id;
-  private static Map<SimpleCFGNode, BasicBlockNode> visited =
-    new HashMap<SimpleCFGNode, BasicBlockNode>();
+  private int id;
+  private Map<SimpleCFGNode, BasicBlockNode> visited;
 
-  public static String nextID() {
+  private BasicBlockGraph() {
+    this.id = -1;
+  }
+
+  private String nextID() {
     id++;
     return ".block" + Integer.toString(id);
   }
@@ -32,107 +57,253 @@ public class BasicBlockGraph {
   public static ControlFlowGraph makeBasicBlockGraph(ControlFlowGraph cfg,
       EnumSet<Optimization> opts) {
     ControlFlowGraph newCFG = new ControlFlowGraph();
+    BasicBlockGraph graph = new BasicBlockGraph();
 
-    id = -1;
-    for (String methodName : cfg.getMethods()) {
+    List<String> methodNames = cfg.getMethods();
+    List<MethodTask> tasks = new ArrayList<MethodTask>();
+    for (String methodName : methodNames) {
       CFGNode node = cfg.getMethod(methodName);
       assert (node instanceof SimpleCFGNode);
       SimpleCFGNode enter = (SimpleCFGNode) node;
 
-      visited.clear();
-      BasicBlockNode methodEnter = makeBasicBlocks(methodName, enter);
+      Pass pass = CompilerStats.begin("blocks", methodName);
+      graph.visited = new LinkedHashMap<SimpleCFGNode, BasicBlockNode>();
+      BasicBlockNode methodEnter = graph.makeBasicBlocks(methodName, enter);
 
-      Iterator<BasicBlockNode> iter = visited.values().iterator();
-      while (iter.hasNext()) {
-        BasicBlockNode n = iter.next();
+      List<BasicBlockNode> blocks = new ArrayList<BasicBlockNode>();
+      for (BasicBlockNode n : graph.visited.values()) {
         if (n.getStatements().isEmpty()) {
           n.removeFromCFG();
-          iter.remove();
+        } else {
+          blocks.add(n);
         }
       }
+      endPass(pass, blocks);
+      tasks.add(new MethodTask(methodEnter, blocks, opts));
+    }
 
-      // Run local CP
-      if (opts.contains(Optimization.COPY_PROPAGATION)) {
-        CpVisitor cp = new CpVisitor();
-        cp.visit(methodEnter);
-      }
-
-      // Run local and global CSE
-      if (opts.contains(Optimization.LOCAL_COMMON_SUBEXPR)) {
-        BasicBlockVisitor cse = new CseVisitor();
-        cse.visit(methodEnter);
+    // Promoting globals needs to know what every method may touch, so
+    // summarize the whole program before any method is optimized.
+    if (opts.contains(Optimization.GLOBAL_PROMOTION)) {
+      Map<String, List<BasicBlockNode>> methods =
+        new LinkedHashMap<String, List<BasicBlockNode>>();
+      for (int i = 0; i < methodNames.size(); i++) {
+        methods.put(methodNames.get(i), tasks.get(i).blocks);
       }
-      if (opts.contains(Optimization.GLOBAL_COMMON_SUBEXPR)) {
-        GlobalCseVisitor.performGlobalCse(methodEnter);
+      GlobalPromotion.Summary summary = GlobalPromotion.summarize(methods);
+      for (MethodTask task : tasks) {
+        task.summary = summary;
       }
+    }
 
-      // Run local CP
-      if (opts.contains(Optimization.COPY_PROPAGATION)) {
-        CpVisitor cp = new CpVisitor();
-        cp.visit(methodEnter);
-      }
+    Util.runMethodTasks(methodNames, tasks);
 
-      // Run global dead code elimination.
-      if (opts.contains(Optimization.DEAD_CODE)) {
-        Liveness live = new Liveness(methodEnter);
-        new DeadCodeElimination(methodEnter, live.getBlockItems());
-      }
+    for (int i = 0; i < methodNames.size(); i++) {
+      newCFG.putMethod(methodNames.get(i), tasks.get(i).methodEnter);
+    }
 
-      ASTNode enterNode = methodEnter.getStatements().get(0).getNode();
-      SymbolTable st = enterNode.getSymbolTable();
-      MethodDescriptor md = st.getMethod(methodEnter.getMethod());
+    for (String name : cfg.getGlobals()) {
+      newCFG.putGlobal(name, cfg.getGlobal(name));
+    }
 
-      // Remove any BasicBlockNodes that are empty after optimizations
-      for (BasicBlockNode n : visited.values()) {
-        if (n.getStatements().isEmpty()) {
-          n.removeFromCFG();
+    for (String name : cfg.getAllStringData()) {
+      newCFG.putStringData(name, cfg.getStringData(name));
+    }
+
+    return newCFG;
+  }
+
+  /**
+   * Optimizes a single method.  Everything this touches belongs to the
+   * method, except that a parallel loop's worker shares the loop body's
+   * locals with the method it came from, so Util.runMethodTasks runs the
+   * two on one thread.
+   */
+  private static class MethodTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final BasicBlockNode methodEnter;
+    private final List<BasicBlockNode> blocks;
+    private final EnumSet<Optimization> opts;
+    private GlobalPromotion.Summary summary;
+
+    public MethodTask(BasicBlockNode methodEnter, List<BasicBlockNode> blocks,
+                      EnumSet<Optimization> opts) {
+      this.methodEnter = methodEnter;
+      this.blocks = blocks;
+      this.opts = opts;
+    }
+
+    @Override
+    protected void compute() {
+      optimizeMethod(methodEnter, blocks, opts, summary);
+    }
+  }
+
+  private static void optimizeMethod(BasicBlockNode methodEnter,
+      List<BasicBlockNode> blocks, EnumSet<Optimization> opts,
+      GlobalPromotion.Summary summary) {
+    String method = methodEnter.getMethod();
+    Pass pass;
+
+    // Turn globals into locals first, so the other passes can work on them.
+    if (opts.contains(Optimization.GLOBAL_PROMOTION)) {
+      pass = CompilerStats.begin(Optimization.GLOBAL_PROMOTION.flagName(),
+                                 method);
+      GlobalPromotion.promote(methodEnter, blocks, summary);
+      endPass(pass, blocks);
+    }
+
+    // Sparse passes run between building and destroying SSA form.
+    if (opts.contains(Optimization.SSA) ||
+        opts.contains(Optimization.CONDITIONAL_CONSTANT)) {
+      pass = CompilerStats.begin(Optimization.SSA.flagName(), method);
+      SsaForm ssa = SsaForm.build(methodEnter);
+      if (ssa != null) {
+        if (opts.contains(Optimization.CONDITIONAL_CONSTANT)) {
+          Pass sccp = CompilerStats.begin(
+            Optimization.CONDITIONAL_CONSTANT.flagName(), method);
+          blocks.removeAll(ConditionalConstantPropagation.propagate(ssa));
+          endPass(sccp, blocks);
         }
+        blocks.addAll(ssa.destroy());
       }
+      endPass(pass, blocks);
+    }
 
-      RegisterVisitor rv = null;
-      // Run register allocation.
-      if (opts.contains(Optimization.REGISTER_ALLOCATION)) {
-        rv = RegisterVisitor.runRegisterAllocation(methodEnter, md);
-      }
+    // Run local CP
+    if (opts.contains(Optimization.COPY_PROPAGATION)) {
+      pass = CompilerStats.begin(Optimization.COPY_PROPAGATION.flagName(),
+                                 method);
+      CpVisitor cp = new CpVisitor();
+      cp.visit(methodEnter);
+      endPass(pass, blocks);
+    }
 
-      // All of these optimizations change the number of local variables.
-      // That's okay - we don't call getLargestLocalOffset until after
-      // optimization is finished.
+    // Run local and global CSE
+    if (opts.contains(Optimization.LOCAL_COMMON_SUBEXPR)) {
+      pass = CompilerStats.begin(
+        Optimization.LOCAL_COMMON_SUBEXPR.flagName(), method);
+      BasicBlockVisitor cse = new CseVisitor();
+      cse.visit(methodEnter);
+      endPass(pass, blocks);
+    }
+    if (opts.contains(Optimization.GLOBAL_COMMON_SUBEXPR)) {
+      pass = CompilerStats.begin(
+        Optimization.GLOBAL_COMMON_SUBEXPR.flagName(), method);
+      GlobalCseVisitor.performGlobalCse(methodEnter);
+      endPass(pass, blocks);
+    }
 
-      // Places an enter statement with the desired offset
-      int localOffset = -getLargestLocalOffset();
+    // Run local CP
+    if (opts.contains(Optimization.COPY_PROPAGATION)) {
+      pass = CompilerStats.begin(Optimization.COPY_PROPAGATION.flagName(),
+                                 method);
+      CpVisitor cp = new CpVisitor();
+      cp.visit(methodEnter);
+      endPass(pass, blocks);
+    }
 
-      // Adjust local offset count.
-      if (opts.contains(Optimization.REGISTER_ALLOCATION)) {
-        localOffset -= rv.getArgTempOffset();
-      }
+    // Hoist loop-invariant code into loop preheaders.
+    if (opts.contains(Optimization.LOOP_INVARIANT_CODE)) {
+      pass = CompilerStats.begin(Optimization.LOOP_INVARIANT_CODE.flagName(),
+                                 method);
+      blocks.addAll(LoopInvariantCodeMotion.hoistInvariants(methodEnter));
+      endPass(pass, blocks);
+    }
 
-      // TODO: Find a suitable source location to put in here
-      OpStatement enterStmt = new OpStatement(enterNode, AsmOp.ENTER,
-                                Argument.makeArgument(localOffset),
-                                null, null);
-      methodEnter.prependStatement(enterStmt);
+    // Strength-reduce induction variables and replace the loop tests.
+    if (opts.contains(Optimization.INDUCTION_VARIABLES)) {
+      pass = CompilerStats.begin(Optimization.INDUCTION_VARIABLES.flagName(),
+                                 method);
+      blocks.addAll(InductionVariableReduction.reduce(methodEnter));
+      endPass(pass, blocks);
+    }
 
+    // Run global dead code elimination.
+    if (opts.contains(Optimization.DEAD_CODE)) {
+      pass = CompilerStats.begin(Optimization.DEAD_CODE.flagName(), method);
+      Liveness live = new Liveness(methodEnter);
+      new DeadCodeElimination(methodEnter, live.getBlockItems());
+      endPass(pass, blocks);
+    }
 
-      newCFG.putMethod(methodName, methodEnter);
+    // Replace division by constants with shifts and multiplies.
+    if (opts.contains(Optimization.DIVISION_STRENGTH_REDUCTION)) {
+      pass = CompilerStats.begin(
+        Optimization.DIVISION_STRENGTH_REDUCTION.flagName(), method);
+      DivisionStrengthReduction.reduce(methodEnter);
+      endPass(pass, blocks);
     }
 
-    for (String name : cfg.getGlobals()) {
-      newCFG.putGlobal(name, cfg.getGlobal(name));
+    ASTNode enterNode = methodEnter.getStatements().get(0).getNode();
+    SymbolTable st = enterNode.getSymbolTable();
+    MethodDescriptor md = st.getMethod(methodEnter.getMethod());
+
+    // Remove any BasicBlockNodes that are empty after optimizations
+    for (BasicBlockNode n : blocks) {
+      if (n.getStatements().isEmpty()) {
+        n.removeFromCFG();
+      }
     }
 
-    for (String name : cfg.getAllStringData()) {
-      newCFG.putStringData(name, cfg.getStringData(name));
+    RegisterVisitor rv = null;
+    // Run register allocation.
+    if (opts.contains(Optimization.REGISTER_ALLOCATION)) {
+      pass = CompilerStats.begin(
+        Optimization.REGISTER_ALLOCATION.flagName(), method);
+      // Linear scan trades code quality for a much faster allocation.
+      if (opts.contains(Optimization.LINEAR_SCAN)) {
+        rv = RegisterVisitor.runLinearScanAllocation(methodEnter, md);
+      } else {
+        rv = RegisterVisitor.runRegisterAllocation(methodEnter, md);
+      }
+      endPass(pass, blocks);
     }
 
-    return newCFG;
+    // All of these optimizations change the number of local variables.
+    // That's okay - we don't call getLargestLocalOffset until after
+    // optimization is finished.
+
+    // Places an enter statement with the desired offset
+    int localOffset = -getLargestLocalOffset(blocks);
+
+    // Adjust local offset count.
+    if (opts.contains(Optimization.REGISTER_ALLOCATION)) {
+      localOffset -= rv.getArgTempOffset();
+    }
+
+    // TODO: Find a suitable source location to put in here
+    OpStatement enterStmt = new OpStatement(enterNode, AsmOp.ENTER,
+                              Argument.makeArgument(localOffset),
+                              null, null);
+    methodEnter.prependStatement(enterStmt);
+  }
+
+  /**
+   * Finishes a -stats measurement, counting the blocks and statements left in
+   * the method.
+   */
+  private static void endPass(Pass pass, List<BasicBlockNode> blocks) {
+    if (pass == null) {
+      return;
+    }
+    int count = 0;
+    int statements = 0;
+    for (BasicBlockNode n : blocks) {
+      if (!n.getStatements().isEmpty()) {
+        count++;
+        statements += n.getStatements().size();
+      }
+    }
+    CompilerStats.end(pass, count, statements);
   }
 
-  public static int getLargestLocalOffset() {
+  private static int getLargestLocalOffset(List<BasicBlockNode> blocks) {
 
     int min = 0;
     int curr;
-    for (BasicBlockNode n : visited.values()) {
+    for (BasicBlockNode n : blocks) {
       curr = n.largestLocalOffset();
       if (curr < min) {
         min = curr;
@@ -159,13 +330,12 @@ public class BasicBlockGraph {
       break;
     }
   }
-  public static BasicBlockNode makeBasicBlocks(String id,
-                                               SimpleCFGNode start) {
+  private BasicBlockNode makeBasicBlocks(String id, SimpleCFGNode start) {
     return makeBasicBlock(id, start, null);
   }
 
-  public static BasicBlockNode makeBasicBlock(String id, SimpleCFGNode start,
-                                              BasicBlockNode parent) {
+  private BasicBlockNode makeBasicBlock(String id, SimpleCFGNode start,
+                                        BasicBlockNode parent) {
     BasicBlockNode currBB;
     if (parent == null) {
       currBB = new BasicBlockNode(id, id);
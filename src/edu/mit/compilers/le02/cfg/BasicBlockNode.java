@@ -115,6 +115,16 @@ public final class BasicBlockNode implements CFGNode {
     branchTarget.predecessors.add(this);
   }
 
+  /**
+   * Turns a conditional block into one that always falls through to next.
+   */
+  public void clearBranchTarget() {
+    if (branchTarget != null && branchTarget != next) {
+      branchTarget.predecessors.remove(this);
+    }
+    branchTarget = null;
+  }
+
   public String getTrueBranch() {
     return branchTarget.id;
   }
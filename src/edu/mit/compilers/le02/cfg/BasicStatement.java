@@ -3,6 +3,7 @@ package edu.mit.compilers.le02.cfg;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.mit.compilers.le02.RegisterLocation.Register;
 import edu.mit.compilers.le02.ast.ASTNode;
@@ -15,7 +16,7 @@ public abstract class BasicStatement {
   protected BasicStatementType type;
   protected RegisterLiveness registerLiveness;
 
-  private static int nextUid = 0;
+  private static AtomicInteger nextUid = new AtomicInteger();
 
   public enum BasicStatementType {
     ARGUMENT,
@@ -24,10 +25,11 @@ public abstract class BasicStatement {
     NOP,
     JUMP,
     HALT,
+    PHI,
   }
 
   public BasicStatement(ASTNode node, TypedDescriptor result) {
-    this.uid = nextUid++;
+    this.uid = nextUid.getAndIncrement();
     this.node = node;
     this.result = result;
     this.registerLiveness = new RegisterLiveness();
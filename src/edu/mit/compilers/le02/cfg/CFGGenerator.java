@@ -45,13 +45,19 @@ import edu.mit.compilers.le02.ast.VariableNode;
 import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
 import edu.mit.compilers.le02.opt.ArrayBoundsChecks;
 import edu.mit.compilers.le02.opt.LoopMonotonicCode;
+import edu.mit.compilers.le02.opt.ParallelLoops;
+import edu.mit.compilers.le02.opt.ParallelLoops.ParallelLoop;
+import edu.mit.compilers.le02.opt.Polynomial;
 import edu.mit.compilers.le02.symboltable.AnonymousDescriptor;
 import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.MethodDescriptor;
+import edu.mit.compilers.le02.symboltable.ParamDescriptor;
 import edu.mit.compilers.le02.symboltable.SymbolTable;
 import edu.mit.compilers.le02.symboltable.SymbolTable.SymbolType;
 import edu.mit.compilers.le02.symboltable.Descriptor;
 import edu.mit.compilers.le02.symboltable.FieldDescriptor;
 import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+import edu.mit.compilers.tools.CLI;
 
 public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
   private static boolean arrayBoundsChecksOpt;
@@ -59,6 +65,11 @@ public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
   private static String curMethod;
   private static boolean inFlatFor;
   private static boolean skipBoundsChecks;
+  private static boolean parallelizeOpt;
+  private static boolean inWorker;
+  private static int workers;
+  /** Separates a parallel loop's worker method from its owner's name. */
+  private static final String WORKER_SUFFIX = ".parallel";
   private ControlFlowGraph cfg;
   private SimpleCFGNode increment, loopExit;
 
@@ -86,6 +97,16 @@ public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
     return ld;
   }
 
+  /**
+   * Returns the method a parallel loop's worker was outlined from, or the
+   * given method if it is not a worker.  A worker shares the loop body's
+   * locals and symbol table with its owner.
+   */
+  public static String getOwner(String method) {
+    int suffix = method.indexOf(WORKER_SUFFIX);
+    return (suffix < 0) ? method : method.substring(0, suffix);
+  }
+
   public static ControlFlowGraph generateCFG(ASTNode root,
       EnumSet<Optimization> opts) {
     arrayBoundsChecksOpt =
@@ -93,8 +114,14 @@ public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
     if (arrayBoundsChecksOpt) {
       LoopMonotonicCode.findMonotonicCode(root);
     }
+    parallelizeOpt = opts.contains(Optimization.PARALLELIZE);
+    if (parallelizeOpt) {
+      ParallelLoops.findParallelLoops(root);
+    }
     inFlatFor = false;
     skipBoundsChecks = false;
+    inWorker = false;
+    workers = 0;
 
     assert(root instanceof ClassNode);
     root.accept(getInstance());
@@ -260,6 +287,10 @@ public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
 
   @Override
   public CFGFragment visit(ForNode node) {
+    if (parallelizeOpt && ParallelLoops.getParallelLoop(node) != null) {
+      return parallelForHelper(ParallelLoops.getParallelLoop(node));
+    }
+
     if (arrayBoundsChecksOpt && !inFlatFor &&
         (LoopMonotonicCode.getFlatFors().contains(node))) {
       inFlatFor = true;
@@ -417,6 +448,24 @@ public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
         exitVal, Argument.makeArgument(exitLoc), null);
     exitFrag = exitFrag.append(new SimpleCFGNode(exitStatement));
 
+    CFGFragment loopFrag = loopHelper(node, null, exitLoc);
+
+    // Restore increment and exit nodes of any outer for loop
+    increment = oldIncrement;
+    loopExit = oldExit;
+
+    // Enter at the condition, exit via the dummy exit node
+    return exitFrag.link(loopFrag);
+  }
+
+  /**
+   * Builds the initialization, body, increment and condition of a for loop
+   * which exits to loopExit.  The loop variable starts at start, or at the
+   * loop's own initial value if start is null, and runs while it is less
+   * than end.
+   */
+  private CFGFragment loopHelper(ForNode node, Argument start,
+                                 TypedDescriptor end) {
     // Create a node where the iterator is incremented
     TypedDescriptor loc = node.getInit().getLoc().getDesc();
     Argument loopVar = Argument.makeArgument(loc);
@@ -425,28 +474,227 @@ public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
     increment = new SimpleCFGNode(st);
 
     // Compute fragments of the for loop's control flow graph
-    CFGFragment initFrag = node.getInit().accept(this);
+    CFGFragment initFrag;
+    if (start == null) {
+      initFrag = node.getInit().accept(this);
+    } else {
+      SimpleCFGNode init = new SimpleCFGNode(new OpStatement(node.getInit(),
+          AsmOp.MOVE, start, loopVar, null));
+      initFrag = new CFGFragment(init, init);
+    }
     CFGFragment bodyFrag = node.getBody().accept(this);
 
     // Create a branch node where the condition is evaluated and connect it up
     BasicStatement conditionStatement = new OpStatement(node, AsmOp.LESS_THAN,
-        loopVar, Argument.makeArgument(exitLoc), null);
+        loopVar, Argument.makeArgument(end), null);
     SimpleCFGNode branch = new SimpleCFGNode(conditionStatement);
     branch.setBranchTarget(bodyFrag.getEnter());
     branch.setNext(loopExit);
 
     // Connect fragments together
-    exitFrag.getExit().setNext(initFrag.getEnter());
     initFrag.getExit().setNext(branch);
     bodyFrag.getExit().setNext(increment);
     increment.setNext(branch);
 
-    // Restore increment and exit nodes of any outer for loop
+    return new CFGFragment(initFrag.getEnter(), loopExit);
+  }
+
+  /**
+   * Generates a loop found by ParallelLoops.  If all of its guards hold at
+   * runtime, the loop's bounds and the locals its body reads are stored in
+   * a global array, and a worker method running a share of the iterations
+   * is started on each thread with create_and_run_threads.  Otherwise the
+   * loop runs serially as usual.
+   */
+  private CFGFragment parallelForHelper(ParallelLoop loop) {
+    ForNode node = loop.getLoop();
+    SymbolTable classTable =
+      node.getSymbolTable().getMethod(curMethod).getParent();
+    String worker = curMethod + WORKER_SUFFIX + workers++;
+    FieldDescriptor args = new FieldDescriptor(classTable, worker + ".args",
+        DecafType.INT_ARRAY, 2 + loop.getCaptured().size());
+    cfg.putGlobal("." + args.getId(), args);
+
+    SimpleCFGNode oldIncrement = increment;
+    SimpleCFGNode oldExit = loopExit;
+    SimpleCFGNode exit = new SimpleCFGNode(new NOPStatement(node));
+    loopExit = exit;
+
+    // Evaluate the bounds, end first as for a serial loop
+    CFGFragment hiFrag = node.getEnd().accept(this);
+    CFGFragment frag = hiFrag.append(new SimpleCFGNode(new OpStatement(node,
+        AsmOp.MOVE, hiFrag.getExit().getResult(),
+        Argument.makeArgument(loop.getHi()), null)));
+    CFGFragment loFrag = node.getInit().getValue().accept(this);
+    frag = frag.link(loFrag).append(new SimpleCFGNode(new OpStatement(node,
+        AsmOp.MOVE, loFrag.getExit().getResult(),
+        Argument.makeArgument(loop.getLo()), null)));
+
+    CFGFragment serial =
+      loopHelper(node, Argument.makeArgument(loop.getLo()), loop.getHi());
+
+    // Fall back on the serial loop if any guard is negative
+    for (Polynomial guard : loop.getGuards()) {
+      List<SimpleCFGNode> nodes = new ArrayList<SimpleCFGNode>();
+      Argument value = evaluate(nodes, node, guard);
+      SimpleCFGNode check = new SimpleCFGNode(new OpStatement(node,
+          AsmOp.LESS_THAN, value, new ConstantArgument(0), null));
+      check.setBranchTarget(serial.getEnter());
+      nodes.add(check);
+      frag = frag.link(chain(nodes));
+    }
+
+    // Pass the bounds and captured locals, then run the worker
+    List<TypedDescriptor> passed = new ArrayList<TypedDescriptor>();
+    passed.add(loop.getLo());
+    passed.add(loop.getHi());
+    passed.addAll(loop.getCaptured());
+    for (int i = 0; i < passed.size(); i++) {
+      frag = frag.append(new SimpleCFGNode(new OpStatement(node, AsmOp.MOVE,
+          Argument.makeArgument(passed.get(i)),
+          Argument.makeArgument(args, new ConstantArgument(i)), null)));
+    }
+
+    List<Argument> threadArgs = new ArrayList<Argument>();
+    threadArgs.add(new ConstantArgument(CLI.threads));
+    frag = frag.append(new SimpleCFGNode(new CallStatement(node,
+        "set_num_threads", threadArgs, null, true)));
+
+    // Not a callout, so optimizations know globals may change
+    List<Argument> workerArgs = new ArrayList<Argument>();
+    workerArgs.add(Argument.makeArgument(new AnonymousDescriptor(
+        new GlobalLocation(worker, true))));
+    frag = frag.append(new SimpleCFGNode(new CallStatement(node,
+        "create_and_run_threads", workerArgs, null, false)));
+    frag.getExit().setNext(exit);
+
     increment = oldIncrement;
     loopExit = oldExit;
 
-    // Enter at the condition, exit via the dummy exit node
-    return new CFGFragment(exitFrag.getEnter(), exit);
+    workerHelper(loop, worker, classTable, args);
+    return new CFGFragment(frag.getEnter(), exit);
+  }
+
+  /**
+   * Generates the worker method for a parallel loop.  The worker takes its
+   * thread id, and runs the id'th of CLI.threads equal slices of the
+   * iterations.
+   */
+  private void workerHelper(ParallelLoop loop, String name,
+                            SymbolTable classTable, FieldDescriptor args) {
+    ForNode node = loop.getLoop();
+    BlockNode body = node.getBody();
+    SourceLocation sl = node.getSourceLoc();
+
+    SymbolTable paramTable = new SymbolTable(classTable);
+    ParamDescriptor tid = new ParamDescriptor(paramTable, "tid",
+                                              DecafType.INT);
+    tid.setIndex(0);
+    paramTable.put(tid.getId(), tid, sl);
+    List<String> params = new ArrayList<String>();
+    params.add(tid.getId());
+    classTable.put(name, new MethodDescriptor(classTable, name,
+        DecafType.VOID, paramTable, params, body, sl), sl);
+
+    SimpleCFGNode oldIncrement = increment;
+    SimpleCFGNode oldExit = loopExit;
+    loopExit = new SimpleCFGNode(new NOPStatement(body));
+
+    // start = lo + tid * ceil((hi - lo) / threads)
+    // end = min(start + ceil((hi - lo) / threads), hi)
+    List<SimpleCFGNode> nodes = new ArrayList<SimpleCFGNode>();
+    Argument lo = op(nodes, body, AsmOp.MOVE,
+                     Argument.makeArgument(args, new ConstantArgument(0)));
+    Argument hi = op(nodes, body, AsmOp.MOVE,
+                     Argument.makeArgument(args, new ConstantArgument(1)));
+    Argument span = op(nodes, body, AsmOp.SUBTRACT, hi, lo);
+    span = op(nodes, body, AsmOp.ADD, span,
+              new ConstantArgument(CLI.threads - 1));
+    Argument chunk = op(nodes, body, AsmOp.DIVIDE, span,
+                        new ConstantArgument(CLI.threads));
+    Argument offset = op(nodes, body, AsmOp.MULTIPLY,
+                         Argument.makeArgument(tid), chunk);
+    Argument start = op(nodes, body, AsmOp.ADD, lo, offset);
+    Argument end = op(nodes, body, AsmOp.ADD, start, chunk);
+
+    SimpleCFGNode check = new SimpleCFGNode(new OpStatement(body,
+        AsmOp.GREATER_THAN, end, hi, null));
+    SimpleCFGNode clamp = new SimpleCFGNode(new OpStatement(body,
+        AsmOp.MOVE, hi, end, null));
+    SimpleCFGNode join = new SimpleCFGNode(new NOPStatement(body));
+    check.setBranchTarget(clamp);
+    check.setNext(join);
+    clamp.setNext(join);
+
+    CFGFragment frag =
+      new CFGFragment(chain(nodes).append(check).getEnter(), join);
+
+    // Copy in the locals the body reads
+    List<LocalDescriptor> captured = loop.getCaptured();
+    for (int i = 0; i < captured.size(); i++) {
+      frag = frag.append(new SimpleCFGNode(new OpStatement(body, AsmOp.MOVE,
+          Argument.makeArgument(args, new ConstantArgument(2 + i)),
+          Argument.makeArgument(captured.get(i)), null)));
+    }
+
+    inWorker = true;
+    frag = frag.link(loopHelper(node, start, end.getDesc()));
+    inWorker = false;
+
+    increment = oldIncrement;
+    loopExit = oldExit;
+    cfg.putMethod(name, frag.getEnter());
+  }
+
+  /**
+   * Appends a node computing op into a new temporary, or moving a value into
+   * one if arg2 is left out.
+   */
+  private Argument op(List<SimpleCFGNode> nodes, ASTNode node, AsmOp op,
+                      Argument... args) {
+    LocalDescriptor loc = makeTemp(node, DecafType.INT);
+    OpStatement st;
+    if (op == AsmOp.MOVE) {
+      st = new OpStatement(node, op, args[0], Argument.makeArgument(loc),
+                           null);
+    } else {
+      st = new OpStatement(node, op, args[0], args[1], loc);
+    }
+    nodes.add(new SimpleCFGNode(st));
+    return Argument.makeArgument(loc);
+  }
+
+  /**
+   * Appends nodes evaluating a polynomial, and returns its value.
+   */
+  private Argument evaluate(List<SimpleCFGNode> nodes, ASTNode node,
+                            Polynomial p) {
+    Argument total = null;
+    for (Polynomial.Term t : p.getTerms()) {
+      Argument value = null;
+      for (TypedDescriptor var : t.getVars()) {
+        Argument arg = Argument.makeArgument(var);
+        value = (value == null) ? arg :
+                op(nodes, node, AsmOp.MULTIPLY, value, arg);
+      }
+      Argument c = new ConstantArgument((int) t.getCoefficient());
+      if (value == null) {
+        value = c;
+      } else if (t.getCoefficient() != 1) {
+        value = op(nodes, node, AsmOp.MULTIPLY, value, c);
+      }
+      total = (total == null) ? value :
+              op(nodes, node, AsmOp.ADD, total, value);
+    }
+    return total;
+  }
+
+  private static CFGFragment chain(List<SimpleCFGNode> nodes) {
+    CFGFragment frag = new CFGFragment(nodes.get(0), nodes.get(0));
+    for (SimpleCFGNode n : nodes.subList(1, nodes.size())) {
+      frag = frag.append(n);
+    }
+    return frag;
   }
 
   @Override
@@ -675,8 +923,9 @@ public final class CFGGenerator extends ASTNodeVisitor<CFGFragment> {
     ArgumentStatement as = new ArgumentStatement(node, array);
     SimpleCFGNode cfgNode = new SimpleCFGNode(as);
 
-    if (skipBoundsChecks &&
-        (LoopMonotonicCode.getMonotonicExprs().contains(node.getIndex()))) {
+    // Parallel loops are only run once every access is known to be in bounds
+    if (inWorker || (skipBoundsChecks &&
+        (LoopMonotonicCode.getMonotonicExprs().contains(node.getIndex())))) {
       return indexFrag.append(cfgNode);
     }
 
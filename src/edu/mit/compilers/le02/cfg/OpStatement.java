@@ -16,6 +16,7 @@ public final class OpStatement extends BasicStatement {
     MULTIPLY(false, true, false),
     DIVIDE(false, false, false),
     MODULO(false, false, false),
+    MULTIPLY_HIGH(false, false, false),
     BITWISE_AND(true, true, false),
     SHR (true, true, false),
     SHL(true, true, false),
@@ -0,0 +1,46 @@
+package edu.mit.compilers.le02.cfg;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * A phi function of SSA form, which defines its result as the operand for
+ * whichever predecessor control arrived from.  Phis only exist while a
+ * method is in SSA form, and always come first in their block.
+ */
+public final class PhiStatement extends BasicStatement {
+  private Map<BasicBlockNode, Argument> operands =
+    new LinkedHashMap<BasicBlockNode, Argument>();
+
+  public PhiStatement(ASTNode node, TypedDescriptor result) {
+    super(node, result);
+    this.type = BasicStatementType.PHI;
+  }
+
+  /** The operand for each predecessor, in the order they were added. */
+  public Map<BasicBlockNode, Argument> getOperands() {
+    return operands;
+  }
+
+  public Argument getOperand(BasicBlockNode pred) {
+    return operands.get(pred);
+  }
+
+  public void setOperand(BasicBlockNode pred, Argument arg) {
+    operands.put(pred, arg);
+  }
+
+  @Override
+  public String toString() {
+    String s = "PhiStatement" + uid + "(";
+    boolean first = true;
+    for (Map.Entry<BasicBlockNode, Argument> e : operands.entrySet()) {
+      s += (first ? "" : ", ") + e.getKey().getId() + ": " + e.getValue();
+      first = false;
+    }
+    return s + "): " + result;
+  }
+}
@@ -1,7 +1,7 @@
 package edu.mit.compilers.le02.cfg;
 
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -11,58 +11,36 @@ import edu.mit.compilers.le02.RegisterLocation.Register;
  * A simple class for recording whether or not registers are live.  All
  * registers are referred to by their 64-bit versions.
  *
- * TODO: This can be more efficient by using BitSets or something similar
- *
  * @author David Koh (dkoh@mit.edu)
  *
  */
 public class RegisterLiveness {
   // Records the registers that are live for this statement
-  private Set<Register> liveRegisters = new HashSet<Register>();
+  private Set<Register> liveRegisters = EnumSet.noneOf(Register.class);
 
   // Records the registers that die on this statement (this statement is
   // their last use)
-  private Set<Register> dyingRegisters = new HashSet<Register>();
+  private Set<Register> dyingRegisters = EnumSet.noneOf(Register.class);
 
-  private static Set<Register> allRegisters = null;
-  private static Set<Register> calleeRegisters = null;
+  private static final Set<Register> allRegisters =
+    Collections.unmodifiableSet(EnumSet.of(
+      Register.RAX, Register.RBX, Register.RCX, Register.RDX,
+      Register.RDI, Register.RSI,
+      // We reserve RBP and RSP so as not to mess up stack calculations
+      Register.RBP, Register.RSP,
+      Register.R8, Register.R9, Register.R10, Register.R11,
+      Register.R12, Register.R13, Register.R14, Register.R15));
+  private static final Set<Register> calleeRegisters =
+    Collections.unmodifiableSet(EnumSet.of(
+      Register.RBX, Register.RBP, Register.RSP,
+      Register.R12, Register.R13, Register.R14, Register.R15));
 
   public static Set<Register> getAllRegisters() {
-    if (allRegisters == null) {
-      allRegisters = new HashSet<Register>();
-      allRegisters.add(Register.RAX);
-      allRegisters.add(Register.RBX);
-      allRegisters.add(Register.RCX);
-      allRegisters.add(Register.RDX);
-      allRegisters.add(Register.RDI);
-      allRegisters.add(Register.RSI);
-      // We reserve RBP and RSP so as not to mess up stack calculations
-      allRegisters.add(Register.RBP);
-      allRegisters.add(Register.RSP);
-      allRegisters.add(Register.R8);
-      allRegisters.add(Register.R9);
-      allRegisters.add(Register.R10);
-      allRegisters.add(Register.R11);
-      allRegisters.add(Register.R12);
-      allRegisters.add(Register.R13);
-      allRegisters.add(Register.R14);
-      allRegisters.add(Register.R15);
-    }
-    return Collections.unmodifiableSet(allRegisters);
+    return allRegisters;
   }
 
   public static Set<Register> getCalleeSavedRegisters() {
-    if (calleeRegisters == null) {
-      calleeRegisters = new HashSet<Register>();
-      calleeRegisters.add(Register.RBX);
-      calleeRegisters.add(Register.RBP);
-      calleeRegisters.add(Register.RSP);
-      calleeRegisters.add(Register.R12);
-      calleeRegisters.add(Register.R13);
-      calleeRegisters.add(Register.R14);
-      calleeRegisters.add(Register.R15);
-    }
-    return Collections.unmodifiableSet(calleeRegisters);
+    return calleeRegisters;
   }
 
   public RegisterLiveness() {
@@ -99,13 +77,13 @@ public class RegisterLiveness {
   }
 
   public Set<Register> getNonDyingRegisters() {
-    HashSet<Register> set = new HashSet<Register>(liveRegisters);
+    Set<Register> set = EnumSet.copyOf(liveRegisters);
     set.removeAll(dyingRegisters);
     return Collections.unmodifiableSet(set);
   }
 
   public Set<Register> getLiveCalleeSavedRegisters() {
-    HashSet<Register> set = new HashSet<Register>(liveRegisters);
+    Set<Register> set = EnumSet.copyOf(liveRegisters);
     set.retainAll(getCalleeSavedRegisters());
     return Collections.unmodifiableSet(set);
   }
@@ -118,7 +96,7 @@ public class RegisterLiveness {
   }
 
   public Set<Register> getDeadRegisters() {
-    HashSet<Register> dead = new HashSet<Register>(getAllRegisters());
+    Set<Register> dead = EnumSet.copyOf(getAllRegisters());
     dead.removeAll(liveRegisters);
     return Collections.unmodifiableSet(dead);
   }
@@ -29,6 +29,7 @@ public class AvailableExpressions extends BasicBlockVisitor
   private Map<BasicBlockNode, BlockItem> blockExpressions;
   private Map<VariableLocation, BitSet> exprsFromVar;
   private BitSet callKill;
+  private int iterations;
 
   public static class Expression {
     private OpStatement expr;
@@ -240,7 +241,9 @@ public class AvailableExpressions extends BasicBlockVisitor
 
     // Run a fixed point algorithm on the definitions to calculate the
     // reaching definitions.
-    WorklistAlgorithm.runForward(blockExpressions.values(), this, start, init);
+    iterations = GenKillAlgorithm.runForward(blockExpressions.values(),
+                                             expressions.size(), true,
+                                             start, init);
 
     if (CLI.debug) {
       System.out.println("\nExpressions: ");
@@ -258,6 +261,13 @@ public class AvailableExpressions extends BasicBlockVisitor
   }
 
 
+  /**
+   * Returns the number of block evaluations the fixed point took.
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
   public BlockItem getExpressions(BasicBlockNode node) {
     return blockExpressions.get(node);
   }
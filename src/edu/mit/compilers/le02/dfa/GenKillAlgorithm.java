@@ -0,0 +1,263 @@
+package edu.mit.compilers.le02.dfa;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.compilers.le02.CompilerStats;
+
+/**
+ * Fixed point solver specialized for gen/kill bit vector problems.
+ *
+ * This visits items in the same order as WorklistAlgorithm, but the graph
+ * is flattened into index arrays once up front and every in, out, gen and
+ * kill set lives in one preallocated long[] per kind, so iterating to the
+ * fixed point does not allocate.  The BitSet in and out values of each item
+ * are written back once the solution has been found.
+ */
+public class GenKillAlgorithm {
+  private final List<WorklistItem<BitSet>> order;
+  private final int n;
+  private final int words;
+  private final long lastMask;
+  private final boolean intersect;
+
+  private final int[][] preds;
+  private final int[][] succs;
+
+  private final long[] in;
+  private final long[] out;
+  private final long[] gen;
+  private final long[] kill;
+
+  private GenKillAlgorithm(Collection<? extends GenKillItem> items,
+      GenKillItem root, boolean forward, int size, boolean intersect) {
+    this.order = WorklistAlgorithm.depthFirstOrder(items, root, forward);
+    this.n = order.size();
+    this.words = Math.max((size + 63) >>> 6, 1);
+    if (size == 0) {
+      this.lastMask = 0L;
+    } else if ((size & 63) == 0) {
+      this.lastMask = -1L;
+    } else {
+      this.lastMask = (1L << (size & 63)) - 1;
+    }
+    this.intersect = intersect;
+
+    Map<WorklistItem<BitSet>, Integer> index =
+      WorklistAlgorithm.number(order);
+    this.preds = new int[n][];
+    this.succs = new int[n][];
+    this.in = new long[n * words];
+    this.out = new long[n * words];
+    this.gen = new long[n * words];
+    this.kill = new long[n * words];
+
+    for (int i = 0; i < n; i++) {
+      GenKillItem item = (GenKillItem) order.get(i);
+      preds[i] = indices(index, item.predecessors());
+      succs[i] = indices(index, item.successors());
+      load(item.gen(), gen, i);
+      load(item.kill(), kill, i);
+    }
+  }
+
+  /**
+   * Solves a forward problem over items, whose sets hold size bits.  The
+   * confluence operator is intersection if intersect is set, union
+   * otherwise.  startItem is given startInfo as its in value in addition to
+   * whatever flows in from its predecessors.  Returns the number of transfer
+   * function evaluations performed after initialization.
+   */
+  public static int runForward(Collection<? extends GenKillItem> items,
+      int size, boolean intersect, GenKillItem startItem, BitSet startInfo) {
+    GenKillAlgorithm solver =
+      new GenKillAlgorithm(items, startItem, true, size, intersect);
+    int iterations = solver.solveForward(startInfo);
+    CompilerStats.countIterations(iterations);
+    return iterations;
+  }
+
+  /**
+   * Solves a backward problem over items, whose sets hold size bits.  As
+   * with WorklistAlgorithm.runBackwards, every item with no successors must
+   * already have its out set, and those sets are left untouched.  Returns
+   * the number of transfer function evaluations performed after
+   * initialization.
+   */
+  public static int runBackwards(Collection<? extends GenKillItem> items,
+      int size, boolean intersect) {
+    GenKillAlgorithm solver =
+      new GenKillAlgorithm(items, null, false, size, intersect);
+    int iterations = solver.solveBackwards();
+    CompilerStats.countIterations(iterations);
+    return iterations;
+  }
+
+  /**
+   * Computes dst = gen | (src & ~kill) for the set at base, and returns
+   * whether dst changed.
+   */
+  public static boolean transfer(long[] src, long[] gen, long[] kill,
+                                 long[] dst, int base, int words) {
+    boolean changed = false;
+    for (int w = base; w < base + words; w++) {
+      long v = gen[w] | (src[w] & ~kill[w]);
+      if (v != dst[w]) {
+        dst[w] = v;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private int solveForward(BitSet startInfo) {
+    // depthFirstOrder always puts the root first.
+    int start = 0;
+    BitSet pending = new BitSet(n);
+
+    for (int i = 0; i < n; i++) {
+      fillBottom(in, i);
+      transfer(in, gen, kill, out, i * words, words);
+    }
+    load(startInfo, in, start);
+    transfer(in, gen, kill, out, start * words, words);
+    pending.set(1, n);
+
+    int iterations = 0;
+    for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(0)) {
+      pending.clear(i);
+      iterations++;
+
+      if (i == start) {
+        load(startInfo, in, i);
+        meetInto(in, i, out, preds[i], false);
+      } else {
+        meetInto(in, i, out, preds[i], true);
+      }
+
+      if (transfer(in, gen, kill, out, i * words, words)) {
+        for (int s : succs[i]) {
+          pending.set(s);
+        }
+      }
+    }
+
+    store(true);
+    return iterations;
+  }
+
+  private int solveBackwards() {
+    BitSet pending = new BitSet(n);
+
+    for (int i = 0; i < n; i++) {
+      if (succs[i].length > 0) {
+        fillBottom(out, i);
+        pending.set(i);
+      } else {
+        load(order.get(i).getOut(), out, i);
+      }
+      transfer(out, gen, kill, in, i * words, words);
+    }
+
+    int iterations = 0;
+    for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(0)) {
+      pending.clear(i);
+      iterations++;
+
+      meetInto(out, i, in, succs[i], true);
+      if (transfer(out, gen, kill, in, i * words, words)) {
+        for (int p : preds[i]) {
+          if (succs[p].length > 0) {
+            pending.set(p);
+          }
+        }
+      }
+    }
+
+    store(false);
+    return iterations;
+  }
+
+  /**
+   * Sets dst[item] to the meet of src over the given neighbors, optionally
+   * starting from the lattice bottom rather than the current dst[item].
+   */
+  private void meetInto(long[] dst, int item, long[] src, int[] neighbors,
+                        boolean reset) {
+    int base = item * words;
+    if (reset) {
+      fillBottom(dst, item);
+    }
+    for (int other : neighbors) {
+      int from = other * words;
+      if (intersect) {
+        for (int w = 0; w < words; w++) {
+          dst[base + w] &= src[from + w];
+        }
+      } else {
+        for (int w = 0; w < words; w++) {
+          dst[base + w] |= src[from + w];
+        }
+      }
+    }
+  }
+
+  /**
+   * Fills the set at item with the lattice bottom: every bit for
+   * intersection problems, no bits for union problems.
+   */
+  private void fillBottom(long[] sets, int item) {
+    int base = item * words;
+    for (int w = 0; w < words; w++) {
+      sets[base + w] = intersect ? -1L : 0L;
+    }
+    sets[base + words - 1] &= lastMask;
+  }
+
+  private void load(BitSet set, long[] sets, int item) {
+    int base = item * words;
+    for (int w = 0; w < words; w++) {
+      sets[base + w] = 0L;
+    }
+    if (set != null) {
+      long[] src = set.toLongArray();
+      System.arraycopy(src, 0, sets, base, Math.min(src.length, words));
+    }
+  }
+
+  private BitSet toBitSet(long[] sets, int item) {
+    long[] copy = new long[words];
+    System.arraycopy(sets, item * words, copy, 0, words);
+    return BitSet.valueOf(copy);
+  }
+
+  private void store(boolean forward) {
+    for (int i = 0; i < n; i++) {
+      WorklistItem<BitSet> item = order.get(i);
+      item.setIn(toBitSet(in, i));
+      if (forward || succs[i].length > 0) {
+        item.setOut(toBitSet(out, i));
+      }
+    }
+  }
+
+  private static int[] indices(Map<WorklistItem<BitSet>, Integer> index,
+      Collection<WorklistItem<BitSet>> items) {
+    int[] ret = new int[items.size()];
+    int count = 0;
+    for (WorklistItem<BitSet> item : items) {
+      Integer i = index.get(item);
+      if (i != null) {
+        ret[count++] = i;
+      }
+    }
+    if (count < ret.length) {
+      int[] trimmed = new int[count];
+      System.arraycopy(ret, 0, trimmed, 0, count);
+      return trimmed;
+    }
+    return ret;
+  }
+}
@@ -2,7 +2,11 @@ package edu.mit.compilers.le02.dfa;
 
 import java.util.BitSet;
 
-
+/**
+ * A worklist item whose transfer function is out = gen | (in & ~kill).
+ * transferFunction() allocates a new set on every call; GenKillAlgorithm
+ * solves collections of these in place without allocating.
+ */
 public abstract class GenKillItem extends WorklistItem<BitSet> {
 
   abstract protected BitSet gen();
@@ -38,6 +38,7 @@ implements Lattice<BitSet, BasicBlockNode> {
 
   private List<TypedDescriptor> globals;
   private BitSet globalSet;
+  private int iterations;
 
   public class BlockItem extends GenKillItem {
     private Liveness parent;
@@ -203,7 +204,15 @@ implements Lattice<BitSet, BasicBlockNode> {
 
     // Run a fixed point algorithm on the basic blocks to calculate the
     // list of live variables for each block
-    WorklistAlgorithm.runBackwards(blockItems.values(), this);
+    iterations = GenKillAlgorithm.runBackwards(blockItems.values(),
+                                               variableIndices.size(), false);
+  }
+
+  /**
+   * Returns the number of block evaluations the fixed point took.
+   */
+  public int getIterations() {
+    return iterations;
   }
 
   @Override
@@ -352,6 +361,10 @@ implements Lattice<BitSet, BasicBlockNode> {
       case MULTIPLY:
       case DIVIDE:
       case MODULO:
+      case MULTIPLY_HIGH:
+      case SHL:
+      case SHR:
+      case BITWISE_AND:
       case EQUAL:
       case NOT_EQUAL:
       case LESS_THAN:
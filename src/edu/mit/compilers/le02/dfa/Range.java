@@ -0,0 +1,154 @@
+package edu.mit.compilers.le02.dfa;
+
+/**
+ * A closed interval of 32-bit ints.  Arithmetic on ranges follows the
+ * wrapping arithmetic of the generated code: any result which might wrap
+ * around becomes the full range.
+ */
+public final class Range {
+  public static final Range FULL =
+    new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  public static final Range BOOLEAN = new Range(0, 1);
+
+  private final int lo, hi;
+
+  private Range(int lo, int hi) {
+    this.lo = lo;
+    this.hi = hi;
+  }
+
+  /**
+   * Returns the range [lo, hi], or FULL if either bound does not fit in an
+   * int.  The range must not be empty.
+   */
+  public static Range of(long lo, long hi) {
+    assert lo <= hi;
+    if (lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE) {
+      return FULL;
+    }
+    return new Range((int) lo, (int) hi);
+  }
+
+  public static Range constant(int value) {
+    return new Range(value, value);
+  }
+
+  public int getLow() {
+    return lo;
+  }
+
+  public int getHigh() {
+    return hi;
+  }
+
+  public boolean isFull() {
+    return lo == Integer.MIN_VALUE && hi == Integer.MAX_VALUE;
+  }
+
+  public boolean isNonNegative() {
+    return lo >= 0;
+  }
+
+  /** The sign of every value in the range, as far as one sign covers it. */
+  public Sign getSign() {
+    if (lo > 0) {
+      return Sign.POS;
+    } else if (hi < 0) {
+      return Sign.NEG;
+    } else if (lo == 0 && hi == 0) {
+      return Sign.ZERO;
+    }
+    return Sign.TOP;
+  }
+
+  public Range join(Range other) {
+    return of(Math.min(lo, other.lo), Math.max(hi, other.hi));
+  }
+
+  /**
+   * Widens this range, the previous value, by the next one: a bound which
+   * moved at all goes straight to the end of the int range, so that loops
+   * reach a fixed point quickly.
+   */
+  public Range widen(Range next) {
+    return of((next.lo < lo) ? Integer.MIN_VALUE : lo,
+              (next.hi > hi) ? Integer.MAX_VALUE : hi);
+  }
+
+  /** Returns the values in both ranges, or null if there are none. */
+  public Range intersect(long otherLo, long otherHi) {
+    long newLo = Math.max(lo, otherLo);
+    long newHi = Math.min(hi, otherHi);
+    return (newLo > newHi) ? null : of(newLo, newHi);
+  }
+
+  public Range add(Range other) {
+    return of((long) lo + other.lo, (long) hi + other.hi);
+  }
+
+  public Range subtract(Range other) {
+    return of((long) lo - other.hi, (long) hi - other.lo);
+  }
+
+  public Range multiply(Range other) {
+    long a = (long) lo * other.lo, b = (long) lo * other.hi,
+         c = (long) hi * other.lo, d = (long) hi * other.hi;
+    return of(Math.min(Math.min(a, b), Math.min(c, d)),
+              Math.max(Math.max(a, b), Math.max(c, d)));
+  }
+
+  public Range negate() {
+    return of(-(long) hi, -(long) lo);
+  }
+
+  /** The quotient of a division which did not trap. */
+  public Range divide(Range divisor) {
+    if (divisor.lo == divisor.hi && divisor.lo != 0) {
+      long d = divisor.lo;
+      long a = lo / d, b = hi / d;
+      return of(Math.min(a, b), Math.max(a, b));
+    }
+    if (isNonNegative() && divisor.lo > 0) {
+      return of(0, hi);
+    }
+    // The quotient is never larger in magnitude than the dividend, except
+    // for MIN_VALUE / -1, which traps.
+    long m = Math.max(Math.abs((long) lo), Math.abs((long) hi));
+    return of(-m, m);
+  }
+
+  /**
+   * The remainder of a division which did not trap, which has the sign of
+   * the dividend and is smaller in magnitude than both operands.
+   */
+  public Range remainder(Range divisor) {
+    long m = Math.max(Math.abs((long) divisor.lo),
+                      Math.abs((long) divisor.hi)) - 1;
+    if (m < 0) {
+      // Only division by zero, which traps.
+      return constant(0);
+    }
+    long newLo = (lo >= 0) ? 0 : Math.max(lo, -m);
+    long newHi = (hi <= 0) ? 0 : Math.min(hi, m);
+    return of(newLo, newHi);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Range)) {
+      return false;
+    }
+    Range other = (Range) o;
+    return lo == other.lo && hi == other.hi;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * lo + hi;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + lo + ", " + hi + "]";
+  }
+}
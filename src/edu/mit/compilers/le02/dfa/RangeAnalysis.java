@@ -0,0 +1,475 @@
+package edu.mit.compilers.le02.dfa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.ConstantArgument;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.Argument.ArgType;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.opt.BasicBlockVisitor;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.ParamDescriptor;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Interval analysis of the scalar locals and parameters of a method.
+ *
+ * Each block is an item of a forward problem for WorklistAlgorithm, and so
+ * is each edge leaving a block, so that the two edges out of a comparison
+ * can narrow its operands differently: on the taken edge of a for loop's
+ * i < end, i is at most end's largest value less one, so i + 1 cannot
+ * wrap.  Blocks where control flow joins, and the entry, widen their input
+ * against the previous iteration, which bounds the number of times a loop
+ * is revisited.  Every cycle passes through one of them, so the other
+ * blocks keep whatever their incoming edge narrowed.
+ */
+public class RangeAnalysis extends BasicBlockVisitor
+implements Lattice<RangeAnalysis.Ranges, BasicBlockNode> {
+  private Map<BasicBlockNode, BlockItem> blockItems;
+  private List<WorklistItem<Ranges>> items;
+  private Map<BasicStatement, Range[]> argRanges;
+  private BlockItem start;
+  private int iterations;
+
+  /**
+   * The range of every tracked variable at some point, or unreachable.
+   * Variables without an entry may hold any int.
+   */
+  public static final class Ranges {
+    private static final Ranges UNREACHABLE = new Ranges(null);
+    private static final Ranges ANY =
+      new Ranges(new HashMap<TypedDescriptor, Range>());
+
+    private final Map<TypedDescriptor, Range> map;
+
+    private Ranges(Map<TypedDescriptor, Range> map) {
+      this.map = map;
+    }
+
+    public boolean isReachable() {
+      return map != null;
+    }
+
+    public Range get(TypedDescriptor desc) {
+      Range range = map.get(desc);
+      return (range == null) ? Range.FULL : range;
+    }
+
+    public Range get(Argument arg) {
+      if (arg == null) {
+        return Range.FULL;
+      }
+      switch (arg.getType()) {
+       case CONST_INT:
+        return Range.constant(((ConstantArgument) arg).getInt());
+       case CONST_BOOL:
+        return Range.constant(((ConstantArgument) arg).getBool() ? 1 : 0);
+       case VARIABLE:
+        return get(arg.getDesc());
+       default:
+        return Range.FULL;
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Ranges)) {
+        return false;
+      }
+      Ranges other = (Ranges) o;
+      return (map == null) ? other.map == null : map.equals(other.map);
+    }
+
+    @Override
+    public int hashCode() {
+      return (map == null) ? 0 : map.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return (map == null) ? "unreachable" : map.toString();
+    }
+  }
+
+  private class BlockItem extends WorklistItem<Ranges> {
+    private BasicBlockNode node;
+    private List<WorklistItem<Ranges>> preds =
+      new ArrayList<WorklistItem<Ranges>>();
+    private List<WorklistItem<Ranges>> succs =
+      new ArrayList<WorklistItem<Ranges>>();
+    // The widened input the block was last evaluated with
+    private Ranges widened;
+
+    public BlockItem(BasicBlockNode node) {
+      this.node = node;
+    }
+
+    @Override
+    public Ranges transferFunction(Ranges in) {
+      if (widened == null || (preds.size() < 2 && this != start)) {
+        widened = in;
+      } else {
+        widened = widen(widened, in);
+      }
+      return transfer(widened, node, false);
+    }
+
+    @Override
+    public Collection<WorklistItem<Ranges>> predecessors() {
+      return preds;
+    }
+
+    @Override
+    public Collection<WorklistItem<Ranges>> successors() {
+      return succs;
+    }
+  }
+
+  private class EdgeItem extends WorklistItem<Ranges> {
+    private BlockItem from;
+    private BlockItem to;
+    // Whether the branch is taken along this edge, or null if it is the
+    // only edge out of the block
+    private Boolean taken;
+
+    public EdgeItem(BlockItem from, BlockItem to, Boolean taken) {
+      this.from = from;
+      this.to = to;
+      this.taken = taken;
+      from.succs.add(this);
+      to.preds.add(this);
+    }
+
+    @Override
+    public Ranges transferFunction(Ranges in) {
+      return (taken == null) ? in : refine(in, from.node, taken);
+    }
+
+    @Override
+    public Collection<WorklistItem<Ranges>> predecessors() {
+      List<WorklistItem<Ranges>> ret = new ArrayList<WorklistItem<Ranges>>();
+      ret.add(from);
+      return ret;
+    }
+
+    @Override
+    public Collection<WorklistItem<Ranges>> successors() {
+      List<WorklistItem<Ranges>> ret = new ArrayList<WorklistItem<Ranges>>();
+      ret.add(to);
+      return ret;
+    }
+  }
+
+  public RangeAnalysis(BasicBlockNode methodStart) {
+    this.blockItems = new LinkedHashMap<BasicBlockNode, BlockItem>();
+    this.items = new ArrayList<WorklistItem<Ranges>>();
+    this.argRanges = new HashMap<BasicStatement, Range[]>();
+
+    this.visit(methodStart);
+    for (BlockItem item : blockItems.values()) {
+      BasicBlockNode node = item.node;
+      BasicBlockNode next = node.getNext();
+      BasicBlockNode target = node.getBranchTarget();
+      if (target != null && target != next) {
+        items.add(new EdgeItem(item, blockItems.get(target), true));
+        if (next != null) {
+          items.add(new EdgeItem(item, blockItems.get(next), false));
+        }
+      } else if (next != null) {
+        items.add(new EdgeItem(item, blockItems.get(next), null));
+      }
+    }
+
+    start = blockItems.get(methodStart);
+    iterations = WorklistAlgorithm.runForward(items, this, start, top());
+
+    // Record the ranges each statement sees now they are final.
+    for (BlockItem item : blockItems.values()) {
+      if (item.widened != null) {
+        transfer(item.widened, item.node, true);
+      }
+    }
+  }
+
+  @Override
+  protected void processNode(BasicBlockNode node) {
+    BlockItem item = new BlockItem(node);
+    blockItems.put(node, item);
+    items.add(item);
+  }
+
+  /**
+   * Returns the number of item evaluations the fixed point took.
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * Returns the range of the statement's first argument just before it
+   * runs, or null if the statement is unreachable.
+   */
+  public Range getArg1Range(OpStatement stmt) {
+    Range[] ranges = argRanges.get(stmt);
+    return (ranges == null) ? null : ranges[0];
+  }
+
+  /**
+   * Returns the range of the statement's second argument just before it
+   * runs, or null if the statement is unreachable.
+   */
+  public Range getArg2Range(OpStatement stmt) {
+    Range[] ranges = argRanges.get(stmt);
+    return (ranges == null) ? null : ranges[1];
+  }
+
+  private static boolean isTracked(TypedDescriptor desc) {
+    return (desc instanceof LocalDescriptor ||
+            desc instanceof ParamDescriptor) && !desc.getType().isArray();
+  }
+
+  private static TypedDescriptor getDefinitionTarget(BasicStatement s) {
+    if (s instanceof CallStatement) {
+      return s.getResult();
+    } else if (!(s instanceof OpStatement)) {
+      return null;
+    }
+    OpStatement op = (OpStatement) s;
+    if (op.getOp() == AsmOp.MOVE) {
+      return (op.getArg2().getType() == ArgType.VARIABLE) ?
+             op.getArg2().getDesc() : null;
+    }
+    return op.getResult();
+  }
+
+  private static void set(Map<TypedDescriptor, Range> map,
+                          TypedDescriptor desc, Range range) {
+    if (range.isFull()) {
+      map.remove(desc);
+    } else {
+      map.put(desc, range);
+    }
+  }
+
+  /**
+   * Runs the block's statements over the ranges on entry, recording the
+   * ranges of their arguments if asked.
+   */
+  private Ranges transfer(Ranges in, BasicBlockNode node, boolean record) {
+    if (!in.isReachable()) {
+      return in;
+    }
+    Ranges ranges = new Ranges(new HashMap<TypedDescriptor, Range>(in.map));
+    for (BasicStatement s : node.getStatements()) {
+      if (record && s instanceof OpStatement) {
+        OpStatement op = (OpStatement) s;
+        Range[] seen = new Range[] {
+          ranges.get(op.getArg1()), ranges.get(op.getArg2())
+        };
+        Range[] old = argRanges.get(s);
+        if (old != null) {
+          // A statement shared between blocks sees all of their ranges.
+          seen[0] = seen[0].join(old[0]);
+          seen[1] = seen[1].join(old[1]);
+        }
+        argRanges.put(s, seen);
+      }
+
+      TypedDescriptor target = getDefinitionTarget(s);
+      if (target != null && isTracked(target)) {
+        set(ranges.map, target, evaluate(s, ranges));
+      }
+    }
+    return ranges;
+  }
+
+  private static Range evaluate(BasicStatement s, Ranges ranges) {
+    if (!(s instanceof OpStatement)) {
+      return Range.FULL;
+    }
+    OpStatement op = (OpStatement) s;
+    Range a = ranges.get(op.getArg1());
+    Range b = ranges.get(op.getArg2());
+    switch (op.getOp()) {
+     case MOVE:
+      return a;
+     case ADD:
+      return a.add(b);
+     case SUBTRACT:
+      return a.subtract(b);
+     case MULTIPLY:
+      return a.multiply(b);
+     case DIVIDE:
+      return a.divide(b);
+     case MODULO:
+      return a.remainder(b);
+     case UNARY_MINUS:
+      return a.negate();
+     case BITWISE_AND:
+      if (a.isNonNegative() || b.isNonNegative()) {
+        long hi = Math.min(a.isNonNegative() ? a.getHigh() : Long.MAX_VALUE,
+                           b.isNonNegative() ? b.getHigh() : Long.MAX_VALUE);
+        return Range.of(0, hi);
+      }
+      return Range.FULL;
+     case SHR:
+      // An arithmetic shift of the second argument by the first.
+      if (op.getArg1() instanceof ConstantArgument) {
+        int count = a.getLow() & 31;
+        return Range.of(b.getLow() >> count, b.getHigh() >> count);
+      }
+      return Range.FULL;
+     case NOT:
+     case EQUAL:
+     case NOT_EQUAL:
+     case LESS_THAN:
+     case LESS_OR_EQUAL:
+     case GREATER_THAN:
+     case GREATER_OR_EQUAL:
+      return Range.BOOLEAN;
+     default:
+      return Range.FULL;
+    }
+  }
+
+  private static AsmOp opposite(AsmOp op) {
+    switch (op) {
+     case EQUAL:
+      return AsmOp.NOT_EQUAL;
+     case NOT_EQUAL:
+      return AsmOp.EQUAL;
+     case LESS_THAN:
+      return AsmOp.GREATER_OR_EQUAL;
+     case LESS_OR_EQUAL:
+      return AsmOp.GREATER_THAN;
+     case GREATER_THAN:
+      return AsmOp.LESS_OR_EQUAL;
+     case GREATER_OR_EQUAL:
+      return AsmOp.LESS_THAN;
+     default:
+      return op;
+    }
+  }
+
+  /**
+   * Narrows the ranges leaving a block along one edge of the comparison
+   * it branches on.
+   */
+  private static Ranges refine(Ranges in, BasicBlockNode node,
+                               boolean taken) {
+    if (!in.isReachable() ||
+        !(node.getLastStatement() instanceof OpStatement)) {
+      return in;
+    }
+    OpStatement cmp = (OpStatement) node.getLastStatement();
+    AsmOp op = taken ? cmp.getOp() : opposite(cmp.getOp());
+    Range a = in.get(cmp.getArg1());
+    Range b = in.get(cmp.getArg2());
+    long min = Integer.MIN_VALUE, max = Integer.MAX_VALUE;
+    Range newA, newB;
+    switch (op) {
+     case EQUAL:
+      newA = a.intersect(b.getLow(), b.getHigh());
+      newB = newA;
+      break;
+     case LESS_THAN:
+      newA = a.intersect(min, b.getHigh() - 1L);
+      newB = b.intersect(a.getLow() + 1L, max);
+      break;
+     case LESS_OR_EQUAL:
+      newA = a.intersect(min, b.getHigh());
+      newB = b.intersect(a.getLow(), max);
+      break;
+     case GREATER_THAN:
+      newA = a.intersect(b.getLow() + 1L, max);
+      newB = b.intersect(min, a.getHigh() - 1L);
+      break;
+     case GREATER_OR_EQUAL:
+      newA = a.intersect(b.getLow(), max);
+      newB = b.intersect(min, a.getHigh());
+      break;
+     default:
+      return in;
+    }
+    if (newA == null || newB == null) {
+      return Ranges.UNREACHABLE;
+    }
+
+    Ranges ranges = new Ranges(new HashMap<TypedDescriptor, Range>(in.map));
+    if (cmp.getArg1().getType() == ArgType.VARIABLE &&
+        isTracked(cmp.getArg1().getDesc())) {
+      set(ranges.map, cmp.getArg1().getDesc(), newA);
+    }
+    if (cmp.getArg2().getType() == ArgType.VARIABLE &&
+        isTracked(cmp.getArg2().getDesc())) {
+      set(ranges.map, cmp.getArg2().getDesc(), newB);
+    }
+    return ranges;
+  }
+
+  private static Ranges widen(Ranges previous, Ranges next) {
+    if (!previous.isReachable() || !next.isReachable()) {
+      return next;
+    }
+    Map<TypedDescriptor, Range> map = new HashMap<TypedDescriptor, Range>();
+    for (Map.Entry<TypedDescriptor, Range> e : next.map.entrySet()) {
+      Range old = previous.map.get(e.getKey());
+      if (old != null) {
+        set(map, e.getKey(), old.widen(e.getValue()));
+      }
+    }
+    return new Ranges(map);
+  }
+
+  @Override
+  public Ranges abstractionFunction(BasicBlockNode value) {
+    BlockItem item = blockItems.get(value);
+    return (item == null || item.widened == null) ? bottom() : item.widened;
+  }
+
+  @Override
+  public Ranges transferFunction(Ranges[] values) {
+    Ranges ret = bottom();
+    for (Ranges r : values) {
+      ret = leastUpperBound(ret, r);
+    }
+    return ret;
+  }
+
+  @Override
+  public Ranges bottom() {
+    return Ranges.UNREACHABLE;
+  }
+
+  @Override
+  public Ranges top() {
+    return Ranges.ANY;
+  }
+
+  @Override
+  public Ranges leastUpperBound(Ranges v1, Ranges v2) {
+    if (!v1.isReachable()) {
+      return v2;
+    }
+    if (!v2.isReachable()) {
+      return v1;
+    }
+    Map<TypedDescriptor, Range> map = new HashMap<TypedDescriptor, Range>();
+    for (Map.Entry<TypedDescriptor, Range> e : v1.map.entrySet()) {
+      Range other = v2.map.get(e.getKey());
+      if (other != null) {
+        set(map, e.getKey(), e.getValue().join(other));
+      }
+    }
+    return new Ranges(map);
+  }
+}
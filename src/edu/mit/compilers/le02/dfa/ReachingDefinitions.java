@@ -36,6 +36,7 @@ public class ReachingDefinitions extends BasicBlockVisitor
   private BitSet globalDefinitions;
   private List<BasicStatement> definitions;
   private BasicBlockNode methodRoot;
+  private int iterations;
 
   public class BlockItem extends GenKillItem {
     private ReachingDefinitions parent;
@@ -181,7 +182,9 @@ public class ReachingDefinitions extends BasicBlockVisitor
 
     // Run a fixed point algorithm on the definitions to calculate the
     // reaching definitions.
-    WorklistAlgorithm.runForward(blockDefinitions.values(), this, start, init);
+    iterations = GenKillAlgorithm.runForward(blockDefinitions.values(),
+                                             definitions.size(), false,
+                                             start, init);
   }
 
   @Override
@@ -223,6 +226,27 @@ public class ReachingDefinitions extends BasicBlockVisitor
     methodRoot.setStatements(newStmts);
   }
 
+  /**
+   * Removes the definitions which setupMethod added for the parameters, so
+   * that later passes start afresh.
+   */
+  public static void removeFakeDefs(BasicBlockNode methodRoot) {
+    List<BasicStatement> stmts = new ArrayList<BasicStatement>();
+    for (BasicStatement s : methodRoot.getStatements()) {
+      if (!(s instanceof FakeDefStatement)) {
+        stmts.add(s);
+      }
+    }
+    methodRoot.setStatements(stmts);
+  }
+
+  /**
+   * Returns the number of block evaluations the fixed point took.
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
   public BlockItem getDefinitions(BasicBlockNode node) {
     return blockDefinitions.get(node);
   }
@@ -279,6 +303,10 @@ public class ReachingDefinitions extends BasicBlockVisitor
       case MULTIPLY:
       case DIVIDE:
       case MODULO:
+      case MULTIPLY_HIGH:
+      case SHL:
+      case SHR:
+      case BITWISE_AND:
       case UNARY_MINUS:
       case NOT:
         return true;
@@ -301,6 +329,10 @@ public class ReachingDefinitions extends BasicBlockVisitor
       case MULTIPLY:
       case DIVIDE:
       case MODULO:
+      case MULTIPLY_HIGH:
+      case SHL:
+      case SHR:
+      case BITWISE_AND:
       case UNARY_MINUS:
       case NOT:
         return def.getResult().getLocation();
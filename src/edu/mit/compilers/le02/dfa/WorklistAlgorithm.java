@@ -1,20 +1,44 @@
 package edu.mit.compilers.le02.dfa;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.LinkedList;
-
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.compilers.le02.CompilerStats;
+
+/**
+ * Iterative fixed point solver for dataflow problems.
+ *
+ * Items are numbered in reverse postorder for forward problems and in
+ * postorder for backward problems, and the pending set is kept as a bitset
+ * indexed by that number.  Each step evaluates the lowest numbered pending
+ * item, so an item is evaluated after the items which feed it wherever the
+ * graph allows, and an item is never queued more than once at a time.
+ *
+ * Both entry points return the number of transfer function evaluations
+ * performed after initialization.
+ */
 public class WorklistAlgorithm {
-  /*
+  /**
+   * Solves a forward problem.  startItem is given startInfo as its in value
+   * in addition to whatever flows in from its predecessors.
    */
-  public static <T> void runForward(Collection<? extends WorklistItem<T>> items,
+  public static <T> int runForward(Collection<? extends WorklistItem<T>> items,
       Lattice<T, ?> lattice,
       WorklistItem<T> startItem,
       T startInfo) {
-    LinkedList<WorklistItem<T>> worklist =
-      new LinkedList<WorklistItem<T>>(items);
+    List<WorklistItem<T>> order = depthFirstOrder(items, startItem, true);
+    Map<WorklistItem<T>, Integer> index = number(order);
+
+    // Assert that startItem was in the given items
+    assert index.containsKey(startItem);
 
     // Initialize edge maps
-    for (WorklistItem<T> item : items) {
+    for (WorklistItem<T> item : order) {
       item.setIn(lattice.bottom());
       item.setOut(item.transferFunction(lattice.bottom()));
     }
@@ -22,17 +46,20 @@ public class WorklistAlgorithm {
     // Initialize the first item
     startItem.setIn(startInfo);
     startItem.setOut(startItem.transferFunction(startInfo));
-    boolean validItems = worklist.remove(startItem);
 
-    // Assert that startItem was in the given items
-    assert validItems;
+    BitSet pending = new BitSet(order.size());
+    pending.set(0, order.size());
+    pending.clear(index.get(startItem));
 
-    while (!worklist.isEmpty()) {
-      WorklistItem<T> item = worklist.remove();
+    int iterations = 0;
+    for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(0)) {
+      pending.clear(i);
+      WorklistItem<T> item = order.get(i);
+      iterations++;
 
       // Calculate the least upper bound of all the predecessors
-      T sup = lattice.bottom();
-      for(WorklistItem<T> pred : item.predecessors()) {
+      T sup = (item == startItem) ? startInfo : lattice.bottom();
+      for (WorklistItem<T> pred : item.predecessors()) {
         sup = lattice.leastUpperBound(pred.getOut(), sup);
       }
       item.setIn(sup);
@@ -44,37 +71,42 @@ public class WorklistAlgorithm {
       // to the worklist.
       if (!newOut.equals(item.getOut())) {
         item.setOut(newOut);
-
-        worklist.addAll(item.successors());
+        enqueue(pending, index, item.successors());
       }
     }
+    CompilerStats.countIterations(iterations);
+    return iterations;
   }
 
   // Before calling runBackwards, you need to ensure that every
   // WorklistItem with no successors has an out set
   // These out sets are the initial conditions for the algorithm
-  public static <T> void runBackwards(
+  public static <T> int runBackwards(
       Collection<? extends WorklistItem<T>> items,
       Lattice<T, ?> lattice) {
-    LinkedList<WorklistItem<T>> worklist =
-      new LinkedList<WorklistItem<T>>(items);
+    List<WorklistItem<T>> order = depthFirstOrder(items, null, false);
+    Map<WorklistItem<T>, Integer> index = number(order);
+    BitSet pending = new BitSet(order.size());
 
     // Initialize edge maps
-    for (WorklistItem<T> item : items) {
+    for (int i = 0; i < order.size(); i++) {
+      WorklistItem<T> item = order.get(i);
       if (!item.successors().isEmpty()) {
         item.setOut(lattice.bottom());
-      } else {
-        worklist.remove(item);
+        pending.set(i);
       }
       item.setIn(item.transferFunction(item.getOut()));
     }
 
-    while (!worklist.isEmpty()) {
-      WorklistItem<T> item = worklist.remove();
+    int iterations = 0;
+    for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(0)) {
+      pending.clear(i);
+      WorklistItem<T> item = order.get(i);
+      iterations++;
 
       // Calculate the least upper bound of all the successors
       T sup = lattice.bottom();
-      for(WorklistItem<T> succ : item.successors()) {
+      for (WorklistItem<T> succ : item.successors()) {
         sup = lattice.leastUpperBound(succ.getIn(), sup);
       }
       item.setOut(sup);
@@ -83,12 +115,114 @@ public class WorklistAlgorithm {
       T newIn = item.transferFunction(sup);
 
       // If the value has changed, update it and add predecessors
-      // to the worklist.
+      // to the worklist.  Items without successors keep the out set they
+      // were given, so they are never requeued.
       if (!newIn.equals(item.getIn())) {
         item.setIn(newIn);
+        for (WorklistItem<T> pred : item.predecessors()) {
+          Integer p = index.get(pred);
+          if ((p != null) && !pred.successors().isEmpty()) {
+            pending.set(p);
+          }
+        }
+      }
+    }
+    CompilerStats.countIterations(iterations);
+    return iterations;
+  }
+
+  private static <T> void enqueue(BitSet pending,
+      Map<WorklistItem<T>, Integer> index,
+      Collection<WorklistItem<T>> items) {
+    for (WorklistItem<T> item : items) {
+      Integer i = index.get(item);
+      if (i != null) {
+        pending.set(i);
+      }
+    }
+  }
+
+  static <T> Map<WorklistItem<T>, Integer> number(
+      List<WorklistItem<T>> order) {
+    Map<WorklistItem<T>, Integer> index =
+      new IdentityHashMap<WorklistItem<T>, Integer>();
+    for (int i = 0; i < order.size(); i++) {
+      index.put(order.get(i), i);
+    }
+    return index;
+  }
+
+  /**
+   * Returns every item in items, ordered by a depth first search along
+   * successor edges.  The search starts at root if one is given, then at
+   * each item without predecessors, then at whatever is left over.  The
+   * result is in postorder, or if reverse is set, each search tree is
+   * listed in reverse postorder so that root (if given) comes first.
+   */
+  static <T> List<WorklistItem<T>> depthFirstOrder(
+      Collection<? extends WorklistItem<T>> items,
+      WorklistItem<T> root, boolean reverse) {
+    Map<WorklistItem<T>, Boolean> visited =
+      new IdentityHashMap<WorklistItem<T>, Boolean>();
+    for (WorklistItem<T> item : items) {
+      visited.put(item, false);
+    }
+
+    List<WorklistItem<T>> roots = new ArrayList<WorklistItem<T>>();
+    if (root != null) {
+      roots.add(root);
+    }
+    for (WorklistItem<T> item : items) {
+      if (item.predecessors().isEmpty()) {
+        roots.add(item);
+      }
+    }
+    roots.addAll(items);
+
+    List<WorklistItem<T>> postorder =
+      new ArrayList<WorklistItem<T>>(items.size());
+    List<WorklistItem<T>> stack = new ArrayList<WorklistItem<T>>();
+    List<Iterator<WorklistItem<T>>> edges =
+      new ArrayList<Iterator<WorklistItem<T>>>();
+    List<Integer> treeStarts = new ArrayList<Integer>();
+
+    for (WorklistItem<T> start : roots) {
+      if (!Boolean.FALSE.equals(visited.get(start))) {
+        continue;
+      }
+      treeStarts.add(postorder.size());
+      visited.put(start, true);
+      stack.add(start);
+      edges.add(start.successors().iterator());
+
+      while (!stack.isEmpty()) {
+        int top = stack.size() - 1;
+        Iterator<WorklistItem<T>> it = edges.get(top);
+        if (it.hasNext()) {
+          WorklistItem<T> succ = it.next();
+          if (Boolean.FALSE.equals(visited.get(succ))) {
+            visited.put(succ, true);
+            stack.add(succ);
+            edges.add(succ.successors().iterator());
+          }
+        } else {
+          postorder.add(stack.remove(top));
+          edges.remove(top);
+        }
+      }
+    }
 
-        worklist.addAll(item.predecessors());
+    if (reverse) {
+      List<WorklistItem<T>> ret =
+        new ArrayList<WorklistItem<T>>(postorder.size());
+      treeStarts.add(postorder.size());
+      for (int t = 0; t < treeStarts.size() - 1; t++) {
+        for (int i = treeStarts.get(t + 1) - 1; i >= treeStarts.get(t); i--) {
+          ret.add(postorder.get(i));
+        }
       }
+      return ret;
     }
+    return postorder;
   }
 }
@@ -85,6 +85,11 @@ public class CpVisitor extends BasicBlockVisitor {
           }
           varToSet.remove(storedVar);
         }
+        // Nor is it a copy of whatever it held before.
+        CseVariable old = tmpToVar.remove(storedVar);
+        if (old != null && varToSet.get(old) != null) {
+          varToSet.get(old).remove(storedVar);
+        }
       }
 
       if (op.getOp() == AsmOp.MOVE &&
@@ -211,7 +216,15 @@ public class CpVisitor extends BasicBlockVisitor {
       tmpToVar.entrySet().iterator();
     while (it2.hasNext()) {
       Entry<CseVariable, CseVariable> entry = it2.next();
-      if (entry.getValue() instanceof FieldDescriptor) {
+      if (entry.getKey() instanceof FieldDescriptor) {
+        // A global copied from a temp may have been written by the callee,
+        // so reading it back must not be replaced with the temp.
+        Set<CseVariable> set = varToSet.get(entry.getValue());
+        if (set != null) {
+          set.remove(entry.getKey());
+        }
+        it2.remove();
+      } else if (entry.getValue() instanceof FieldDescriptor) {
         entry.setValue(entry.getKey());
       }
     }
@@ -43,13 +43,6 @@ public class CseVisitor extends BasicBlockVisitor {
     public int hashCode() {
       return index;
     }
-
-    private static int nextIndex = 0;
-    public static Value nextIndex() {
-      Value ret = new Value(nextIndex);
-      nextIndex++;
-      return ret;
-    }
   }
 
   private class ValExp {
@@ -72,7 +65,7 @@ public class CseVisitor extends BasicBlockVisitor {
         left = stmt.getArg1().getDesc();
       }
       if (!varToVal.containsKey(left)) {
-        varToVal.put(left, Value.nextIndex());
+        varToVal.put(left, nextValue());
       }
       this.left = varToVal.get(left);
 
@@ -92,7 +85,7 @@ public class CseVisitor extends BasicBlockVisitor {
         right = stmt.getArg2().getDesc();
       }
       if (!varToVal.containsKey(right)) {
-        varToVal.put(right, Value.nextIndex());
+        varToVal.put(right, nextValue());
       }
       this.right = varToVal.get(right);
     }
@@ -115,12 +108,21 @@ public class CseVisitor extends BasicBlockVisitor {
     }
   }
 
+  private int nextValueIndex = 0;
   private Map<CseVariable, Value> varToVal =
     new HashMap<CseVariable, Value>();
   private Map<ValExp, Value> expToVal = new HashMap<ValExp, Value>();
   private Map<ValExp, LocalDescriptor> expToTmp =
     new HashMap<ValExp, LocalDescriptor>();
 
+  /**
+   * Returns a fresh value number.  Numbers are only meaningful within one
+   * visitor, so each method gets its own sequence.
+   */
+  private Value nextValue() {
+    return new Value(nextValueIndex++);
+  }
+
   @Override
   protected void processNode(BasicBlockNode node) {
     varToVal.clear();
@@ -174,7 +176,7 @@ public class CseVisitor extends BasicBlockVisitor {
           }
         }
 
-        Value val = Value.nextIndex();
+        Value val = nextValue();
         varToVal.put(storedVar, val);
         expToVal.put(valexp, val);
 
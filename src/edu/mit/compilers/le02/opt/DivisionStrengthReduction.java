@@ -0,0 +1,228 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CFGGenerator;
+import edu.mit.compilers.le02.cfg.ConstantArgument;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.Argument.ArgType;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.dfa.Range;
+import edu.mit.compilers.le02.dfa.RangeAnalysis;
+import edu.mit.compilers.le02.dfa.Sign;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Replaces division and remainder by a constant with shifts and multiplies.
+ *
+ * A RangeAnalysis of the method tells which dividends are never negative.
+ * For those, dividing by a power of two is a single arithmetic shift and
+ * the remainder is a mask.  Otherwise the dividend is first biased by the
+ * divisor less one when it is negative, so that the shift rounds towards
+ * zero like idiv does.  Other divisors use the multiply-high and shift
+ * sequence of Granlund and Montgomery (Hacker's Delight, chapter 10), again
+ * correcting negative dividends to round towards zero.  Divisors of 0, -1
+ * and MIN_VALUE keep their idiv, so they trap exactly as before.
+ */
+public class DivisionStrengthReduction extends BasicBlockVisitor {
+  private final RangeAnalysis ranges;
+  // Statements shared between blocks get one shared expansion.
+  private final Map<BasicStatement, List<BasicStatement>> expansions =
+    new HashMap<BasicStatement, List<BasicStatement>>();
+
+  private DivisionStrengthReduction(BasicBlockNode methodEnter) {
+    this.ranges = new RangeAnalysis(methodEnter);
+  }
+
+  public static void reduce(BasicBlockNode methodEnter) {
+    new DivisionStrengthReduction(methodEnter).visit(methodEnter);
+  }
+
+  @Override
+  protected void processNode(BasicBlockNode node) {
+    List<BasicStatement> newStmts = new ArrayList<BasicStatement>();
+    boolean changed = false;
+    for (BasicStatement stmt : node.getStatements()) {
+      List<BasicStatement> expansion = null;
+      if (stmt instanceof OpStatement) {
+        if (expansions.containsKey(stmt)) {
+          expansion = expansions.get(stmt);
+        } else {
+          expansion = expand((OpStatement) stmt);
+          expansions.put(stmt, expansion);
+        }
+      }
+      if (expansion == null) {
+        newStmts.add(stmt);
+      } else {
+        newStmts.addAll(expansion);
+        changed = true;
+      }
+    }
+    if (changed) {
+      node.setStatements(newStmts);
+    }
+  }
+
+  /**
+   * Returns the statements to replace a division or remainder with, or
+   * null to keep it.
+   */
+  private List<BasicStatement> expand(OpStatement op) {
+    if ((op.getOp() != AsmOp.DIVIDE && op.getOp() != AsmOp.MODULO) ||
+        !(op.getArg2() instanceof ConstantArgument) ||
+        op.getArg1() instanceof ConstantArgument) {
+      return null;
+    }
+    int d = ((ConstantArgument) op.getArg2()).getInt();
+    Range range = ranges.getArg1Range(op);
+    if (range == null || d == 0 || d == -1 || d == Integer.MIN_VALUE) {
+      return null;
+    }
+
+    Sequence seq = new Sequence(op.getNode());
+    Argument x = op.getArg1();
+    if (x.getType() != ArgType.VARIABLE) {
+      // The dividend is read more than once; load it only once.
+      x = seq.emit(AsmOp.MOVE, x, null);
+    }
+    boolean divide = (op.getOp() == AsmOp.DIVIDE);
+    int ad = Math.abs(d);
+
+    if (ad == 1) {
+      seq.emit(AsmOp.MOVE, divide ? x : Argument.makeArgument(0), null);
+    } else if (Integer.bitCount(ad) == 1) {
+      int k = Integer.numberOfTrailingZeros(ad);
+      if (range.isNonNegative()) {
+        if (divide) {
+          seq.emit(AsmOp.SHR, Argument.makeArgument(k), x);
+        } else {
+          seq.emit(AsmOp.BITWISE_AND, Argument.makeArgument(ad - 1), x);
+        }
+      } else {
+        // Add ad - 1 to negative dividends only.
+        Argument biased;
+        if (range.getSign() == Sign.NEG) {
+          biased = seq.emit(AsmOp.ADD, Argument.makeArgument(ad - 1), x);
+        } else {
+          Argument mask = seq.emit(AsmOp.SHR, Argument.makeArgument(31), x);
+          Argument bias = seq.emit(AsmOp.BITWISE_AND,
+                                   Argument.makeArgument(ad - 1), mask);
+          biased = seq.emit(AsmOp.ADD, x, bias);
+        }
+        if (divide) {
+          seq.emit(AsmOp.SHR, Argument.makeArgument(k), biased);
+        } else {
+          Argument rounded = seq.emit(AsmOp.BITWISE_AND,
+                                      Argument.makeArgument(-ad), biased);
+          seq.emit(AsmOp.SUBTRACT, x, rounded);
+        }
+      }
+    } else {
+      long[] magic = magic(ad);
+      Argument q = seq.emit(AsmOp.MULTIPLY_HIGH, x,
+                            Argument.makeArgument((int) magic[0]));
+      if (magic[1] > 0) {
+        q = seq.emit(AsmOp.SHR, Argument.makeArgument((int) magic[1]), q);
+      }
+      if (range.getSign() == Sign.NEG) {
+        q = seq.emit(AsmOp.ADD, Argument.makeArgument(1), q);
+      } else if (!range.isNonNegative()) {
+        // Subtracting x >> 31 adds one for negative dividends.
+        Argument sign = seq.emit(AsmOp.SHR, Argument.makeArgument(31), x);
+        q = seq.emit(AsmOp.SUBTRACT, q, sign);
+      }
+      if (!divide) {
+        Argument product = seq.emit(AsmOp.MULTIPLY,
+                                    Argument.makeArgument(ad), q);
+        seq.emit(AsmOp.SUBTRACT, x, product);
+      }
+    }
+
+    if (divide && d < 0) {
+      seq.emit(AsmOp.UNARY_MINUS, seq.last(), null);
+    }
+    seq.finish(op.getResult());
+    return seq.statements;
+  }
+
+  /**
+   * Returns the magic number, as an unsigned 32-bit value, and the shift
+   * for signed division by d >= 2, following Hacker's Delight figure 10-1.
+   * For any int x, x / d is ((x * magic) >> 32 >> shift) plus one if x is
+   * negative, with the product taken in 64 bits.
+   */
+  static long[] magic(int d) {
+    final long two31 = 0x80000000L;
+    long ad = d;
+    long anc = two31 - 1 - two31 % ad;
+    int p = 31;
+    long q1 = two31 / anc, r1 = two31 - q1 * anc;
+    long q2 = two31 / ad, r2 = two31 - q2 * ad;
+    long delta;
+    do {
+      p++;
+      q1 = 2 * q1;
+      r1 = 2 * r1;
+      if (r1 >= anc) {
+        q1++;
+        r1 -= anc;
+      }
+      q2 = 2 * q2;
+      r2 = 2 * r2;
+      if (r2 >= ad) {
+        q2++;
+        r2 -= ad;
+      }
+      delta = ad - r2;
+    } while (q1 < delta || (q1 == delta && r1 == 0));
+    return new long[] {q2 + 1, p - 32};
+  }
+
+  /** A run of statements computing into fresh temporaries. */
+  private static class Sequence {
+    private final ASTNode node;
+    private final List<BasicStatement> statements =
+      new ArrayList<BasicStatement>();
+    private Argument last;
+
+    public Sequence(ASTNode node) {
+      this.node = node;
+    }
+
+    public Argument emit(AsmOp op, Argument arg1, Argument arg2) {
+      Argument temp = Argument.makeArgument(
+        CFGGenerator.makeTemp(node, DecafType.INT));
+      if (op == AsmOp.MOVE) {
+        statements.add(new OpStatement(node, op, arg1, temp, null));
+      } else {
+        statements.add(
+          new OpStatement(node, op, arg1, arg2, temp.getDesc()));
+      }
+      last = temp;
+      return temp;
+    }
+
+    public Argument last() {
+      return last;
+    }
+
+    /** Makes the last statement write the original result instead. */
+    public void finish(TypedDescriptor result) {
+      OpStatement op = (OpStatement) statements.get(statements.size() - 1);
+      if (op.getOp() == AsmOp.MOVE) {
+        op.setArg2(Argument.makeArgument(result));
+      } else {
+        op.setResult(result);
+      }
+    }
+  }
+}
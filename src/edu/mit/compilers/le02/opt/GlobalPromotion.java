@@ -0,0 +1,376 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.VariableLocation.LocationType;
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.ArrayVariableArgument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.Argument.ArgType;
+import edu.mit.compilers.le02.cfg.BasicStatement.BasicStatementType;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.ssa.DominatorTree;
+import edu.mit.compilers.le02.symboltable.FieldDescriptor;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.SymbolTable;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Promotes scalar globals to locals within a method, so that the register
+ * allocator can keep them in registers.
+ *
+ * Each promoted global is loaded into a temporary at method entry, and all
+ * of the method's accesses go to the temporary instead.  If the method
+ * writes the global, the temporary is stored back before every return.
+ * Around a call, the temporary is stored back if the callee may read or
+ * write the global, and reloaded afterwards if the callee may write it;
+ * which globals a callee may touch comes from a mod/ref summary over the
+ * whole call graph.  Decaf arrays cannot alias scalars, so array stores
+ * need no write-back.  A global is only promoted if its accesses, weighted
+ * by loop depth, outweigh the loads and stores this adds.
+ */
+public class GlobalPromotion {
+  /** The weight of an access nested this deep, as in register allocation. */
+  private static long weight(int depth) {
+    long w = 1;
+    for (int i = 0; i < Math.min(depth, 6); i++) {
+      w *= 10;
+    }
+    return w;
+  }
+
+  /**
+   * Which scalar globals each method may read or write, either directly or
+   * through the methods it calls.
+   */
+  public static class Summary {
+    private Map<String, Set<TypedDescriptor>> mods =
+      new LinkedHashMap<String, Set<TypedDescriptor>>();
+    private Map<String, Set<TypedDescriptor>> refs =
+      new LinkedHashMap<String, Set<TypedDescriptor>>();
+    // Methods which may reach code we cannot see, and so touch anything
+    private Set<String> unknown = new HashSet<String>();
+
+    public boolean mayModify(String method, TypedDescriptor global) {
+      return !mods.containsKey(method) || unknown.contains(method) ||
+             mods.get(method).contains(global);
+    }
+
+    public boolean mayReference(String method, TypedDescriptor global) {
+      return !refs.containsKey(method) || unknown.contains(method) ||
+             refs.get(method).contains(global);
+    }
+  }
+
+  private GlobalPromotion() {
+  }
+
+  /**
+   * Builds the mod/ref summary for the given methods, keyed by name, by
+   * propagating each method's own accesses to its callers until nothing
+   * changes.  Calls to names which are not callouts and not among the
+   * methods may touch every global.
+   */
+  public static Summary summarize(Map<String, List<BasicBlockNode>> methods) {
+    Summary summary = new Summary();
+    Map<String, Set<String>> callees =
+      new LinkedHashMap<String, Set<String>>();
+
+    for (Map.Entry<String, List<BasicBlockNode>> e : methods.entrySet()) {
+      Set<TypedDescriptor> mods = new LinkedHashSet<TypedDescriptor>();
+      Set<TypedDescriptor> refs = new LinkedHashSet<TypedDescriptor>();
+      Set<String> calls = new LinkedHashSet<String>();
+      for (BasicBlockNode block : e.getValue()) {
+        for (BasicStatement stmt : block.getStatements()) {
+          collect(stmt, refs, mods);
+          if (stmt.getType() == BasicStatementType.CALL &&
+              !((CallStatement) stmt).isCallout()) {
+            calls.add(((CallStatement) stmt).getMethodName());
+          }
+        }
+      }
+      summary.mods.put(e.getKey(), mods);
+      summary.refs.put(e.getKey(), refs);
+      callees.put(e.getKey(), calls);
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Map.Entry<String, Set<String>> e : callees.entrySet()) {
+        String caller = e.getKey();
+        for (String callee : e.getValue()) {
+          if (!methods.containsKey(callee) ||
+              summary.unknown.contains(callee)) {
+            changed |= summary.unknown.add(caller);
+            continue;
+          }
+          changed |= summary.mods.get(caller).addAll(
+              summary.mods.get(callee));
+          changed |= summary.refs.get(caller).addAll(
+              summary.refs.get(callee));
+        }
+      }
+    }
+    return summary;
+  }
+
+  private static boolean isScalarGlobal(TypedDescriptor desc) {
+    return desc instanceof FieldDescriptor && !desc.getType().isArray() &&
+           desc.getLocation().getLocationType() == LocationType.GLOBAL;
+  }
+
+  /** Adds the scalar globals read and written by the statement. */
+  private static void collect(BasicStatement stmt,
+                              Set<TypedDescriptor> reads,
+                              Set<TypedDescriptor> writes) {
+    if (stmt.getType() == BasicStatementType.CALL) {
+      for (Argument arg : ((CallStatement) stmt).getArgs()) {
+        collectReads(arg, reads);
+      }
+    } else if (stmt instanceof OpStatement) {
+      OpStatement op = (OpStatement) stmt;
+      collectReads(op.getArg1(), reads);
+      if (op.getOp() == AsmOp.MOVE && op.getArg2() != null &&
+          op.getArg2().getType() == ArgType.VARIABLE) {
+        if (isScalarGlobal(op.getArg2().getDesc())) {
+          writes.add(op.getArg2().getDesc());
+        }
+      } else {
+        collectReads(op.getArg2(), reads);
+      }
+    }
+    if (stmt.getResult() != null && isScalarGlobal(stmt.getResult())) {
+      writes.add(stmt.getResult());
+    }
+  }
+
+  private static void collectReads(Argument arg, Set<TypedDescriptor> reads) {
+    if (arg == null || !arg.isVariable()) {
+      return;
+    }
+    if (arg.getType() == ArgType.ARRAY_VARIABLE) {
+      collectReads(((ArrayVariableArgument) arg).getIndex(), reads);
+    } else if (isScalarGlobal(arg.getDesc())) {
+      reads.add(arg.getDesc());
+    }
+  }
+
+  /**
+   * Promotes the profitable scalar globals of one method, given the blocks
+   * of the method and the summary of the whole program.
+   */
+  public static void promote(BasicBlockNode methodEnter,
+                             List<BasicBlockNode> blocks, Summary summary) {
+    // The entry loads must run exactly once.
+    if (!methodEnter.getPredecessors().isEmpty() ||
+        methodEnter.getStatements().isEmpty()) {
+      return;
+    }
+
+    Map<BasicBlockNode, Integer> depths =
+      new DominatorTree(methodEnter).loopDepths();
+    Map<TypedDescriptor, Long> benefit =
+      new LinkedHashMap<TypedDescriptor, Long>();
+    Set<TypedDescriptor> written = new HashSet<TypedDescriptor>();
+    List<CallStatement> calls = new ArrayList<CallStatement>();
+    Map<CallStatement, Long> callWeights =
+      new LinkedHashMap<CallStatement, Long>();
+    int exits = 0;
+
+    for (BasicBlockNode block : blocks) {
+      Integer depth = depths.get(block);
+      long w = weight((depth == null) ? 0 : depth);
+      for (BasicStatement stmt : block.getStatements()) {
+        Set<TypedDescriptor> reads = new LinkedHashSet<TypedDescriptor>();
+        Set<TypedDescriptor> writes = new LinkedHashSet<TypedDescriptor>();
+        collect(stmt, reads, writes);
+        reads.addAll(writes);
+        for (TypedDescriptor g : reads) {
+          Long b = benefit.get(g);
+          benefit.put(g, ((b == null) ? 0 : b) + w);
+        }
+        written.addAll(writes);
+
+        if (stmt.getType() == BasicStatementType.CALL &&
+            !((CallStatement) stmt).isCallout()) {
+          if (!callWeights.containsKey(stmt)) {
+            calls.add((CallStatement) stmt);
+          }
+          callWeights.put((CallStatement) stmt, w);
+        }
+        if (isReturn(stmt)) {
+          exits++;
+        }
+      }
+      if (isFallOffEnd(block)) {
+        exits++;
+      }
+    }
+
+    // Weigh the accesses saved against the loads and stores added.
+    Map<TypedDescriptor, LocalDescriptor> temps =
+      new LinkedHashMap<TypedDescriptor, LocalDescriptor>();
+    ASTNode enterNode = methodEnter.getStatements().get(0).getNode();
+    for (Map.Entry<TypedDescriptor, Long> e : benefit.entrySet()) {
+      TypedDescriptor g = e.getKey();
+      long cost = 1;
+      if (written.contains(g)) {
+        cost += exits;
+      }
+      for (CallStatement call : calls) {
+        String callee = call.getMethodName();
+        if (written.contains(g) && (summary.mayModify(callee, g) ||
+                                    summary.mayReference(callee, g))) {
+          cost += callWeights.get(call);
+        }
+        if (summary.mayModify(callee, g)) {
+          cost += callWeights.get(call);
+        }
+      }
+      if (e.getValue() > cost) {
+        temps.put(g, makeLocal(enterNode, g));
+      }
+    }
+    if (temps.isEmpty()) {
+      return;
+    }
+
+    for (BasicBlockNode block : blocks) {
+      List<BasicStatement> stmts = new ArrayList<BasicStatement>();
+      for (BasicStatement stmt : block.getStatements()) {
+        rename(stmt, temps);
+
+        if (stmt.getType() == BasicStatementType.CALL &&
+            !((CallStatement) stmt).isCallout()) {
+          String callee = ((CallStatement) stmt).getMethodName();
+          List<BasicStatement> reloads = new ArrayList<BasicStatement>();
+          for (Map.Entry<TypedDescriptor, LocalDescriptor> e :
+               temps.entrySet()) {
+            TypedDescriptor g = e.getKey();
+            LocalDescriptor temp = e.getValue();
+            if (written.contains(g) && (summary.mayModify(callee, g) ||
+                                        summary.mayReference(callee, g))) {
+              stmts.add(move(stmt.getNode(), temp, g));
+            }
+            // The call's own result is assigned after the callee returns.
+            if (summary.mayModify(callee, g) &&
+                !temp.equals(stmt.getResult())) {
+              reloads.add(move(stmt.getNode(), g, temp));
+            }
+          }
+          stmts.add(stmt);
+          stmts.addAll(reloads);
+          continue;
+        }
+
+        if (isReturn(stmt)) {
+          storeBack(stmts, stmt.getNode(), temps, written);
+        }
+        stmts.add(stmt);
+      }
+      if (isFallOffEnd(block)) {
+        storeBack(stmts, block.getLastStatement().getNode(), temps, written);
+      }
+      block.setStatements(stmts);
+    }
+
+    List<BasicStatement> entry =
+      new ArrayList<BasicStatement>(methodEnter.getStatements());
+    int i = 0;
+    for (Map.Entry<TypedDescriptor, LocalDescriptor> e : temps.entrySet()) {
+      entry.add(i++, move(enterNode, e.getKey(), e.getValue()));
+    }
+    methodEnter.setStatements(entry);
+  }
+
+  /**
+   * Makes the local standing in for a global.  Unlike the temporaries of
+   * CFGGenerator.makeTemp, it is assigned more than once, so it must not be
+   * named like one.
+   */
+  private static LocalDescriptor makeLocal(ASTNode node, TypedDescriptor g) {
+    SymbolTable st = node.getSymbolTable();
+    int offset = st.getNonconflictingOffset();
+    LocalDescriptor ld = new LocalDescriptor(st, g.getId() + ".promoted",
+                                             g.getType(), offset);
+    st.put(ld.getId(), ld, node.getSourceLoc());
+    return ld;
+  }
+
+  private static boolean isReturn(BasicStatement stmt) {
+    return stmt instanceof OpStatement &&
+           ((OpStatement) stmt).getOp() == AsmOp.RETURN;
+  }
+
+  /** Whether the method ends by falling off the end of the block. */
+  private static boolean isFallOffEnd(BasicBlockNode block) {
+    if (block.getNext() != null || block.getBranchTarget() != null ||
+        block.getStatements().isEmpty()) {
+      return false;
+    }
+    BasicStatement last = block.getLastStatement();
+    return !isReturn(last) && last.getType() != BasicStatementType.HALT;
+  }
+
+  private static void storeBack(List<BasicStatement> stmts, ASTNode node,
+                                Map<TypedDescriptor, LocalDescriptor> temps,
+                                Set<TypedDescriptor> written) {
+    for (Map.Entry<TypedDescriptor, LocalDescriptor> e : temps.entrySet()) {
+      if (written.contains(e.getKey())) {
+        stmts.add(move(node, e.getValue(), e.getKey()));
+      }
+    }
+  }
+
+  private static OpStatement move(ASTNode node, TypedDescriptor from,
+                                  TypedDescriptor to) {
+    return new OpStatement(node, AsmOp.MOVE, Argument.makeArgument(from),
+                           Argument.makeArgument(to), null);
+  }
+
+  /** Makes the statement use the temporaries in place of the globals. */
+  private static void rename(BasicStatement stmt,
+                             Map<TypedDescriptor, LocalDescriptor> temps) {
+    if (stmt.getType() == BasicStatementType.CALL) {
+      CallStatement call = (CallStatement) stmt;
+      List<Argument> args = call.getArgs();
+      for (int i = 0; i < args.size(); i++) {
+        args.set(i, rename(args.get(i), temps));
+      }
+      call.setArgs(args);
+    } else if (stmt instanceof OpStatement) {
+      OpStatement op = (OpStatement) stmt;
+      op.setArg1(rename(op.getArg1(), temps));
+      op.setArg2(rename(op.getArg2(), temps));
+    }
+    if (stmt.getResult() != null && temps.containsKey(stmt.getResult())) {
+      stmt.setResult(temps.get(stmt.getResult()));
+    }
+  }
+
+  private static Argument rename(Argument arg,
+                                 Map<TypedDescriptor, LocalDescriptor> temps) {
+    if (arg == null || !arg.isVariable()) {
+      return arg;
+    }
+    if (arg.getType() == ArgType.ARRAY_VARIABLE) {
+      Argument index = ((ArrayVariableArgument) arg).getIndex();
+      Argument renamed = rename(index, temps);
+      return (renamed == index) ? arg :
+             Argument.makeArgument(arg.getDesc(), renamed);
+    }
+    LocalDescriptor temp = temps.get(arg.getDesc());
+    return (temp == null) ? arg : Argument.makeArgument(temp);
+  }
+}
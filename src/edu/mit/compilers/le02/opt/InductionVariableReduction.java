@@ -0,0 +1,746 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.CompilerStats;
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.VariableLocation;
+import edu.mit.compilers.le02.VariableLocation.LocationType;
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.ArrayVariableArgument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CFGGenerator;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.ConstantArgument;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.VariableArgument;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.dfa.Liveness;
+import edu.mit.compilers.le02.dfa.Range;
+import edu.mit.compilers.le02.dfa.RangeAnalysis;
+import edu.mit.compilers.le02.ssa.DominatorTree;
+import edu.mit.compilers.le02.ssa.SsaForm;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Strength reduction of induction variables, with linear function test
+ * replacement.
+ *
+ * A basic induction variable of a natural loop is a local whose only
+ * definition in the loop adds a loop-invariant step to it.  A statement in
+ * the loop computing i * k, i + k or i - k from a basic induction variable
+ * i and an invariant k derives another one.  Its target is instead
+ * computed once in the preheader and advanced by the matching step right
+ * after every increment of i, so that a multiply in the loop becomes an
+ * add; the target is then itself a basic induction variable, which lets
+ * index expressions built up from several such steps be reduced in turn.
+ * This is only done where each use of the target in the loop is reached by
+ * the original statement without passing the increment of i, so that it
+ * reads the same value as before.
+ *
+ * Afterwards a loop test comparing i to an invariant bound is rewritten to
+ * compare a reduced variable to the bound mapped through the same function,
+ * when that leaves i otherwise unused.  Ordered comparisons are only
+ * rewritten when a RangeAnalysis shows the function cannot wrap around over
+ * the values compared.  Finally the increments of induction variables which
+ * are no longer read, such as i here, are removed; dead code elimination
+ * cannot find these since each increment reads its own variable.
+ */
+public class InductionVariableReduction {
+  private final BasicBlockNode methodEnter;
+  private final List<BasicBlockNode> preheaders =
+    new ArrayList<BasicBlockNode>();
+  // How each reduced variable was derived, by its location.
+  private final Map<VariableLocation, Derivation> derivations =
+    new LinkedHashMap<VariableLocation, Derivation>();
+
+  private DominatorTree dom;
+  private Map<BasicBlockNode, Set<BasicBlockNode>> loops;
+
+  /** A basic induction variable and the statement which steps it. */
+  private static class Increment {
+    TypedDescriptor var;
+    OpStatement stmt;
+    BasicBlockNode block;
+    Argument step;
+  }
+
+  /** A reduced variable computed from a basic one by op with other. */
+  private static class Derivation {
+    TypedDescriptor base;
+    AsmOp op;
+    Argument other;
+    OpStatement init;
+    BasicBlockNode header;
+  }
+
+  private InductionVariableReduction(BasicBlockNode methodEnter) {
+    this.methodEnter = methodEnter;
+  }
+
+  /**
+   * Reduces the induction variables of every loop in the method, returning
+   * any preheader blocks which were created.
+   */
+  public static List<BasicBlockNode> reduce(BasicBlockNode methodEnter) {
+    InductionVariableReduction ivr =
+      new InductionVariableReduction(methodEnter);
+    int iterations = 0;
+    // Every reduction changes the loop, so the analyses are redone after
+    // each one.
+    boolean changed = true;
+    while (changed) {
+      iterations++;
+      ivr.findLoops();
+      changed = false;
+      for (BasicBlockNode header : ivr.innermostFirst()) {
+        if (ivr.reduceOne(header, ivr.loops.get(header))) {
+          changed = true;
+          break;
+        }
+      }
+    }
+
+    changed = true;
+    while (changed) {
+      ivr.findLoops();
+      changed = false;
+      for (BasicBlockNode header : ivr.innermostFirst()) {
+        Set<BasicBlockNode> body = ivr.loops.get(header);
+        if (ivr.replaceTest(header, body) ||
+            ivr.removeDeadIncrements(body)) {
+          changed = true;
+          break;
+        }
+      }
+    }
+    CompilerStats.countIterations(iterations);
+    return ivr.preheaders;
+  }
+
+  private void findLoops() {
+    dom = new DominatorTree(methodEnter);
+    loops = dom.naturalLoops();
+  }
+
+  private List<BasicBlockNode> innermostFirst() {
+    List<BasicBlockNode> headers = new ArrayList<BasicBlockNode>();
+    for (BasicBlockNode h : loops.keySet()) {
+      if (h == methodEnter) {
+        // DominatorTree.insertPreheader cannot give this loop a preheader.
+        continue;
+      }
+      int i = 0;
+      while (i < headers.size() &&
+             loops.get(headers.get(i)).size() <= loops.get(h).size()) {
+        i++;
+      }
+      headers.add(i, h);
+    }
+    return headers;
+  }
+
+  /** The loop's blocks in a fixed order, so that output is stable. */
+  private List<BasicBlockNode> ordered(Set<BasicBlockNode> body) {
+    List<BasicBlockNode> loop = new ArrayList<BasicBlockNode>();
+    for (BasicBlockNode node : dom.getBlocks()) {
+      if (body.contains(node)) {
+        loop.add(node);
+      }
+    }
+    return loop;
+  }
+
+  /**
+   * Reduces one derived induction variable of the loop, returning whether
+   * anything changed.
+   */
+  private boolean reduceOne(BasicBlockNode header, Set<BasicBlockNode> body) {
+    List<BasicBlockNode> loop = ordered(body);
+    Map<VariableLocation, Integer> defCounts =
+      new HashMap<VariableLocation, Integer>();
+    Set<BasicStatement> shared = new HashSet<BasicStatement>();
+    boolean hasCall = scan(loop, defCounts, shared);
+
+    Map<VariableLocation, Increment> ivs = findIncrements(
+      loop, defCounts, hasCall, shared);
+    if (ivs.isEmpty()) {
+      return false;
+    }
+
+    Liveness live = null;
+    for (BasicBlockNode node : loop) {
+      for (BasicStatement stmt : node.getStatements()) {
+        if (!(stmt instanceof OpStatement) || shared.contains(stmt)) {
+          continue;
+        }
+        OpStatement s = (OpStatement) stmt;
+        Increment iv = derivedFrom(s, ivs, defCounts, hasCall);
+        if (iv == null) {
+          continue;
+        }
+        if (live == null) {
+          live = new Liveness(methodEnter);
+        }
+        if (canReduce(s, node, iv, header, body, loop, live)) {
+          reduce(s, node, iv, header, body);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the definitions of each location in the loop and collects the
+   * statements which appear in more than one of its blocks, which are left
+   * alone.  Returns whether the loop makes any calls.
+   */
+  private static boolean scan(List<BasicBlockNode> loop,
+      Map<VariableLocation, Integer> defCounts, Set<BasicStatement> shared) {
+    Set<BasicStatement> seen = new HashSet<BasicStatement>();
+    boolean hasCall = false;
+    for (BasicBlockNode node : loop) {
+      for (BasicStatement s : node.getStatements()) {
+        if (!seen.add(s)) {
+          shared.add(s);
+        }
+        if (s instanceof CallStatement) {
+          hasCall = true;
+        }
+        VariableLocation target = getTarget(s);
+        if (target != null) {
+          Integer count = defCounts.get(target);
+          defCounts.put(target, (count == null) ? 1 : count + 1);
+        }
+      }
+    }
+    return hasCall;
+  }
+
+  /** Finds the basic induction variables of the loop. */
+  private Map<VariableLocation, Increment> findIncrements(
+      List<BasicBlockNode> loop, Map<VariableLocation, Integer> defCounts,
+      boolean hasCall, Set<BasicStatement> shared) {
+    Map<VariableLocation, Increment> ivs =
+      new LinkedHashMap<VariableLocation, Increment>();
+    for (BasicBlockNode node : loop) {
+      for (BasicStatement stmt : node.getStatements()) {
+        if (!(stmt instanceof OpStatement) || shared.contains(stmt) ||
+            !isReducible(stmt.getResult())) {
+          continue;
+        }
+        OpStatement s = (OpStatement) stmt;
+        VariableLocation loc = s.getResult().getLocation();
+        if (defCounts.get(loc) != 1) {
+          continue;
+        }
+
+        Argument step = null;
+        if (s.getOp() == AsmOp.ADD) {
+          if (isVariable(s.getArg1(), loc)) {
+            step = s.getArg2();
+          } else if (isVariable(s.getArg2(), loc)) {
+            step = s.getArg1();
+          }
+        } else if (s.getOp() == AsmOp.SUBTRACT &&
+                   isVariable(s.getArg1(), loc) &&
+                   s.getArg2() instanceof ConstantArgument) {
+          step = Argument.makeArgument(
+            -((ConstantArgument) s.getArg2()).getInt());
+        }
+        if (step == null || isVariable(step, loc) ||
+            !isInvariant(step, defCounts, hasCall)) {
+          continue;
+        }
+
+        Increment iv = new Increment();
+        iv.var = s.getResult();
+        iv.stmt = s;
+        iv.block = node;
+        iv.step = step;
+        ivs.put(loc, iv);
+      }
+    }
+    return ivs;
+  }
+
+  /**
+   * Returns the basic induction variable s derives a new one from, or null
+   * if it does not.
+   */
+  private Increment derivedFrom(OpStatement s,
+      Map<VariableLocation, Increment> ivs,
+      Map<VariableLocation, Integer> defCounts, boolean hasCall) {
+    if (!isReducible(s.getResult()) ||
+        defCounts.get(s.getResult().getLocation()) != 1 ||
+        ivs.containsKey(s.getResult().getLocation())) {
+      return null;
+    }
+
+    Increment iv = null;
+    Argument other = null;
+    switch (s.getOp()) {
+     case ADD:
+     case MULTIPLY:
+      iv = baseOf(s.getArg1(), ivs);
+      other = s.getArg2();
+      if (iv == null) {
+        iv = baseOf(s.getArg2(), ivs);
+        other = s.getArg1();
+      }
+      break;
+     case SUBTRACT:
+      iv = baseOf(s.getArg1(), ivs);
+      other = s.getArg2();
+      break;
+     default:
+      return null;
+    }
+    if (iv == null || !isInvariant(other, defCounts, hasCall)) {
+      return null;
+    }
+    return iv;
+  }
+
+  /**
+   * Returns whether every use of the target of s in the loop would read
+   * the same value if it were kept in step with the induction variable.
+   */
+  private boolean canReduce(OpStatement s, BasicBlockNode node,
+      Increment iv, BasicBlockNode header, Set<BasicBlockNode> body,
+      List<BasicBlockNode> loop, Liveness live) {
+    TypedDescriptor target = s.getResult();
+    if (live.getBlockItems().get(header).isLiveOnEntrance(target)) {
+      return false;
+    }
+    for (BasicBlockNode b : loop) {
+      for (BasicBlockNode succ : DominatorTree.successors(b)) {
+        if (!body.contains(succ) &&
+            live.getBlockItems().get(succ).isLiveOnEntrance(target)) {
+          return false;
+        }
+      }
+    }
+
+    // Every use must come after s in the same iteration, and if the
+    // increment can run between the two the use must come before it.
+    int pos = node.getStatements().indexOf(s);
+    int incPos = iv.block.getStatements().indexOf(iv.stmt);
+    Set<BasicBlockNode> afterInc = reachable(iv.block, header, body);
+    boolean incFollows = (node == iv.block && pos < incPos) ||
+                         reachable(node, header, body).contains(iv.block);
+    VariableLocation loc = target.getLocation();
+    for (BasicBlockNode b : loop) {
+      List<BasicStatement> stmts = b.getStatements();
+      for (int i = 0; i < stmts.size(); i++) {
+        if (stmts.get(i) == s || !uses(stmts.get(i), loc)) {
+          continue;
+        }
+        if (!dom.dominates(node, b) || (b == node && i < pos)) {
+          return false;
+        }
+        if (incFollows &&
+            (afterInc.contains(b) || (b == iv.block && i > incPos))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the blocks of the loop which can run after the given one
+   * without going back through the header.
+   */
+  private static Set<BasicBlockNode> reachable(BasicBlockNode from,
+      BasicBlockNode header, Set<BasicBlockNode> body) {
+    Set<BasicBlockNode> seen = new HashSet<BasicBlockNode>();
+    List<BasicBlockNode> worklist = new ArrayList<BasicBlockNode>();
+    worklist.add(from);
+    while (!worklist.isEmpty()) {
+      for (BasicBlockNode succ :
+           DominatorTree.successors(worklist.remove(worklist.size() - 1))) {
+        if (succ != header && body.contains(succ) && seen.add(succ)) {
+          worklist.add(succ);
+        }
+      }
+    }
+    return seen;
+  }
+
+  /**
+   * Computes the target of s in the preheader instead, and steps it along
+   * with the induction variable.
+   */
+  private void reduce(OpStatement s, BasicBlockNode node, Increment iv,
+                      BasicBlockNode header, Set<BasicBlockNode> body) {
+    BasicBlockNode preheader = getPreheader(header, body);
+    ASTNode astNode = s.getNode();
+    TypedDescriptor target = s.getResult();
+
+    Argument step = iv.step;
+    if (s.getOp() == AsmOp.MULTIPLY) {
+      Argument factor = isVariable(s.getArg1(), iv.var.getLocation()) ?
+                        s.getArg2() : s.getArg1();
+      if (factor instanceof ConstantArgument &&
+          step instanceof ConstantArgument) {
+        step = Argument.makeArgument(((ConstantArgument) factor).getInt() *
+                                     ((ConstantArgument) step).getInt());
+      } else {
+        TypedDescriptor temp = CFGGenerator.makeTemp(astNode, DecafType.INT);
+        preheader.addStatement(new OpStatement(
+          astNode, AsmOp.MULTIPLY, factor, step, temp));
+        step = Argument.makeArgument(temp);
+      }
+    }
+
+    OpStatement init = new OpStatement(
+      astNode, s.getOp(), s.getArg1(), s.getArg2(), target);
+    preheader.addStatement(init);
+
+    List<BasicStatement> stmts = node.getStatements();
+    stmts.remove(s);
+    node.setStatements(stmts);
+
+    stmts = iv.block.getStatements();
+    stmts.add(stmts.indexOf(iv.stmt) + 1, new OpStatement(
+      astNode, AsmOp.ADD, step, Argument.makeArgument(target), target));
+    iv.block.setStatements(stmts);
+
+    Derivation d = new Derivation();
+    d.base = iv.var;
+    d.op = s.getOp();
+    d.other = isVariable(s.getArg1(), iv.var.getLocation()) ?
+              s.getArg2() : s.getArg1();
+    d.init = init;
+    d.header = header;
+    derivations.put(target.getLocation(), d);
+  }
+
+  /**
+   * Returns the single block outside the loop which enters it, creating
+   * one if there is not already such a block which leads only there.
+   */
+  private BasicBlockNode getPreheader(BasicBlockNode header,
+                                      Set<BasicBlockNode> body) {
+    List<BasicBlockNode> outside = new ArrayList<BasicBlockNode>();
+    for (BasicBlockNode pred : dom.getPredecessors(header)) {
+      if (!body.contains(pred)) {
+        outside.add(pred);
+      }
+    }
+    if (outside.size() == 1 && outside.get(0).getNext() == header &&
+        outside.get(0).getBranchTarget() == null) {
+      return outside.get(0);
+    }
+
+    BasicBlockNode preheader = dom.insertPreheader(header);
+    preheaders.add(preheader);
+    return preheader;
+  }
+
+  /**
+   * Rewrites a loop test on a basic induction variable to test a variable
+   * reduced from it instead, where that lets the original go.  Returns
+   * whether anything changed.
+   */
+  private boolean replaceTest(BasicBlockNode header, Set<BasicBlockNode> body) {
+    List<BasicBlockNode> loop = ordered(body);
+    Map<VariableLocation, Integer> defCounts =
+      new HashMap<VariableLocation, Integer>();
+    Set<BasicStatement> shared = new HashSet<BasicStatement>();
+    boolean hasCall = scan(loop, defCounts, shared);
+    Map<VariableLocation, Increment> ivs = findIncrements(
+      loop, defCounts, hasCall, shared);
+
+    for (BasicBlockNode node : loop) {
+      if (!node.isBranch() ||
+          !(node.getLastStatement() instanceof OpStatement) ||
+          shared.contains(node.getLastStatement())) {
+        continue;
+      }
+      OpStatement test = (OpStatement) node.getLastStatement();
+      if (!isComparison(test.getOp())) {
+        continue;
+      }
+
+      boolean first = true;
+      Increment iv = baseOf(test.getArg1(), ivs);
+      Argument bound = test.getArg2();
+      if (iv == null) {
+        first = false;
+        iv = baseOf(test.getArg2(), ivs);
+        bound = test.getArg1();
+      }
+      if (iv == null || !isInvariant(bound, defCounts, hasCall)) {
+        continue;
+      }
+
+      // Only worthwhile if the original variable is dead once the test no
+      // longer reads it, apart from its own increment.
+      VariableLocation loc = iv.var.getLocation();
+      boolean otherUses = false;
+      for (BasicBlockNode b : loop) {
+        for (BasicStatement s : b.getStatements()) {
+          otherUses |= (s != test && s != iv.stmt && uses(s, loc));
+        }
+      }
+      if (otherUses || isLiveOnExit(iv.var, loop, body)) {
+        continue;
+      }
+
+      for (Map.Entry<VariableLocation, Derivation> e :
+           derivations.entrySet()) {
+        Derivation d = e.getValue();
+        Increment reduced = ivs.get(e.getKey());
+        if (d.header != header || !d.base.getLocation().equals(loc) ||
+            reduced == null || !isInvariant(d.other, defCounts, hasCall) ||
+            !preservesOrder(d, iv, test, first)) {
+          continue;
+        }
+        rewriteTest(test, first, bound, d, reduced, header, body);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Removes the increments of induction variables which nothing else in
+   * the loop reads and which are dead once it exits, such as those left
+   * behind by reducing everything computed from them.  Returns whether
+   * anything changed.
+   */
+  private boolean removeDeadIncrements(Set<BasicBlockNode> body) {
+    List<BasicBlockNode> loop = ordered(body);
+    Map<VariableLocation, Integer> defCounts =
+      new HashMap<VariableLocation, Integer>();
+    Set<BasicStatement> shared = new HashSet<BasicStatement>();
+    boolean hasCall = scan(loop, defCounts, shared);
+    Map<VariableLocation, Increment> ivs = findIncrements(
+      loop, defCounts, hasCall, shared);
+
+    for (Increment iv : ivs.values()) {
+      if (isUsedElsewhere(iv, loop) || isLiveOnExit(iv.var, loop, body)) {
+        continue;
+      }
+      List<BasicStatement> stmts = iv.block.getStatements();
+      stmts.remove(iv.stmt);
+      iv.block.setStatements(stmts);
+      return true;
+    }
+    return false;
+  }
+
+  /** Whether the loop reads the variable other than to increment it. */
+  private static boolean isUsedElsewhere(Increment iv,
+                                         List<BasicBlockNode> loop) {
+    VariableLocation loc = iv.var.getLocation();
+    for (BasicBlockNode b : loop) {
+      for (BasicStatement s : b.getStatements()) {
+        if (s != iv.stmt && uses(s, loc)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether comparing the derived variable against the mapped bound
+   * gives the same answer as the original test.
+   */
+  private boolean preservesOrder(Derivation d, Increment iv,
+                                 OpStatement test, boolean first) {
+    if (d.op == AsmOp.MULTIPLY && !(d.other instanceof ConstantArgument)) {
+      return false;
+    }
+    int factor = (d.op == AsmOp.MULTIPLY) ?
+                 ((ConstantArgument) d.other).getInt() : 1;
+    if (test.getOp() == AsmOp.EQUAL || test.getOp() == AsmOp.NOT_EQUAL) {
+      // Adding and multiplying by an odd number are one to one even where
+      // they wrap around.
+      return (factor & 1) == 1;
+    }
+    if (factor <= 0) {
+      return false;
+    }
+
+    RangeAnalysis ranges = new RangeAnalysis(methodEnter);
+    Range var = testedRange(ranges, d, iv);
+    Range bound = first ? ranges.getArg2Range(test) :
+                          ranges.getArg1Range(test);
+    Range other = d.op == AsmOp.MULTIPLY ? Range.constant(factor) :
+                  isVariable(d.init.getArg1(), d.base.getLocation()) ?
+                  ranges.getArg2Range(d.init) : ranges.getArg1Range(d.init);
+    if (var == null || bound == null || other == null) {
+      return false;
+    }
+    Range values = var.join(bound);
+    Range mapped;
+    switch (d.op) {
+     case ADD:
+      mapped = values.add(other);
+      break;
+     case SUBTRACT:
+      mapped = values.subtract(other);
+      break;
+     default:
+      mapped = values.multiply(other);
+      break;
+    }
+    return !values.isFull() && !mapped.isFull();
+  }
+
+  /**
+   * Returns the range of a basic induction variable wherever the loop reads
+   * it, or null if that is unknown.  Widening leaves the range at the loop
+   * test itself open ended, but each value there either entered the loop,
+   * as the derivation's initial value read it, or came from the increment,
+   * whose operands are narrowed by the test.
+   */
+  private static Range testedRange(RangeAnalysis ranges, Derivation d,
+                                   Increment iv) {
+    VariableLocation loc = d.base.getLocation();
+    Range entering = isVariable(d.init.getArg1(), loc) ?
+                     ranges.getArg1Range(d.init) :
+                     ranges.getArg2Range(d.init);
+    Range before = isVariable(iv.stmt.getArg1(), loc) ?
+                   ranges.getArg1Range(iv.stmt) :
+                   ranges.getArg2Range(iv.stmt);
+    Range step = isVariable(iv.stmt.getArg1(), loc) ?
+                 ranges.getArg2Range(iv.stmt) :
+                 ranges.getArg1Range(iv.stmt);
+    if (entering == null || before == null || step == null) {
+      return null;
+    }
+    Range stepped = (iv.stmt.getOp() == AsmOp.SUBTRACT) ?
+                    before.subtract(step) : before.add(step);
+    return entering.join(stepped);
+  }
+
+  private void rewriteTest(OpStatement test, boolean first, Argument bound,
+      Derivation d, Increment reduced, BasicBlockNode header,
+      Set<BasicBlockNode> body) {
+    BasicBlockNode preheader = getPreheader(header, body);
+    ASTNode astNode = test.getNode();
+    TypedDescriptor temp = CFGGenerator.makeTemp(astNode, DecafType.INT);
+    preheader.addStatement(new OpStatement(astNode, d.op, bound, d.other,
+                                           temp));
+    if (first) {
+      test.setArg1(Argument.makeArgument(reduced.var));
+      test.setArg2(Argument.makeArgument(temp));
+    } else {
+      test.setArg1(Argument.makeArgument(temp));
+      test.setArg2(Argument.makeArgument(reduced.var));
+    }
+  }
+
+  private boolean isLiveOnExit(TypedDescriptor var,
+      List<BasicBlockNode> loop, Set<BasicBlockNode> body) {
+    Liveness live = new Liveness(methodEnter);
+    for (BasicBlockNode b : loop) {
+      for (BasicBlockNode succ : DominatorTree.successors(b)) {
+        if (!body.contains(succ) &&
+            live.getBlockItems().get(succ).isLiveOnEntrance(var)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isComparison(AsmOp op) {
+    switch (op) {
+     case EQUAL:
+     case NOT_EQUAL:
+     case LESS_THAN:
+     case LESS_OR_EQUAL:
+     case GREATER_THAN:
+     case GREATER_OR_EQUAL:
+      return true;
+     default:
+      return false;
+    }
+  }
+
+  /** Whether a statement's result may be kept as an induction variable. */
+  private static boolean isReducible(TypedDescriptor target) {
+    return target != null && target.getType() != null &&
+           DecafType.simplify(target.getType()) == DecafType.INT &&
+           target.getLocation().getLocationType() == LocationType.STACK;
+  }
+
+  private static Increment baseOf(Argument arg,
+                                  Map<VariableLocation, Increment> ivs) {
+    if (!(arg instanceof VariableArgument) ||
+        arg instanceof ArrayVariableArgument) {
+      return null;
+    }
+    return ivs.get(arg.getDesc().getLocation());
+  }
+
+  private static boolean isVariable(Argument arg, VariableLocation loc) {
+    return arg instanceof VariableArgument &&
+           !(arg instanceof ArrayVariableArgument) &&
+           arg.getDesc().getLocation().equals(loc);
+  }
+
+  /** Whether arg has the same value throughout the loop. */
+  private static boolean isInvariant(Argument arg,
+      Map<VariableLocation, Integer> defCounts, boolean hasCall) {
+    if (arg instanceof ConstantArgument) {
+      return true;
+    }
+    if (!(arg instanceof VariableArgument) ||
+        arg instanceof ArrayVariableArgument) {
+      return false;
+    }
+    VariableLocation loc = arg.getDesc().getLocation();
+    if (loc.getLocationType() == LocationType.GLOBAL && hasCall) {
+      return false;
+    }
+    return !defCounts.containsKey(loc);
+  }
+
+  private static boolean uses(BasicStatement s, VariableLocation loc) {
+    for (TypedDescriptor var : SsaForm.usedVariables(s)) {
+      if (var.getLocation().equals(loc)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the location s assigns to, if any.
+   */
+  private static VariableLocation getTarget(BasicStatement s) {
+    if (s instanceof OpStatement) {
+      OpStatement op = (OpStatement) s;
+      switch (op.getOp()) {
+        case MOVE:
+          return op.getArg2().getDesc().getLocation();
+        case RETURN:
+        case ENTER:
+        case PUSH:
+          return null;
+        default:
+          break;
+      }
+    }
+    if (s.getResult() == null) {
+      return null;
+    }
+    return s.getResult().getLocation();
+  }
+}
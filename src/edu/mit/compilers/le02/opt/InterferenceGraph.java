@@ -1,23 +1,87 @@
 package edu.mit.compilers.le02.opt;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.Stack;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
+/**
+ * An interference graph over webs, colored by Chaitin-Briggs allocation.
+ *
+ * Nodes are numbered densely in the order they are added, which keeps the
+ * coloring deterministic.  Interference is kept both as a triangular bit
+ * matrix, for constant time queries, and as per-node adjacency arrays, for
+ * walking the neighbors.  The simplify phase keeps the remaining nodes in
+ * buckets by degree, so that it runs in time linear in the size of the
+ * graph apart from the spill choices.
+ */
 public class InterferenceGraph {
-  // Trying to keep things deterministic
-  private SortedMap<Web, IGNode> nodes = new TreeMap<Web, IGNode>();
+  private Map<Web, IGNode> webNodes = new HashMap<Web, IGNode>();
+
+  // All nodes, including precolored ones, indexed by id
+  private List<IGNode> nodes = new ArrayList<IGNode>();
+
+  // Nodes standing for physical registers, by color
+  private SortedMap<Integer, IGNode> precolored =
+    new TreeMap<Integer, IGNode>();
+
+  // Pairs of nodes which would like the same color, most important first
+  private List<IGNode[]> moves = new ArrayList<IGNode[]>();
+
+  // Lower triangle of the adjacency matrix; see bitIndex
+  private long[] matrix = new long[1];
+
+  // Colors whose registers survive calls
+  private int[] calleeSavedColors = new int[0];
 
   public boolean isEmpty() {
-    return nodes.isEmpty();
+    return webNodes.isEmpty();
   }
 
   public void addNode(Web web) {
-    nodes.put(web, new IGNode(web));
+    if (!webNodes.containsKey(web)) {
+      webNodes.put(web, newNode(web));
+    }
+  }
+
+  private IGNode newNode(Web web) {
+    IGNode node = new IGNode(nodes.size(), web);
+    nodes.add(node);
+
+    long bits = bitIndex(node.id, 0) + node.id;
+    int words = (int) (bits / 64) + 1;
+    if (words > matrix.length) {
+      long[] grown = new long[Math.max(words, 2 * matrix.length)];
+      System.arraycopy(matrix, 0, grown, 0, matrix.length);
+      matrix = grown;
+    }
+    return node;
+  }
+
+  private static long bitIndex(int i, int j) {
+    if (i < j) {
+      int t = i;
+      i = j;
+      j = t;
+    }
+    return (long) i * (i - 1) / 2 + j;
+  }
+
+  private boolean interferes(IGNode a, IGNode b) {
+    long bit = bitIndex(a.id, b.id);
+    return (matrix[(int) (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  private void addEdge(IGNode a, IGNode b) {
+    if (a == b || interferes(a, b)) {
+      return;
+    }
+    long bit = bitIndex(a.id, b.id);
+    matrix[(int) (bit >>> 6)] |= 1L << bit;
+    a.addNeighbor(b);
+    b.addNeighbor(a);
   }
 
   public void linkNodes(Web w1, Web w2) {
@@ -26,154 +90,407 @@ public class InterferenceGraph {
     }
 
     IGNode n1, n2;
-    n1 = nodes.get(w1);
-    n2 = nodes.get(w2);
+    n1 = webNodes.get(w1);
+    n2 = webNodes.get(w2);
+    if (n1 == null || n2 == null) {
+      // Webs left out of the graph live in memory and need no register.
+      return;
+    }
+    addEdge(n1, n2);
+  }
 
-    n1.addNeighbor(n2);
-    n2.addNeighbor(n1);
+  /**
+   * Records that the two webs are joined by a move, so giving them the same
+   * color would make the move redundant.  Moves should be added in order of
+   * importance, since earlier ones are coalesced first.
+   */
+  public void addMove(Web w1, Web w2) {
+    IGNode n1 = webNodes.get(w1);
+    IGNode n2 = webNodes.get(w2);
+    if (n1 != null && n2 != null && n1 != n2) {
+      moves.add(new IGNode[] { n1, n2 });
+    }
   }
 
-  private IGNode removeLowestDegree() {
-    int min = Integer.MAX_VALUE;
-    IGNode minNode = null;
-    for (IGNode node : nodes.values()) {
-      if (node.wasRemoved()) {
-        continue;
-      }
-      if (node.getDegree() < min) {
-        min = node.getDegree();
-        minNode = node;
-      }
+  /**
+   * Records that the web should be given the given color, which stands for
+   * a fixed register.  The web is joined to a precolored node for the
+   * register as if by a move.
+   */
+  public void addPreference(Web web, int color) {
+    IGNode node = webNodes.get(web);
+    if (node != null) {
+      moves.add(new IGNode[] { getPrecolored(color), node });
     }
+  }
 
-    minNode.simulateRemove();
-    return minNode;
+  /**
+   * Records that the web may not be given the given color, because the
+   * register it stands for is overwritten while the web is live.
+   */
+  public void addRegisterConflict(Web web, int color) {
+    IGNode node = webNodes.get(web);
+    if (node != null) {
+      addEdge(getPrecolored(color), node);
+    }
   }
 
-  private int colorNode(IGNode node) {
-    HashSet<Integer> colors = new HashSet<Integer>();
-    for (IGNode n : node.getNeighbors()) {
-      colors.add(n.getColor());
+  /**
+   * Sets the colors which stand for callee-saved registers.  Webs live
+   * across calls try these first, as they need not be saved around each
+   * call; other webs try them last, to leave them for the webs which do.
+   */
+  public void setCalleeSavedColors(int[] colors) {
+    calleeSavedColors = colors.clone();
+  }
+
+  /** Records that the web is live across a call. */
+  public void addCallCrossing(Web web) {
+    IGNode node = webNodes.get(web);
+    if (node != null) {
+      node.acrossCalls = true;
     }
+  }
 
-    int color = 0;
-    while (colors.contains(color)) {
-      color++;
+  private IGNode getPrecolored(int color) {
+    IGNode node = precolored.get(color);
+    if (node == null) {
+      node = newNode(new Web(-1 - color, null, null));
+      node.precolored = true;
+      node.color = color;
+      node.members.clear();
+      // Registers always differ from each other.
+      for (IGNode other : precolored.values()) {
+        addEdge(node, other);
+      }
+      precolored.put(color, node);
     }
+    return node;
+  }
 
-    node.setColor(color);
-    return color;
+  private boolean isSignificant(IGNode node, int k) {
+    return node.precolored || node.degree >= k;
   }
 
-  public int colorGraph() {
-    Stack<IGNode> stack = new Stack<IGNode>();
-    int numColors = 0;
+  /**
+   * Conservatively coalesces the recorded moves, so that no coalescing can
+   * turn a k-colorable graph into one which is not.  Two webs are merged
+   * under Briggs' test: the merged node has fewer than k neighbors of
+   * significant degree.  A web is merged into a register under George's
+   * test: each of its neighbors already interferes with the register or
+   * has insignificant degree.
+   */
+  private void coalesce(int k, boolean[] calleeSaved) {
+    for (IGNode[] move : moves) {
+      IGNode a = move[0].find();
+      IGNode b = move[1].find();
+      if (b.precolored) {
+        IGNode t = a;
+        a = b;
+        b = t;
+      }
+      if (a == b || b.precolored || interferes(a, b)) {
+        continue;
+      }
+      // A web live across calls is better off in a callee-saved register
+      // than in one which must be saved around every call.
+      if (a.precolored && b.acrossCalls &&
+          (a.color >= k || !calleeSaved[a.color])) {
+        continue;
+      }
+
+      boolean ok = true;
+      if (a.precolored) {
+        for (int i = 0; i < b.numAdj && ok; i++) {
+          IGNode t = nodes.get(b.adj[i]);
+          if (t.alias == null && !interferes(t, a) && isSignificant(t, k)) {
+            ok = false;
+          }
+        }
+      } else {
+        int significant = 0;
+        for (int i = 0; i < a.numAdj; i++) {
+          IGNode t = nodes.get(a.adj[i]);
+          if (t.alias == null && isSignificant(t, k)) {
+            significant++;
+          }
+        }
+        for (int i = 0; i < b.numAdj; i++) {
+          IGNode t = nodes.get(b.adj[i]);
+          if (t.alias == null && !interferes(t, a) && isSignificant(t, k)) {
+            significant++;
+          }
+        }
+        ok = significant < k;
+      }
 
-    for (int i = 0; i < nodes.size(); i++) {
-      stack.push(removeLowestDegree());
+      if (ok) {
+        merge(a, b);
+      }
     }
+  }
 
-    int color;
-    while (!stack.empty()) {
-      color = colorNode(stack.pop());
-      if (color >= numColors) {
-        numColors = color + 1;
+  /**
+   * Coalesces node b into node a, which takes over its webs and its
+   * neighbors.
+   */
+  private void merge(IGNode a, IGNode b) {
+    b.alias = a;
+    b.removed = true;
+    a.members.addAll(b.members);
+    a.acrossCalls |= b.acrossCalls;
+    for (int i = 0; i < b.numAdj; i++) {
+      IGNode n = nodes.get(b.adj[i]);
+      if (n.alias != null) {
+        continue;
+      }
+      if (interferes(a, n)) {
+        n.degree--;
+      } else {
+        // n trades b for a, so only a's degree changes.
+        long bit = bitIndex(a.id, n.id);
+        matrix[(int) (bit >>> 6)] |= 1L << bit;
+        a.addNeighbor(n);
+        n.adjAppend(a.id);
       }
     }
-    return numColors;
+    b.degree = 0;
   }
 
-  public static class IGNode implements Comparable<IGNode> {
-    private Web web;
-    private int color = -1;
-    private int degree = 0;
-    private boolean removed = false;
-    // Trying to keep things deterministic
-    private SortedSet<IGNode> neighbors = new TreeSet<IGNode>();
+  /**
+   * Picks the node which is cheapest to spill for the register pressure it
+   * relieves, i.e. the one with the lowest cost per neighbor.
+   */
+  private IGNode spillCandidate(IGNode[] buckets, int minDegree,
+                                long[] nodeCosts) {
+    IGNode best = null;
+    double bestRatio = Double.MAX_VALUE;
+    for (int d = minDegree; d < buckets.length; d++) {
+      for (IGNode node = buckets[d]; node != null; node = node.next) {
+        double ratio = (double) nodeCosts[node.id] / node.degree;
+        if (best == null || ratio < bestRatio) {
+          best = node;
+          bestRatio = ratio;
+        }
+      }
+    }
+    return best;
+  }
 
-    public IGNode(Web web) {
-      this.web = web;
+  private static void bucketAdd(IGNode[] buckets, IGNode node) {
+    node.prev = null;
+    node.next = buckets[node.degree];
+    if (node.next != null) {
+      node.next.prev = node;
     }
+    buckets[node.degree] = node;
+  }
 
-    public void reset() {
-      removed = false;
-      degree = neighbors.size();
+  private static void bucketRemove(IGNode[] buckets, IGNode node) {
+    if (node.prev != null) {
+      node.prev.next = node.next;
+    } else {
+      buckets[node.degree] = node.next;
+    }
+    if (node.next != null) {
+      node.next.prev = node.prev;
     }
+  }
 
-    public boolean wasRemoved() {
-      return removed;
+  private int colorNode(IGNode node, int k, int[] colorStamp,
+                        boolean[] calleeSaved) {
+    // Mark the colors taken by neighbors with this node's id, so the
+    // bitmap never needs clearing.
+    int stamp = node.id + 1;
+    for (int i = 0; i < node.numAdj; i++) {
+      int c = nodes.get(node.adj[i]).color;
+      if (c >= 0 && c < k) {
+        colorStamp[c] = stamp;
+      }
     }
 
-    public int getDegree() {
-      return degree;
+    // Prefer a color which makes one of the remaining moves redundant.
+    for (IGNode other : node.partners) {
+      int c = other.color;
+      if (c >= 0 && c < k && colorStamp[c] != stamp &&
+          (!node.acrossCalls || calleeSaved[c])) {
+        node.setColor(c);
+        return c;
+      }
     }
 
-    public int getColor() {
-      return color;
+    // Otherwise take the first free color of the right kind, if any.
+    int color = -1;
+    for (int pass = 0; pass < 2 && color < 0; pass++) {
+      boolean wantCallee = node.acrossCalls == (pass == 0);
+      for (int c = 0; c < k; c++) {
+        if (calleeSaved[c] == wantCallee && colorStamp[c] != stamp) {
+          color = c;
+          break;
+        }
+      }
     }
+    node.setColor(color);
+    return color;
+  }
 
-    public Web getWeb() {
-      return web;
+  /**
+   * Colors the graph with at most k colors.  Moves are coalesced first, then
+   * the graph is colored using Briggs' optimistic coloring: when every
+   * remaining node has k or more neighbors, the one cheapest to spill is
+   * pushed anyway, in the hope that its neighbors end up sharing colors.
+   * Webs which still find no free color are left with color -1 and returned
+   * as the actual spills.
+   *
+   * @param k The number of colors available
+   * @param costs The spill cost of every web in the graph
+   */
+  public List<Web> colorGraph(int k, Map<Web, Long> costs) {
+    boolean[] calleeSaved = new boolean[k];
+    for (int c : calleeSavedColors) {
+      if (c >= 0 && c < k) {
+        calleeSaved[c] = true;
+      }
     }
+    coalesce(k, calleeSaved);
 
-    public void setColor(int color) {
-      this.color = color;
-      this.web.setColor(color);
+    int maxDegree = 0;
+    int remaining = 0;
+    long[] nodeCosts = new long[nodes.size()];
+    for (IGNode node : nodes) {
+      if (node.removed || node.precolored) {
+        continue;
+      }
+      remaining++;
+      maxDegree = Math.max(maxDegree, node.degree);
+      long cost = 0;
+      for (Web w : node.members) {
+        cost += Math.min(costs.get(w), Long.MAX_VALUE - cost);
+      }
+      nodeCosts[node.id] = cost;
     }
 
-    public Set<IGNode> getNeighbors() {
-      return neighbors;
+    IGNode[] buckets = new IGNode[maxDegree + 1];
+    for (int i = nodes.size() - 1; i >= 0; i--) {
+      IGNode node = nodes.get(i);
+      if (!node.removed && !node.precolored) {
+        bucketAdd(buckets, node);
+      }
     }
 
-    public void addNeighbor(IGNode node) {
-      if (neighbors.contains(node)) {
-        return;
+    IGNode[] stack = new IGNode[remaining];
+    int minDegree = 0;
+    for (int i = 0; i < remaining; i++) {
+      while (buckets[minDegree] == null) {
+        minDegree++;
       }
+      IGNode node = buckets[minDegree];
+      if (minDegree >= k) {
+        node = spillCandidate(buckets, minDegree, nodeCosts);
+      }
+      bucketRemove(buckets, node);
+      node.removed = true;
+      stack[i] = node;
+
+      for (int j = 0; j < node.numAdj; j++) {
+        IGNode n = nodes.get(node.adj[j]);
+        if (n.removed || n.precolored) {
+          continue;
+        }
+        bucketRemove(buckets, n);
+        n.degree--;
+        bucketAdd(buckets, n);
+      }
+      // Removing one node lowers the minimum degree by at most one.
+      if (minDegree > 0) {
+        minDegree--;
+      }
+    }
 
-      neighbors.add(node);
-      degree += 1;
+    // The moves which were not coalesced can still bias the choice of colors.
+    for (IGNode[] move : moves) {
+      IGNode a = move[0].find();
+      IGNode b = move[1].find();
+      if (a != b) {
+        a.partners.add(b);
+        b.partners.add(a);
+      }
     }
 
-    public void simulateRemoveNeighbor(IGNode node) {
-      if (!neighbors.contains(node)) {
-        return;
+    List<Web> spilled = new ArrayList<Web>();
+    int[] colorStamp = new int[k];
+    for (int i = remaining - 1; i >= 0; i--) {
+      IGNode node = stack[i];
+      if (colorNode(node, k, colorStamp, calleeSaved) < 0) {
+        spilled.addAll(node.members);
       }
+    }
 
-      degree -= 1;
+    // Webs merged into a register take its color.
+    for (IGNode node : precolored.values()) {
+      node.setColor(node.color);
     }
+    return spilled;
+  }
 
-    public void simulateRemove() {
-      for (IGNode n : neighbors) {
-        n.simulateRemoveNeighbor(this);
-      }
-      removed = true;
+  private static class IGNode {
+    private final int id;
+    private int color = -1;
+    // The number of live neighbors
+    private int degree = 0;
+    private boolean removed = false;
+    private boolean precolored = false;
+    private boolean acrossCalls = false;
+    // The node this one was coalesced into, if any
+    private IGNode alias = null;
+    // The webs colored by this node, including those coalesced into it
+    private List<Web> members = new ArrayList<Web>();
+    // Nodes joined to this one by moves which were not coalesced
+    private List<IGNode> partners = new ArrayList<IGNode>();
+
+    // Ids of the neighbors, which may include nodes since coalesced away
+    private int[] adj = new int[4];
+    private int numAdj = 0;
+
+    // Links in the degree bucket while simplifying
+    private IGNode prev, next;
+
+    public IGNode(int id, Web web) {
+      this.id = id;
+      members.add(web);
     }
 
-    @Override
-    public String toString() {
-      return "NODE\ndegree: " + getDegree() + "\n"
-           + "color: " + color + "\n"
-           + "removed: " + removed + "\n"
-           + "# neighbors: " + neighbors.size() + "\n";
+    public IGNode find() {
+      return (alias == null) ? this : alias.find();
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) return true;
-      if (!(o instanceof IGNode)) return false;
-      IGNode other = (IGNode) o;
-      return this.web.equals(other.web);
+    public void setColor(int color) {
+      this.color = color;
+      for (Web w : members) {
+        w.setColor(color);
+      }
     }
 
-    @Override
-    public int hashCode() {
-      return this.web.hashCode();
+    public void addNeighbor(IGNode node) {
+      adjAppend(node.id);
+      degree += 1;
     }
 
-    @Override
-    public int compareTo(IGNode node) {
-      return this.web.compareTo(node.web);
+    public void adjAppend(int neighbor) {
+      if (numAdj == adj.length) {
+        int[] grown = new int[2 * adj.length];
+        System.arraycopy(adj, 0, grown, 0, numAdj);
+        adj = grown;
+      }
+      adj[numAdj++] = neighbor;
     }
 
+    @Override
+    public String toString() {
+      return "NODE\ndegree: " + degree + "\n"
+           + "color: " + color + "\n"
+           + "removed: " + removed + "\n"
+           + "# neighbors: " + numAdj + "\n";
+    }
   };
 }
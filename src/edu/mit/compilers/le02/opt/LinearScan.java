@@ -0,0 +1,120 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Allocates registers to webs by a linear scan over their live intervals,
+ * after Poletto and Sarkar.  Each web is given the hull of the positions at
+ * which it is live in a fixed order of the statements, and the intervals
+ * are handed registers in order of their start.  When none is free, the
+ * interval ending last is spilled.  This is much cheaper than building and
+ * coloring an interference graph, at the price of some spills which
+ * coloring would avoid, so it suits very large methods.
+ */
+public class LinearScan {
+  /** The positions at which a web is live, and the color it gets. */
+  public static class Interval implements Comparable<Interval> {
+    private final Web web;
+    private final int preferredColor;
+    private int start = Integer.MAX_VALUE;
+    private int end = Integer.MIN_VALUE;
+    private int color = -1;
+
+    public Interval(Web web, int preferredColor) {
+      this.web = web;
+      this.preferredColor = preferredColor;
+    }
+
+    /** Widens the interval to include the given position. */
+    public void extend(int pos) {
+      start = Math.min(start, pos);
+      end = Math.max(end, pos);
+    }
+
+    public Web getWeb() {
+      return web;
+    }
+
+    public int getStart() {
+      return start;
+    }
+
+    public int getEnd() {
+      return end;
+    }
+
+    @Override
+    public int compareTo(Interval other) {
+      if (start != other.start) {
+        return (start < other.start) ? -1 : 1;
+      }
+      return web.compareTo(other.web);
+    }
+  }
+
+  private LinearScan() {
+  }
+
+  /**
+   * Gives each interval's web one of k colors, so that no two overlapping
+   * intervals share a color.  An interval gets its preferred color when that
+   * is free.  Returns the webs which were spilled; they get color -1.
+   */
+  public static List<Web> allocate(Collection<Interval> intervals, int k) {
+    List<Interval> sorted = new ArrayList<Interval>(intervals);
+    Collections.sort(sorted);
+
+    // Active intervals, ordered by increasing end.
+    List<Interval> active = new ArrayList<Interval>();
+    boolean[] used = new boolean[k];
+    List<Web> spilled = new ArrayList<Web>();
+
+    for (Interval cur : sorted) {
+      while (!active.isEmpty() && active.get(0).end < cur.start) {
+        used[active.remove(0).color] = false;
+      }
+
+      if (active.size() == k) {
+        Interval last = active.get(active.size() - 1);
+        if (last.end > cur.end) {
+          cur.color = last.color;
+          last.color = -1;
+          active.remove(active.size() - 1);
+          spilled.add(last.web);
+          addActive(active, cur);
+        } else {
+          spilled.add(cur.web);
+        }
+        continue;
+      }
+
+      if (cur.preferredColor >= 0 && cur.preferredColor < k &&
+          !used[cur.preferredColor]) {
+        cur.color = cur.preferredColor;
+      } else {
+        cur.color = 0;
+        while (used[cur.color]) {
+          cur.color++;
+        }
+      }
+      used[cur.color] = true;
+      addActive(active, cur);
+    }
+
+    for (Interval i : sorted) {
+      i.web.setColor(i.color);
+    }
+    return spilled;
+  }
+
+  private static void addActive(List<Interval> active, Interval cur) {
+    int i = active.size();
+    while (i > 0 && active.get(i - 1).end > cur.end) {
+      i--;
+    }
+    active.add(i, cur);
+  }
+}
@@ -0,0 +1,344 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.VariableLocation;
+import edu.mit.compilers.le02.VariableLocation.LocationType;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.ArrayVariableArgument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.ConstantArgument;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.VariableArgument;
+import edu.mit.compilers.le02.dfa.Liveness;
+import edu.mit.compilers.le02.dfa.ReachingDefinitions;
+import edu.mit.compilers.le02.ssa.DominatorTree;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Moves loop-invariant computations out of the natural loops of a method.
+ *
+ * Loops are found from the back edges of the dominator tree, and handled
+ * innermost first so that anything hoisted into an inner loop's preheader
+ * can then be hoisted out of the enclosing loop too.  A statement is
+ * invariant if each operand is a constant, is never defined in the loop,
+ * or is reached only by a single invariant definition.  It is hoisted into
+ * the preheader if it is the only definition of its target in the loop,
+ * the target is not live into the loop, and either its block dominates
+ * every loop exit or the target is dead once the loop is left.  Only
+ * arithmetic which cannot fault is hoisted, since the preheader runs even
+ * when the original statement would not have.
+ */
+public class LoopInvariantCodeMotion {
+  private final BasicBlockNode methodEnter;
+
+  private DominatorTree dom;
+  /** Body of the natural loop belonging to each header. */
+  private Map<BasicBlockNode, Set<BasicBlockNode>> loops;
+
+  private LoopInvariantCodeMotion(BasicBlockNode methodEnter) {
+    this.methodEnter = methodEnter;
+  }
+
+  /**
+   * Hoists loop-invariant code out of every loop in the method, returning
+   * the preheader blocks which were created to hold it.
+   */
+  public static List<BasicBlockNode> hoistInvariants(
+      BasicBlockNode methodEnter) {
+    LoopInvariantCodeMotion licm = new LoopInvariantCodeMotion(methodEnter);
+    List<BasicBlockNode> preheaders = new ArrayList<BasicBlockNode>();
+    Set<BasicBlockNode> done = new HashSet<BasicBlockNode>();
+
+    // Each preheader changes the shape of the graph, so the loops are found
+    // again after every one is processed.
+    while (true) {
+      licm.findLoops();
+      BasicBlockNode header = null;
+      for (BasicBlockNode h : licm.loops.keySet()) {
+        if (done.contains(h)) {
+          continue;
+        }
+        if (header == null ||
+            licm.loops.get(h).size() < licm.loops.get(header).size()) {
+          header = h;
+        }
+      }
+      if (header == null) {
+        break;
+      }
+      done.add(header);
+
+      BasicBlockNode preheader = licm.hoist(header, licm.loops.get(header));
+      if (preheader != null) {
+        preheaders.add(preheader);
+      }
+    }
+    return preheaders;
+  }
+
+  /**
+   * Finds the natural loops of the method from its dominator tree.
+   */
+  private void findLoops() {
+    dom = new DominatorTree(methodEnter);
+    loops = dom.naturalLoops();
+  }
+
+  /**
+   * Hoists what can be hoisted out of a single loop, returning the new
+   * preheader or null if nothing moved.
+   */
+  private BasicBlockNode hoist(BasicBlockNode header,
+                               Set<BasicBlockNode> body) {
+    if (header == methodEnter) {
+      // There is nowhere to hoist to; see DominatorTree.insertPreheader.
+      return null;
+    }
+
+    // Keep the loop's blocks in a fixed order so that output is stable.
+    List<BasicBlockNode> loop = new ArrayList<BasicBlockNode>();
+    for (BasicBlockNode node : dom.getBlocks()) {
+      if (body.contains(node)) {
+        loop.add(node);
+      }
+    }
+
+    Map<VariableLocation, Integer> defCounts =
+      new HashMap<VariableLocation, Integer>();
+    boolean hasCall = false;
+    for (BasicBlockNode node : loop) {
+      for (BasicStatement s : node.getStatements()) {
+        if (s instanceof CallStatement) {
+          hasCall = true;
+        }
+        VariableLocation target = getTarget(s);
+        if (target != null) {
+          Integer count = defCounts.get(target);
+          defCounts.put(target, (count == null) ? 1 : count + 1);
+        }
+      }
+    }
+
+    ReachingDefinitions rd = new ReachingDefinitions(methodEnter);
+    Liveness live = new Liveness(methodEnter);
+    ReachingDefinitions.removeFakeDefs(methodEnter);
+
+    // Find the invariant statements, in an order in which each one comes
+    // after the invariant definitions it depends on.
+    Map<OpStatement, List<BasicStatement>> invariant =
+      new LinkedHashMap<OpStatement, List<BasicStatement>>();
+    Map<OpStatement, BasicBlockNode> owner =
+      new HashMap<OpStatement, BasicBlockNode>();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (BasicBlockNode node : loop) {
+        List<BasicStatement> stmts = node.getStatements();
+        for (int i = 0; i < stmts.size(); i++) {
+          if (!(stmts.get(i) instanceof OpStatement)) {
+            continue;
+          }
+          OpStatement s = (OpStatement) stmts.get(i);
+          if (invariant.containsKey(s) || !isCandidate(node, s)) {
+            continue;
+          }
+
+          List<BasicStatement> deps = new ArrayList<BasicStatement>();
+          if (isInvariant(s.getArg1(), node, stmts, i, rd, defCounts,
+                          hasCall, invariant, deps) &&
+              isInvariant(s.getOp() == OpStatement.AsmOp.MOVE ?
+                            null : s.getArg2(),
+                          node, stmts, i, rd, defCounts, hasCall,
+                          invariant, deps)) {
+            invariant.put(s, deps);
+            owner.put(s, node);
+            changed = true;
+          }
+        }
+      }
+    }
+
+    // Blocks which leave the loop, and the blocks they leave to.
+    List<BasicBlockNode> exiting = new ArrayList<BasicBlockNode>();
+    List<BasicBlockNode> exits = new ArrayList<BasicBlockNode>();
+    for (BasicBlockNode node : loop) {
+      for (BasicBlockNode succ : DominatorTree.successors(node)) {
+        if (!body.contains(succ)) {
+          exiting.add(node);
+          exits.add(succ);
+        }
+      }
+    }
+
+    Liveness.BlockItem headerLive = live.getBlockItems().get(header);
+    List<OpStatement> hoisted = new ArrayList<OpStatement>();
+    for (Map.Entry<OpStatement, List<BasicStatement>> e :
+         invariant.entrySet()) {
+      OpStatement s = e.getKey();
+      TypedDescriptor target = s.getTarget().getDesc();
+      if (defCounts.get(target.getLocation()) != 1 ||
+          !hoisted.containsAll(e.getValue()) ||
+          headerLive.isLiveOnEntrance(target)) {
+        continue;
+      }
+
+      boolean dominatesExits = true;
+      for (BasicBlockNode node : exiting) {
+        dominatesExits &= dom.dominates(owner.get(s), node);
+      }
+      if (!dominatesExits) {
+        boolean liveOut = false;
+        for (BasicBlockNode node : exits) {
+          liveOut |= live.getBlockItems().get(node).isLiveOnEntrance(target);
+        }
+        if (liveOut) {
+          continue;
+        }
+      }
+      hoisted.add(s);
+    }
+
+    if (hoisted.isEmpty()) {
+      return null;
+    }
+
+    for (BasicBlockNode node : loop) {
+      List<BasicStatement> stmts = node.getStatements();
+      if (stmts.removeAll(hoisted)) {
+        node.setStatements(stmts);
+      }
+    }
+
+    BasicBlockNode preheader = dom.insertPreheader(header);
+    for (OpStatement s : hoisted) {
+      preheader.addStatement(s);
+    }
+    return preheader;
+  }
+
+  /**
+   * Returns whether s computes something that may be hoisted, regardless
+   * of its operands.
+   */
+  private static boolean isCandidate(BasicBlockNode node, OpStatement s) {
+    if (node.isBranch() && s == node.getLastStatement()) {
+      return false;
+    }
+
+    switch (s.getOp()) {
+      case MOVE:
+        if (s.getArg1() instanceof ArrayVariableArgument ||
+            s.getArg2() instanceof ArrayVariableArgument) {
+          return false;
+        }
+        break;
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case UNARY_MINUS:
+      case NOT:
+        break;
+      case DIVIDE:
+      case MODULO:
+        // Only divisions which can never trap are moved.
+        if (!(s.getArg2() instanceof ConstantArgument)) {
+          return false;
+        }
+        int divisor = ((ConstantArgument) s.getArg2()).getInt();
+        if (divisor == 0 || divisor == -1) {
+          return false;
+        }
+        break;
+      default:
+        return false;
+    }
+
+    TypedDescriptor target = s.getTarget().getDesc();
+    return target != null && target.getType() != null &&
+           !target.getType().isArray() &&
+           target.getLocation().getLocationType() == LocationType.STACK;
+  }
+
+  /**
+   * Returns whether arg has the same value on every iteration of the loop
+   * at statement pos of node.  Invariant loop statements which it depends
+   * on are added to deps.
+   */
+  private static boolean isInvariant(
+      Argument arg, BasicBlockNode node, List<BasicStatement> stmts, int pos,
+      ReachingDefinitions rd, Map<VariableLocation, Integer> defCounts,
+      boolean hasCall, Map<OpStatement, List<BasicStatement>> invariant,
+      List<BasicStatement> deps) {
+    if (arg == null || arg instanceof ConstantArgument) {
+      return true;
+    }
+    if (!(arg instanceof VariableArgument) ||
+        arg instanceof ArrayVariableArgument) {
+      return false;
+    }
+
+    VariableLocation loc = arg.getDesc().getLocation();
+    if (loc.getLocationType() == LocationType.GLOBAL && hasCall) {
+      return false;
+    }
+    if (!defCounts.containsKey(loc)) {
+      return true;
+    }
+
+    // Defined in the loop; it must be reached only by an invariant
+    // definition.
+    Collection<BasicStatement> defs = null;
+    for (int i = pos - 1; i >= 0; i--) {
+      if (loc.equals(getTarget(stmts.get(i)))) {
+        defs = new ArrayList<BasicStatement>();
+        defs.add(stmts.get(i));
+        break;
+      }
+    }
+    if (defs == null) {
+      defs = rd.getDefinitions(node).getReachingDefinitions(loc);
+    }
+    if (defs.size() != 1) {
+      return false;
+    }
+    BasicStatement def = defs.iterator().next();
+    if (!invariant.containsKey(def)) {
+      return false;
+    }
+    deps.add(def);
+    return true;
+  }
+
+  /**
+   * Returns the location s assigns to, if any.
+   */
+  private static VariableLocation getTarget(BasicStatement s) {
+    if (s instanceof OpStatement) {
+      OpStatement op = (OpStatement) s;
+      switch (op.getOp()) {
+        case MOVE:
+          return op.getArg2().getDesc().getLocation();
+        case RETURN:
+        case ENTER:
+        case PUSH:
+          return null;
+        default:
+          break;
+      }
+    }
+    if (s.getResult() == null) {
+      return null;
+    }
+    return s.getResult().getLocation();
+  }
+}
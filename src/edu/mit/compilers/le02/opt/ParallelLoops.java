@@ -0,0 +1,484 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.ast.ASTNodeVisitor;
+import edu.mit.compilers.le02.ast.ArrayLocationNode;
+import edu.mit.compilers.le02.ast.AssignNode;
+import edu.mit.compilers.le02.ast.BreakNode;
+import edu.mit.compilers.le02.ast.ExpressionNode;
+import edu.mit.compilers.le02.ast.ForNode;
+import edu.mit.compilers.le02.ast.IntNode;
+import edu.mit.compilers.le02.ast.MethodCallNode;
+import edu.mit.compilers.le02.ast.ReturnNode;
+import edu.mit.compilers.le02.ast.ScalarLocationNode;
+import edu.mit.compilers.le02.ast.SystemCallNode;
+import edu.mit.compilers.le02.cfg.CFGGenerator;
+import edu.mit.compilers.le02.symboltable.FieldDescriptor;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.ParamDescriptor;
+import edu.mit.compilers.le02.symboltable.SymbolTable;
+import edu.mit.compilers.le02.symboltable.SymbolTable.SymbolType;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Finds for loops whose iterations may run concurrently.
+ *
+ * A loop qualifies when its body makes no calls, does not return or break
+ * out of it, and only assigns scalars declared inside the body.  Every
+ * array index in the body must be affine: a polynomial in loop-invariant
+ * scalars, linear in the loop variable and in the variables of nested
+ * loops with invariant bounds.  Each array written in the loop must be
+ * indexed with the same stride s of the loop variable everywhere, and each
+ * access must stay within [s*i, s*i + s - 1], so that no two iterations
+ * touch the same element.
+ *
+ * The conditions which can't be decided at compile time, along with bounds
+ * checks for every access over the whole iteration range, are returned as
+ * guards: polynomials which must all be non-negative for the parallel
+ * version to be used.  Only the outermost qualifying loops are reported.
+ */
+public class ParallelLoops extends ASTNodeVisitor<Boolean> {
+  /** Loops with a constant trip count below this aren't worth threads. */
+  private static final int MIN_TRIP_COUNT = 1024;
+
+  /** Guard values are kept below this so 32-bit arithmetic can't wrap. */
+  private static final long GUARD_LIMIT = 1L << 30;
+
+  private static ParallelLoops instance;
+  private static Map<ForNode, ParallelLoop> loops;
+
+  /** A loop which can be split across threads. */
+  public static class ParallelLoop {
+    private final ForNode loop;
+    private final LocalDescriptor lo, hi;
+    private final List<LocalDescriptor> captured;
+    private final List<Polynomial> guards;
+
+    private ParallelLoop(ForNode loop, LocalDescriptor lo, LocalDescriptor hi,
+                         List<LocalDescriptor> captured,
+                         List<Polynomial> guards) {
+      this.loop = loop;
+      this.lo = lo;
+      this.hi = hi;
+      this.captured = captured;
+      this.guards = guards;
+    }
+
+    public ForNode getLoop() {
+      return loop;
+    }
+
+    /** The temporary which must hold the loop's start value. */
+    public LocalDescriptor getLo() {
+      return lo;
+    }
+
+    /** The temporary which must hold the loop's end value. */
+    public LocalDescriptor getHi() {
+      return hi;
+    }
+
+    /** Locals of the enclosing method which the body reads. */
+    public List<LocalDescriptor> getCaptured() {
+      return captured;
+    }
+
+    /** Polynomials which must all be non-negative to run in parallel. */
+    public List<Polynomial> getGuards() {
+      return guards;
+    }
+  }
+
+  private static ParallelLoops getInstance() {
+    if (instance == null) {
+      instance = new ParallelLoops();
+    }
+    return instance;
+  }
+
+  public static Map<ForNode, ParallelLoop> findParallelLoops(ASTNode root) {
+    loops = new LinkedHashMap<ForNode, ParallelLoop>();
+    root.accept(getInstance());
+    return loops;
+  }
+
+  public static ParallelLoop getParallelLoop(ForNode node) {
+    return (loops == null) ? null : loops.get(node);
+  }
+
+  @Override
+  public Boolean visit(ForNode node) {
+    ParallelLoop loop = analyze(node);
+    if (loop != null) {
+      loops.put(node, loop);
+    } else {
+      defaultBehavior(node);
+    }
+    return true;
+  }
+
+  /**
+   * Collects what a loop body reads and writes.
+   */
+  private static class BodyScan extends ASTNodeVisitor<Boolean> {
+    boolean unsafe;
+    int depth;
+    Set<TypedDescriptor> assigned = new LinkedHashSet<TypedDescriptor>();
+    Set<TypedDescriptor> used = new LinkedHashSet<TypedDescriptor>();
+    List<ArrayLocationNode> reads = new ArrayList<ArrayLocationNode>();
+    List<ArrayLocationNode> writes = new ArrayList<ArrayLocationNode>();
+    List<ForNode> inner = new ArrayList<ForNode>();
+
+    @Override
+    public Boolean visit(ForNode node) {
+      inner.add(node);
+      node.getInit().getValue().accept(this);
+      node.getEnd().accept(this);
+      depth++;
+      node.getBody().accept(this);
+      depth--;
+      return true;
+    }
+
+    @Override
+    public Boolean visit(AssignNode node) {
+      if (node.getLoc() instanceof ArrayLocationNode) {
+        writes.add((ArrayLocationNode) node.getLoc());
+        ((ArrayLocationNode) node.getLoc()).getIndex().accept(this);
+      } else {
+        assigned.add(node.getLoc().getDesc());
+      }
+      node.getValue().accept(this);
+      return true;
+    }
+
+    @Override
+    public Boolean visit(ArrayLocationNode node) {
+      reads.add(node);
+      defaultBehavior(node);
+      return true;
+    }
+
+    @Override
+    public Boolean visit(ScalarLocationNode node) {
+      used.add(node.getDesc());
+      return true;
+    }
+
+    @Override
+    public Boolean visit(BreakNode node) {
+      unsafe |= (depth == 0);
+      return true;
+    }
+
+    @Override
+    public Boolean visit(ReturnNode node) {
+      unsafe = true;
+      return true;
+    }
+
+    @Override
+    public Boolean visit(MethodCallNode node) {
+      unsafe = true;
+      return true;
+    }
+
+    @Override
+    public Boolean visit(SystemCallNode node) {
+      unsafe = true;
+      return true;
+    }
+  }
+
+  /**
+   * An array access split into stride * i + offset, where the offset
+   * ranges over [min, max] as the nested loops run.
+   */
+  private static class Access {
+    final FieldDescriptor array;
+    final Polynomial stride, min, max;
+
+    Access(FieldDescriptor array, Polynomial stride,
+           Polynomial min, Polynomial max) {
+      this.array = array;
+      this.stride = stride;
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  private ParallelLoop analyze(ForNode node) {
+    TypedDescriptor loopVar = node.getInit().getLoc().getDesc();
+    SymbolTable bodyTable = node.getBody().getSymbolTable();
+
+    BodyScan bounds = new BodyScan();
+    node.getInit().getValue().accept(bounds);
+    node.getEnd().accept(bounds);
+    BodyScan body = new BodyScan();
+    node.getBody().accept(body);
+    if (bounds.unsafe || body.unsafe || !profitable(node, body)) {
+      return null;
+    }
+
+    // Bounds of nested loops, and their variables.
+    Set<TypedDescriptor> innerVars = new HashSet<TypedDescriptor>();
+    for (ForNode f : body.inner) {
+      innerVars.add(f.getInit().getLoc().getDesc());
+    }
+
+    // Scalars may only be written if every iteration has its own copy.
+    for (TypedDescriptor desc : body.assigned) {
+      if (desc.equals(loopVar) || innerVars.contains(desc) ||
+          !isPrivate(desc, bodyTable)) {
+        return null;
+      }
+    }
+
+    // Everything else read in the body is invariant.
+    Set<TypedDescriptor> invariant = new HashSet<TypedDescriptor>();
+    List<LocalDescriptor> captured = new ArrayList<LocalDescriptor>();
+    for (TypedDescriptor desc : body.used) {
+      if (desc.equals(loopVar) || isPrivate(desc, bodyTable)) {
+        continue;
+      }
+      if (desc instanceof ParamDescriptor) {
+        return null;
+      }
+      if (desc instanceof LocalDescriptor) {
+        captured.add((LocalDescriptor) desc);
+      }
+      invariant.add(desc);
+    }
+
+    Map<TypedDescriptor, Polynomial> innerLo =
+      new LinkedHashMap<TypedDescriptor, Polynomial>();
+    Map<TypedDescriptor, Polynomial> innerHi =
+      new LinkedHashMap<TypedDescriptor, Polynomial>();
+    for (ForNode f : body.inner) {
+      Polynomial lo = Polynomial.fromExpression(f.getInit().getValue());
+      Polynomial hi = Polynomial.fromExpression(f.getEnd());
+      if (lo != null && hi != null &&
+          invariant.containsAll(lo.getVariables()) &&
+          invariant.containsAll(hi.getVariables())) {
+        TypedDescriptor var = f.getInit().getLoc().getDesc();
+        innerLo.put(var, lo);
+        innerHi.put(var, hi.plus(-1));
+      }
+    }
+
+    Set<TypedDescriptor> loopVars = new HashSet<TypedDescriptor>();
+    loopVars.add(loopVar);
+    loopVars.addAll(innerLo.keySet());
+
+    List<Access> accesses = new ArrayList<Access>();
+    Set<FieldDescriptor> written = new LinkedHashSet<FieldDescriptor>();
+    List<ArrayLocationNode> all = new ArrayList<ArrayLocationNode>(body.writes);
+    all.addAll(body.reads);
+    for (ArrayLocationNode a : all) {
+      Polynomial index = Polynomial.fromExpression(a.getIndex());
+      if (index == null) {
+        return null;
+      }
+      Access access = split(a, index, loopVar, loopVars, invariant,
+                            innerLo, innerHi);
+      if (access == null) {
+        return null;
+      }
+      accesses.add(access);
+      if (body.writes.contains(a)) {
+        written.add(access.array);
+      }
+    }
+
+    // Every access to a written array must use the same nonzero stride.
+    for (Access access : accesses) {
+      if (!written.contains(access.array)) {
+        continue;
+      }
+      if (access.stride.isZero()) {
+        return null;
+      }
+      for (Access other : accesses) {
+        if (other.array.equals(access.array) &&
+            !other.stride.equals(access.stride)) {
+          return null;
+        }
+      }
+    }
+
+    LocalDescriptor lo = CFGGenerator.makeTemp(node, DecafType.INT);
+    LocalDescriptor hi = CFGGenerator.makeTemp(node, DecafType.INT);
+    Polynomial first = Polynomial.variable(lo);
+    Polynomial last = Polynomial.variable(hi).plus(-1);
+
+    Set<Polynomial> guards = new LinkedHashSet<Polynomial>();
+    for (Access access : accesses) {
+      Polynomial stride = access.stride;
+      if (written.contains(access.array)) {
+        // Each access must stay in its iteration's block of elements.
+        guards.add(access.min);
+        guards.add(stride.plus(-1).plus(access.max.times(-1)));
+      }
+
+      // Bounds checks over the whole iteration range.
+      Polynomial lowest, highest;
+      if (stride.isConstant() && stride.getConstant() < 0) {
+        lowest = stride.times(last).plus(access.min);
+        highest = stride.times(first).plus(access.max);
+      } else {
+        if (!stride.isConstant()) {
+          guards.add(stride);
+        }
+        lowest = stride.times(first).plus(access.min);
+        highest = stride.times(last).plus(access.max);
+      }
+      guards.add(lowest);
+      guards.add(highest.times(-1).plus(access.array.getLength() - 1));
+    }
+
+    List<Polynomial> checks = boundedGuards(guards, lo, hi);
+    if (checks == null) {
+      return null;
+    }
+    return new ParallelLoop(node, lo, hi, captured, checks);
+  }
+
+  /**
+   * Splits an array index into a stride of the loop variable and the range
+   * of what remains.  Returns null if the index isn't affine.
+   */
+  private static Access split(ArrayLocationNode a, Polynomial index,
+      TypedDescriptor loopVar, Set<TypedDescriptor> loopVars,
+      Set<TypedDescriptor> invariant,
+      Map<TypedDescriptor, Polynomial> innerLo,
+      Map<TypedDescriptor, Polynomial> innerHi) {
+    for (Polynomial.Term t : index.getTerms()) {
+      int count = 0;
+      for (TypedDescriptor var : t.getVars()) {
+        if (loopVars.contains(var)) {
+          count++;
+        } else if (!invariant.contains(var)) {
+          return null;
+        }
+      }
+      if (count > 1) {
+        return null;
+      }
+      // Nested loop variables need constant coefficients.
+      if (count == 1 && t.getVars().size() > 1 &&
+          !t.getVars().contains(loopVar)) {
+        return null;
+      }
+    }
+
+    Polynomial rest = index.without(loopVars);
+    Polynomial min = rest;
+    Polynomial max = rest;
+    for (TypedDescriptor var : innerLo.keySet()) {
+      Polynomial c = index.coefficientOf(var);
+      if (c.isZero()) {
+        continue;
+      }
+      long k = c.getConstant();
+      Polynomial atLo = innerLo.get(var).times(k);
+      Polynomial atHi = innerHi.get(var).times(k);
+      min = min.plus(k > 0 ? atLo : atHi);
+      max = max.plus(k > 0 ? atHi : atLo);
+    }
+
+    FieldDescriptor array = (FieldDescriptor)
+      a.getSymbolTable().get(a.getName(), SymbolType.VARIABLE);
+    return new Access(array, index.coefficientOf(loopVar), min, max);
+  }
+
+  /**
+   * Drops the guards which always hold, and bounds every variable left so
+   * that the guards can be evaluated without overflow.  Returns null if a
+   * guard can never hold.
+   */
+  private static List<Polynomial> boundedGuards(Set<Polynomial> guards,
+      LocalDescriptor lo, LocalDescriptor hi) {
+    List<Polynomial> result = new ArrayList<Polynomial>();
+    Set<TypedDescriptor> vars = new LinkedHashSet<TypedDescriptor>();
+    vars.add(lo);
+    vars.add(hi);
+    long bound = GUARD_LIMIT / 2;
+    for (Polynomial g : guards) {
+      if (g.isConstant()) {
+        if (g.getConstant() < 0) {
+          return null;
+        }
+        continue;
+      }
+
+      long largest = 1;
+      for (Polynomial.Term t : g.getTerms()) {
+        largest = Math.max(largest, Math.abs(t.getCoefficient()));
+      }
+      // Each term is at most largest * bound^degree in magnitude.
+      long limit = GUARD_LIMIT / largest / g.getTerms().size();
+      long b = (long) Math.pow(limit, 1.0 / g.getDegree());
+      while (b > 0 && power(b, g.getDegree()) > limit) {
+        b--;
+      }
+      bound = Math.min(bound, b);
+      vars.addAll(g.getVariables());
+      result.add(g);
+    }
+    if (bound < 2) {
+      return null;
+    }
+
+    for (TypedDescriptor var : vars) {
+      result.add(Polynomial.variable(var).plus(bound));
+      result.add(Polynomial.variable(var).times(-1).plus(bound));
+    }
+    return result;
+  }
+
+  private static long power(long base, int exp) {
+    long result = 1;
+    for (int i = 0; i < exp; i++) {
+      result *= base;
+      if (result > GUARD_LIMIT) {
+        return result;
+      }
+    }
+    return result;
+  }
+
+  private static boolean profitable(ForNode node, BodyScan body) {
+    if (!body.inner.isEmpty()) {
+      return true;
+    }
+    ExpressionNode lo = node.getInit().getValue();
+    ExpressionNode hi = node.getEnd();
+    if (lo instanceof IntNode && hi instanceof IntNode) {
+      return ((IntNode) hi).getValue() - (long) ((IntNode) lo).getValue() >=
+             MIN_TRIP_COUNT;
+    }
+    return true;
+  }
+
+  /** Returns whether desc is declared inside the given scope. */
+  private static boolean isPrivate(TypedDescriptor desc, SymbolTable scope) {
+    if (!(desc instanceof LocalDescriptor)) {
+      return false;
+    }
+    for (SymbolTable st = desc.getParent(); st != null; st = st.getParent()) {
+      if (st == scope) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
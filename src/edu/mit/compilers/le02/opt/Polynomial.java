@@ -0,0 +1,274 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import edu.mit.compilers.le02.ast.ExpressionNode;
+import edu.mit.compilers.le02.ast.IntNode;
+import edu.mit.compilers.le02.ast.MathOpNode;
+import edu.mit.compilers.le02.ast.MinusNode;
+import edu.mit.compilers.le02.ast.ScalarLocationNode;
+import edu.mit.compilers.le02.ast.VariableNode;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * An immutable polynomial with integer coefficients over scalar variables.
+ * Terms are kept in a fixed order, so code generated from a polynomial is
+ * the same from run to run.
+ */
+public final class Polynomial {
+  /** A coefficient times a product of variables. */
+  public static final class Term {
+    private final long coefficient;
+    private final List<TypedDescriptor> vars;
+
+    private Term(long coefficient, List<TypedDescriptor> vars) {
+      this.coefficient = coefficient;
+      this.vars = vars;
+    }
+
+    public long getCoefficient() {
+      return coefficient;
+    }
+
+    public List<TypedDescriptor> getVars() {
+      return Collections.unmodifiableList(vars);
+    }
+  }
+
+  private static final Comparator<TypedDescriptor> VAR_ORDER =
+    new Comparator<TypedDescriptor>() {
+      public int compare(TypedDescriptor a, TypedDescriptor b) {
+        return key(a).compareTo(key(b));
+      }
+    };
+
+  private final TreeMap<String, Term> terms;
+
+  private Polynomial(TreeMap<String, Term> terms) {
+    this.terms = terms;
+  }
+
+  public static Polynomial constant(long c) {
+    TreeMap<String, Term> terms = new TreeMap<String, Term>();
+    if (c != 0) {
+      terms.put("", new Term(c, new ArrayList<TypedDescriptor>()));
+    }
+    return new Polynomial(terms);
+  }
+
+  public static Polynomial variable(TypedDescriptor desc) {
+    List<TypedDescriptor> vars = new ArrayList<TypedDescriptor>();
+    vars.add(desc);
+    TreeMap<String, Term> terms = new TreeMap<String, Term>();
+    terms.put(key(vars), new Term(1, vars));
+    return new Polynomial(terms);
+  }
+
+  /**
+   * Converts an integer expression built from constants, scalar variables,
+   * addition, subtraction, multiplication and negation.  Returns null for
+   * anything else, such as array accesses, calls or division.
+   */
+  public static Polynomial fromExpression(ExpressionNode node) {
+    if (node instanceof IntNode) {
+      return constant(((IntNode) node).getValue());
+    }
+    if (node instanceof VariableNode) {
+      VariableNode var = (VariableNode) node;
+      if (!(var.getLoc() instanceof ScalarLocationNode)) {
+        return null;
+      }
+      return variable(var.getLoc().getDesc());
+    }
+    if (node instanceof MinusNode) {
+      Polynomial p = fromExpression(((MinusNode) node).getExpr());
+      return (p == null) ? null : p.times(-1);
+    }
+    if (node instanceof MathOpNode) {
+      MathOpNode op = (MathOpNode) node;
+      Polynomial left = fromExpression(op.getLeft());
+      Polynomial right = fromExpression(op.getRight());
+      if (left == null || right == null) {
+        return null;
+      }
+      switch (op.getOp()) {
+       case ADD:
+        return left.plus(right);
+       case SUBTRACT:
+        return left.plus(right.times(-1));
+       case MULTIPLY:
+        return left.times(right);
+      }
+    }
+    return null;
+  }
+
+  public Polynomial plus(Polynomial other) {
+    TreeMap<String, Term> sum = new TreeMap<String, Term>(terms);
+    for (Map.Entry<String, Term> e : other.terms.entrySet()) {
+      addTerm(sum, e.getKey(), e.getValue().coefficient, e.getValue().vars);
+    }
+    return new Polynomial(sum);
+  }
+
+  public Polynomial plus(long c) {
+    return plus(constant(c));
+  }
+
+  public Polynomial times(long c) {
+    TreeMap<String, Term> product = new TreeMap<String, Term>();
+    for (Map.Entry<String, Term> e : terms.entrySet()) {
+      addTerm(product, e.getKey(), e.getValue().coefficient * c,
+              e.getValue().vars);
+    }
+    return new Polynomial(product);
+  }
+
+  public Polynomial times(Polynomial other) {
+    TreeMap<String, Term> product = new TreeMap<String, Term>();
+    for (Term a : terms.values()) {
+      for (Term b : other.terms.values()) {
+        List<TypedDescriptor> vars = new ArrayList<TypedDescriptor>(a.vars);
+        vars.addAll(b.vars);
+        Collections.sort(vars, VAR_ORDER);
+        addTerm(product, key(vars), a.coefficient * b.coefficient, vars);
+      }
+    }
+    return new Polynomial(product);
+  }
+
+  /**
+   * Returns the polynomial multiplying var, treating the result as linear
+   * in var.  Terms in which var appears more than once keep the rest.
+   */
+  public Polynomial coefficientOf(TypedDescriptor var) {
+    TreeMap<String, Term> result = new TreeMap<String, Term>();
+    for (Term t : terms.values()) {
+      int i = t.vars.indexOf(var);
+      if (i < 0) {
+        continue;
+      }
+      List<TypedDescriptor> vars = new ArrayList<TypedDescriptor>(t.vars);
+      vars.remove(i);
+      addTerm(result, key(vars), t.coefficient, vars);
+    }
+    return new Polynomial(result);
+  }
+
+  /** Returns the terms which contain none of the given variables. */
+  public Polynomial without(Set<TypedDescriptor> vars) {
+    TreeMap<String, Term> result = new TreeMap<String, Term>();
+    for (Map.Entry<String, Term> e : terms.entrySet()) {
+      if (Collections.disjoint(e.getValue().vars, vars)) {
+        result.put(e.getKey(), e.getValue());
+      }
+    }
+    return new Polynomial(result);
+  }
+
+  /** Returns the variables used, in term order. */
+  public Set<TypedDescriptor> getVariables() {
+    Set<TypedDescriptor> vars = new LinkedHashSet<TypedDescriptor>();
+    for (Term t : terms.values()) {
+      vars.addAll(t.vars);
+    }
+    return vars;
+  }
+
+  public List<Term> getTerms() {
+    return new ArrayList<Term>(terms.values());
+  }
+
+  /** Returns the largest number of variables multiplied in any term. */
+  public int getDegree() {
+    int degree = 0;
+    for (Term t : terms.values()) {
+      degree = Math.max(degree, t.vars.size());
+    }
+    return degree;
+  }
+
+  public boolean isConstant() {
+    return getDegree() == 0;
+  }
+
+  public long getConstant() {
+    Term t = terms.get("");
+    return (t == null) ? 0 : t.coefficient;
+  }
+
+  public boolean isZero() {
+    return terms.isEmpty();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Polynomial)) {
+      return false;
+    }
+    Polynomial other = (Polynomial) o;
+    if (!terms.keySet().equals(other.terms.keySet())) {
+      return false;
+    }
+    for (Map.Entry<String, Term> e : terms.entrySet()) {
+      if (e.getValue().coefficient !=
+          other.terms.get(e.getKey()).coefficient) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return toString().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    if (terms.isEmpty()) {
+      return "0";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Term t : terms.values()) {
+      if (sb.length() > 0) {
+        sb.append(" + ");
+      }
+      sb.append(t.coefficient);
+      for (TypedDescriptor var : t.vars) {
+        sb.append("*").append(var.getId());
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void addTerm(TreeMap<String, Term> terms, String key,
+                              long coefficient, List<TypedDescriptor> vars) {
+    Term old = terms.get(key);
+    long c = coefficient + ((old == null) ? 0 : old.coefficient);
+    if (c == 0) {
+      terms.remove(key);
+    } else {
+      terms.put(key, new Term(c, vars));
+    }
+  }
+
+  private static String key(TypedDescriptor var) {
+    return var.getId() + "@" + var.getLocation();
+  }
+
+  private static String key(List<TypedDescriptor> vars) {
+    StringBuilder sb = new StringBuilder();
+    for (TypedDescriptor var : vars) {
+      sb.append(key(var)).append(";");
+    }
+    return sb.toString();
+  }
+}
@@ -7,9 +7,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.Map.Entry;
 
 import edu.mit.compilers.le02.RegisterLocation;
@@ -23,19 +24,23 @@ import edu.mit.compilers.le02.cfg.Argument;
 import edu.mit.compilers.le02.cfg.ArrayVariableArgument;
 import edu.mit.compilers.le02.cfg.BasicBlockNode;
 import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CFGGenerator;
 import edu.mit.compilers.le02.cfg.CallStatement;
 import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.RegisterLiveness;
 import edu.mit.compilers.le02.cfg.Argument.ArgType;
 import edu.mit.compilers.le02.cfg.BasicStatement.BasicStatementType;
 import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.dfa.GenKillAlgorithm;
 import edu.mit.compilers.le02.dfa.GenKillItem;
 import edu.mit.compilers.le02.dfa.Lattice;
 import edu.mit.compilers.le02.dfa.ReachingDefinitions;
-import edu.mit.compilers.le02.dfa.WorklistAlgorithm;
 import edu.mit.compilers.le02.dfa.WorklistItem;
 import edu.mit.compilers.le02.dfa.ReachingDefinitions.BlockItem;
 import edu.mit.compilers.le02.dfa.ReachingDefinitions.FakeDefStatement;
+import edu.mit.compilers.le02.ssa.DominatorTree;
 import edu.mit.compilers.le02.symboltable.AnonymousDescriptor;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
 import edu.mit.compilers.le02.symboltable.MethodDescriptor;
 import edu.mit.compilers.le02.symboltable.ParamDescriptor;
 import edu.mit.compilers.le02.symboltable.TypedDescriptor;
@@ -45,6 +50,7 @@ public class RegisterVisitor extends BasicBlockVisitor
                              implements Lattice<BitSet, BasicBlockNode> {
   private Map<BasicStatement, Web> defUses;
   private Map<BasicStatement, List<Web>> useToDefs;
+  private int nextWebId;
   private Map<BasicBlockNode, WebLiveness> blockLiveness;
   private Map<BasicStatement, Collection<Web>> liveWebsAtStatement;
   private Map<BasicStatement, Collection<Web>> dyingWebsAtStatement;
@@ -52,7 +58,6 @@ public class RegisterVisitor extends BasicBlockVisitor
   private List<Register> registerOrder;
   private List<Web> finalWebs;
   private Map<Web, Integer> webIndices;
-  private Map<TypedDescriptor, Register> allocatedGlobals;
   private InterferenceGraph ig;
   private ReachingDefinitions rd;
   private Pass pass;
@@ -61,12 +66,28 @@ public class RegisterVisitor extends BasicBlockVisitor
   private ArgReassignStatement argReassign = null;
   private int argTempOffset = 0;
 
+  // Spill bookkeeping; memoryDefs and spillTemps carry over between the
+  // rounds of allocation for a method
+  private Map<BasicBlockNode, Integer> loopDepths;
+  private Map<BasicStatement, Long> stmtWeights;
+  private Map<BasicStatement, List<BasicBlockNode>> stmtBlocks;
+  private Set<BasicStatement> memoryDefs;
+  private Set<TypedDescriptor> spillTemps;
+  // Copies from one variable to another, which coalescing can remove
+  private List<OpStatement> moves;
+
+  // Webs live across a call, which want callee-saved registers
+  private Set<Web> crossCallWebs = new HashSet<Web>();
+
+  // Live intervals of the webs, when allocating by linear scan
+  private Map<Web, LinearScan.Interval> intervals = null;
+  private int nextPosition = 0;
+
   public static final int NUM_REGISTERS = 10;
 
-  // This boolean indicates whether or not to consider globals for allocation
-  // TODO: Add code to spill globals at appropriate times in order to allocate
-  //       them temporarily within a block.
-  public static final boolean ALLOCATE_GLOBALS = false;
+  // The number of times the graph is rebuilt after inserting spill code;
+  // webs which still do not fit afterwards simply stay in memory.
+  public static final int MAX_SPILL_ROUNDS = 3;
 
 
   public static enum Pass {
@@ -79,25 +100,103 @@ public class RegisterVisitor extends BasicBlockVisitor
 
   public static RegisterVisitor runRegisterAllocation(BasicBlockNode methodHead,
                                            MethodDescriptor md) {
-    ReachingDefinitions rd = new ReachingDefinitions(methodHead);
-    RegisterVisitor visitor = new RegisterVisitor(rd);
+    Map<BasicBlockNode, Integer> loopDepths =
+      new DominatorTree(methodHead).loopDepths();
+    Set<BasicStatement> memoryDefs = new HashSet<BasicStatement>();
+    Set<TypedDescriptor> spillTemps = new HashSet<TypedDescriptor>();
+
+    RegisterVisitor visitor;
+    int round = 0;
+    while (true) {
+      visitor = new RegisterVisitor(new ReachingDefinitions(methodHead));
+      visitor.methodDescriptor = md;
+      visitor.startOfMethod = methodHead.getStatements().get(0);
+      visitor.loopDepths = loopDepths;
+      visitor.memoryDefs = memoryDefs;
+      visitor.spillTemps = spillTemps;
+
+      List<Web> spilled = visitor.buildAndColor(methodHead);
+      if (spilled.isEmpty() || round == MAX_SPILL_ROUNDS ||
+          !visitor.insertSpillCode(spilled)) {
+        break;
+      }
+
+      // The spill code changes the def-use chains, so start over.
+      ReachingDefinitions.removeFakeDefs(methodHead);
+      round++;
+    }
+    visitor.allocateRegisters();
+
+    if (CLI.debug) {
+      System.out.println("== AFTER COLORING ==");
+      for (Web w : visitor.finalWebs) {
+        System.out.println(w.longDesc());
+      }
+    }
+
+    // == STAGE 6 ==
+    visitor.pass = Pass.INSERT_REGISTERS;
+    visitor.visit(methodHead); // insertRegisters(node)
+
+    return visitor;
+  }
+
+  /**
+   * Allocates registers by a linear scan over the live intervals of the
+   * webs instead of coloring an interference graph.  This is much faster on
+   * large methods; spilled webs simply stay in memory.
+   */
+  public static RegisterVisitor runLinearScanAllocation(
+      BasicBlockNode methodHead, MethodDescriptor md) {
+    RegisterVisitor visitor =
+      new RegisterVisitor(new ReachingDefinitions(methodHead));
     visitor.methodDescriptor = md;
     visitor.startOfMethod = methodHead.getStatements().get(0);
+    visitor.loopDepths = new HashMap<BasicBlockNode, Integer>();
+    visitor.memoryDefs = new HashSet<BasicStatement>();
+    visitor.spillTemps = new HashSet<TypedDescriptor>();
+    visitor.intervals = new LinkedHashMap<Web, LinearScan.Interval>();
+
+    visitor.pass = Pass.GENERATE_DU;
+    visitor.visit(methodHead);
+    visitor.combineWebs();
+    visitor.pass = Pass.GENERATE_WEB_LIVENESS;
+    visitor.visit(methodHead);
+    GenKillAlgorithm.runBackwards(visitor.blockLiveness.values(),
+                                  visitor.finalWebs.size(), false);
 
+    // The same per-statement liveness pass which builds the interference
+    // graph records the intervals instead.
+    visitor.pass = Pass.GENERATE_IG;
+    visitor.visit(methodHead);
+    LinearScan.allocate(visitor.intervals.values(), NUM_REGISTERS);
+    visitor.allocateRegisters();
+
+    visitor.pass = Pass.INSERT_REGISTERS;
+    visitor.visit(methodHead);
+    return visitor;
+  }
+
+  /**
+   * Runs stages 1 to 5, building the webs and interference graph for the
+   * method as it stands, and colors the graph.  Returns the webs which could
+   * not be given a color.
+   */
+  private List<Web> buildAndColor(BasicBlockNode methodHead) {
     // == STAGE 1 ==
     // Generate def-use (DU) chains, which pair the definition of a variable
     // with all of its reachable uses.
-    visitor.pass = Pass.GENERATE_DU;
-    visitor.visit(methodHead);  // generateDefUse(node)
+    pass = Pass.GENERATE_DU;
+    visit(methodHead);  // generateDefUses(node)
 
     // == STAGE 2 ==
     // Generate webs from DU chains, by combining chains which share
     // the same uses.
-    visitor.combineWebs();
+    combineWebs();
 
     if (CLI.debug) {
       System.out.println("== WEBS ==");
-      for (Web w : visitor.finalWebs) {
+      for (Web w : finalWebs) {
         System.out.println(w.longDesc());
       }
     }
@@ -106,19 +205,19 @@ public class RegisterVisitor extends BasicBlockVisitor
     // In order to generate the interference graph in stage 4, we need
     // to use our existing variable liveness information to determine which
     // webs are live in which blocks.
-    visitor.pass = Pass.GENERATE_WEB_LIVENESS;
-    visitor.visit(methodHead); // generateWebLivenessInfo(node)
+    pass = Pass.GENERATE_WEB_LIVENESS;
+    visit(methodHead); // generateWebLivenessInfo(node)
 
     /* Commented to avoid huge dumps of debug data, but still occasionally
      * useful.
     if (CLI.debug) {
       System.out.println("== WEB LIVENESS ==");
-      for (BasicBlockNode n : visitor.blockLiveness.keySet()) {
+      for (BasicBlockNode n : blockLiveness.keySet()) {
         System.out.println("----- " + n.getId() + " -----");
         for (BasicStatement st : n.getStatements()) {
           System.out.println(st);
         }
-        WebLiveness wl = visitor.blockLiveness.get(n);
+        WebLiveness wl = blockLiveness.get(n);
         System.out.println("*** GEN ***");
         for (Web w : wl.theGen) {
           System.out.println("  " + w);
@@ -133,46 +232,94 @@ public class RegisterVisitor extends BasicBlockVisitor
 
     // This worklist algorithm fills out the global information for all
     // of the block liveness values.
-    WorklistAlgorithm.runBackwards(visitor.blockLiveness.values(), visitor);
+    GenKillAlgorithm.runBackwards(blockLiveness.values(),
+                                  finalWebs.size(), false);
 
     // == STAGE 4 ==
     // Using the per-block web liveness information generated in stage 3,
     // run a per-statement liveness analysis on each block to determine which
     // webs interfere with each other, thus generating an interference graph
-    visitor.initInterferenceGraph();
-    visitor.pass = Pass.GENERATE_IG;
-    visitor.visit(methodHead); // generateInterferenceGraph(node)
-
-
-    // == STAGE 5 ==
-    // Now that we have an interference graph, we color the interference graph
-    // and do a spill cost analysis on each of the webs to determing which
-    visitor.allocateRegisters();
-
-    if (CLI.debug) {
-      System.out.println("== AFTER COLORING ==");
-      for (Web w : visitor.finalWebs) {
-        System.out.println(w.longDesc());
+    initInterferenceGraph();
+    pass = Pass.GENERATE_IG;
+    visit(methodHead); // generateInterferenceGraph(node)
+
+    // Webs live across calls should get callee-saved registers, which the
+    // method header saves once, rather than caller-saved ones pushed and
+    // popped around every call.
+    List<Integer> calleeColors = new ArrayList<Integer>();
+    for (int i = 0; i < NUM_REGISTERS; i++) {
+      if (RegisterLiveness.getCalleeSavedRegisters().contains(
+            registerOrder.get(i))) {
+        calleeColors.add(i);
       }
     }
+    int[] calleeSaved = new int[calleeColors.size()];
+    for (int i = 0; i < calleeSaved.length; i++) {
+      calleeSaved[i] = calleeColors.get(i);
+    }
+    ig.setCalleeSavedColors(calleeSaved);
+    for (Web w : crossCallWebs) {
+      ig.addCallCrossing(w);
+    }
 
-    // == STAGE 6 ==
-    visitor.pass = Pass.INSERT_REGISTERS;
-    visitor.visit(methodHead); // insertRegisters(node)
+    // Preferred registers go first, as they save shuffling values into
+    // place at calls and method entry; then the copies between webs,
+    // hottest first.
+    Set<Web> roots = new HashSet<Web>();
+    for (Web w : finalWebs) {
+      Web root = w.find();
+      int color = registerOrder.indexOf(root.getPreferredRegister());
+      if (roots.add(root) && color >= 0) {
+        ig.addPreference(root, color);
+      }
+    }
+    Collections.sort(moves, new Comparator<OpStatement>() {
+      @Override
+      public int compare(OpStatement m1, OpStatement m2) {
+        return stmtWeights.get(m2).compareTo(stmtWeights.get(m1));
+      }
+    });
+    for (OpStatement move : moves) {
+      Web dst = defUses.get(move);
+      if (dst == null || useToDefs.get(move) == null) {
+        continue;
+      }
+      for (Web src : useToDefs.get(move)) {
+        if (src.desc().equals(move.getArg1().getDesc())) {
+          ig.addMove(src.find(), dst.find());
+          break;
+        }
+      }
+    }
 
-    return visitor;
+    // == STAGE 5 ==
+    // Now that we have an interference graph, coalesce the moves and color
+    // it with one color per register, spilling the webs whose loop-weighted
+    // cost is lowest.
+    Map<Web, Long> costs = new HashMap<Web, Long>();
+    for (Web w : finalWebs) {
+      Web root = w.find();
+      costs.put(root, spillTemps.contains(root.desc()) ?
+                      Long.MAX_VALUE : root.getSpillCost(stmtWeights));
+    }
+    return ig.colorGraph(NUM_REGISTERS, costs);
   }
 
   public RegisterVisitor(ReachingDefinitions rd) {
     this.rd = rd;
 
     this.defUses = new HashMap<BasicStatement, Web>();
-    this.useToDefs = new HashMap<BasicStatement, List<Web>>();
+    // Webs are combined in the order uses were found, so keep that order.
+    this.useToDefs = new LinkedHashMap<BasicStatement, List<Web>>();
+    this.nextWebId = 0;
     this.blockLiveness = new HashMap<BasicBlockNode, WebLiveness>();
     this.liveWebsAtStatement = new HashMap<BasicStatement, Collection<Web>>();
     this.dyingWebsAtStatement = new HashMap<BasicStatement, Collection<Web>>();
     this.finalWebs = new ArrayList<Web>();
     this.webIndices = new HashMap<Web, Integer>();
+    this.stmtWeights = new HashMap<BasicStatement, Long>();
+    this.stmtBlocks = new HashMap<BasicStatement, List<BasicBlockNode>>();
+    this.moves = new ArrayList<OpStatement>();
 
     this.registerMap = new HashMap<Integer, Register>();
     this.registerOrder = new ArrayList<Register>();
@@ -243,15 +390,30 @@ public class RegisterVisitor extends BasicBlockVisitor
     // also keep track of which defs correspond to each use in the
     // useToDefs map.
     TypedDescriptor desc;
+    long weight = 1;
+    Integer depth = loopDepths.get(node);
+    for (int i = 0; depth != null && i < Math.min(depth, 6); i++) {
+      weight *= 10;
+    }
     for (BasicStatement stmt : node.getStatements()) {
+      stmtWeights.put(stmt, weight);
+      // Some statements are shared between blocks, such as loop tests.
+      List<BasicBlockNode> blocks = stmtBlocks.get(stmt);
+      if (blocks == null) {
+        blocks = new ArrayList<BasicBlockNode>();
+        stmtBlocks.put(stmt, blocks);
+      }
+      blocks.add(node);
 
       // Handle calls
       if (stmt.getType() == BasicStatementType.CALL) {
         CallStatement call = (CallStatement) stmt;
 
-        // Iterate over call argument to look for uses.
-        for (Argument arg : call.getArgs()) {
-          handleArg(bi, arg, call, localDefs);
+        // Iterate over call argument to look for uses.  The position lets
+        // the first six prefer their argument registers.
+        List<Argument> args = call.getArgs();
+        for (int i = 0; i < args.size(); i++) {
+          handleArg(bi, args.get(i), call, localDefs, i);
         }
 
         // If this is a definition, add it to the local definitions.
@@ -285,6 +447,11 @@ public class RegisterVisitor extends BasicBlockVisitor
 
       // By here we've handled anything that's not an op.
       OpStatement op = (OpStatement)stmt;
+      if (op.getOp() == AsmOp.MOVE &&
+          op.getArg1().getType() == ArgType.VARIABLE &&
+          op.getArg2().getType() == ArgType.VARIABLE) {
+        moves.add(op);
+      }
 
       // Check both uses to see if they are variables
       if (op.getArg1() != null) {
@@ -336,10 +503,9 @@ public class RegisterVisitor extends BasicBlockVisitor
         arg.getType() == ArgType.ARRAY_VARIABLE) {
       desc = arg.getDesc();
 
-      // If we are allocating globals, or if the location isn't a global,
-      // then add it as a use, otherwise ignore it.
-      if (ALLOCATE_GLOBALS ||
-          desc.getLocation().getLocationType() != LocationType.GLOBAL) {
+      // Globals stay in memory; GlobalPromotion has already turned the ones
+      // worth keeping in registers into locals.
+      if (desc.getLocation().getLocationType() != LocationType.GLOBAL) {
 
         defs = bi.getReachingDefinitions(desc.getLocation());
         addToDefs(stmt, desc, defs, localDefs, argNum);
@@ -398,11 +564,16 @@ public class RegisterVisitor extends BasicBlockVisitor
     else if (argNum != -1 && argNum < 6) {
       prefReg = ParamDescriptor.arguments[argNum];
     }
+    else if (def instanceof OpStatement &&
+             ((OpStatement) def).getOp() == AsmOp.MODULO) {
+      // idiv leaves the remainder in RDX.
+      prefReg = Register.RDX;
+    }
 
     // Get the use web for this use's def, and add the use to it.
     Web uses = defUses.get(def);
     if (uses == null) {
-      uses = new Web(loc, def);
+      uses = new Web(nextWebId++, loc, def);
     }
     if (clobberPref || uses.getPreferredRegister() == null) {
       uses.setPreferredRegister(prefReg);
@@ -544,12 +715,21 @@ public class RegisterVisitor extends BasicBlockVisitor
 
   /**
    * Allocates the interference graph object and adds all webs as unconnected
-   * nodes.
+   * nodes, except those whose definitions all store to memory on purpose.
    */
   private void initInterferenceGraph() {
+    Set<Web> inRegisters = new HashSet<Web>();
+    for (Entry<BasicStatement, Web> entry : defUses.entrySet()) {
+      if (!memoryDefs.contains(entry.getKey())) {
+        inRegisters.add(entry.getValue().find());
+      }
+    }
+
     ig = new InterferenceGraph();
     for (Web w : finalWebs) {
-      ig.addNode(w.find());
+      if (inRegisters.contains(w.find())) {
+        ig.addNode(w.find());
+      }
     }
   }
 
@@ -570,11 +750,22 @@ public class RegisterVisitor extends BasicBlockVisitor
       System.out.println("Processing == " + node.getId() + " ==");
     }
 
+    // Under linear scan, statement i of the block is at position
+    // blockStart + 2i, its definition just after it, and the exit of the
+    // block after all of them.
+    List<BasicStatement> stmts = node.getStatements();
+    int blockStart = nextPosition;
+    nextPosition += 2 * stmts.size() + 1;
+
     // Link all ending nodes in the interference graph.
     int size = liveOnExit.size();
     for (int i = 0; i < size; i++) {
       Web w1 = liveOnExit.get(i);
       currentlyLive.put(w1.desc(), w1.find());
+      if (intervals != null) {
+        extendInterval(w1.find(), blockStart + 2 * stmts.size());
+        continue;
+      }
       for (int j = i+1; j < size; j++) {
         Web w2 = liveOnExit.get(j);
         ig.linkNodes(w1, w2);
@@ -586,7 +777,6 @@ public class RegisterVisitor extends BasicBlockVisitor
 
 
     // Traverse backwards through the statement list to compute liveness
-    List<BasicStatement> stmts = node.getStatements();
     Collections.reverse(stmts);
 
     if (CLI.debug) {
@@ -596,7 +786,9 @@ public class RegisterVisitor extends BasicBlockVisitor
     }
 
     ArrayList<Web> dying = new ArrayList<Web>();
+    int pos = blockStart + 2 * stmts.size();
     for (BasicStatement stmt : stmts) {
+      pos -= 2;
       if (CLI.debug) {
         System.out.println("Processing statement " + stmt);
       }
@@ -616,6 +808,24 @@ public class RegisterVisitor extends BasicBlockVisitor
           System.out.println("Becoming dead " + web);
         }
         currentlyLive.remove(web.desc());
+        if (intervals != null) {
+          extendInterval(web.find(), pos + 1);
+        }
+      }
+
+      // Whatever is still live survives the call.
+      if (stmt.getType() == BasicStatementType.CALL) {
+        crossCallWebs.addAll(currentlyLive.values());
+      }
+
+      // idivl overwrites RDX, so nothing still live may be kept there.
+      if (ig != null && stmt.getType() == BasicStatementType.OP &&
+          (((OpStatement) stmt).getOp() == AsmOp.DIVIDE ||
+           ((OpStatement) stmt).getOp() == AsmOp.MODULO)) {
+        int rdx = registerOrder.indexOf(Register.RDX);
+        for (Web w : currentlyLive.values()) {
+          ig.addRegisterConflict(w, rdx);
+        }
       }
 
       // If we hit a use, this web may become live at this statement.
@@ -634,6 +844,9 @@ public class RegisterVisitor extends BasicBlockVisitor
             currentlyLive.put(newWeb.desc(), newWeb);
             dying.add(newWeb);
 
+            if (ig == null) {
+              continue;
+            }
             for (Web w2 : currentlyLive.values()) {
               if (CLI.debug) {
                 //System.out.println("Linking " + w + " and " + w2);
@@ -650,166 +863,147 @@ public class RegisterVisitor extends BasicBlockVisitor
 
       // Record liveness info
       liveWebsAtStatement.put(stmt, new ArrayList<Web>(currentlyLive.values()));
+      if (intervals != null) {
+        for (Web w : currentlyLive.values()) {
+          extendInterval(w, pos);
+        }
+      }
+    }
+  }
+
+  private void extendInterval(Web web, int pos) {
+    LinearScan.Interval interval = intervals.get(web);
+    if (interval == null) {
+      interval = new LinearScan.Interval(
+          web, registerOrder.indexOf(web.getPreferredRegister()));
+      intervals.put(web, interval);
     }
+    interval.extend(pos);
   }
 
 
 
   /**
-   * Color the interference graph and then compute the spill cost of each of
-   * the colors to determine which of the colors should get registers.
+   * Splits the live ranges of the spilled webs at their uses.  Each use
+   * reads a new temporary, loaded from the variable's home just before it,
+   * while the definitions keep writing the home location; so when the graph
+   * is rebuilt only the short temporaries compete for registers.  Webs
+   * holding a parameter are left for the FakeDef handling in
+   * insertRegisters.  Returns whether any code was inserted.
    */
-  private void allocateRegisters() {
-    // TODO: Intelligent coloring for cases where we have a lot of calculations
-    //       in a row, so:
-    //       ADD a + b -> c
-    //       MUL c * d -> f
-    //       should become
-    //       %r8 -> a, %r9 -> b, %r8 -> c, %r10 -> d or something like that
-    //       add %r8, %r9
-    //       mul %r8, %r10
-    int numColors = ig.colorGraph();
-
-    // TODO: Register targeting, so we don't have to copy for things like
-    //       arguments and return values, or idiv arguments
-    if (numColors <= NUM_REGISTERS) {
-
-      registerMap.clear();
-      ArrayList<Register> unallocatedRegisters =
-        new ArrayList<Register>(registerOrder);
-
-      // Reverse so it is faster to pull it off the end
-      Collections.reverse(unallocatedRegisters);
-
-      HashSet<Register> allocatedRegisters = new HashSet<Register>();
-      for (Web w : finalWebs) {
-        Register r = w.getPreferredRegister();
-        if (r != null && !allocatedRegisters.contains(r)) {
-          registerMap.put(w.find().getColor(), r);
-          allocatedRegisters.add(r);
-          unallocatedRegisters.remove(r);
-        }
-      }
-
-      // Assign registers to everything, since we're ok (also the register
-      // map is setup in the initialization).
-      for (int i = 0; i < numColors; i++) {
-        Register reg = registerMap.get(i);
-        if (reg == null) {
-          assert !unallocatedRegisters.isEmpty();
-          reg = unallocatedRegisters.remove(unallocatedRegisters.size() - 1);
-          registerMap.put(i, reg);
-        }
-        methodDescriptor.markRegisterUsed(reg);
+  private boolean insertSpillCode(List<Web> spilled) {
+    boolean changed = false;
+    for (Web web : spilled) {
+      TypedDescriptor desc = web.desc();
+      if (!(desc instanceof LocalDescriptor) || spillTemps.contains(desc)) {
+        continue;
       }
-      return;
-    }
-    else {
 
-      // TODO: Take loop nesting into account in spill cost calculation
-      // Tree maps used for determinism
-      TreeMap<Integer, List<Web>> colorMap = new TreeMap<Integer, List<Web>>();
-      for (Web w : finalWebs) {
-        List<Web> list = colorMap.get(w.find().getColor());
-        if (list == null) {
-          list = new ArrayList<Web>();
+      List<BasicStatement> defs = new ArrayList<BasicStatement>();
+      for (Entry<BasicStatement, Web> entry : defUses.entrySet()) {
+        if (entry.getValue().find() == web) {
+          defs.add(entry.getKey());
         }
-        list.add(w.find());
-        colorMap.put(w.find().getColor(), list);
       }
-
-      if (CLI.debug) {
-        for (Integer i : colorMap.keySet()) {
-          System.out.println("Webs colored with " + ":");
-          for (Web w : colorMap.get(i)) {
-            System.out.println("  " + w + " color: " + w.getColor());
+      List<BasicStatement> uses = new ArrayList<BasicStatement>();
+      boolean splittable = true;
+      for (Entry<BasicStatement, List<Web>> entry : useToDefs.entrySet()) {
+        for (Web w : entry.getValue()) {
+          if (w.find() == web) {
+            uses.add(entry.getKey());
+            splittable &= entry.getKey().getNode() != null;
+            break;
           }
-          System.out.println();
         }
       }
+      if (!splittable) {
+        continue;
+      }
 
-      ArrayList<List<Web>> webLists =
-          new ArrayList<List<Web>>(colorMap.values());
-      Collections.sort(webLists, new Comparator<List<Web>>() {
-        // Want the highest spill costs to be first in the list
-        @Override
-        public int compare(List<Web> w1, List<Web> w2) {
-          int s1 = 0;
-          int s2 = 0;
-
-          for (Web x : w1) {
-            s1 += x.getSpillCost();
-          }
-          for (Web y : w2) {
-            s2 += y.getSpillCost();
-          }
-
-          // DETERMINIZE!
-          if (s1 == s2) {
-            return w1.hashCode() - w2.hashCode();
+      memoryDefs.addAll(defs);
+      for (BasicStatement use : uses) {
+        if (use instanceof OpStatement) {
+          OpStatement op = (OpStatement) use;
+          // A plain copy out of the variable already is a load.
+          if (op.getOp() == AsmOp.MOVE &&
+              op.getArg1().getType() == ArgType.VARIABLE &&
+              desc.equals(op.getArg1().getDesc())) {
+            continue;
           }
-          return -(s1 - s2);
         }
-      });
-
 
-      if (CLI.debug) {
-        System.out.println("Web lists: ");
-        for (List<Web> lw : webLists) {
-          System.out.println("  Color " + lw.get(0).getColor());
+        TypedDescriptor temp = CFGGenerator.makeTemp(use.getNode(),
+                                                     desc.getType());
+        spillTemps.add(temp);
+        replaceUses(use, desc, temp);
+
+        BasicStatement load = new OpStatement(use.getNode(), AsmOp.MOVE,
+                                              Argument.makeArgument(desc),
+                                              Argument.makeArgument(temp),
+                                              null);
+        for (BasicBlockNode block : stmtBlocks.get(use)) {
+          List<BasicStatement> stmts =
+            new ArrayList<BasicStatement>(block.getStatements());
+          stmts.add(stmts.indexOf(use), load);
+          block.setStatements(stmts);
         }
       }
+      changed = true;
+    }
+    return changed;
+  }
 
-      // Reset the register map
-      registerMap.clear();
-
-      ArrayList<Register> unallocatedRegisters =
-        new ArrayList<Register>(registerOrder);
-      HashSet<Register> allocatedRegisters = new HashSet<Register>();
-      Register reg;
-      for (int i = 0; i < NUM_REGISTERS && i < webLists.size(); i++) {
-        List<Web> list = webLists.get(i);
-        reg = null;
-        for (Web w : list) {
-          reg = w.getPreferredRegister();
-          if (reg != null && !allocatedRegisters.contains(reg)) {
-            break;
-          }
-        }
-        if (reg == null) {
-          continue;
-        }
-        allocatedRegisters.add(reg);
-        unallocatedRegisters.remove(reg);
-
-        // Assign a register to this color
-        registerMap.put(list.get(0).getColor(), reg);
+  /** Makes the given statement read temp wherever it used to read var. */
+  private static void replaceUses(BasicStatement stmt, TypedDescriptor var,
+                                  TypedDescriptor temp) {
+    if (stmt.getType() == BasicStatementType.CALL) {
+      List<Argument> args = ((CallStatement) stmt).getArgs();
+      for (int i = 0; i < args.size(); i++) {
+        args.set(i, replaceUse(args.get(i), var, temp));
       }
+      return;
+    }
 
-      for (int i = 0; i < NUM_REGISTERS && i < webLists.size(); i++) {
-        List<Web> list = webLists.get(i);
-        reg = registerMap.get(list.get(0).getColor());
-        if (reg == null) {
-          reg = unallocatedRegisters.remove(0);
-          allocatedRegisters.add(reg);
-          registerMap.put(list.get(0).getColor(), reg);
-        }
+    OpStatement op = (OpStatement) stmt;
+    op.setArg1(replaceUse(op.getArg1(), var, temp));
+    if (op.getOp() != AsmOp.MOVE) {
+      op.setArg2(replaceUse(op.getArg2(), var, temp));
+    } else if (op.getArg2().getType() == ArgType.ARRAY_VARIABLE) {
+      // Only the index of a stored-to array element is a use.
+      ArrayVariableArgument ava = (ArrayVariableArgument) op.getArg2();
+      op.setArg2(Argument.makeArgument(
+          ava.getDesc(), replaceUse(ava.getIndex(), var, temp)));
+    }
+  }
+
+  private static Argument replaceUse(Argument arg, TypedDescriptor var,
+                                     TypedDescriptor temp) {
+    if (arg == null || !arg.isVariable()) {
+      return arg;
+    }
+    if (arg.getType() == ArgType.ARRAY_VARIABLE) {
+      return Argument.makeArgument(arg.getDesc(), replaceUse(
+          ((ArrayVariableArgument) arg).getIndex(), var, temp));
+    }
+    return var.equals(arg.getDesc()) ? Argument.makeArgument(temp) : arg;
+  }
 
+  /**
+   * Maps the colors of the interference graph onto registers.  Each color
+   * stands for a fixed register, so that preferred registers can be
+   * precolored; webs left without a color stay in memory.
+   */
+  private void allocateRegisters() {
+    registerMap.clear();
+    for (Web w : finalWebs) {
+      int color = w.find().getColor();
+      if (color >= 0 && !registerMap.containsKey(color)) {
+        Register reg = registerOrder.get(color);
         if (CLI.debug) {
-          System.out.println("Assigning " + reg + " to color " +
-              list.get(0).getColor());
+          System.out.println("Assigning " + reg + " to color " + color);
         }
-
-        // Mark this register as used in the function
+        registerMap.put(color, reg);
         methodDescriptor.markRegisterUsed(reg);
-
-        // Mark any globals that have been assigned to a register as such,
-        // so we can easily spill and restore them later.
-        for (Web w : list) {
-          if (w.desc().getLocation().getLocationType() == LocationType.GLOBAL) {
-            allocatedGlobals.put(w.desc(), reg);
-          }
-        }
       }
     }
   }
@@ -22,4 +22,11 @@ public class SkipProcessing implements CseVariable {
   public DecafType getFlattenedType() {
     return null;
   }
+
+  @Override
+  public int hashCode() {
+    // A fixed hash keeps maps holding this marker in the same order no
+    // matter which thread first hashed it.
+    return -1;
+  }
 }
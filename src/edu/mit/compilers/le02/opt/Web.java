@@ -2,6 +2,7 @@
 package edu.mit.compilers.le02.opt;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import edu.mit.compilers.le02.RegisterLocation.Register;
@@ -27,18 +28,20 @@ import edu.mit.compilers.le02.symboltable.TypedDescriptor;
  * @author David Koh (dkoh@mit.edu)
  */
 public class Web implements Comparable<Web> {
-  private int color;
+  private int color = -1;
   private Web rep;
   private int _rank;
   private Register preferredReg = null;
   private TypedDescriptor desc;
   private HashSet<BasicStatement> stmts;
   private int id;
-  private static int nextID = 0;
 
-
-  public Web(TypedDescriptor loc, BasicStatement def) {
-    this.id = nextID++;
+  /**
+   * Creates a web for a single definition.  Ids order webs for coloring, so
+   * they must be handed out in a deterministic order within a method.
+   */
+  public Web(int id, TypedDescriptor loc, BasicStatement def) {
+    this.id = id;
     this.rep = this;
     this._rank = 0;
     this.desc = loc;
@@ -122,9 +125,17 @@ public class Web implements Comparable<Web> {
     this.color = color;
   }
 
-  // TODO: Include loop nesting in spill cost
-  public int getSpillCost() {
-    return this.stmts.size();
+  /**
+   * Sums the weights of the statements in this web, so that statements in
+   * inner loops count for more.  Statements without a weight count as one.
+   */
+  public long getSpillCost(Map<BasicStatement, Long> weights) {
+    long cost = 0;
+    for (BasicStatement s : getStmts()) {
+      Long w = weights.get(s);
+      cost += (w == null) ? 1 : w;
+    }
+    return cost;
   }
 
   @Override
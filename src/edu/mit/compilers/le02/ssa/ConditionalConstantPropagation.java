@@ -0,0 +1,370 @@
+package edu.mit.compilers.le02.ssa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.CompilerStats;
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.ConstantArgument;
+import edu.mit.compilers.le02.cfg.NOPStatement;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.PhiStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Sparse conditional constant propagation, after Wegman and Zadeck, over a
+ * method in SSA form.
+ *
+ * Each version starts out unknown and only ever moves down the lattice to a
+ * constant and then to varying.  Blocks are only evaluated once an edge
+ * into them is found to be executable, and a branch on a constant only
+ * makes one of its edges executable, so constants flowing around a branch
+ * that can never be taken are still found.
+ *
+ * Afterwards constant versions are substituted into their uses and their
+ * definitions deleted, branches on constants become unconditional, and
+ * blocks no executable edge reaches are unlinked from the CFG.  Arithmetic
+ * wraps at 32 bits like the generated code, and a division by zero or of
+ * the smallest int by -1 is never folded, so it still traps at runtime.
+ */
+public class ConditionalConstantPropagation {
+  // Lattice values other than an int constant.
+  private static final long UNKNOWN = Long.MAX_VALUE;
+  private static final long VARYING = Long.MIN_VALUE;
+
+  private final SsaForm ssa;
+  private final Map<TypedDescriptor, Long> values =
+    new HashMap<TypedDescriptor, Long>();
+  private final Set<BasicBlockNode> executable = new HashSet<BasicBlockNode>();
+  // The predecessors of each block whose edge to it is executable.
+  private final Map<BasicBlockNode, Set<BasicBlockNode>> executableEdges =
+    new HashMap<BasicBlockNode, Set<BasicBlockNode>>();
+
+  private final List<BasicBlockNode[]> flowWork =
+    new ArrayList<BasicBlockNode[]>();
+  private final List<BasicStatement> ssaWork = new ArrayList<BasicStatement>();
+
+  private ConditionalConstantPropagation(SsaForm ssa) {
+    this.ssa = ssa;
+  }
+
+  /**
+   * Propagates constants through the method and rewrites it.  Returns the
+   * blocks which were found unreachable and unlinked, which the caller
+   * should drop from its list of the method's blocks.
+   */
+  public static List<BasicBlockNode> propagate(SsaForm ssa) {
+    ConditionalConstantPropagation sccp =
+      new ConditionalConstantPropagation(ssa);
+    sccp.solve();
+    List<BasicBlockNode> removed = sccp.rewrite();
+    ssa.update();
+    return removed;
+  }
+
+  private void solve() {
+    BasicBlockNode entry = ssa.getDominatorTree().getBlocks().get(0);
+    flowWork.add(new BasicBlockNode[] {null, entry});
+
+    int iterations = 0;
+    while (!flowWork.isEmpty() || !ssaWork.isEmpty()) {
+      iterations++;
+      if (!flowWork.isEmpty()) {
+        BasicBlockNode[] edge = flowWork.remove(flowWork.size() - 1);
+        visitEdge(edge[0], edge[1]);
+      } else {
+        BasicStatement stmt = ssaWork.remove(ssaWork.size() - 1);
+        BasicBlockNode block = ssa.getBlock(stmt);
+        if (block != null && executable.contains(block)) {
+          visit(stmt);
+          if (!(stmt instanceof PhiStatement) &&
+              stmt == block.getLastStatement()) {
+            visitBranch(block);
+          }
+        }
+      }
+    }
+    CompilerStats.countIterations(iterations);
+  }
+
+  private void visitEdge(BasicBlockNode from, BasicBlockNode to) {
+    Set<BasicBlockNode> preds = executableEdges.get(to);
+    if (preds == null) {
+      preds = new HashSet<BasicBlockNode>();
+      executableEdges.put(to, preds);
+    }
+    if (from != null && !preds.add(from)) {
+      return;
+    }
+
+    boolean first = executable.add(to);
+    for (BasicStatement stmt : to.getStatements()) {
+      if (stmt instanceof PhiStatement) {
+        visit(stmt);
+      } else if (first) {
+        visit(stmt);
+      } else {
+        break;
+      }
+    }
+    if (first) {
+      visitBranch(to);
+    }
+  }
+
+  /** Makes the edges leaving the block executable as its condition allows. */
+  private void visitBranch(BasicBlockNode block) {
+    BasicBlockNode target = block.getBranchTarget();
+    BasicBlockNode next = block.getNext();
+    if (target == null) {
+      if (next != null) {
+        flowWork.add(new BasicBlockNode[] {block, next});
+      }
+      return;
+    }
+
+    long cond = condition(block);
+    if (cond == UNKNOWN) {
+      return;
+    }
+    if (cond == VARYING || cond != 0) {
+      flowWork.add(new BasicBlockNode[] {block, target});
+    }
+    if ((cond == VARYING || cond == 0) && next != null) {
+      flowWork.add(new BasicBlockNode[] {block, next});
+    }
+  }
+
+  /** The value a conditional block branches on. */
+  private long condition(BasicBlockNode block) {
+    BasicStatement last = block.getLastStatement();
+    if (!(last instanceof OpStatement)) {
+      // The result of a call, which is never constant.
+      return VARYING;
+    }
+    return evaluate(last);
+  }
+
+  private void visit(BasicStatement stmt) {
+    TypedDescriptor def = SsaForm.definedVariable(stmt);
+    if (def == null || ssa.getDef(def) != stmt) {
+      return;
+    }
+    long value = evaluate(stmt);
+    if (value == valueOf(def)) {
+      return;
+    }
+    values.put(def, value);
+    ssaWork.addAll(ssa.getUses(def));
+  }
+
+  private long valueOf(TypedDescriptor var) {
+    if (ssa.getDef(var) == null) {
+      // Globals, arrays and values live into the method.
+      return VARYING;
+    }
+    Long value = values.get(var);
+    return (value == null) ? UNKNOWN : value;
+  }
+
+  private long valueOf(Argument arg) {
+    if (arg == null) {
+      return VARYING;
+    }
+    switch (arg.getType()) {
+     case CONST_INT:
+      return ((ConstantArgument) arg).getInt();
+     case CONST_BOOL:
+      return ((ConstantArgument) arg).getBool() ? 1 : 0;
+     case VARIABLE:
+      return (arg.getDesc() == null) ? VARYING : valueOf(arg.getDesc());
+     default:
+      return VARYING;
+    }
+  }
+
+  private long evaluate(BasicStatement stmt) {
+    if (stmt instanceof PhiStatement) {
+      PhiStatement phi = (PhiStatement) stmt;
+      Set<BasicBlockNode> preds = executableEdges.get(ssa.getBlock(phi));
+      long value = UNKNOWN;
+      for (Map.Entry<BasicBlockNode, Argument> e :
+           phi.getOperands().entrySet()) {
+        if (preds != null && preds.contains(e.getKey())) {
+          value = meet(value, valueOf(e.getValue()));
+        }
+      }
+      return value;
+    }
+    if (!(stmt instanceof OpStatement)) {
+      return VARYING;
+    }
+
+    OpStatement op = (OpStatement) stmt;
+    long a = valueOf(op.getArg1());
+    switch (op.getOp()) {
+     case MOVE:
+      return a;
+     case UNARY_MINUS:
+      return isConstant(a) ? -(int) a : a;
+     case NOT:
+      return isConstant(a) ? (a ^ 1) : a;
+     case ADD:
+     case SUBTRACT:
+     case MULTIPLY:
+     case DIVIDE:
+     case MODULO:
+     case EQUAL:
+     case NOT_EQUAL:
+     case LESS_THAN:
+     case LESS_OR_EQUAL:
+     case GREATER_THAN:
+     case GREATER_OR_EQUAL:
+      long b = valueOf(op.getArg2());
+      if (a == VARYING || b == VARYING) {
+        return VARYING;
+      }
+      if (a == UNKNOWN || b == UNKNOWN) {
+        return UNKNOWN;
+      }
+      return fold(op.getOp(), (int) a, (int) b);
+     default:
+      return VARYING;
+    }
+  }
+
+  /**
+   * Folds a binary operation on two ints the way the generated code would
+   * compute it.  Returns VARYING for divisions which trap.
+   */
+  static long fold(AsmOp op, int a, int b) {
+    switch (op) {
+     case ADD:
+      return a + b;
+     case SUBTRACT:
+      return a - b;
+     case MULTIPLY:
+      return a * b;
+     case DIVIDE:
+     case MODULO:
+      if (b == 0 || (a == Integer.MIN_VALUE && b == -1)) {
+        return VARYING;
+      }
+      return (op == AsmOp.DIVIDE) ? a / b : a % b;
+     case EQUAL:
+      return (a == b) ? 1 : 0;
+     case NOT_EQUAL:
+      return (a != b) ? 1 : 0;
+     case LESS_THAN:
+      return (a < b) ? 1 : 0;
+     case LESS_OR_EQUAL:
+      return (a <= b) ? 1 : 0;
+     case GREATER_THAN:
+      return (a > b) ? 1 : 0;
+     case GREATER_OR_EQUAL:
+      return (a >= b) ? 1 : 0;
+     default:
+      return VARYING;
+    }
+  }
+
+  private static boolean isConstant(long value) {
+    return value != UNKNOWN && value != VARYING;
+  }
+
+  private static long meet(long v1, long v2) {
+    if (v1 == UNKNOWN) {
+      return v2;
+    }
+    if (v2 == UNKNOWN || v1 == v2) {
+      return v1;
+    }
+    return VARYING;
+  }
+
+  private List<BasicBlockNode> rewrite() {
+    Map<TypedDescriptor, Argument> constants =
+      new LinkedHashMap<TypedDescriptor, Argument>();
+    for (Map.Entry<TypedDescriptor, Long> e : values.entrySet()) {
+      long value = e.getValue();
+      if (!isConstant(value)) {
+        continue;
+      }
+      if (e.getKey().getType() == DecafType.BOOLEAN) {
+        constants.put(e.getKey(), Argument.makeArgument(value != 0));
+      } else {
+        constants.put(e.getKey(), Argument.makeArgument((int) value));
+      }
+    }
+
+    List<BasicBlockNode> removed = new ArrayList<BasicBlockNode>();
+    BasicBlockNode entry = ssa.getDominatorTree().getBlocks().get(0);
+    for (BasicBlockNode block : ssa.getDominatorTree().getBlocks()) {
+      if (!executable.contains(block)) {
+        removed.add(block);
+        continue;
+      }
+
+      long cond = (block.getBranchTarget() == null) ? VARYING :
+                  condition(block);
+      List<BasicStatement> stmts = block.getStatements();
+      List<BasicStatement> newStmts = new ArrayList<BasicStatement>();
+      for (int i = 0; i < stmts.size(); i++) {
+        BasicStatement stmt = stmts.get(i);
+        TypedDescriptor def = SsaForm.definedVariable(stmt);
+        if (def != null && constants.containsKey(def) &&
+            !(stmt instanceof CallStatement)) {
+          // Every use now reads the constant instead.
+          continue;
+        }
+        if (isConstant(cond) && i == stmts.size() - 1 && def == null) {
+          // The branch is about to be resolved.
+          continue;
+        }
+        if (stmt instanceof PhiStatement) {
+          Set<BasicBlockNode> preds = executableEdges.get(block);
+          Iterator<BasicBlockNode> it =
+            ((PhiStatement) stmt).getOperands().keySet().iterator();
+          while (it.hasNext()) {
+            if (!preds.contains(it.next())) {
+              it.remove();
+            }
+          }
+        }
+        SsaForm.replaceUses(stmt, constants);
+        newStmts.add(stmt);
+      }
+      if (newStmts.isEmpty() && block == entry && !stmts.isEmpty()) {
+        // The method header is found through the entry's first statement.
+        newStmts.add(new NOPStatement(stmts.get(0).getNode()));
+      }
+      block.setStatements(newStmts);
+
+      if (isConstant(cond)) {
+        BasicBlockNode target = block.getBranchTarget();
+        block.clearBranchTarget();
+        if (cond != 0) {
+          block.setNext(target);
+        }
+      }
+    }
+
+    for (BasicBlockNode block : removed) {
+      for (BasicBlockNode succ : DominatorTree.successors(block)) {
+        succ.getPredecessors().remove(block);
+      }
+    }
+    return removed;
+  }
+}
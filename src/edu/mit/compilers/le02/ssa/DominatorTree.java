@@ -0,0 +1,287 @@
+package edu.mit.compilers.le02.ssa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+
+/**
+ * The dominator tree and dominance frontiers of the blocks reachable from a
+ * method's entry, computed with the iterative algorithm of Cooper, Harvey
+ * and Kennedy over reverse postorder, along with the natural loops they
+ * imply.
+ */
+public class DominatorTree {
+  private final List<BasicBlockNode> order = new ArrayList<BasicBlockNode>();
+  private final Map<BasicBlockNode, Integer> index =
+    new HashMap<BasicBlockNode, Integer>();
+  private final Map<BasicBlockNode, List<BasicBlockNode>> preds =
+    new HashMap<BasicBlockNode, List<BasicBlockNode>>();
+  private BasicBlockNode[] idom;
+  private List<List<BasicBlockNode>> children;
+  private List<Set<BasicBlockNode>> frontiers;
+  private Map<BasicBlockNode, Set<BasicBlockNode>> loops;
+
+  public DominatorTree(BasicBlockNode entry) {
+    computeOrder(entry);
+    for (BasicBlockNode b : order) {
+      preds.put(b, new ArrayList<BasicBlockNode>());
+    }
+    for (BasicBlockNode b : order) {
+      for (BasicBlockNode s : successors(b)) {
+        if (!preds.get(s).contains(b)) {
+          preds.get(s).add(b);
+        }
+      }
+    }
+    computeDominators();
+    computeFrontiers();
+  }
+
+  /** The successors of a block, branch target first as everywhere else. */
+  public static List<BasicBlockNode> successors(BasicBlockNode b) {
+    List<BasicBlockNode> succs = new ArrayList<BasicBlockNode>(2);
+    if (b.getBranchTarget() != null) {
+      succs.add(b.getBranchTarget());
+    }
+    if (b.getNext() != null && b.getNext() != b.getBranchTarget()) {
+      succs.add(b.getNext());
+    }
+    return succs;
+  }
+
+  private void computeOrder(BasicBlockNode entry) {
+    // Iterative depth-first search, recording blocks as they finish.
+    List<BasicBlockNode> postorder = new ArrayList<BasicBlockNode>();
+    Set<BasicBlockNode> seen = new LinkedHashSet<BasicBlockNode>();
+    List<BasicBlockNode> stack = new ArrayList<BasicBlockNode>();
+    List<Integer> next = new ArrayList<Integer>();
+    stack.add(entry);
+    next.add(0);
+    seen.add(entry);
+    while (!stack.isEmpty()) {
+      int top = stack.size() - 1;
+      BasicBlockNode b = stack.get(top);
+      List<BasicBlockNode> succs = successors(b);
+      int i = next.get(top);
+      if (i < succs.size()) {
+        next.set(top, i + 1);
+        BasicBlockNode s = succs.get(i);
+        if (seen.add(s)) {
+          stack.add(s);
+          next.add(0);
+        }
+      } else {
+        postorder.add(b);
+        stack.remove(top);
+        next.remove(top);
+      }
+    }
+    Collections.reverse(postorder);
+    order.addAll(postorder);
+    for (int i = 0; i < order.size(); i++) {
+      index.put(order.get(i), i);
+    }
+  }
+
+  private void computeDominators() {
+    int n = order.size();
+    idom = new BasicBlockNode[n];
+    idom[0] = order.get(0);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i = 1; i < n; i++) {
+        BasicBlockNode b = order.get(i);
+        BasicBlockNode newIdom = null;
+        for (BasicBlockNode p : preds.get(b)) {
+          if (idom[index.get(p)] == null) {
+            continue;
+          }
+          newIdom = (newIdom == null) ? p : intersect(p, newIdom);
+        }
+        if (idom[i] != newIdom) {
+          idom[i] = newIdom;
+          changed = true;
+        }
+      }
+    }
+
+    children = new ArrayList<List<BasicBlockNode>>();
+    for (int i = 0; i < n; i++) {
+      children.add(new ArrayList<BasicBlockNode>());
+    }
+    for (int i = 1; i < n; i++) {
+      children.get(index.get(idom[i])).add(order.get(i));
+    }
+  }
+
+  private BasicBlockNode intersect(BasicBlockNode b1, BasicBlockNode b2) {
+    int f1 = index.get(b1);
+    int f2 = index.get(b2);
+    while (f1 != f2) {
+      while (f1 > f2) {
+        f1 = index.get(idom[f1]);
+      }
+      while (f2 > f1) {
+        f2 = index.get(idom[f2]);
+      }
+    }
+    return order.get(f1);
+  }
+
+  private void computeFrontiers() {
+    frontiers = new ArrayList<Set<BasicBlockNode>>();
+    for (int i = 0; i < order.size(); i++) {
+      frontiers.add(new LinkedHashSet<BasicBlockNode>());
+    }
+    for (BasicBlockNode b : order) {
+      List<BasicBlockNode> ps = preds.get(b);
+      if (ps.size() < 2) {
+        continue;
+      }
+      BasicBlockNode bIdom = getIdom(b);
+      for (BasicBlockNode runner : ps) {
+        while (runner != bIdom) {
+          frontiers.get(index.get(runner)).add(b);
+          runner = getIdom(runner);
+        }
+      }
+    }
+  }
+
+  /** The reachable blocks in reverse postorder, entry first. */
+  public List<BasicBlockNode> getBlocks() {
+    return Collections.unmodifiableList(order);
+  }
+
+  public boolean contains(BasicBlockNode b) {
+    return index.containsKey(b);
+  }
+
+  /** The reachable predecessors of a block, in a fixed order. */
+  public List<BasicBlockNode> getPredecessors(BasicBlockNode b) {
+    return Collections.unmodifiableList(preds.get(b));
+  }
+
+  /** The immediate dominator of a block; the entry is its own. */
+  public BasicBlockNode getIdom(BasicBlockNode b) {
+    return idom[index.get(b)];
+  }
+
+  public List<BasicBlockNode> getChildren(BasicBlockNode b) {
+    return Collections.unmodifiableList(children.get(index.get(b)));
+  }
+
+  public Set<BasicBlockNode> getFrontier(BasicBlockNode b) {
+    return Collections.unmodifiableSet(frontiers.get(index.get(b)));
+  }
+
+  public boolean dominates(BasicBlockNode a, BasicBlockNode b) {
+    int target = index.get(a);
+    int i = index.get(b);
+    while (i != target) {
+      if (i == 0) {
+        return false;
+      }
+      i = index.get(idom[i]);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the body of the natural loop belonging to each loop header, in
+   * reverse postorder of the headers.  Back edges into the same header
+   * share one loop, and every body includes its header.
+   */
+  public Map<BasicBlockNode, Set<BasicBlockNode>> naturalLoops() {
+    if (loops != null) {
+      return loops;
+    }
+    Map<BasicBlockNode, Set<BasicBlockNode>> found =
+      new LinkedHashMap<BasicBlockNode, Set<BasicBlockNode>>();
+    for (BasicBlockNode header : order) {
+      for (BasicBlockNode tail : preds.get(header)) {
+        if (!dominates(header, tail)) {
+          continue;
+        }
+        Set<BasicBlockNode> body = found.get(header);
+        if (body == null) {
+          body = new HashSet<BasicBlockNode>();
+          body.add(header);
+          found.put(header, body);
+        }
+        List<BasicBlockNode> worklist = new ArrayList<BasicBlockNode>();
+        if (body.add(tail)) {
+          worklist.add(tail);
+        }
+        while (!worklist.isEmpty()) {
+          BasicBlockNode n = worklist.remove(worklist.size() - 1);
+          for (BasicBlockNode pred : preds.get(n)) {
+            if (body.add(pred)) {
+              worklist.add(pred);
+            }
+          }
+        }
+      }
+    }
+    for (Map.Entry<BasicBlockNode, Set<BasicBlockNode>> e :
+         found.entrySet()) {
+      e.setValue(Collections.unmodifiableSet(e.getValue()));
+    }
+    loops = Collections.unmodifiableMap(found);
+    return loops;
+  }
+
+  /**
+   * Returns the number of natural loops containing each reachable block;
+   * blocks outside every loop map to zero.
+   */
+  public Map<BasicBlockNode, Integer> loopDepths() {
+    Map<BasicBlockNode, Integer> depths = new HashMap<BasicBlockNode, Integer>();
+    for (BasicBlockNode b : order) {
+      depths.put(b, 0);
+    }
+    for (Set<BasicBlockNode> body : naturalLoops().values()) {
+      for (BasicBlockNode b : body) {
+        depths.put(b, depths.get(b) + 1);
+      }
+    }
+    return depths;
+  }
+
+  /**
+   * Creates an empty block which falls through to a loop header, and sends
+   * every edge entering the loop there instead, so that code can be placed
+   * before the loop.  The tree itself is not updated.  A loop headed by
+   * the method entry is only entered by the call, so it cannot be given a
+   * preheader and null is returned.
+   */
+  public BasicBlockNode insertPreheader(BasicBlockNode header) {
+    if (header == order.get(0)) {
+      return null;
+    }
+    BasicBlockNode preheader =
+      new BasicBlockNode(header.getId() + "_pre", header.getMethod());
+    for (BasicBlockNode pred : preds.get(header)) {
+      if (dominates(header, pred)) {
+        continue;
+      }
+      if (pred.getNext() == header) {
+        pred.setNext(preheader);
+      }
+      if (pred.getBranchTarget() == header) {
+        pred.setBranchTarget(preheader);
+      }
+    }
+    preheader.setNext(header);
+    return preheader;
+  }
+}
@@ -0,0 +1,548 @@
+package edu.mit.compilers.le02.ssa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.ArrayVariableArgument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.PhiStatement;
+import edu.mit.compilers.le02.cfg.Argument.ArgType;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.ParamDescriptor;
+import edu.mit.compilers.le02.symboltable.SymbolTable;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+/**
+ * Static single assignment form for the blocks of one method.
+ *
+ * Building it places phis for each scalar local and parameter at the
+ * iterated dominance frontier of its definitions, limited to variables
+ * live across some block boundary (semi-pruned SSA), and then renames every
+ * definition to a fresh local while walking the dominator tree.  Values
+ * live into the method keep their original descriptor.  While in SSA form
+ * each variable has exactly one definition, so sparse passes can follow
+ * getDef and getUses instead of solving bit-vector problems.
+ *
+ * Destroying it replaces each phi with copies at the end of its
+ * predecessors, splitting critical edges, and sequentializes the parallel
+ * copies of each edge so that no copy overwrites a value a later one reads.
+ */
+public class SsaForm {
+  private final BasicBlockNode methodEnter;
+  private DominatorTree dom;
+  private final SymbolTable table;
+  private final ASTNode tableNode;
+
+  // The variable each version was renamed from
+  private final Map<TypedDescriptor, TypedDescriptor> original =
+    new HashMap<TypedDescriptor, TypedDescriptor>();
+  // The variable of each phi, before renaming
+  private final Map<PhiStatement, TypedDescriptor> phiVars =
+    new HashMap<PhiStatement, TypedDescriptor>();
+
+  private Map<TypedDescriptor, BasicStatement> defs;
+  private Map<TypedDescriptor, List<BasicStatement>> uses;
+  private Map<BasicStatement, BasicBlockNode> blockOf;
+
+  private SsaForm(BasicBlockNode methodEnter) {
+    this.methodEnter = methodEnter;
+    this.dom = new DominatorTree(methodEnter);
+    this.tableNode = methodEnter.getStatements().get(0).getNode();
+    this.table = tableNode.getSymbolTable();
+  }
+
+  /**
+   * Puts the method into SSA form.  Returns null, leaving the method alone,
+   * if its entry block is also the target of a branch, since there is
+   * nowhere to put copies for the entry edge.
+   */
+  public static SsaForm build(BasicBlockNode methodEnter) {
+    if (!methodEnter.getPredecessors().isEmpty() ||
+        methodEnter.getStatements().isEmpty()) {
+      return null;
+    }
+    SsaForm ssa = new SsaForm(methodEnter);
+    ssa.unshareStatements();
+    ssa.placePhis();
+    ssa.rename();
+    ssa.computeDefUses();
+    return ssa;
+  }
+
+  public DominatorTree getDominatorTree() {
+    return dom;
+  }
+
+  /** The single statement defining the version, or null if it is live in. */
+  public BasicStatement getDef(TypedDescriptor var) {
+    return defs.get(var);
+  }
+
+  /** The statements using the version. */
+  public List<BasicStatement> getUses(TypedDescriptor var) {
+    List<BasicStatement> list = uses.get(var);
+    return (list == null) ? Collections.<BasicStatement>emptyList() : list;
+  }
+
+  /** The block holding the statement. */
+  public BasicBlockNode getBlock(BasicStatement stmt) {
+    return blockOf.get(stmt);
+  }
+
+  /** The variable a version was renamed from, or the variable itself. */
+  public TypedDescriptor getOriginal(TypedDescriptor var) {
+    TypedDescriptor orig = original.get(var);
+    return (orig == null) ? var : orig;
+  }
+
+  /** Whether the variable is renamed by SSA construction. */
+  public static boolean isRenamed(TypedDescriptor desc) {
+    return (desc instanceof LocalDescriptor ||
+            desc instanceof ParamDescriptor) && !desc.getType().isArray();
+  }
+
+  /**
+   * Recomputes the dominator tree and the def-use information after a pass
+   * has changed the statements or the edges between blocks.
+   */
+  public void update() {
+    dom = new DominatorTree(methodEnter);
+    computeDefUses();
+  }
+
+  private void computeDefUses() {
+    defs = new HashMap<TypedDescriptor, BasicStatement>();
+    uses = new HashMap<TypedDescriptor, List<BasicStatement>>();
+    blockOf = new HashMap<BasicStatement, BasicBlockNode>();
+    for (BasicBlockNode block : dom.getBlocks()) {
+      for (BasicStatement stmt : block.getStatements()) {
+        blockOf.put(stmt, block);
+        TypedDescriptor def = definedVariable(stmt);
+        if (def != null && isRenamed(def)) {
+          defs.put(def, stmt);
+        }
+        for (TypedDescriptor use : usedVariables(stmt)) {
+          List<BasicStatement> list = uses.get(use);
+          if (list == null) {
+            list = new ArrayList<BasicStatement>();
+            uses.put(use, list);
+          }
+          if (!list.contains(stmt)) {
+            list.add(stmt);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the variable the statement assigns, or null.  A move assigns
+   * its second argument, anything else its result.
+   */
+  public static TypedDescriptor definedVariable(BasicStatement stmt) {
+    if (stmt instanceof OpStatement &&
+        ((OpStatement) stmt).getOp() == AsmOp.MOVE) {
+      Argument target = ((OpStatement) stmt).getArg2();
+      return (target != null && target.getType() == ArgType.VARIABLE) ?
+             target.getDesc() : null;
+    }
+    if (stmt instanceof OpStatement || stmt instanceof CallStatement ||
+        stmt instanceof PhiStatement) {
+      return stmt.getResult();
+    }
+    return null;
+  }
+
+  private static void setDefinedVariable(BasicStatement stmt,
+                                         TypedDescriptor desc) {
+    if (stmt instanceof OpStatement &&
+        ((OpStatement) stmt).getOp() == AsmOp.MOVE) {
+      ((OpStatement) stmt).setArg2(Argument.makeArgument(desc));
+    } else {
+      stmt.setResult(desc);
+    }
+  }
+
+  /** Returns the variables the statement reads, including array indices. */
+  public static List<TypedDescriptor> usedVariables(BasicStatement stmt) {
+    List<Argument> args = new ArrayList<Argument>();
+    if (stmt instanceof CallStatement) {
+      args.addAll(((CallStatement) stmt).getArgs());
+    } else if (stmt instanceof PhiStatement) {
+      args.addAll(((PhiStatement) stmt).getOperands().values());
+    } else if (stmt instanceof OpStatement) {
+      OpStatement op = (OpStatement) stmt;
+      args.add(op.getArg1());
+      if (op.getOp() != AsmOp.MOVE) {
+        args.add(op.getArg2());
+      } else if (op.getArg2() instanceof ArrayVariableArgument) {
+        args.add(((ArrayVariableArgument) op.getArg2()).getIndex());
+      }
+    }
+
+    List<TypedDescriptor> vars = new ArrayList<TypedDescriptor>();
+    for (Argument arg : args) {
+      while (arg != null && arg.getType() == ArgType.ARRAY_VARIABLE) {
+        arg = ((ArrayVariableArgument) arg).getIndex();
+      }
+      if (arg != null && arg.getType() == ArgType.VARIABLE &&
+          arg.getDesc() != null && !vars.contains(arg.getDesc())) {
+        vars.add(arg.getDesc());
+      }
+    }
+    return vars;
+  }
+
+  /**
+   * Makes the statement read the given argument wherever it read one of
+   * the variables in the map.
+   */
+  public static void replaceUses(BasicStatement stmt,
+                                 Map<TypedDescriptor, Argument> map) {
+    if (stmt instanceof CallStatement) {
+      CallStatement call = (CallStatement) stmt;
+      List<Argument> args = call.getArgs();
+      for (int i = 0; i < args.size(); i++) {
+        args.set(i, replace(args.get(i), map));
+      }
+      call.setArgs(args);
+    } else if (stmt instanceof PhiStatement) {
+      for (Map.Entry<BasicBlockNode, Argument> e :
+           ((PhiStatement) stmt).getOperands().entrySet()) {
+        e.setValue(replace(e.getValue(), map));
+      }
+    } else if (stmt instanceof OpStatement) {
+      OpStatement op = (OpStatement) stmt;
+      op.setArg1(replace(op.getArg1(), map));
+      if (op.getOp() != AsmOp.MOVE) {
+        op.setArg2(replace(op.getArg2(), map));
+      } else if (op.getArg2() instanceof ArrayVariableArgument) {
+        op.setArg2(replace(op.getArg2(), map));
+      }
+    }
+  }
+
+  private static Argument replace(Argument arg,
+                                  Map<TypedDescriptor, Argument> map) {
+    if (arg == null || !arg.isVariable()) {
+      return arg;
+    }
+    if (arg.getType() == ArgType.ARRAY_VARIABLE) {
+      Argument index = ((ArrayVariableArgument) arg).getIndex();
+      Argument replaced = replace(index, map);
+      return (replaced == index) ? arg :
+             Argument.makeArgument(arg.getDesc(), replaced);
+    }
+    Argument replaced = map.get(arg.getDesc());
+    return (replaced == null) ? arg : replaced;
+  }
+
+  /**
+   * Gives each block its own copy of statements which block construction
+   * shared between blocks, such as loop tests, since each copy will define
+   * its own version.
+   */
+  private void unshareStatements() {
+    Set<BasicStatement> seen = new HashSet<BasicStatement>();
+    for (BasicBlockNode block : dom.getBlocks()) {
+      List<BasicStatement> stmts = block.getStatements();
+      boolean changed = false;
+      for (int i = 0; i < stmts.size(); i++) {
+        BasicStatement stmt = stmts.get(i);
+        if (seen.add(stmt)) {
+          continue;
+        }
+        if (stmt instanceof OpStatement) {
+          OpStatement op = (OpStatement) stmt;
+          stmts.set(i, new OpStatement(op.getNode(), op.getOp(),
+              op.getArg1(), op.getArg2(), op.getResult()));
+          changed = true;
+        } else if (stmt instanceof CallStatement) {
+          CallStatement call = (CallStatement) stmt;
+          stmts.set(i, new CallStatement(call.getNode(),
+              call.getMethodName(), call.getArgs(), call.getResult(),
+              call.isCallout()));
+          changed = true;
+        }
+      }
+      if (changed) {
+        block.setStatements(stmts);
+      }
+    }
+  }
+
+  private void placePhis() {
+    // Variables live into some block, and the blocks defining each.
+    Set<TypedDescriptor> nonLocal = new LinkedHashSet<TypedDescriptor>();
+    Map<TypedDescriptor, Set<BasicBlockNode>> defBlocks =
+      new LinkedHashMap<TypedDescriptor, Set<BasicBlockNode>>();
+    for (BasicBlockNode block : dom.getBlocks()) {
+      Set<TypedDescriptor> killed = new HashSet<TypedDescriptor>();
+      for (BasicStatement stmt : block.getStatements()) {
+        for (TypedDescriptor use : usedVariables(stmt)) {
+          if (isRenamed(use) && !killed.contains(use)) {
+            nonLocal.add(use);
+          }
+        }
+        TypedDescriptor def = definedVariable(stmt);
+        if (def != null && isRenamed(def)) {
+          killed.add(def);
+          Set<BasicBlockNode> blocks = defBlocks.get(def);
+          if (blocks == null) {
+            blocks = new LinkedHashSet<BasicBlockNode>();
+            defBlocks.put(def, blocks);
+          }
+          blocks.add(block);
+        }
+      }
+    }
+
+    Map<BasicBlockNode, List<PhiStatement>> phis =
+      new HashMap<BasicBlockNode, List<PhiStatement>>();
+    for (TypedDescriptor var : nonLocal) {
+      Set<BasicBlockNode> blocks = defBlocks.get(var);
+      if (blocks == null) {
+        continue;
+      }
+      Set<BasicBlockNode> placed = new HashSet<BasicBlockNode>();
+      List<BasicBlockNode> work = new ArrayList<BasicBlockNode>(blocks);
+      while (!work.isEmpty()) {
+        BasicBlockNode b = work.remove(work.size() - 1);
+        for (BasicBlockNode f : dom.getFrontier(b)) {
+          if (!placed.add(f)) {
+            continue;
+          }
+          PhiStatement phi = new PhiStatement(
+              f.getStatements().get(0).getNode(), var);
+          phiVars.put(phi, var);
+          List<PhiStatement> list = phis.get(f);
+          if (list == null) {
+            list = new ArrayList<PhiStatement>();
+            phis.put(f, list);
+          }
+          list.add(phi);
+          if (!blocks.contains(f)) {
+            work.add(f);
+          }
+        }
+      }
+    }
+
+    for (Map.Entry<BasicBlockNode, List<PhiStatement>> e : phis.entrySet()) {
+      List<BasicStatement> stmts =
+        new ArrayList<BasicStatement>(e.getValue());
+      stmts.addAll(e.getKey().getStatements());
+      e.getKey().setStatements(stmts);
+    }
+  }
+
+  /** Makes a fresh version of the variable. */
+  private TypedDescriptor newVersion(TypedDescriptor var) {
+    TypedDescriptor orig = getOriginal(var);
+    int offset = table.getNonconflictingOffset();
+    LocalDescriptor version = new LocalDescriptor(table,
+        orig.getId() + "." + Math.abs(offset), orig.getType(), offset);
+    table.put(version.getId(), version, tableNode.getSourceLoc());
+    original.put(version, orig);
+    return version;
+  }
+
+  private static Argument current(
+      Map<TypedDescriptor, List<TypedDescriptor>> stacks,
+      TypedDescriptor var) {
+    List<TypedDescriptor> stack = stacks.get(var);
+    return Argument.makeArgument((stack == null || stack.isEmpty()) ?
+                                 var : stack.get(stack.size() - 1));
+  }
+
+  private void rename() {
+    Map<TypedDescriptor, List<TypedDescriptor>> stacks =
+      new HashMap<TypedDescriptor, List<TypedDescriptor>>();
+
+    // Walk the dominator tree without recursion.  A null list marks a block
+    // on its way in; on the way out the list holds the versions it pushed.
+    List<BasicBlockNode> blockStack = new ArrayList<BasicBlockNode>();
+    List<List<TypedDescriptor>> pushedStack =
+      new ArrayList<List<TypedDescriptor>>();
+    blockStack.add(methodEnter);
+    pushedStack.add(null);
+    while (!blockStack.isEmpty()) {
+      BasicBlockNode block = blockStack.remove(blockStack.size() - 1);
+      List<TypedDescriptor> pushed =
+        pushedStack.remove(pushedStack.size() - 1);
+      if (pushed != null) {
+        for (TypedDescriptor var : pushed) {
+          List<TypedDescriptor> stack = stacks.get(var);
+          stack.remove(stack.size() - 1);
+        }
+        continue;
+      }
+
+      pushed = new ArrayList<TypedDescriptor>();
+      for (BasicStatement stmt : block.getStatements()) {
+        if (!(stmt instanceof PhiStatement)) {
+          Map<TypedDescriptor, Argument> map =
+            new HashMap<TypedDescriptor, Argument>();
+          for (TypedDescriptor use : usedVariables(stmt)) {
+            if (isRenamed(use)) {
+              map.put(use, current(stacks, use));
+            }
+          }
+          if (!map.isEmpty()) {
+            replaceUses(stmt, map);
+          }
+        }
+
+        TypedDescriptor def = (stmt instanceof PhiStatement) ?
+          phiVars.get(stmt) : definedVariable(stmt);
+        if (def == null || !isRenamed(def)) {
+          continue;
+        }
+        TypedDescriptor version = newVersion(def);
+        setDefinedVariable(stmt, version);
+        List<TypedDescriptor> stack = stacks.get(def);
+        if (stack == null) {
+          stack = new ArrayList<TypedDescriptor>();
+          stacks.put(def, stack);
+        }
+        stack.add(version);
+        pushed.add(def);
+      }
+
+      for (BasicBlockNode succ : DominatorTree.successors(block)) {
+        for (BasicStatement stmt : succ.getStatements()) {
+          if (!(stmt instanceof PhiStatement)) {
+            break;
+          }
+          PhiStatement phi = (PhiStatement) stmt;
+          phi.setOperand(block, current(stacks, phiVars.get(phi)));
+        }
+      }
+
+      blockStack.add(block);
+      pushedStack.add(pushed);
+      List<BasicBlockNode> children = dom.getChildren(block);
+      for (int i = children.size() - 1; i >= 0; i--) {
+        blockStack.add(children.get(i));
+        pushedStack.add(null);
+      }
+    }
+  }
+
+  /**
+   * Takes the method out of SSA form, replacing phis with copies.  Returns
+   * the blocks created to split critical edges, which the caller should add
+   * to its list of the method's blocks.
+   */
+  public List<BasicBlockNode> destroy() {
+    dom = new DominatorTree(methodEnter);
+    List<BasicBlockNode> newBlocks = new ArrayList<BasicBlockNode>();
+    for (BasicBlockNode block : new ArrayList<BasicBlockNode>(
+           dom.getBlocks())) {
+      List<BasicStatement> stmts = block.getStatements();
+      List<PhiStatement> phis = new ArrayList<PhiStatement>();
+      while (!stmts.isEmpty() && stmts.get(0) instanceof PhiStatement) {
+        phis.add((PhiStatement) stmts.remove(0));
+      }
+      if (phis.isEmpty()) {
+        continue;
+      }
+      block.setStatements(stmts);
+
+      for (BasicBlockNode pred : dom.getPredecessors(block)) {
+        List<TypedDescriptor> dsts = new ArrayList<TypedDescriptor>();
+        List<Argument> srcs = new ArrayList<Argument>();
+        for (PhiStatement phi : phis) {
+          Argument src = phi.getOperand(pred);
+          if (src != null && !phi.getResult().equals(src.getDesc())) {
+            dsts.add(phi.getResult());
+            srcs.add(src);
+          }
+        }
+        if (dsts.isEmpty()) {
+          continue;
+        }
+
+        ASTNode node = phis.get(0).getNode();
+        List<BasicStatement> copies = sequentialize(node, dsts, srcs);
+        if (DominatorTree.successors(pred).size() > 1) {
+          // A critical edge; the copies need a block of their own.
+          BasicBlockNode split = new BasicBlockNode(
+              pred.getId() + "_to" + block.getId().replace(".", ""),
+              pred.getMethod());
+          split.setStatements(copies);
+          if (pred.getBranchTarget() == block) {
+            pred.setBranchTarget(split);
+          }
+          if (pred.getNext() == block) {
+            pred.setNext(split);
+          }
+          split.setNext(block);
+          newBlocks.add(split);
+        } else {
+          List<BasicStatement> predStmts = pred.getStatements();
+          predStmts.addAll(copies);
+          pred.setStatements(predStmts);
+        }
+      }
+    }
+    return newBlocks;
+  }
+
+  /**
+   * Orders the parallel copies dsts[i] = srcs[i] so that each source is
+   * read before it is overwritten, breaking cycles with a temporary.
+   */
+  List<BasicStatement> sequentialize(ASTNode node,
+      List<TypedDescriptor> dsts, List<Argument> srcs) {
+    List<BasicStatement> copies = new ArrayList<BasicStatement>();
+    dsts = new ArrayList<TypedDescriptor>(dsts);
+    srcs = new ArrayList<Argument>(srcs);
+    while (!dsts.isEmpty()) {
+      int ready = -1;
+      for (int i = 0; i < dsts.size() && ready < 0; i++) {
+        boolean read = false;
+        for (int j = 0; j < srcs.size(); j++) {
+          if (j != i && dsts.get(i).equals(srcs.get(j).getDesc())) {
+            read = true;
+            break;
+          }
+        }
+        if (!read) {
+          ready = i;
+        }
+      }
+
+      if (ready >= 0) {
+        copies.add(new OpStatement(node, AsmOp.MOVE, srcs.remove(ready),
+            Argument.makeArgument(dsts.remove(ready)), null));
+        continue;
+      }
+
+      // Every destination is still to be read: save one and read the copy.
+      TypedDescriptor dst = dsts.get(0);
+      TypedDescriptor temp = newVersion(dst);
+      copies.add(new OpStatement(node, AsmOp.MOVE,
+          Argument.makeArgument(dst), Argument.makeArgument(temp), null));
+      for (int j = 0; j < srcs.size(); j++) {
+        if (dst.equals(srcs.get(j).getDesc())) {
+          srcs.set(j, Argument.makeArgument(temp));
+        }
+      }
+    }
+    return copies;
+  }
+}
@@ -9,8 +9,10 @@ import edu.mit.compilers.le02.Main.Optimization;
  * A generic command-line interface for 6.035 compilers.  This class
  * provides command-line parsing for student projects.  It recognizes
  * the required <tt>-target</tt>, <tt>-debug</tt>, <tt>-opt</tt>, and
- * <tt>-o</tt> switches, and generates a name for input and output
- * files.
+ * <tt>-o</tt> switches, as well as <tt>-nocomments</tt>,
+ * <tt>-parallel</tt>, <tt>-threads</tt>, <tt>-stats</tt> and
+ * <tt>-stats-json</tt>, and
+ * generates a name for input and output files.
  *
  * @author  6.035 Staff (<tt>6.035-staff@mit.edu</tt>)
  */
@@ -86,6 +88,36 @@ public class CLI {
    */
   public static boolean compat;
 
+  /**
+   * Whether to annotate generated assembly with the source line each
+   * instruction came from.  Cleared by <tt>-nocomments</tt>.
+   */
+  public static boolean sourceComments = true;
+
+  /**
+   * Whether to optimize and generate code for methods in parallel.  Set by
+   * <tt>-parallel</tt>; the output is the same either way.
+   */
+  public static boolean parallel;
+
+  /**
+   * The number of threads parallelized loops in the generated code are
+   * split across.  Set by <tt>-threads <I>n</I></tt>.
+   */
+  public static int threads = 4;
+
+  /**
+   * Whether to print a table of per-phase and per-pass timings to stderr
+   * once compilation finishes.  Set by <tt>-stats</tt>.
+   */
+  public static boolean stats;
+
+  /**
+   * Like stats, but the statistics are printed as JSON.  Set by
+   * <tt>-stats-json</tt>.
+   */
+  public static boolean statsJson;
+
   /**
    * The static constant string displayed for stdin as a file.
    */
@@ -154,6 +186,22 @@ public class CLI {
         context = 0;
         compat = true;
         continue;
+      } else if (args[i].equals("-nocomments")) {
+        context = 0;
+        sourceComments = false;
+        continue;
+      } else if (args[i].equals("-parallel")) {
+        context = 0;
+        parallel = true;
+        continue;
+      } else if (args[i].equals("-stats")) {
+        context = 0;
+        stats = true;
+        continue;
+      } else if (args[i].equals("-stats-json")) {
+        context = 0;
+        statsJson = true;
+        continue;
       } else if (args[i].equals("-opt")) {
         context = 1;
         continue;
@@ -163,6 +211,9 @@ public class CLI {
       } else if (args[i].equals("-target")) {
         context = 3;
         continue;
+      } else if (args[i].equals("-threads")) {
+        context = 4;
+        continue;
       }
 
       // Parse either flag arguments, or general arguments.
@@ -171,7 +222,9 @@ public class CLI {
         boolean hit = false;
         for (Optimization opt : Optimization.values()) {
           if ((args[i].equals("all") &&
-                opt != Optimization.GLOBAL_COMMON_SUBEXPR) ||
+                opt != Optimization.GLOBAL_COMMON_SUBEXPR &&
+                opt != Optimization.LINEAR_SCAN &&
+                opt != Optimization.SSA) ||
               (args[i].equals(opt.flagName()))) {
             hit = true;
             opts.add(opt);
@@ -211,6 +264,14 @@ public class CLI {
         }
         context = 0;
         break;
+       case 4:
+        try {
+          threads = Math.max(1, Integer.parseInt(args[i]));
+        } catch (NumberFormatException e) {
+          extras.addElement(args[i]);
+        }
+        context = 0;
+        break;
        default:
         extras.addElement(args[i]);
       }
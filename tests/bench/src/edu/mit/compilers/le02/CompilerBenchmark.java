@@ -0,0 +1,533 @@
+package edu.mit.compilers.le02;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import antlr.ANTLRException;
+import edu.mit.compilers.le02.Main.Optimization;
+import edu.mit.compilers.le02.asm.AsmFile;
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicBlockGraph;
+import edu.mit.compilers.le02.cfg.CFGGenerator;
+import edu.mit.compilers.le02.cfg.ControlFlowGraph;
+import edu.mit.compilers.le02.dfa.AvailableExpressions;
+import edu.mit.compilers.le02.dfa.Liveness;
+import edu.mit.compilers.le02.dfa.ReachingDefinitions;
+import edu.mit.compilers.le02.grammar.DecafParser;
+import edu.mit.compilers.le02.ir.IrGenerator;
+import edu.mit.compilers.le02.semanticchecks.MasterChecker;
+import edu.mit.compilers.le02.stgenerator.SymbolTableGenerator;
+import edu.mit.compilers.le02.symboltable.FieldDescriptor;
+import edu.mit.compilers.le02.symboltable.SymbolTable;
+import edu.mit.compilers.tools.CLI;
+
+/**
+ * Measures how long the compiler's main passes take, in the manner of a JMH
+ * average time benchmark: each benchmark is run for a number of untimed
+ * warmup iterations and then a number of measured iterations, each of which
+ * repeats the benchmark until a time budget is spent.  The mean time per
+ * operation and its standard deviation across iterations are reported.
+ *
+ * Most passes modify the AST or CFG they run on, so the state a benchmark
+ * needs is rebuilt before every operation and only the pass itself is
+ * timed.  Flags which only change code generation leave the CFG passes
+ * doing the same work as without them, so they are measured on the asm
+ * stage instead.  Inputs are the optimizer test programs plus generated
+ * programs with many methods or with deeply nested loops.
+ *
+ * Usage: CompilerBenchmark [-wi n] [-i n] [-r ms] [-f regex]
+ *                          [-methods n,...] [-depth n,...] [file.dcf ...]
+ */
+public class CompilerBenchmark {
+  private static int warmupIterations = 3;
+  private static int iterations = 5;
+  private static long iterationMillis = 500;
+  private static Pattern filter = Pattern.compile(".*");
+  private static int[] methodCounts = {10, 100};
+  private static int[] loopDepths = {4, 8};
+
+  /** Results are written here so the JIT cannot discard the work. */
+  private static volatile Object sink;
+
+  /** Flags which are only read while generating assembly. */
+  private static final EnumSet<Optimization> asmOnly = EnumSet.of(
+    Optimization.ASM_PEEPHOLE, Optimization.CONDITION_FLAGS,
+    Optimization.BLOCK_LAYOUT, Optimization.INSTRUCTION_SCHEDULING,
+    Optimization.FRAME_LOWERING, Optimization.COMPACT_ARRAYS);
+
+  /** Assembly is generated into this, and thrown away. */
+  private static final PrintStream discard =
+    new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+    });
+
+  /** A program to compile. */
+  private static class Input {
+    final String name;
+    final byte[] source;
+
+    Input(String name, byte[] source) {
+      this.name = name;
+      this.source = source;
+    }
+
+    /**
+     * Runs the front end, returning a checked AST which has not yet been
+     * used to generate a CFG.
+     */
+    ASTNode parse() {
+      try {
+        DecafParser parser =
+          Main.initializeParser(new ByteArrayInputStream(source));
+        parser.program();
+        if (parser.getError()) {
+          throw new IllegalStateException(name + " does not parse");
+        }
+        ASTNode root = IrGenerator.generateIR(parser.getAST());
+        SymbolTableGenerator.generateSymbolTable(root);
+        MasterChecker.checkAll(root);
+        if (!ErrorReporting.noErrors()) {
+          ErrorReporting.clearErrors();
+          throw new IllegalStateException(name + " has semantic errors");
+        }
+        return root;
+      } catch (ANTLRException e) {
+        throw new IllegalStateException(name + ": " + e);
+      }
+    }
+  }
+
+  /** A program's basic blocks, ready for code generation. */
+  private static class Lowered {
+    final ControlFlowGraph cfg;
+    final SymbolTable st;
+
+    Lowered(ControlFlowGraph cfg, SymbolTable st) {
+      this.cfg = cfg;
+      this.st = st;
+    }
+  }
+
+  /** A pass to measure. */
+  private abstract static class Benchmark {
+    final String name;
+
+    Benchmark(String name) {
+      this.name = name;
+    }
+
+    /** Builds the state for a single operation.  Not timed. */
+    abstract Object setup(Input input);
+
+    /** Performs a single operation on state.  Timed. */
+    abstract Object run(Object state);
+
+    /** Returns how long one operation took, in nanoseconds. */
+    long measure(Object state) {
+      long start = System.nanoTime();
+      sink = run(state);
+      return System.nanoTime() - start;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    List<Input> inputs = parseArgs(args);
+    List<Benchmark> benchmarks = makeBenchmarks();
+
+    System.out.println(String.format("%-24s %-28s %4s %12s %10s  %s",
+      "Benchmark", "Input", "Cnt", "Score", "Error", "Units"));
+    for (Benchmark b : benchmarks) {
+      for (Input input : inputs) {
+        if (!filter.matcher(b.name + "/" + input.name).find()) {
+          continue;
+        }
+        double[] scores = runIterations(b, input);
+        double mean = 0;
+        for (double s : scores) {
+          mean += s;
+        }
+        mean /= scores.length;
+        double var = 0;
+        for (double s : scores) {
+          var += (s - mean) * (s - mean);
+        }
+        double stddev =
+          (scores.length > 1) ? Math.sqrt(var / (scores.length - 1)) : 0;
+        System.out.println(String.format(
+          "%-24s %-28s %4d %12.3f %10.3f  ms/op",
+          b.name, input.name, scores.length, mean, stddev));
+      }
+    }
+  }
+
+  /**
+   * Runs the warmup and measured iterations for one benchmark, returning
+   * the mean milliseconds per operation of each measured iteration.
+   */
+  private static double[] runIterations(Benchmark b, Input input) {
+    double[] scores = new double[iterations];
+    for (int i = -warmupIterations; i < iterations; i++) {
+      long budget = iterationMillis * 1000000L;
+      long spent = 0;
+      long timed = 0;
+      int ops = 0;
+      long start = System.nanoTime();
+      while (spent < budget || ops == 0) {
+        Object state = b.setup(input);
+        timed += b.measure(state);
+        ops++;
+        spent = System.nanoTime() - start;
+      }
+      if (i >= 0) {
+        scores[i] = timed / 1e6 / ops;
+      }
+    }
+    return scores;
+  }
+
+  private static List<Benchmark> makeBenchmarks() {
+    List<Benchmark> list = new ArrayList<Benchmark>();
+    final EnumSet<Optimization> none = EnumSet.noneOf(Optimization.class);
+
+    list.add(new Benchmark("cfg") {
+      @Override
+      Object setup(Input input) {
+        return input.parse();
+      }
+
+      @Override
+      Object run(Object state) {
+        return CFGGenerator.generateCFG((ASTNode) state, none);
+      }
+    });
+
+    List<EnumSet<Optimization>> optSets =
+      new ArrayList<EnumSet<Optimization>>();
+    List<String> optNames = new ArrayList<String>();
+    optSets.add(none);
+    optNames.add("none");
+    for (Optimization opt : Optimization.values()) {
+      if (asmOnly.contains(opt)) {
+        continue;
+      }
+      if (opt == Optimization.LINEAR_SCAN) {
+        // Linear scan only selects how regalloc allocates.
+        optSets.add(EnumSet.of(Optimization.REGISTER_ALLOCATION, opt));
+        optNames.add("regalloc+" + opt.flagName());
+        continue;
+      }
+      optSets.add(EnumSet.of(opt));
+      optNames.add(opt.flagName());
+    }
+    EnumSet<Optimization> all = EnumSet.allOf(Optimization.class);
+    all.remove(Optimization.GLOBAL_COMMON_SUBEXPR);
+    all.remove(Optimization.LINEAR_SCAN);
+    all.remove(Optimization.SSA);
+    optSets.add(all);
+    optNames.add("all");
+    EnumSet<Optimization> allLinear = EnumSet.copyOf(all);
+    allLinear.add(Optimization.LINEAR_SCAN);
+    optSets.add(allLinear);
+    optNames.add("all+linearscan");
+
+    for (int i = 0; i < optSets.size(); i++) {
+      final EnumSet<Optimization> opts = optSets.get(i);
+      list.add(new Benchmark("blocks/" + optNames.get(i)) {
+        @Override
+        Object setup(Input input) {
+          return CFGGenerator.generateCFG(input.parse(), opts);
+        }
+
+        @Override
+        Object run(Object state) {
+          return BasicBlockGraph.makeBasicBlockGraph(
+            (ControlFlowGraph) state, opts);
+        }
+      });
+    }
+
+    List<EnumSet<Optimization>> asmSets =
+      new ArrayList<EnumSet<Optimization>>();
+    List<String> asmNames = new ArrayList<String>();
+    asmSets.add(none);
+    asmNames.add("none");
+    for (Optimization opt : asmOnly) {
+      asmSets.add(EnumSet.of(opt));
+      asmNames.add(opt.flagName());
+    }
+    asmSets.add(all);
+    asmNames.add("all");
+    for (int i = 0; i < asmSets.size(); i++) {
+      final EnumSet<Optimization> opts = asmSets.get(i);
+      list.add(new Benchmark("asm/" + asmNames.get(i)) {
+        @Override
+        Object setup(Input input) {
+          ASTNode root = input.parse();
+          ControlFlowGraph cfg = BasicBlockGraph.makeBasicBlockGraph(
+            CFGGenerator.generateCFG(root, opts), opts);
+          SymbolTable st = root.getSymbolTable();
+          for (FieldDescriptor global : st.getFields()) {
+            cfg.putGlobal("." + global.getId(), global);
+          }
+          return new Lowered(cfg, st);
+        }
+
+        @Override
+        Object run(Object state) {
+          Lowered lowered = (Lowered) state;
+          return new AsmFile(lowered.cfg, lowered.st, discard, opts);
+        }
+      });
+    }
+
+    list.add(new Benchmark("liveness") {
+      @Override
+      Object setup(Input input) {
+        return methodHeads(input);
+      }
+
+      @Override
+      Object run(Object state) {
+        Object ret = null;
+        for (BasicBlockNode head : asHeads(state)) {
+          ret = new Liveness(head);
+        }
+        return ret;
+      }
+    });
+
+    list.add(new Benchmark("reachingdefs") {
+      @Override
+      Object setup(Input input) {
+        return methodHeads(input);
+      }
+
+      @Override
+      Object run(Object state) {
+        Object ret = null;
+        for (BasicBlockNode head : asHeads(state)) {
+          ret = new ReachingDefinitions(head);
+        }
+        return ret;
+      }
+    });
+
+    list.add(new Benchmark("availexprs") {
+      @Override
+      Object setup(Input input) {
+        return methodHeads(input);
+      }
+
+      @Override
+      Object run(Object state) {
+        Object ret = null;
+        for (BasicBlockNode head : asHeads(state)) {
+          ret = new AvailableExpressions(head);
+        }
+        return ret;
+      }
+    });
+
+    // Register allocation only runs as part of makeBasicBlockGraph, after
+    // the frame has been laid out, so time just that pass using the -stats
+    // instrumentation.  Compare the coloring allocator with linear scan.
+    list.add(regallocBenchmark("regalloc",
+      EnumSet.of(Optimization.REGISTER_ALLOCATION)));
+    list.add(regallocBenchmark("regalloc/linear",
+      EnumSet.of(Optimization.REGISTER_ALLOCATION,
+                 Optimization.LINEAR_SCAN)));
+
+    return list;
+  }
+
+  private static Benchmark regallocBenchmark(String name,
+      final EnumSet<Optimization> opts) {
+    return new Benchmark(name) {
+      @Override
+      Object setup(Input input) {
+        return CFGGenerator.generateCFG(input.parse(), opts);
+      }
+
+      @Override
+      Object run(Object state) {
+        return BasicBlockGraph.makeBasicBlockGraph(
+          (ControlFlowGraph) state, opts);
+      }
+
+      @Override
+      long measure(Object state) {
+        CompilerStats.clear();
+        CLI.stats = true;
+        try {
+          sink = run(state);
+        } finally {
+          CLI.stats = false;
+        }
+        return CompilerStats.getNanos(
+          Optimization.REGISTER_ALLOCATION.flagName());
+      }
+    };
+  }
+
+  private static List<BasicBlockNode> methodHeads(Input input) {
+    EnumSet<Optimization> none = EnumSet.noneOf(Optimization.class);
+    ControlFlowGraph cfg = BasicBlockGraph.makeBasicBlockGraph(
+      CFGGenerator.generateCFG(input.parse(), none), none);
+    List<BasicBlockNode> heads = new ArrayList<BasicBlockNode>();
+    for (String method : cfg.getMethods()) {
+      heads.add((BasicBlockNode) cfg.getMethod(method));
+    }
+    return heads;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<BasicBlockNode> asHeads(Object state) {
+    return (List<BasicBlockNode>) state;
+  }
+
+  private static List<Input> parseArgs(String[] args) throws IOException {
+    List<String> files = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-wi")) {
+        warmupIterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-i")) {
+        iterations = Math.max(Integer.parseInt(args[++i]), 1);
+      } else if (args[i].equals("-r")) {
+        iterationMillis = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-f")) {
+        filter = Pattern.compile(args[++i]);
+      } else if (args[i].equals("-methods")) {
+        methodCounts = parseInts(args[++i]);
+      } else if (args[i].equals("-depth")) {
+        loopDepths = parseInts(args[++i]);
+      } else {
+        files.add(args[i]);
+      }
+    }
+
+    if (files.isEmpty()) {
+      File[] dcf = new File("tests/optimizer/input").listFiles();
+      if (dcf != null) {
+        Arrays.sort(dcf);
+        for (File f : dcf) {
+          if (f.getName().endsWith(".dcf")) {
+            files.add(f.getPath());
+          }
+        }
+      }
+    }
+
+    List<Input> inputs = new ArrayList<Input>();
+    for (int n : methodCounts) {
+      inputs.add(new Input("methods-" + n, manyMethods(n).getBytes()));
+    }
+    for (int d : loopDepths) {
+      inputs.add(new Input("loops-" + d, nestedLoops(d).getBytes()));
+    }
+    for (String file : files) {
+      inputs.add(new Input(new File(file).getName(), readFile(file)));
+    }
+    return inputs;
+  }
+
+  private static int[] parseInts(String list) {
+    String[] parts = list.split(",");
+    int[] ret = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      ret[i] = Integer.parseInt(parts[i].trim());
+    }
+    return ret;
+  }
+
+  private static byte[] readFile(String filename) throws IOException {
+    File file = new File(filename);
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      int read = 0;
+      while (read < bytes.length) {
+        int n = in.read(bytes, read, bytes.length - read);
+        if (n < 0) {
+          break;
+        }
+        read += n;
+      }
+      return Arrays.copyOf(bytes, read);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns a program with n small methods, each with a loop, a branch and
+   * some array traffic, all called from main.
+   */
+  static String manyMethods(int n) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("class Program {\n  int g[100];\n\n");
+    for (int m = 0; m < n; m++) {
+      sb.append("  int m").append(m).append("(int x, int y) {\n")
+        .append("    int i, s, t;\n")
+        .append("    s = 0;\n")
+        .append("    for i = 0, 100 {\n")
+        .append("      t = x * i + y;\n")
+        .append("      if (t > ").append(m).append(") {\n")
+        .append("        s = s + t - g[i];\n")
+        .append("      } else {\n")
+        .append("        s = s - t + g[i];\n")
+        .append("      }\n")
+        .append("      g[i] = x * i + y;\n")
+        .append("    }\n")
+        .append("    return s;\n")
+        .append("  }\n\n");
+    }
+    sb.append("  void main() {\n    int t;\n    t = 0;\n");
+    for (int m = 0; m < n; m++) {
+      sb.append("    t = t + m").append(m).append("(t, ").append(m)
+        .append(");\n");
+    }
+    sb.append("    callout(\"printf\", \"%d\\n\", t);\n  }\n}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns a program whose main method contains loops nested depth deep,
+   * with work at every level.
+   */
+  static String nestedLoops(int depth) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("class Program {\n  int a[64];\n\n  void main() {\n    int s");
+    for (int d = 0; d < depth; d++) {
+      sb.append(", i").append(d);
+    }
+    sb.append(";\n    s = 0;\n");
+    StringBuilder indent = new StringBuilder("    ");
+    for (int d = 0; d < depth; d++) {
+      sb.append(indent).append("for i").append(d).append(" = 0, 2 {\n");
+      indent.append("  ");
+      sb.append(indent).append("s = s + i").append(d).append(" * ")
+        .append(d + 1).append(";\n");
+      sb.append(indent).append("a[s % 64] = a[i").append(d)
+        .append("] + s;\n");
+    }
+    for (int d = depth - 1; d >= 0; d--) {
+      indent.setLength(indent.length() - 2);
+      sb.append(indent).append("}\n");
+    }
+    sb.append("    callout(\"printf\", \"%d\\n\", s);\n  }\n}\n");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,437 @@
+package edu.mit.compilers.le02;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.mit.compilers.le02.Main.Optimization;
+
+/**
+ * Measures the speed of the code the compiler generates.  Every program in
+ * the codegen, optimizer and derby test suites is compiled under each set
+ * of optimizations, linked against lib6035, run several times and checked
+ * against its golden output.  The median run time of each program is then
+ * reported along with its speedup over the unoptimized build, as a table
+ * and optionally as CSV or JSON.
+ *
+ * Programs which call start_caliper/end_caliper are timed by the caliper;
+ * all others are timed by wall clock, which includes process startup.
+ *
+ * Usage: RuntimeBenchmark [-runs n] [-timeout s] [-f regex]
+ *                         [-opts set,set,...] [-combinations]
+ *                         [-assembler cmd] [-csv file] [-json file]
+ *
+ * An optimization set is "none", "all", or flag names joined by '+', for
+ * example "cp+dc"; a flag prefixed with '-' is left out, as in "all+-cp".
+ * The default sets are none, each flag alone (linearscan together with
+ * regalloc), all, and all+linearscan; -combinations runs all and then all
+ * with each of its flags left out in turn, which shows what each flag is
+ * worth alongside the others.  If -assembler is given, it is run as
+ * "cmd file.s binary libdir" in place of gcc, for example to use
+ * bin/assemble.sh.
+ */
+public class RuntimeBenchmark {
+  private static final Pattern CALIPER =
+    Pattern.compile("Timer: (\\d+) usecs");
+
+  private static int runs = 5;
+  private static long timeoutSeconds = 60;
+  private static Pattern filter = Pattern.compile(".*");
+  private static String assembler = null;
+  private static String csvFile = null;
+  private static String jsonFile = null;
+
+  /** A program from one of the test suites, and how to check it. */
+  private static class Program {
+    final String suite;
+    final File source;
+    final File libDir;
+    /** File copied into the working directory before each run, or null. */
+    final File data;
+    /** Expected stdout, or null if the program writes an output file. */
+    final File goldenStdout;
+    /** Name of the file the program writes, or null. */
+    final String outputName;
+    /** Expected contents of outputName. */
+    final File goldenOutput;
+
+    Program(String suite, File source, File libDir, File data,
+            File goldenStdout, String outputName, File goldenOutput) {
+      this.suite = suite;
+      this.source = source;
+      this.libDir = libDir;
+      this.data = data;
+      this.goldenStdout = goldenStdout;
+      this.outputName = outputName;
+      this.goldenOutput = goldenOutput;
+    }
+
+    String name() {
+      return source.getName().replaceFirst("\\.dcf$", "");
+    }
+  }
+
+  /** The outcome of benchmarking one program under one optimization set. */
+  private static class Result {
+    final Program program;
+    final String opts;
+    String status = "ok";
+    int runs;
+    long caliperUsecs = -1;
+    double wallMillis = -1;
+    double speedup = Double.NaN;
+
+    Result(Program program, String opts) {
+      this.program = program;
+      this.opts = opts;
+    }
+
+    /** The time used to compare optimization sets, in microseconds. */
+    double time() {
+      return (caliperUsecs >= 0) ? caliperUsecs : wallMillis * 1000;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    List<String> optSets = new ArrayList<String>();
+    boolean combinations = false;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-runs")) {
+        runs = Math.max(Integer.parseInt(args[++i]), 1);
+      } else if (args[i].equals("-timeout")) {
+        timeoutSeconds = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-f")) {
+        filter = Pattern.compile(args[++i]);
+      } else if (args[i].equals("-opts")) {
+        optSets.addAll(Arrays.asList(args[++i].split(",")));
+      } else if (args[i].equals("-combinations")) {
+        combinations = true;
+      } else if (args[i].equals("-assembler")) {
+        assembler = args[++i];
+      } else if (args[i].equals("-csv")) {
+        csvFile = args[++i];
+      } else if (args[i].equals("-json")) {
+        jsonFile = args[++i];
+      } else {
+        System.err.println("Unknown argument " + args[i]);
+        System.exit(1);
+      }
+    }
+    if (combinations) {
+      optSets.addAll(leaveOneOut());
+    } else if (optSets.isEmpty()) {
+      optSets.add("none");
+      for (Optimization opt : Optimization.values()) {
+        optSets.add((opt == Optimization.LINEAR_SCAN) ?
+                    "regalloc+" + opt.flagName() : opt.flagName());
+      }
+      optSets.add("all");
+      optSets.add("all+" + Optimization.LINEAR_SCAN.flagName());
+    }
+    // Speedups are relative to the unoptimized build, so always have one.
+    if (!optSets.contains("none")) {
+      optSets.add(0, "none");
+    }
+
+    List<Result> results = new ArrayList<Result>();
+    Map<Program, Result> baselines = new HashMap<Program, Result>();
+    System.out.println(String.format("%-10s %-24s %-28s %-16s %12s %10s %8s",
+      "Suite", "Program", "Opts", "Status", "Caliper us", "Wall ms",
+      "Speedup"));
+    for (Program p : findPrograms()) {
+      if (!filter.matcher(p.suite + "/" + p.name()).find()) {
+        continue;
+      }
+      for (String opts : optSets) {
+        Result r = benchmark(p, opts);
+        if (opts.equals("none")) {
+          baselines.put(p, r);
+        }
+        Result base = baselines.get(p);
+        if (base != null && base.status.equals("ok") &&
+            r.status.equals("ok") && r.time() > 0) {
+          r.speedup = base.time() / r.time();
+        }
+        results.add(r);
+        System.out.println(String.format(
+          "%-10s %-24s %-28s %-16s %12s %10s %8s",
+          p.suite, p.name(), opts, r.status,
+          (r.caliperUsecs < 0) ? "" : Long.toString(r.caliperUsecs),
+          (r.wallMillis < 0) ? "" : String.format("%.2f", r.wallMillis),
+          Double.isNaN(r.speedup) ? "" : String.format("%.3fx", r.speedup)));
+      }
+    }
+
+    if (csvFile != null) {
+      writeCsv(results);
+    }
+    if (jsonFile != null) {
+      writeJson(results);
+    }
+  }
+
+  /** Returns all, and all without each of the flags it turns on. */
+  private static List<String> leaveOneOut() {
+    List<String> sets = new ArrayList<String>();
+    sets.add("all");
+    for (Optimization opt : Optimization.values()) {
+      if (opt != Optimization.GLOBAL_COMMON_SUBEXPR &&
+          opt != Optimization.LINEAR_SCAN &&
+          opt != Optimization.SSA) {
+        sets.add("all+-" + opt.flagName());
+      }
+    }
+    return sets;
+  }
+
+  private static List<Program> findPrograms() {
+    List<Program> programs = new ArrayList<Program>();
+
+    File codegen = new File("tests/codegen");
+    for (File f : sources(new File(codegen, "input"))) {
+      programs.add(new Program("codegen", f, new File(codegen, "lib"), null,
+        new File(codegen, "output/" + f.getName() + ".out"), null, null));
+    }
+
+    File optimizer = new File("tests/optimizer");
+    for (File f : sources(new File(optimizer, "input"))) {
+      String name = f.getName().replaceFirst("\\.dcf$", "");
+      String image = name.split("_")[0] + ".pgm";
+      programs.add(new Program("optimizer", f, new File(optimizer, "lib"),
+        new File(optimizer, "data/" + image), null, name + ".pgm",
+        new File(optimizer, "output/" + name + ".pgm")));
+    }
+
+    File derby = new File("tests/derby");
+    programs.add(new Program("derby", new File(derby, "derby.dcf"), derby,
+      new File(derby, "input.ppm"), null, "output.ppm",
+      new File(derby, "golden.ppm")));
+
+    return programs;
+  }
+
+  private static List<File> sources(File dir) {
+    List<File> files = new ArrayList<File>();
+    File[] list = dir.listFiles();
+    if (list != null) {
+      Arrays.sort(list);
+      for (File f : list) {
+        if (f.getName().endsWith(".dcf")) {
+          files.add(f);
+        }
+      }
+    }
+    return files;
+  }
+
+  private static Result benchmark(Program p, String opts) throws IOException {
+    Result r = new Result(p, opts);
+    if (!p.source.isFile() || (p.data != null && !p.data.isFile()) ||
+        (p.goldenOutput != null && !p.goldenOutput.isFile())) {
+      r.status = "missing-files";
+      return r;
+    }
+
+    File dir = Files.createTempDirectory("runbench").toFile();
+    try {
+      File asm = new File(dir, p.name() + ".s");
+      File binary = new File(dir, p.name());
+
+      List<String> compile = new ArrayList<String>();
+      compile.add(new File(System.getProperty("java.home"), "bin/java")
+                  .getPath());
+      compile.add("-cp");
+      compile.add(System.getProperty("java.class.path"));
+      compile.add(Main.class.getName());
+      compile.add("-target");
+      compile.add("codegen");
+      compile.add("-o");
+      compile.add(asm.getPath());
+      compile.add(p.source.getPath());
+      if (!opts.equals("none")) {
+        compile.add("-opt");
+        compile.addAll(Arrays.asList(opts.split("\\+")));
+      }
+      if (exec(compile, null, null) != 0) {
+        r.status = "compile-failed";
+        return r;
+      }
+
+      List<String> link = new ArrayList<String>();
+      if (assembler != null) {
+        link.addAll(Arrays.asList(assembler.split(" ")));
+        link.addAll(Arrays.asList(asm.getPath(), binary.getPath(),
+                                  p.libDir.getPath()));
+      } else {
+        link.addAll(Arrays.asList("gcc", "-o", binary.getPath(),
+          asm.getPath(), "-L" + p.libDir.getPath(), "-l6035", "-lpthread"));
+      }
+      if (exec(link, null, null) != 0 || !binary.isFile()) {
+        r.status = "assemble-failed";
+        return r;
+      }
+
+      long[] caliper = new long[runs];
+      double[] wall = new double[runs];
+      for (int i = 0; i < runs; i++) {
+        if (p.data != null) {
+          Files.copy(p.data.toPath(), new File(dir, p.data.getName()).toPath(),
+                     java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        int code = exec(Arrays.asList(binary.getAbsolutePath()), dir, stdout);
+        wall[i] = (System.nanoTime() - start) / 1e6;
+        r.runs++;
+        if (code != 0) {
+          r.status = (code == -1) ? "timeout" : "run-failed";
+          return r;
+        }
+
+        String out = stdout.toString("ISO-8859-1");
+        if (!matchesGolden(p, dir, stdout.toByteArray())) {
+          r.status = "output-mismatch";
+          return r;
+        }
+        Matcher m = CALIPER.matcher(out);
+        caliper[i] = m.find() ? Long.parseLong(m.group(1)) : -1;
+      }
+
+      Arrays.sort(caliper);
+      Arrays.sort(wall);
+      r.caliperUsecs = caliper[runs / 2];
+      r.wallMillis = wall[runs / 2];
+      return r;
+    } finally {
+      delete(dir);
+    }
+  }
+
+  private static boolean matchesGolden(Program p, File dir, byte[] stdout)
+      throws IOException {
+    if (p.goldenStdout != null) {
+      return p.goldenStdout.isFile() &&
+        Arrays.equals(stdout, Files.readAllBytes(p.goldenStdout.toPath()));
+    }
+    File output = new File(dir, p.outputName);
+    return output.isFile() &&
+      Arrays.equals(Files.readAllBytes(output.toPath()),
+                    Files.readAllBytes(p.goldenOutput.toPath()));
+  }
+
+  /**
+   * Runs a command, returning its exit code, or -1 if it timed out.  If
+   * stdout is null the command's output is discarded.  Output goes to a
+   * file rather than a pipe, so that a program which hangs cannot keep us
+   * from timing it out.
+   */
+  private static int exec(List<String> command, File dir,
+                          ByteArrayOutputStream stdout) throws IOException {
+    ProcessBuilder pb = new ProcessBuilder(command);
+    pb.directory(dir);
+    File out = null;
+    if (stdout != null) {
+      out = File.createTempFile("runbench", ".out");
+      pb.redirectOutput(out);
+      pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+    } else {
+      pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+      pb.redirectErrorStream(true);
+    }
+    try {
+      Process proc = pb.start();
+      proc.getOutputStream().close();
+      try {
+        if (!proc.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+          proc.destroyForcibly();
+          return -1;
+        }
+      } catch (InterruptedException ie) {
+        proc.destroyForcibly();
+        return -1;
+      }
+      if (out != null) {
+        stdout.write(Files.readAllBytes(out.toPath()));
+      }
+      return proc.exitValue();
+    } finally {
+      if (out != null) {
+        out.delete();
+      }
+    }
+  }
+
+  private static void delete(File f) {
+    File[] children = f.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    f.delete();
+  }
+
+  private static void writeCsv(List<Result> results) throws IOException {
+    PrintStream ps = new PrintStream(new FileOutputStream(csvFile));
+    try {
+      ps.println("suite,program,opts,status,runs,caliper_usecs,wall_ms," +
+                 "speedup");
+      for (Result r : results) {
+        ps.println(r.program.suite + "," + r.program.name() + "," + r.opts +
+          "," + r.status + "," + r.runs + "," +
+          ((r.caliperUsecs < 0) ? "" : Long.toString(r.caliperUsecs)) + "," +
+          ((r.wallMillis < 0) ? "" : String.format("%.3f", r.wallMillis)) +
+          "," + (Double.isNaN(r.speedup) ? ""
+                                         : String.format("%.4f", r.speedup)));
+      }
+    } finally {
+      ps.close();
+    }
+  }
+
+  private static void writeJson(List<Result> results) throws IOException {
+    PrintStream ps = new PrintStream(new FileOutputStream(jsonFile));
+    try {
+      ps.println("[");
+      for (int i = 0; i < results.size(); i++) {
+        Result r = results.get(i);
+        StringBuilder sb = new StringBuilder();
+        sb.append("  {\"suite\": \"").append(r.program.suite)
+          .append("\", \"program\": \"").append(r.program.name())
+          .append("\", \"opts\": \"").append(r.opts)
+          .append("\", \"status\": \"").append(r.status)
+          .append("\", \"runs\": ").append(r.runs);
+        if (r.caliperUsecs >= 0) {
+          sb.append(", \"caliper_usecs\": ").append(r.caliperUsecs);
+        }
+        if (r.wallMillis >= 0) {
+          sb.append(", \"wall_ms\": ")
+            .append(String.format("%.3f", r.wallMillis));
+        }
+        if (!Double.isNaN(r.speedup)) {
+          sb.append(", \"speedup\": ")
+            .append(String.format("%.4f", r.speedup));
+        }
+        sb.append("}");
+        if (i < results.size() - 1) {
+          sb.append(",");
+        }
+        ps.println(sb.toString());
+      }
+      ps.println("]");
+    } finally {
+      ps.close();
+    }
+  }
+}
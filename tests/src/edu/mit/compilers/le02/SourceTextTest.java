@@ -0,0 +1,37 @@
+package edu.mit.compilers.le02;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the {@link SourceText} line index.
+ */
+public class SourceTextTest extends TestCase {
+
+  public void testLines() {
+    SourceText source = new SourceText("class Program {\r\n  void main() {\n" +
+                                       "  }\n}");
+    assertEquals(4, source.getLineCount());
+    assertEquals("class Program {", source.getLine(1));
+    assertEquals("  void main() {", source.getLine(2));
+    assertEquals("  }", source.getLine(3));
+    assertEquals("}", source.getLine(4));
+    assertNull(source.getLine(0));
+    assertNull(source.getLine(5));
+  }
+
+  public void testTrailingNewline() {
+    SourceText source = new SourceText("a\n\nb\n");
+    assertEquals(4, source.getLineCount());
+    assertEquals("", source.getLine(2));
+    assertEquals("b", source.getLine(3));
+    assertEquals("", source.getLine(4));
+  }
+
+  public void testMissingLocations() {
+    assertNull(SourceText.getLine(null));
+    assertNull(SourceText.getLine(
+      SourceLocation.getSourceLocationWithoutDetails()));
+    assertNull(SourceText.getLine(
+      new SourceLocation("no/such/file.dcf", 1, 1)));
+  }
+}
@@ -0,0 +1,258 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.Main.Optimization;
+
+public class AsmBasicBlockTest extends TestCase {
+  private static final String DIVISIONS =
+    "class Program {\n" +
+    "  int live(int x, int y, int z) {\n" +
+    "    return x / y + z;\n" +
+    "  }\n" +
+    "  int dead(int x, int y, int z) {\n" +
+    "    int w;\n" +
+    "    w = z + 1;\n" +
+    "    return x / y + w;\n" +
+    "  }\n" +
+    "  int pair(int x, int y, int z) {\n" +
+    "    int q, r;\n" +
+    "    q = x / y;\n" +
+    "    r = x % y;\n" +
+    "    return q + r + z;\n" +
+    "  }\n" +
+    "  void main() {\n" +
+    "    int a, b, q, r;\n" +
+    "    a = 17;\n" +
+    "    b = 5;\n" +
+    "    q = a / b;\n" +
+    "    r = a % b;\n" +
+    "    callout(\"printf\", \"%d %d %d %d %d\\n\", q, r,\n" +
+    "            live(a, b, 1), dead(a, b, 1), pair(a, b, 1));\n" +
+    "  }\n" +
+    "}\n";
+
+  private static final String CONDITIONS =
+    "class Program {\n" +
+    "  void only(int a, int b) {\n" +
+    "    if (a < b) {\n" +
+    "      callout(\"printf\", \"lt\\n\");\n" +
+    "    }\n" +
+    "  }\n" +
+    "  void kept(int a, int b) {\n" +
+    "    boolean c;\n" +
+    "    c = a < b;\n" +
+    "    if (c) {\n" +
+    "      callout(\"printf\", \"lt\\n\");\n" +
+    "    }\n" +
+    "    callout(\"printf\", \"%d\\n\", c);\n" +
+    "  }\n" +
+    "  void param(boolean c) {\n" +
+    "    if (c) {\n" +
+    "      callout(\"printf\", \"yes\\n\");\n" +
+    "    }\n" +
+    "  }\n" +
+    "  void negated(boolean c) {\n" +
+    "    boolean d;\n" +
+    "    d = !c;\n" +
+    "    if (d) {\n" +
+    "      callout(\"printf\", \"no\\n\");\n" +
+    "    }\n" +
+    "  }\n" +
+    "  void stored(int a) {\n" +
+    "    boolean c;\n" +
+    "    c = a > 3;\n" +
+    "    callout(\"printf\", \"%d\\n\", a);\n" +
+    "    if (!c) {\n" +
+    "      callout(\"printf\", \"no\\n\");\n" +
+    "    }\n" +
+    "  }\n" +
+    "  void main() {\n" +
+    "    only(1, 2);\n" +
+    "    kept(1, 2);\n" +
+    "    param(true);\n" +
+    "    negated(false);\n" +
+    "    stored(1);\n" +
+    "  }\n" +
+    "}\n";
+
+  private static final String ARRAYS =
+    "class Program {\n" +
+    "  int a[10];\n" +
+    "  void main() {\n" +
+    "    int i;\n" +
+    "    i = 3;\n" +
+    "    a[i] = 7;\n" +
+    "    callout(\"printf\", \"%d\\n\", a[i]);\n" +
+    "  }\n" +
+    "}\n";
+
+  /** Returns the assembly for one method of the program. */
+  private static List<String> asm(String program, String method,
+                                  Optimization... opts) {
+    return CodegenUtil.method(CodegenUtil.compile(program, opts), method);
+  }
+
+  /** Returns the opcode of the instruction after the given one. */
+  private static String opcodeAfter(List<String> asm, String line) {
+    int at = asm.indexOf(line);
+    assertTrue(asm.toString(), at >= 0 && at + 1 < asm.size());
+    return asm.get(at + 1).split(" ")[0];
+  }
+
+  public void testDivisionPairSharesIdivl() {
+    List<String> main = asm(DIVISIONS, "main");
+    assertEquals(1, Collections.frequency(main, "cdq"));
+    assertTrue(main.toString(), CodegenUtil.contains(main,
+        "movl %r10d, %eax",
+        "cdq",
+        "idivl %r11d",
+        "movl %eax, -24(%rbp)",
+        "movl %edx, -32(%rbp)"));
+    // Without register allocation, main never keeps anything in RDX.
+    assertFalse(main.contains("pushq %rdx"));
+  }
+
+  public void testKeepsRdxFreeAcrossDivision() {
+    // z arrives in RDX and is still needed after x / y, so the allocator
+    // moves it elsewhere once rather than saving it around the idivl.
+    List<String> live =
+      asm(DIVISIONS, "live", Optimization.REGISTER_ALLOCATION);
+    assertTrue(live.toString(), CodegenUtil.contains(live,
+        "xchgq %rdx, %r9",
+        "movl %edi, %eax",
+        "cdq",
+        "idivl %esi",
+        "movl %eax, %r8d",
+        "addl %r8d, %r9d"));
+    assertFalse(live.contains("pushq %rdx"));
+  }
+
+  public void testSavesRdxLiveAcrossDivision() {
+    // Linear scan may leave z in RDX, so it is saved around the idivl.
+    List<String> live = asm(DIVISIONS, "live",
+        Optimization.REGISTER_ALLOCATION, Optimization.LINEAR_SCAN);
+    assertTrue(live.toString(), CodegenUtil.contains(live,
+        "movl %edi, %eax",
+        "pushq %rdx",
+        "cdq",
+        "idivl %esi",
+        "movl %eax, %ebx",
+        "popq %rdx",
+        "addl %ebx, %edx"));
+  }
+
+  public void testSkipsRdxDeadAfterDivision() {
+    // z is read before x / y, and not after.
+    List<String> dead =
+      asm(DIVISIONS, "dead", Optimization.REGISTER_ALLOCATION);
+    assertTrue(dead.toString(), CodegenUtil.contains(dead,
+        "movl %edi, %eax",
+        "cdq",
+        "idivl %esi",
+        "movl %eax, %r8d"));
+    assertFalse(dead.contains("pushq %rdx"));
+    assertFalse(dead.contains("popq %rdx"));
+  }
+
+  public void testResultAllocatedToRdx() {
+    // r is given RDX, so the remainder is left where idivl put it, and the
+    // old value of RDX is moved out of the way rather than saved.
+    List<String> pair =
+      asm(DIVISIONS, "pair", Optimization.REGISTER_ALLOCATION);
+    assertEquals(1, Collections.frequency(pair, "cdq"));
+    assertTrue(pair.toString(), CodegenUtil.contains(pair,
+        "movl %edi, %eax",
+        "cdq",
+        "idivl %esi",
+        "movl %eax, %r8d",
+        "addl %edx, %r9d"));
+    assertFalse(pair.contains("pushq %rdx"));
+  }
+
+  public void testComparisonOnlyBranchedOn() {
+    // Without -opt flags, the boolean is stored even though only the
+    // branch reads it...
+    List<String> only = asm(CONDITIONS, "only");
+    assertTrue(only.toString(), CodegenUtil.contains(only,
+        "xorl %eax, %eax",
+        "cmpl %esi, %edi",
+        "movl $1, %r10d",
+        "cmovll %r10d, %eax",
+        "movl %eax, -16(%rbp)"));
+
+    // ...but with it, the branch is taken straight from the comparison.
+    only = asm(CONDITIONS, "only", Optimization.CONDITION_FLAGS);
+    assertEquals("jl", opcodeAfter(only, "cmpl %esi, %edi"));
+    assertFalse(only.contains("xorl %eax, %eax"));
+    assertFalse(only.contains("cmovll %r10d, %eax"));
+  }
+
+  public void testComparisonReadAfterBranchIsStored() {
+    List<String> kept =
+      asm(CONDITIONS, "kept", Optimization.CONDITION_FLAGS);
+    assertTrue(kept.toString(), CodegenUtil.contains(kept,
+        "xorl %eax, %eax",
+        "cmpl %esi, %edi",
+        "movl $1, %r10d",
+        "cmovll %r10d, %eax",
+        "movl %eax, -8(%rbp)"));
+    // The branch still uses the flags rather than the stored value.
+    assertEquals("jl", opcodeAfter(kept, "movl %eax, -8(%rbp)"));
+    assertFalse(kept.contains("cmpl $1, %r11d"));
+  }
+
+  public void testBooleanVariableTestedInPlace() {
+    // Without -opt flags, booleans are copied and compared to true.
+    List<String> param = asm(CONDITIONS, "param");
+    assertTrue(param.toString(), CodegenUtil.contains(param,
+        "movl %edi, %r11d",
+        "cmpl $1, %r11d"));
+
+    param = asm(CONDITIONS, "param", Optimization.CONDITION_FLAGS);
+    assertEquals("jne", opcodeAfter(param, "testl %edi, %edi"));
+    assertFalse(param.contains("cmpl $1, %r11d"));
+
+    // A boolean in memory is compared to false where it is.
+    List<String> stored =
+      asm(CONDITIONS, "stored", Optimization.CONDITION_FLAGS);
+    assertEquals("jne", opcodeAfter(stored, "cmpl $0, -8(%rbp)"));
+  }
+
+  public void testNegationOnlyBranchedOn() {
+    // d = !c is never stored; the branch tests c and jumps if it is false.
+    List<String> negated =
+      asm(CONDITIONS, "negated", Optimization.CONDITION_FLAGS);
+    assertEquals("je", opcodeAfter(negated, "testl %edi, %edi"));
+    assertFalse(negated.contains("xorl $1, %r10d"));
+  }
+
+  public void testArrayElementsTakeEightBytes() {
+    List<String> asm = CodegenUtil.compile(ARRAYS);
+    assertTrue(asm.toString(), CodegenUtil.contains(asm,
+        ".a:",
+        ".rept 10",
+        ".quad 0",
+        ".endr"));
+    List<String> main = CodegenUtil.method(asm, "main");
+    assertTrue(main.contains("movq %r10, (%r12, %r11, 8)"));
+    assertTrue(main.contains("movq (%r12, %r10, 8), %r10"));
+  }
+
+  public void testCompactArrayElementsTakeFourBytes() {
+    List<String> asm =
+      CodegenUtil.compile(ARRAYS, Optimization.COMPACT_ARRAYS);
+    assertTrue(asm.toString(), CodegenUtil.contains(asm,
+        ".align 8",
+        ".a:",
+        ".rept 10",
+        ".long 0",
+        ".endr"));
+    List<String> main = CodegenUtil.method(asm, "main");
+    assertTrue(main.contains("movl %r10d, (%r12, %r11, 4)"));
+    assertTrue(main.contains("movsxd (%r12, %r10, 4), %r10"));
+    assertFalse(main.toString(), main.toString().contains(", 8)"));
+  }
+}
@@ -0,0 +1,73 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.Main.Optimization;
+import edu.mit.compilers.tools.CLI;
+
+public class AsmFileTest extends TestCase {
+  /** The optimizations -opt all turns on. */
+  private static Optimization[] all() {
+    List<Optimization> opts = new ArrayList<Optimization>();
+    for (Optimization opt : Optimization.values()) {
+      if (opt != Optimization.GLOBAL_COMMON_SUBEXPR &&
+          opt != Optimization.LINEAR_SCAN &&
+          opt != Optimization.SSA) {
+        opts.add(opt);
+      }
+    }
+    return opts.toArray(new Optimization[opts.size()]);
+  }
+
+  /**
+   * Returns a program whose methods each have a loop which is run in
+   * parallel, reading locals of the method it is in.
+   */
+  private static String loops(int methods) {
+    StringBuilder program = new StringBuilder();
+    program.append("class Program {\n");
+    program.append("  int a[4096], b[4096];\n");
+    for (int m = 0; m < methods; m++) {
+      program.append(
+        "  void f" + m + "(int n) {\n" +
+        "    int i, k, s;\n" +
+        "    k = n * " + (m + 2) + ";\n" +
+        "    s = n - " + m + ";\n" +
+        "    for i = 0, 4096 {\n" +
+        "      int t;\n" +
+        "      t = b[i] * k + s;\n" +
+        "      a[i] = t / 3 + a[i] % 7;\n" +
+        "    }\n" +
+        "    for i = 0, n {\n" +
+        "      s = s + a[i];\n" +
+        "    }\n" +
+        "    callout(\"printf\", \"%d\\n\", s);\n" +
+        "  }\n");
+    }
+    program.append("  void main() {\n");
+    for (int m = 0; m < methods; m++) {
+      program.append("    f" + m + "(" + (m + 5) + ");\n");
+    }
+    program.append("  }\n");
+    program.append("}\n");
+    return program.toString();
+  }
+
+  public void testParallelMatchesSerial() {
+    String program = loops(8);
+    boolean parallel = CLI.parallel;
+    try {
+      CLI.parallel = false;
+      List<String> serial = CodegenUtil.compile(program, all());
+      assertTrue(serial.contains("f0.parallel0:"));
+      CLI.parallel = true;
+      for (int round = 0; round < 4; round++) {
+        assertEquals(serial, CodegenUtil.compile(program, all()));
+      }
+    } finally {
+      CLI.parallel = parallel;
+    }
+  }
+}
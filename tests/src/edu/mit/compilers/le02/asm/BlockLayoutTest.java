@@ -0,0 +1,59 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.HaltStatement;
+import edu.mit.compilers.le02.cfg.NOPStatement;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+
+public class BlockLayoutTest extends TestCase {
+  private BasicBlockNode block(String id) {
+    BasicBlockNode node = new BasicBlockNode(id, "main");
+    node.addStatement(new OpStatement(null, AsmOp.LESS_THAN,
+        Argument.makeArgument(1), Argument.makeArgument(2), null));
+    return node;
+  }
+
+  public void testLoopIsRotated() {
+    BasicBlockNode entry = block("entry"), header = block("header"),
+                   body = block("body"), exit = block("exit");
+    entry.setNext(header);
+    header.setBranchTarget(exit);
+    header.setNext(body);
+    body.setNext(header);
+
+    // The test ends up below the body, falling through to the exit.
+    assertEquals(Arrays.asList(entry, body, header, exit),
+                 BlockLayout.layout(entry));
+  }
+
+  public void testErrorPathsGoLast() {
+    BasicBlockNode entry = block("entry"), check = block("check"),
+                   error = block("error"), access = block("access"),
+                   exit = block("exit");
+    entry.setNext(check);
+    check.setBranchTarget(error);
+    check.setNext(access);
+    error.addStatement(new HaltStatement(null));
+    access.setBranchTarget(check);
+    access.setNext(exit);
+
+    assertEquals(Arrays.asList(entry, check, access, exit, error),
+                 BlockLayout.layout(entry));
+  }
+
+  public void testEmptyBlocksAreSkipped() {
+    BasicBlockNode entry = block("entry"), exit = block("exit");
+    BasicBlockNode empty = new BasicBlockNode("empty", "main");
+    empty.addStatement(new NOPStatement(null));
+    entry.setNext(empty);
+    empty.setNext(exit);
+
+    assertEquals(exit, BlockLayout.skipEmpty(empty));
+    assertEquals(Arrays.asList(entry, exit), BlockLayout.layout(entry));
+  }
+}
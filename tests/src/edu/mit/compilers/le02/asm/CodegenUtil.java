@@ -0,0 +1,117 @@
+package edu.mit.compilers.le02.asm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import junit.framework.Assert;
+import antlr.ANTLRException;
+import antlr.ASTFactory;
+import edu.mit.compilers.le02.ErrorReporting;
+import edu.mit.compilers.le02.StreamUtil;
+import edu.mit.compilers.le02.Main.Optimization;
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.cfg.BasicBlockGraph;
+import edu.mit.compilers.le02.cfg.CFGGenerator;
+import edu.mit.compilers.le02.cfg.ControlFlowGraph;
+import edu.mit.compilers.le02.grammar.DecafParser;
+import edu.mit.compilers.le02.grammar.DecafScanner;
+import edu.mit.compilers.le02.grammar.LineNumberedAST;
+import edu.mit.compilers.le02.ir.IrGenerator;
+import edu.mit.compilers.le02.semanticchecks.MasterChecker;
+import edu.mit.compilers.le02.stgenerator.SymbolTableGenerator;
+import edu.mit.compilers.le02.symboltable.FieldDescriptor;
+import edu.mit.compilers.le02.symboltable.SymbolTable;
+import edu.mit.compilers.tools.CLI;
+
+/**
+ * Runs whole programs through code generation, so that tests can check
+ * the assembly written for them.
+ */
+public class CodegenUtil {
+  /**
+   * Parses a program and builds its symbol tables, failing the test if it
+   * does not pass the semantic checks.
+   */
+  public static ASTNode parse(String program) {
+    ErrorReporting.clearErrors();
+    try {
+      DecafScanner scanner = new DecafScanner(new DataInputStream(
+          StreamUtil.createInputStream(program)));
+      DecafParser parser = new DecafParser(scanner);
+      ASTFactory factory = new ASTFactory();
+      factory.setASTNodeClass(LineNumberedAST.class);
+      parser.setASTFactory(factory);
+      parser.program();
+
+      ASTNode parent = IrGenerator.generateIR(parser.getAST());
+      SymbolTableGenerator.generateSymbolTable(parent);
+      MasterChecker.checkAll(parent);
+      Assert.assertTrue(ErrorReporting.noErrors());
+      return parent;
+    } catch (ANTLRException e) {
+      Assert.fail(e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Compiles a program with the given optimizations, returning the lines
+   * of assembly written for it, trimmed and without comments.
+   */
+  public static List<String> compile(String program, Optimization... opts) {
+    CLI.sourceComments = false;
+    EnumSet<Optimization> enabled = EnumSet.noneOf(Optimization.class);
+    enabled.addAll(Arrays.asList(opts));
+
+    ASTNode parent = parse(program);
+    SymbolTable st = parent.getSymbolTable();
+    ControlFlowGraph cfg = BasicBlockGraph.makeBasicBlockGraph(
+        CFGGenerator.generateCFG(parent, enabled), enabled);
+    for (FieldDescriptor global : st.getFields()) {
+      cfg.putGlobal("." + global.getId(), global);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new AsmFile(cfg, st, new PrintStream(out), enabled).write();
+
+    List<String> lines = new ArrayList<String>();
+    for (String line : out.toString().split("\n")) {
+      line = line.trim();
+      if (line.length() > 0 && !line.startsWith("#")) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Returns the lines of the named method, from its label up to the label
+   * of whatever follows it.
+   */
+  public static List<String> method(List<String> asm, String name) {
+    int start = asm.indexOf(name + ":");
+    Assert.assertTrue(name, start >= 0);
+    int end = start + 1;
+    while (end < asm.size() && !asm.get(end).matches("\\w+:")) {
+      end++;
+    }
+    return asm.subList(start, end);
+  }
+
+  /**
+   * Returns whether the given lines appear one after another in the
+   * assembly.
+   */
+  public static boolean contains(List<String> asm, String... lines) {
+    for (int ii = 0; ii + lines.length <= asm.size(); ii++) {
+      if (asm.subList(ii, ii + lines.length).equals(Arrays.asList(lines))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,100 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.SourceLocation;
+import edu.mit.compilers.tools.CLI;
+
+public class FrameLoweringTest extends TestCase {
+  private List<AsmObject> method;
+  private Set<AsmInstruction> frame;
+
+  public void setUp() {
+    CLI.sourceComments = false;
+    method = new ArrayList<AsmObject>();
+    frame = new LinkedHashSet<AsmInstruction>();
+  }
+
+  private AsmInstruction add(AsmOpCode op, String first, String second) {
+    SourceLocation sl = SourceLocation.getSourceLocationWithoutDetails();
+    AsmInstruction inst = new AsmInstruction(op,
+        first == null ? null : new StringAsmArg(first),
+        second == null ? null : new StringAsmArg(second), sl);
+    method.add(inst);
+    return inst;
+  }
+
+  private void addFrame(AsmOpCode op, String first, String second) {
+    frame.add(add(op, first, second));
+  }
+
+  private List<String> lower() {
+    FrameLowering.lower(method, frame, new HashSet<AsmInstruction>());
+    List<String> lines = new ArrayList<String>();
+    for (AsmObject obj : method) {
+      lines.add(obj.toString().trim());
+    }
+    return lines;
+  }
+
+  public void testLeafUsesRedZone() {
+    addFrame(AsmOpCode.ENTER, "$16", "$0");
+    addFrame(AsmOpCode.PUSHQ, "%r12", null);
+    add(AsmOpCode.MOVL, "%edi", "-8(%rbp)");
+    add(AsmOpCode.MOVSXD, "-8(%rbp)", "%rax");
+    addFrame(AsmOpCode.POPQ, "%r12", null);
+    addFrame(AsmOpCode.LEAVE, null, null);
+    add(AsmOpCode.RET, null, null);
+
+    assertEquals(Arrays.asList(
+        "movl %edi, -8(%rsp)",
+        "movsxd -8(%rsp), %rax",
+        "ret"), lower());
+  }
+
+  public void testLargeLeafFrame() {
+    addFrame(AsmOpCode.ENTER, "$256", "$0");
+    addFrame(AsmOpCode.PUSHQ, "%rbx", null);
+    add(AsmOpCode.MOVL, "16(%rbp)", "%ebx");
+    add(AsmOpCode.MOVL, "%ebx", "-256(%rbp)");
+    addFrame(AsmOpCode.POPQ, "%rbx", null);
+    addFrame(AsmOpCode.LEAVE, null, null);
+    add(AsmOpCode.RET, null, null);
+
+    assertEquals(Arrays.asList(
+        "pushq %rbx",
+        "subq $256, %rsp",
+        "movl 272(%rsp), %ebx",
+        "movl %ebx, 0(%rsp)",
+        "addq $256, %rsp",
+        "popq %rbx",
+        "ret"), lower());
+  }
+
+  public void testCallerKeepsFramePointer() {
+    addFrame(AsmOpCode.ENTER, "$16", "$0");
+    addFrame(AsmOpCode.PUSHQ, "%r12", null);
+    add(AsmOpCode.MOVQ, "$.a", "%r12");
+    add(AsmOpCode.CALL, "foo", null);
+    addFrame(AsmOpCode.POPQ, "%r12", null);
+    addFrame(AsmOpCode.LEAVE, null, null);
+    add(AsmOpCode.RET, null, null);
+
+    assertEquals(Arrays.asList(
+        "pushq %rbp",
+        "movq %rsp, %rbp",
+        "subq $16, %rsp",
+        "pushq %r12",
+        "movq $.a, %r12",
+        "call foo",
+        "popq %r12",
+        "leave",
+        "ret"), lower());
+  }
+}
@@ -0,0 +1,72 @@
+package edu.mit.compilers.le02.asm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.SourceLocation;
+import edu.mit.compilers.tools.CLI;
+
+public class InstructionSchedulerTest extends TestCase {
+  private List<AsmObject> block;
+
+  public void setUp() {
+    CLI.sourceComments = false;
+    block = new ArrayList<AsmObject>();
+  }
+
+  private void add(AsmOpCode op, String first, String second) {
+    SourceLocation sl = SourceLocation.getSourceLocationWithoutDetails();
+    block.add(new AsmInstruction(op, new StringAsmArg(first),
+                                 new StringAsmArg(second), sl));
+  }
+
+  private List<String> lines() {
+    List<String> lines = new ArrayList<String>();
+    for (AsmObject obj : block) {
+      lines.add(obj.toString().trim());
+    }
+    return lines;
+  }
+
+  public void testLoadSeparatedFromUse() {
+    add(AsmOpCode.MOVQ, "-8(%rbp)", "%r10");
+    add(AsmOpCode.ADDL, "%r10d", "%r11d");
+    add(AsmOpCode.MOVL, "$5", "%r12d");
+    InstructionScheduler.schedule(block);
+
+    List<String> lines = lines();
+    assertEquals("movq -8(%rbp), %r10", lines.get(0));
+    assertEquals("movl $5, %r12d", lines.get(1));
+    assertEquals("addl %r10d, %r11d", lines.get(2));
+  }
+
+  public void testDependencesKept() {
+    add(AsmOpCode.MOVL, "%r10d", "-8(%rbp)");
+    add(AsmOpCode.MOVL, "-8(%rbp)", "%r11d");
+    add(AsmOpCode.XORL, "%eax", "%eax");
+    add(AsmOpCode.CMPL, "$0", "%r11d");
+    add(AsmOpCode.CMOVLL, "%r10d", "%eax");
+    block.add(new AsmString("  jl .block1"));
+    InstructionScheduler.schedule(block);
+
+    List<String> lines = lines();
+    assertTrue(lines.indexOf("movl %r10d, -8(%rbp)") <
+               lines.indexOf("movl -8(%rbp), %r11d"));
+    assertTrue(lines.indexOf("xorl %eax, %eax") <
+               lines.indexOf("cmpl $0, %r11d"));
+    assertEquals("cmovll %r10d, %eax", lines.get(4));
+    assertEquals("jl .block1", lines.get(5));
+  }
+
+  public void testMayAlias() {
+    assertTrue(InstructionScheduler.mayAlias("-8(%rbp)", "-8(%rbp)"));
+    assertFalse(InstructionScheduler.mayAlias("-8(%rbp)", "-16(%rbp)"));
+    assertFalse(InstructionScheduler.mayAlias(".a", ".b"));
+    assertFalse(InstructionScheduler.mayAlias("-8(%rbp)", ".a"));
+    assertFalse(InstructionScheduler.mayAlias("-8(%rbp)",
+                                              "(%r12, %r11, 8)"));
+    assertTrue(InstructionScheduler.mayAlias(".a", "(%r12, %r11, 8)"));
+    assertTrue(InstructionScheduler.mayAlias("-8(%rbp)", "8(%rsp)"));
+  }
+}
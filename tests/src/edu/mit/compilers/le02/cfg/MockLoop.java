@@ -0,0 +1,86 @@
+package edu.mit.compilers.le02.cfg;
+
+import java.util.ArrayList;
+
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.ast.ASTNode;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.MethodDescriptor;
+import edu.mit.compilers.le02.symboltable.SymbolTable;
+
+/**
+ * The blocks of a counted loop, for tests of passes over loops:
+ *   entry:  i = 0; n = bound
+ *   header: c = i test n; if c goto exit
+ *   body:   goto header
+ *   exit:
+ * Tests fill in the body and whatever else they need.  Every statement
+ * made here hangs off a root whose symbol table holds main and its locals,
+ * so that passes which look up the method or add locals can find them.
+ */
+public final class MockLoop {
+  public final SymbolTable st;
+  public final ASTNode root;
+  public final LocalDescriptor i, n, c;
+  public final BasicBlockNode entry, header, body, exit;
+  public final OpStatement test;
+
+  public MockLoop(AsmOp op, int bound) {
+    st = new SymbolTable(null);
+    root = new MockASTRoot(null, st);
+    st.put("main", new MethodDescriptor(st, "main", DecafType.VOID, st,
+        new ArrayList<String>(), null, null), null);
+    i = local("i");
+    n = local("n");
+    c = local("c", DecafType.BOOLEAN);
+
+    entry = new BasicBlockNode("main", "main");
+    header = new BasicBlockNode("header", "main");
+    body = new BasicBlockNode("body", "main");
+    exit = new BasicBlockNode("exit", "main");
+
+    entry.addStatement(move(0, i));
+    entry.addStatement(move(bound, n));
+    entry.setNext(header);
+    test = op(op, i, n, c);
+    header.addStatement(test);
+    header.setBranchTarget(exit);
+    header.setNext(body);
+    body.setNext(header);
+  }
+
+  /** Adds an int local to the loop's symbol table. */
+  public LocalDescriptor local(String name) {
+    return local(name, DecafType.INT);
+  }
+
+  public LocalDescriptor local(String name, DecafType type) {
+    LocalDescriptor ld = new LocalDescriptor(st, name, type,
+                                             st.getNonconflictingOffset());
+    st.put(name, ld, null);
+    return ld;
+  }
+
+  /** Returns target = x op y, where x and y are locals or ints. */
+  public OpStatement op(AsmOp op, Object x, Object y,
+                        LocalDescriptor target) {
+    return new OpStatement(root, op, arg(x), arg(y), target);
+  }
+
+  public OpStatement move(Object from, LocalDescriptor to) {
+    return new OpStatement(root, AsmOp.MOVE, arg(from), arg(to), null);
+  }
+
+  /** Returns i = i + 1. */
+  public OpStatement increment() {
+    return op(AsmOp.ADD, i, 1, i);
+  }
+
+  public static Argument arg(Object o) {
+    if (o instanceof Integer) {
+      return Argument.makeArgument((Integer) o);
+    }
+    return Argument.makeArgument((LocalDescriptor) o);
+  }
+}
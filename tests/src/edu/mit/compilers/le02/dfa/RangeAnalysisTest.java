@@ -0,0 +1,65 @@
+package edu.mit.compilers.le02.dfa;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.MockLoop;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+
+public class RangeAnalysisTest extends TestCase {
+  private MockLoop loop;
+  private LocalDescriptor i, t;
+  private BasicBlockNode body;
+  private OpStatement test, increment;
+
+  /**
+   * Builds the loop
+   *   entry:  i = 0; n = 10
+   *   header: c = i >= n; if c goto exit
+   *   body:   ...; i = i + 1; goto header
+   */
+  public void setUp() {
+    loop = new MockLoop(AsmOp.GREATER_OR_EQUAL, 10);
+    i = loop.i;
+    t = loop.local("t");
+    body = loop.body;
+    test = loop.test;
+    increment = loop.increment();
+  }
+
+  public void testLoopTestNarrowsBody() {
+    OpStatement scale = loop.op(AsmOp.MULTIPLY, i, 4, t);
+    body.addStatement(scale);
+    body.addStatement(increment);
+
+    RangeAnalysis ranges = new RangeAnalysis(loop.entry);
+    // The header widens, since the back edge joins it...
+    assertEquals(0, ranges.getArg1Range(test).getLow());
+    assertEquals(Integer.MAX_VALUE, ranges.getArg1Range(test).getHigh());
+    // ...but the body only sees what the test lets through.
+    assertEquals(0, ranges.getArg1Range(scale).getLow());
+    assertEquals(9, ranges.getArg1Range(scale).getHigh());
+    assertEquals(9, ranges.getArg1Range(increment).getHigh());
+  }
+
+  public void testJoinInsideLoopWidens() {
+    // body:  if c goto latch
+    // then:  t = 1
+    // latch: i = i + 1; goto header
+    BasicBlockNode then = new BasicBlockNode("then", "main");
+    BasicBlockNode latch = new BasicBlockNode("latch", "main");
+    body.addStatement(loop.op(AsmOp.LESS_THAN, i, 5, loop.c));
+    body.setBranchTarget(latch);
+    body.setNext(then);
+    then.addStatement(loop.move(1, t));
+    then.setNext(latch);
+    latch.addStatement(increment);
+    latch.setNext(loop.header);
+
+    // The analysis still terminates, and stays sound at the join.
+    RangeAnalysis ranges = new RangeAnalysis(loop.entry);
+    assertTrue(ranges.getArg1Range(increment).getLow() <= 0);
+    assertTrue(ranges.getArg1Range(increment).getHigh() >= 9);
+  }
+}
@@ -0,0 +1,86 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.FieldDescriptor;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+
+public class CpVisitorTest extends TestCase {
+  private FieldDescriptor g;
+  private LocalDescriptor t, u;
+  private BasicBlockNode block;
+
+  public void setUp() {
+    g = new FieldDescriptor(null, "g", DecafType.INT);
+    t = new LocalDescriptor(null, "t", DecafType.INT, -8);
+    u = new LocalDescriptor(null, "u", DecafType.INT, -16);
+    block = new BasicBlockNode("main", "main");
+  }
+
+  private static OpStatement move(Argument from, Argument to) {
+    return new OpStatement(null, AsmOp.MOVE, from, to, null);
+  }
+
+  private static CallStatement call(String name, boolean callout) {
+    return new CallStatement(null, name, new ArrayList<Argument>(), null,
+                             callout);
+  }
+
+  /** Runs copy propagation over the block and returns its statements. */
+  private List<BasicStatement> propagate() {
+    new CpVisitor().visit(block);
+    return block.getStatements();
+  }
+
+  private static Argument source(BasicStatement stmt) {
+    return ((OpStatement) stmt).getArg1();
+  }
+
+  public void testGlobalReloadedAfterCall() {
+    // As global promotion writes around a call: g = t; f(); t = g; u = t
+    block.addStatement(move(Argument.makeArgument(t),
+                            Argument.makeArgument(g)));
+    block.addStatement(call("f", false));
+    block.addStatement(move(Argument.makeArgument(g),
+                            Argument.makeArgument(t)));
+    block.addStatement(move(Argument.makeArgument(t),
+                            Argument.makeArgument(u)));
+
+    List<BasicStatement> stmts = propagate();
+    // f may have written g, so the reload still reads it, and t is a copy
+    // of g from then on.
+    assertEquals(Argument.makeArgument(g), source(stmts.get(2)));
+    assertEquals(Argument.makeArgument(g), source(stmts.get(3)));
+  }
+
+  public void testGlobalCopyKeptAcrossCallout() {
+    block.addStatement(move(Argument.makeArgument(t),
+                            Argument.makeArgument(g)));
+    block.addStatement(call("printf", true));
+    block.addStatement(move(Argument.makeArgument(g),
+                            Argument.makeArgument(u)));
+
+    // Callouts cannot write g, so it still holds t.
+    assertEquals(Argument.makeArgument(t), source(propagate().get(2)));
+  }
+
+  public void testCopyOfGlobalDroppedAfterCall() {
+    // u = g; f(); t = u must not become t = g.
+    block.addStatement(move(Argument.makeArgument(g),
+                            Argument.makeArgument(u)));
+    block.addStatement(call("f", false));
+    block.addStatement(move(Argument.makeArgument(u),
+                            Argument.makeArgument(t)));
+
+    assertEquals(Argument.makeArgument(u), source(propagate().get(2)));
+  }
+}
@@ -0,0 +1,47 @@
+package edu.mit.compilers.le02.opt;
+
+import junit.framework.TestCase;
+
+public class DivisionStrengthReductionTest extends TestCase {
+  private static final int[] DIVIDENDS = {
+    0, 1, -1, 2, -2, 6, -6, 7, -7, 100, -100, 12345, -12345,
+    Integer.MAX_VALUE, Integer.MAX_VALUE - 1,
+    Integer.MIN_VALUE, Integer.MIN_VALUE + 1,
+  };
+
+  /** Divides the way the generated multiply-high sequence does. */
+  private static int divide(int x, int d) {
+    long[] magic = DivisionStrengthReduction.magic(d);
+    int q = (int) ((x * magic[0]) >> 32) >> magic[1];
+    return q - (x >> 31);
+  }
+
+  public void testKnownMagicNumbers() {
+    assertEquals(0x55555556L, DivisionStrengthReduction.magic(3)[0]);
+    assertEquals(0, DivisionStrengthReduction.magic(3)[1]);
+    assertEquals(0x66666667L, DivisionStrengthReduction.magic(5)[0]);
+    assertEquals(1, DivisionStrengthReduction.magic(5)[1]);
+    assertEquals(0x92492493L, DivisionStrengthReduction.magic(7)[0]);
+    assertEquals(2, DivisionStrengthReduction.magic(7)[1]);
+  }
+
+  public void testMatchesIdiv() {
+    for (int d = 3; d < 1000; d++) {
+      for (int x : DIVIDENDS) {
+        assertEquals(x + " / " + d, x / d, divide(x, d));
+      }
+      for (int x = -3 * d; x <= 3 * d; x++) {
+        assertEquals(x + " / " + d, x / d, divide(x, d));
+      }
+    }
+  }
+
+  public void testLargeDivisors() {
+    int[] divisors = {641, 1000003, 1 << 30 | 1, Integer.MAX_VALUE};
+    for (int d : divisors) {
+      for (int x : DIVIDENDS) {
+        assertEquals(x + " / " + d, x / d, divide(x, d));
+      }
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.CallStatement;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.FieldDescriptor;
+
+public class GlobalPromotionTest extends TestCase {
+  private FieldDescriptor a, b;
+  private Map<String, List<BasicBlockNode>> methods;
+
+  public void setUp() {
+    a = new FieldDescriptor(null, "a", DecafType.INT);
+    b = new FieldDescriptor(null, "b", DecafType.INT);
+    methods = new LinkedHashMap<String, List<BasicBlockNode>>();
+  }
+
+  private BasicBlockNode method(String name) {
+    BasicBlockNode block = new BasicBlockNode(name, name);
+    List<BasicBlockNode> blocks = new ArrayList<BasicBlockNode>();
+    blocks.add(block);
+    methods.put(name, blocks);
+    return block;
+  }
+
+  private CallStatement call(String name) {
+    return new CallStatement(null, name, new ArrayList<Argument>(), null,
+                             false);
+  }
+
+  public void testSummaryFollowsCalls() {
+    // main calls f, which calls g, which writes a; f reads b.
+    method("main").addStatement(call("f"));
+    BasicBlockNode f = method("f");
+    f.addStatement(new OpStatement(null, AsmOp.ADD, Argument.makeArgument(b),
+                                   Argument.makeArgument(1), null));
+    f.addStatement(call("g"));
+    method("g").addStatement(new OpStatement(null, AsmOp.MOVE,
+        Argument.makeArgument(2), Argument.makeArgument(a), null));
+
+    GlobalPromotion.Summary summary = GlobalPromotion.summarize(methods);
+    assertTrue(summary.mayModify("main", a));
+    assertFalse(summary.mayModify("main", b));
+    assertTrue(summary.mayReference("main", b));
+    assertFalse(summary.mayReference("g", b));
+    assertFalse(summary.mayModify("g", b));
+  }
+
+  public void testUnknownCalleeTouchesEverything() {
+    method("main").addStatement(call("create_and_run_threads"));
+    method("f");
+
+    GlobalPromotion.Summary summary = GlobalPromotion.summarize(methods);
+    assertTrue(summary.mayModify("main", a));
+    assertTrue(summary.mayReference("main", b));
+    assertFalse(summary.mayModify("f", a));
+  }
+}
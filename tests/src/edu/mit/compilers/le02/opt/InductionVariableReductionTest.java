@@ -0,0 +1,189 @@
+package edu.mit.compilers.le02.opt;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.MockLoop;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+public class InductionVariableReductionTest extends TestCase {
+  private MockLoop loop;
+  private LocalDescriptor i, n, b, t, j, s;
+  private BasicBlockNode entry, header, body;
+
+  /**
+   * Builds the loop
+   *   entry:  i = 0; n = bound; s = 0; b = 3
+   *   header: c = i test n; if c goto exit
+   *   body:   ...; s = s + j; i = i + 1; goto header
+   *   exit:   return s
+   * leaving the rest of the body for each test to fill in.
+   */
+  private void buildLoop(AsmOp test, int bound) {
+    loop = new MockLoop(test, bound);
+    i = loop.i;
+    n = loop.n;
+    b = loop.local("b");
+    t = loop.local("t");
+    j = loop.local("j");
+    s = loop.local("s");
+    entry = loop.entry;
+    header = loop.header;
+    body = loop.body;
+
+    entry.addStatement(loop.move(0, s));
+    entry.addStatement(loop.move(3, b));
+    loop.exit.addStatement(new OpStatement(loop.root, AsmOp.RETURN,
+                                           MockLoop.arg(s), null, null));
+  }
+
+  /** Fills in the body with j = expr; s = s + j; i = i + 1. */
+  private void body(OpStatement... exprs) {
+    for (OpStatement expr : exprs) {
+      body.addStatement(expr);
+    }
+    body.addStatement(loop.op(AsmOp.ADD, s, j, s));
+    body.addStatement(loop.increment());
+  }
+
+  private static OpStatement find(BasicBlockNode node, AsmOp op,
+                                  TypedDescriptor target) {
+    for (BasicStatement stmt : node.getStatements()) {
+      if (stmt instanceof OpStatement && stmt.getResult() == target &&
+          ((OpStatement) stmt).getOp() == op) {
+        return (OpStatement) stmt;
+      }
+    }
+    return null;
+  }
+
+  private static boolean reads(Argument arg, TypedDescriptor var) {
+    return arg != null && arg.getDesc() == var;
+  }
+
+  /** The block which runs just before the loop. */
+  private BasicBlockNode preheader() {
+    for (BasicBlockNode pred : header.getPredecessors()) {
+      if (pred != body) {
+        return pred;
+      }
+    }
+    return null;
+  }
+
+  private OpStatement test() {
+    return (OpStatement) header.getLastStatement();
+  }
+
+  public void testDerivesAffineFunction() {
+    buildLoop(AsmOp.GREATER_OR_EQUAL, 10);
+    // j = 4 * i + b, computed through t.
+    OpStatement mul = loop.op(AsmOp.MULTIPLY, i, 4, t);
+    OpStatement add = loop.op(AsmOp.ADD, t, b, j);
+    body(mul, add);
+
+    InductionVariableReduction.reduce(entry);
+    BasicBlockNode preheader = preheader();
+
+    // Both are computed once before the loop...
+    assertNotNull(find(preheader, AsmOp.MULTIPLY, t));
+    assertNotNull(find(preheader, AsmOp.ADD, j));
+    assertFalse(body.getStatements().contains(mul));
+    assertFalse(body.getStatements().contains(add));
+
+    // ...and j is stepped by 4 each iteration.  The test moves from i to
+    // t and then to j, which leaves nothing reading i or t in the loop.
+    OpStatement step = find(body, AsmOp.ADD, j);
+    assertNotNull(step);
+    assertEquals("$4", step.getArg1().toString());
+    assertTrue(reads(step.getArg2(), j));
+    assertNull(find(body, AsmOp.ADD, t));
+    assertNull(find(body, AsmOp.ADD, i));
+    assertEquals(2, body.getStatements().size());
+
+    // j >= 4 * n + b, with the bound computed before the loop.
+    assertTrue(reads(test().getArg1(), j));
+    OpStatement bound = find(preheader, AsmOp.ADD,
+                             test().getArg2().getDesc());
+    assertNotNull(bound);
+    assertTrue(reads(bound.getArg2(), b));
+    OpStatement scaled = find(preheader, AsmOp.MULTIPLY,
+                              bound.getArg1().getDesc());
+    assertNotNull(scaled);
+    assertTrue(reads(scaled.getArg1(), n));
+  }
+
+  public void testReplacesExitTest() {
+    buildLoop(AsmOp.GREATER_OR_EQUAL, 10);
+    body(loop.op(AsmOp.MULTIPLY, i, 4, j));
+
+    InductionVariableReduction.reduce(entry);
+    BasicBlockNode preheader = preheader();
+
+    // The test now compares j against 4 * n, computed before the loop.
+    assertTrue(reads(test().getArg1(), j));
+    LocalDescriptor scaled = (LocalDescriptor) test().getArg2().getDesc();
+    OpStatement def = find(preheader, AsmOp.MULTIPLY, scaled);
+    assertNotNull(def);
+    assertTrue(reads(def.getArg1(), n));
+    assertEquals("$4", def.getArg2().toString());
+
+    // Nothing reads i any more, so its increment is gone.
+    assertNull(find(body, AsmOp.ADD, i));
+  }
+
+  public void testKeepsTestWhenScaledBoundOverflows() {
+    // 4 * 1000000000 does not fit, so j < 4 * n is not the same test.
+    buildLoop(AsmOp.GREATER_OR_EQUAL, 1000000000);
+    body(loop.op(AsmOp.MULTIPLY, i, 4, j));
+
+    InductionVariableReduction.reduce(entry);
+    assertTrue(reads(test().getArg1(), i));
+    assertTrue(reads(test().getArg2(), n));
+    assertNotNull(find(body, AsmOp.ADD, i));
+  }
+
+  public void testKeepsEqualityTestForEvenFactor() {
+    // Multiplying by 4 is not one to one once it wraps around, so i == n
+    // cannot become j == 4 * n.
+    buildLoop(AsmOp.EQUAL, 10);
+    body(loop.op(AsmOp.MULTIPLY, i, 4, j));
+
+    InductionVariableReduction.reduce(entry);
+    assertTrue(reads(test().getArg1(), i));
+  }
+
+  public void testReplacesEqualityTestForOddFactor() {
+    buildLoop(AsmOp.EQUAL, 10);
+    body(loop.op(AsmOp.MULTIPLY, i, 3, j));
+
+    InductionVariableReduction.reduce(entry);
+    assertTrue(reads(test().getArg1(), j));
+  }
+
+  public void testKeepsOrderedTestForNegativeFactor() {
+    // Multiplying by -4 reverses the order of the values compared.
+    buildLoop(AsmOp.GREATER_OR_EQUAL, 10);
+    body(loop.op(AsmOp.MULTIPLY, i, -4, j));
+
+    InductionVariableReduction.reduce(entry);
+    assertTrue(reads(test().getArg1(), i));
+  }
+
+  public void testLeavesNonAffineAlone() {
+    buildLoop(AsmOp.GREATER_OR_EQUAL, 10);
+    OpStatement square = loop.op(AsmOp.MULTIPLY, i, i, t);
+    OpStatement half = loop.op(AsmOp.DIVIDE, t, 2, j);
+    body(square, half);
+
+    InductionVariableReduction.reduce(entry);
+    assertTrue(body.getStatements().contains(square));
+    assertTrue(body.getStatements().contains(half));
+    assertNotNull(find(body, AsmOp.ADD, i));
+    assertTrue(reads(test().getArg1(), i));
+  }
+}
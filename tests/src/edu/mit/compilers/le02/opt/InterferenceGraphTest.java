@@ -0,0 +1,113 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class InterferenceGraphTest extends TestCase {
+  private InterferenceGraph ig;
+  private Web[] webs;
+  private Map<Web, Long> costs;
+
+  private void makeGraph(int n) {
+    ig = new InterferenceGraph();
+    webs = new Web[n];
+    costs = new HashMap<Web, Long>();
+    for (int i = 0; i < n; i++) {
+      webs[i] = new Web(i, null, null);
+      ig.addNode(webs[i]);
+      costs.put(webs[i], 10L);
+    }
+  }
+
+  private void link(int a, int b) {
+    ig.linkNodes(webs[a], webs[b]);
+  }
+
+  /**
+   * A four-cycle has no node of degree below two, but opposite corners can
+   * share a color, so optimistic coloring needs no spill.
+   */
+  public void testOptimisticColoring() {
+    makeGraph(4);
+    link(0, 1);
+    link(1, 2);
+    link(2, 3);
+    link(3, 0);
+
+    assertTrue(ig.colorGraph(2, costs).isEmpty());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(webs[i].getColor() >= 0);
+      assertFalse(webs[i].getColor() == webs[(i + 1) % 4].getColor());
+    }
+  }
+
+  public void testCheapestWebIsSpilled() {
+    makeGraph(4);
+    for (int i = 0; i < 4; i++) {
+      for (int j = i + 1; j < 4; j++) {
+        link(i, j);
+      }
+    }
+    costs.put(webs[2], 1L);
+
+    List<Web> spilled = ig.colorGraph(3, costs);
+    assertEquals(1, spilled.size());
+    assertSame(webs[2], spilled.get(0));
+    assertEquals(-1, webs[2].getColor());
+  }
+
+  public void testMovesAreCoalesced() {
+    makeGraph(3);
+    link(0, 1);
+    ig.addMove(webs[1], webs[2]);
+
+    assertTrue(ig.colorGraph(2, costs).isEmpty());
+    assertEquals(webs[1].getColor(), webs[2].getColor());
+    assertFalse(webs[0].getColor() == webs[1].getColor());
+  }
+
+  public void testPreferenceIsHonored() {
+    makeGraph(2);
+    link(0, 1);
+    ig.addPreference(webs[0], 3);
+    ig.addPreference(webs[1], 3);
+
+    assertTrue(ig.colorGraph(4, costs).isEmpty());
+    assertEquals(3, webs[0].getColor());
+    assertFalse(webs[1].getColor() == 3);
+  }
+
+  public void testCallCrossingGetsCalleeSaved() {
+    makeGraph(3);
+    link(0, 1);
+    ig.setCalleeSavedColors(new int[] { 0, 1 });
+    ig.addCallCrossing(webs[1]);
+    // A caller-saved register preference is ignored across calls.
+    ig.addPreference(webs[1], 3);
+
+    assertTrue(ig.colorGraph(4, costs).isEmpty());
+    assertTrue(webs[1].getColor() <= 1);
+    assertTrue(webs[0].getColor() >= 2);
+    assertTrue(webs[2].getColor() >= 2);
+  }
+
+  /** A long path needs only two colors, whatever order it is built in. */
+  public void testLongPath() {
+    int n = 20000;
+    makeGraph(n);
+    for (int i = 1; i < n; i += 2) {
+      link(i - 1, i);
+    }
+    for (int i = 2; i < n; i += 2) {
+      link(i - 1, i);
+    }
+
+    assertTrue(ig.colorGraph(2, costs).isEmpty());
+    for (int i = 1; i < n; i++) {
+      assertFalse(webs[i - 1].getColor() == webs[i].getColor());
+    }
+  }
+}
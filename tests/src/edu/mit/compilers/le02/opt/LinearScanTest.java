@@ -0,0 +1,54 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class LinearScanTest extends TestCase {
+  private List<LinearScan.Interval> intervals;
+
+  public void setUp() {
+    intervals = new ArrayList<LinearScan.Interval>();
+  }
+
+  private Web interval(int start, int end, int preferredColor) {
+    Web web = new Web(intervals.size(), null, null);
+    LinearScan.Interval i = new LinearScan.Interval(web, preferredColor);
+    i.extend(start);
+    i.extend(end);
+    intervals.add(i);
+    return web;
+  }
+
+  public void testDisjointIntervalsShareColor() {
+    Web a = interval(0, 3, -1);
+    Web b = interval(4, 7, -1);
+    Web c = interval(2, 5, -1);
+
+    assertTrue(LinearScan.allocate(intervals, 2).isEmpty());
+    assertEquals(a.getColor(), b.getColor());
+    assertFalse(a.getColor() == c.getColor());
+  }
+
+  public void testLongestIntervalIsSpilled() {
+    Web a = interval(0, 20, -1);
+    Web b = interval(1, 4, -1);
+    Web c = interval(2, 6, -1);
+
+    List<Web> spilled = LinearScan.allocate(intervals, 2);
+    assertEquals(1, spilled.size());
+    assertSame(a, spilled.get(0));
+    assertEquals(-1, a.getColor());
+    assertFalse(b.getColor() == c.getColor());
+  }
+
+  public void testPreferenceIsHonored() {
+    Web a = interval(0, 5, 2);
+    Web b = interval(1, 5, 2);
+
+    assertTrue(LinearScan.allocate(intervals, 3).isEmpty());
+    assertEquals(2, a.getColor());
+    assertFalse(b.getColor() == 2);
+  }
+}
@@ -0,0 +1,107 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.MockLoop;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+
+public class LoopInvariantCodeMotionTest extends TestCase {
+  private MockLoop loop;
+  private LocalDescriptor i, n, c, k, r;
+  private BasicBlockNode entry, header, body, exit;
+
+  /**
+   * Builds the loop
+   *   entry:  i = 0; n = 10
+   *   header: c = i < n; if c goto exit
+   *   body:   ...; i = i + 1; goto header
+   *   exit:
+   * leaving the body for each test to fill in.
+   */
+  public void setUp() {
+    loop = new MockLoop(AsmOp.LESS_THAN, 10);
+    i = loop.i;
+    n = loop.n;
+    c = loop.c;
+    k = loop.local("k");
+    r = loop.local("r");
+    entry = loop.entry;
+    header = loop.header;
+    body = loop.body;
+    exit = loop.exit;
+  }
+
+  public void testHoistsIntoNewPreheader() {
+    OpStatement invariant = loop.op(AsmOp.ADD, n, 5, k);
+    body.addStatement(invariant);
+    body.addStatement(loop.op(AsmOp.ADD, i, k, r));
+    body.addStatement(loop.increment());
+
+    List<BasicBlockNode> preheaders =
+      LoopInvariantCodeMotion.hoistInvariants(entry);
+    assertEquals(1, preheaders.size());
+    BasicBlockNode preheader = preheaders.get(0);
+    assertEquals("header_pre", preheader.getId());
+    assertSame(preheader, entry.getNext());
+    assertSame(header, preheader.getNext());
+    assertEquals(1, preheader.getStatements().size());
+    assertSame(invariant, preheader.getStatements().get(0));
+    assertFalse(body.getStatements().contains(invariant));
+    // The back edge still goes straight to the header.
+    assertSame(header, body.getNext());
+  }
+
+  /**
+   * Builds a body which only computes k = n + 5 on some iterations:
+   *   body:  c = i < 5; if c goto latch
+   *   then:  k = n + 5
+   *   latch: i = i + 1; goto header
+   * and returns the definition of k.
+   */
+  private OpStatement conditionalDefinition() {
+    BasicBlockNode then = new BasicBlockNode("then", "main");
+    BasicBlockNode latch = new BasicBlockNode("latch", "main");
+    body.addStatement(loop.op(AsmOp.LESS_THAN, i, 5, c));
+    body.setBranchTarget(latch);
+    body.setNext(then);
+    OpStatement def = loop.op(AsmOp.ADD, n, 5, k);
+    then.addStatement(def);
+    then.setNext(latch);
+    latch.addStatement(loop.increment());
+    latch.setNext(header);
+    return def;
+  }
+
+  public void testKeepsDefinitionNotDominatingExitWhenLiveOut() {
+    OpStatement def = conditionalDefinition();
+    exit.addStatement(loop.move(k, r));
+
+    assertTrue(LoopInvariantCodeMotion.hoistInvariants(entry).isEmpty());
+    assertSame(header, entry.getNext());
+    assertTrue(def.toString(), body.getNext().getStatements().contains(def));
+  }
+
+  public void testHoistsDefinitionNotDominatingExitWhenDeadOut() {
+    OpStatement def = conditionalDefinition();
+
+    List<BasicBlockNode> preheaders =
+      LoopInvariantCodeMotion.hoistInvariants(entry);
+    assertEquals(1, preheaders.size());
+    assertTrue(preheaders.get(0).getStatements().contains(def));
+  }
+
+  public void testKeepsExpressionOfVariantOperand() {
+    OpStatement variant = loop.op(AsmOp.MULTIPLY, i, 2, k);
+    body.addStatement(variant);
+    body.addStatement(loop.move(k, r));
+    body.addStatement(loop.increment());
+
+    assertTrue(LoopInvariantCodeMotion.hoistInvariants(entry).isEmpty());
+    assertSame(header, entry.getNext());
+    assertTrue(body.getStatements().contains(variant));
+  }
+}
@@ -0,0 +1,114 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.asm.CodegenUtil;
+import edu.mit.compilers.le02.ast.ForNode;
+
+public class ParallelLoopsTest extends TestCase {
+  /**
+   * Returns the variables of the loops found in a method with the given
+   * body, which may use the arrays a and b, the parameter n and the locals
+   * i, j, k and s.
+   */
+  private static List<String> parallel(String body) {
+    String program =
+      "class Program {\n" +
+      "  int a[4096], b[4096];\n" +
+      "  int g(int x) {\n" +
+      "    return x;\n" +
+      "  }\n" +
+      "  void f(int n) {\n" +
+      "    int i, j, k, s;\n" +
+      "    k = n;\n" +
+      "    s = 0;\n" +
+      body +
+      "  }\n" +
+      "  void main() {\n" +
+      "    f(4);\n" +
+      "  }\n" +
+      "}\n";
+    List<String> vars = new ArrayList<String>();
+    for (ForNode loop :
+         ParallelLoops.findParallelLoops(CodegenUtil.parse(program))
+         .keySet()) {
+      vars.add(loop.getInit().getLoc().getName());
+    }
+    return vars;
+  }
+
+  private static void assertParallel(String body) {
+    assertEquals(body, 1, parallel(body).size());
+  }
+
+  private static void assertSerial(String body) {
+    assertTrue(body, parallel(body).isEmpty());
+  }
+
+  public void testIndependentIterations() {
+    assertParallel("for i = 0, n { a[i] = b[i] + k; }\n");
+    assertParallel("for i = 0, 4096 { a[i] = a[i] * 2; }\n");
+    // Each iteration owns the pair of elements it writes.
+    assertParallel("for i = 0, 2048 { a[2*i] = a[2*i+1]; }\n");
+    // A scalar declared in the body is private to each iteration.
+    assertParallel("for i = 0, n { int t; t = b[i]; a[i] = t * t; }\n");
+  }
+
+  public void testLoopCarriedDependence() {
+    assertSerial("for i = 0, n { a[i+1] = a[i]; }\n");
+    assertSerial("for i = 1, n { a[i] = a[i-1] + 1; }\n");
+  }
+
+  public void testMixedStrides() {
+    assertSerial("for i = 0, n { a[2*i] = a[i]; }\n");
+  }
+
+  public void testZeroStrideWrite() {
+    assertSerial("for i = 0, n { a[0] = b[i]; }\n");
+    assertSerial("for i = 0, n { a[k] = b[i]; }\n");
+  }
+
+  public void testSharedScalarWrite() {
+    assertSerial("for i = 0, n { s = s + a[i]; }\n");
+    assertSerial("for i = 0, n { k = a[i]; }\n");
+  }
+
+  public void testCallsAndControlFlow() {
+    assertSerial("for i = 0, n { a[i] = g(i); }\n");
+    assertSerial("for i = 0, n { callout(\"printf\", \"%d\\n\", a[i]); }\n");
+    assertSerial("for i = 0, n { if (a[i] > 0) { break; } b[i] = 1; }\n");
+    assertSerial("for i = 0, n { a[i] = 1; return; }\n");
+  }
+
+  public void testIndexNotAffine() {
+    assertSerial("for i = 0, n { a[i*i] = 1; }\n");
+    assertSerial("for i = 0, n { a[b[i]] = 1; }\n");
+  }
+
+  public void testIndexNotInvariant() {
+    assertSerial("for i = 0, n { int t; t = b[i]; a[i+t] = 1; }\n");
+  }
+
+  public void testParamRead() {
+    assertSerial("for i = 0, 4096 { a[i] = n; }\n");
+  }
+
+  public void testUnprofitable() {
+    assertSerial("for i = 0, 64 { a[i] = b[i]; }\n");
+  }
+
+  public void testOnlyOutermostLoopReported() {
+    List<String> vars = parallel(
+        "for i = 0, 64 { for j = 0, 64 { a[64*i+j] = b[j]; } }\n");
+    assertEquals(1, vars.size());
+    assertEquals("i", vars.get(0));
+
+    // The inner loop runs in parallel when the outer one cannot.
+    vars = parallel(
+        "for i = 0, 64 { for j = 0, k { a[j] = a[j] + b[j]; } }\n");
+    assertEquals(1, vars.size());
+    assertEquals("j", vars.get(0));
+  }
+}
@@ -0,0 +1,57 @@
+package edu.mit.compilers.le02.opt;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.DecafType;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+public class PolynomialTest extends TestCase {
+  private LocalDescriptor i, j, n;
+
+  public void setUp() {
+    i = new LocalDescriptor(null, "i", DecafType.INT, -8);
+    j = new LocalDescriptor(null, "j", DecafType.INT, -16);
+    n = new LocalDescriptor(null, "n", DecafType.INT, -24);
+  }
+
+  private Polynomial var(TypedDescriptor desc) {
+    return Polynomial.variable(desc);
+  }
+
+  public void testArithmetic() {
+    // (i + 2) * n - 2 * n == n * i
+    Polynomial p = var(i).plus(2).times(var(n)).plus(var(n).times(-2));
+    assertEquals(var(n).times(var(i)), p);
+    assertEquals(2, p.getDegree());
+    assertFalse(p.isConstant());
+
+    Polynomial zero = p.plus(p.times(-1));
+    assertTrue(zero.isZero());
+    assertEquals(Polynomial.constant(0), zero);
+    assertEquals(7, Polynomial.constant(3).plus(4).getConstant());
+  }
+
+  public void testCoefficientOf() {
+    // n*i + 3*j + 5
+    Polynomial p = var(n).times(var(i)).plus(var(j).times(3)).plus(5);
+    assertEquals(var(n), p.coefficientOf(i));
+    assertEquals(Polynomial.constant(3), p.coefficientOf(j));
+    assertTrue(p.coefficientOf(new LocalDescriptor(
+        null, "k", DecafType.INT, -32)).isZero());
+
+    Set<TypedDescriptor> loopVars = new HashSet<TypedDescriptor>();
+    loopVars.add(i);
+    loopVars.add(j);
+    assertEquals(Polynomial.constant(5), p.without(loopVars));
+  }
+
+  public void testTermOrderIsStable() {
+    Polynomial a = var(j).plus(var(i)).plus(var(n));
+    Polynomial b = var(n).plus(var(i)).plus(var(j));
+    assertEquals(a.toString(), b.toString());
+    assertEquals(a.getTerms().size(), 3);
+  }
+}
@@ -0,0 +1,37 @@
+package edu.mit.compilers.le02.ssa;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+
+public class ConditionalConstantPropagationTest extends TestCase {
+  private static long fold(AsmOp op, int a, int b) {
+    return ConditionalConstantPropagation.fold(op, a, b);
+  }
+
+  public void testArithmeticWraps() {
+    assertEquals(Integer.MIN_VALUE,
+                 fold(AsmOp.ADD, Integer.MAX_VALUE, 1));
+    assertEquals(Integer.MAX_VALUE,
+                 fold(AsmOp.SUBTRACT, Integer.MIN_VALUE, 1));
+    assertEquals(-2, fold(AsmOp.MULTIPLY, Integer.MAX_VALUE, 2));
+  }
+
+  public void testDivisionTruncates() {
+    assertEquals(-2, fold(AsmOp.DIVIDE, -7, 3));
+    assertEquals(-1, fold(AsmOp.MODULO, -7, 3));
+    assertEquals(1, fold(AsmOp.MODULO, 7, -3));
+  }
+
+  public void testTrappingDivisionIsNotFolded() {
+    long zero = fold(AsmOp.DIVIDE, 5, 0);
+    assertTrue(zero < Integer.MIN_VALUE || zero > Integer.MAX_VALUE);
+    long overflow = fold(AsmOp.MODULO, Integer.MIN_VALUE, -1);
+    assertTrue(overflow < Integer.MIN_VALUE || overflow > Integer.MAX_VALUE);
+  }
+
+  public void testComparisons() {
+    assertEquals(1, fold(AsmOp.LESS_THAN, -1, 0));
+    assertEquals(0, fold(AsmOp.GREATER_OR_EQUAL, -1, 0));
+    assertEquals(1, fold(AsmOp.NOT_EQUAL, 3, 4));
+  }
+}
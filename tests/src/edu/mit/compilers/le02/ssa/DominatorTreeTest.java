@@ -0,0 +1,104 @@
+package edu.mit.compilers.le02.ssa;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+
+public class DominatorTreeTest extends TestCase {
+  private BasicBlockNode block(String id) {
+    return new BasicBlockNode(id, "main");
+  }
+
+  public void testDiamond() {
+    BasicBlockNode entry = block("entry"), then = block("then"),
+                   other = block("else"), join = block("join");
+    entry.setBranchTarget(then);
+    entry.setNext(other);
+    then.setNext(join);
+    other.setNext(join);
+
+    DominatorTree dom = new DominatorTree(entry);
+    assertEquals(entry, dom.getBlocks().get(0));
+    assertEquals(entry, dom.getIdom(join));
+    assertEquals(entry, dom.getIdom(then));
+    assertTrue(dom.getFrontier(then).contains(join));
+    assertTrue(dom.getFrontier(other).contains(join));
+    assertTrue(dom.getFrontier(entry).isEmpty());
+    assertFalse(dom.dominates(then, join));
+    assertTrue(dom.dominates(entry, join));
+    assertEquals(2, dom.getPredecessors(join).size());
+  }
+
+  public void testLoop() {
+    BasicBlockNode entry = block("entry"), header = block("header"),
+                   body = block("body"), exit = block("exit"),
+                   dead = block("dead");
+    entry.setNext(header);
+    header.setBranchTarget(exit);
+    header.setNext(body);
+    body.setNext(header);
+    dead.setNext(exit);
+
+    DominatorTree dom = new DominatorTree(entry);
+    assertFalse(dom.contains(dead));
+    assertEquals(header, dom.getIdom(body));
+    assertEquals(header, dom.getIdom(exit));
+    assertTrue(dom.getFrontier(body).contains(header));
+    assertTrue(dom.getFrontier(header).contains(header));
+    // The unreachable block is not counted as a predecessor.
+    assertEquals(1, dom.getPredecessors(exit).size());
+  }
+
+  public void testNestedLoops() {
+    BasicBlockNode entry = block("entry"), outer = block("outer"),
+                   inner = block("inner"), body = block("body"),
+                   latch = block("latch"), exit = block("exit");
+    entry.setNext(outer);
+    outer.setBranchTarget(exit);
+    outer.setNext(inner);
+    inner.setBranchTarget(latch);
+    inner.setNext(body);
+    body.setNext(inner);
+    latch.setNext(outer);
+
+    DominatorTree dom = new DominatorTree(entry);
+    Map<BasicBlockNode, Set<BasicBlockNode>> loops = dom.naturalLoops();
+    assertEquals(2, loops.size());
+    assertEquals(new HashSet<BasicBlockNode>(
+                   Arrays.asList(outer, inner, body, latch)),
+                 loops.get(outer));
+    assertEquals(new HashSet<BasicBlockNode>(Arrays.asList(inner, body)),
+                 loops.get(inner));
+
+    Map<BasicBlockNode, Integer> depths = dom.loopDepths();
+    assertEquals(0, (int) depths.get(entry));
+    assertEquals(1, (int) depths.get(latch));
+    assertEquals(2, (int) depths.get(body));
+    assertEquals(0, (int) depths.get(exit));
+  }
+
+  public void testInsertPreheader() {
+    BasicBlockNode entry = block("entry"), header = block("header"),
+                   body = block("body"), exit = block("exit");
+    entry.setBranchTarget(header);
+    entry.setNext(exit);
+    header.setBranchTarget(exit);
+    header.setNext(body);
+    body.setNext(header);
+
+    DominatorTree dom = new DominatorTree(entry);
+    BasicBlockNode preheader = dom.insertPreheader(header);
+    assertEquals("header_pre", preheader.getId());
+    assertSame(preheader, entry.getBranchTarget());
+    assertSame(exit, entry.getNext());
+    assertSame(header, preheader.getNext());
+    // The back edge is left alone.
+    assertSame(header, body.getNext());
+    // The entry is only entered by the call.
+    assertNull(dom.insertPreheader(entry));
+  }
+}
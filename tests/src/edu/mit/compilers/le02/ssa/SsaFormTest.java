@@ -0,0 +1,278 @@
+package edu.mit.compilers.le02.ssa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import edu.mit.compilers.le02.cfg.Argument;
+import edu.mit.compilers.le02.cfg.BasicBlockNode;
+import edu.mit.compilers.le02.cfg.BasicStatement;
+import edu.mit.compilers.le02.cfg.ConstantArgument;
+import edu.mit.compilers.le02.cfg.MockLoop;
+import edu.mit.compilers.le02.cfg.OpStatement;
+import edu.mit.compilers.le02.cfg.PhiStatement;
+import edu.mit.compilers.le02.cfg.OpStatement.AsmOp;
+import edu.mit.compilers.le02.symboltable.LocalDescriptor;
+import edu.mit.compilers.le02.symboltable.TypedDescriptor;
+
+public class SsaFormTest extends TestCase {
+  private MockLoop loop;
+  private LocalDescriptor x;
+
+  /**
+   * Builds the loop
+   *   entry:  i = 0; n = 10; x = 0
+   *   header: c = i >= n; if c goto exit
+   *   body:   ...
+   *   exit:   return x
+   */
+  public void setUp() {
+    loop = new MockLoop(AsmOp.GREATER_OR_EQUAL, 10);
+    x = loop.local("x");
+    loop.entry.addStatement(loop.move(0, x));
+    loop.exit.addStatement(new OpStatement(loop.root, AsmOp.RETURN,
+                                           MockLoop.arg(x), null, null));
+  }
+
+  /** Returns the phi for the variable at the start of the block, or null. */
+  private static PhiStatement phi(SsaForm ssa, BasicBlockNode block,
+                                  TypedDescriptor var) {
+    for (BasicStatement stmt : block.getStatements()) {
+      if (!(stmt instanceof PhiStatement)) {
+        break;
+      }
+      if (ssa.getOriginal(stmt.getResult()) == var) {
+        return (PhiStatement) stmt;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the last version of the variable the block defines. */
+  private static TypedDescriptor lastDefined(BasicBlockNode block,
+                                             TypedDescriptor var,
+                                             SsaForm ssa) {
+    TypedDescriptor version = null;
+    for (BasicStatement stmt : block.getStatements()) {
+      TypedDescriptor def = SsaForm.definedVariable(stmt);
+      if (def != null && ssa.getOriginal(def) == var) {
+        version = def;
+      }
+    }
+    return version;
+  }
+
+  /**
+   * Runs copies one after another, starting from the given values, and
+   * returns the values afterwards.
+   */
+  private static Map<TypedDescriptor, Integer> run(
+      List<BasicStatement> copies, Map<TypedDescriptor, Integer> values) {
+    Map<TypedDescriptor, Integer> env =
+      new HashMap<TypedDescriptor, Integer>(values);
+    for (BasicStatement stmt : copies) {
+      OpStatement move = (OpStatement) stmt;
+      assertEquals(AsmOp.MOVE, move.getOp());
+      Argument src = move.getArg1();
+      Integer value = (src instanceof ConstantArgument) ?
+        ((ConstantArgument) src).getInt() : env.get(src.getDesc());
+      assertNotNull(move.toString(), value);
+      env.put(move.getArg2().getDesc(), value);
+    }
+    return env;
+  }
+
+  public void testPhisAtIteratedDominanceFrontier() {
+    // body:  d = i < 5; if d goto latch
+    // then:  x = 1; t = 2; u = t
+    // latch: i = i + 1; goto header
+    LocalDescriptor d = loop.local("d");
+    LocalDescriptor t = loop.local("t");
+    LocalDescriptor u = loop.local("u");
+    BasicBlockNode then = new BasicBlockNode("then", "main");
+    BasicBlockNode latch = new BasicBlockNode("latch", "main");
+    loop.body.addStatement(loop.op(AsmOp.LESS_THAN, loop.i, 5, d));
+    loop.body.setBranchTarget(latch);
+    loop.body.setNext(then);
+    then.addStatement(loop.move(1, x));
+    then.addStatement(loop.move(2, t));
+    then.addStatement(loop.move(t, u));
+    then.setNext(latch);
+    latch.addStatement(loop.increment());
+    latch.setNext(loop.header);
+
+    SsaForm ssa = SsaForm.build(loop.entry);
+    // x is defined in then, whose frontier is the latch; the phi there is
+    // a definition too, whose frontier is the header.
+    PhiStatement atLatch = phi(ssa, latch, x);
+    PhiStatement atHeader = phi(ssa, loop.header, x);
+    assertNotNull(atLatch);
+    assertNotNull(atHeader);
+    assertNull(phi(ssa, loop.body, x));
+    assertNull(phi(ssa, then, x));
+    assertNull(phi(ssa, loop.exit, x));
+    // t is only used where it is defined, so it never needs a phi.
+    assertNull(phi(ssa, latch, t));
+    assertNull(phi(ssa, loop.header, t));
+
+    // Each operand is the version reaching the end of that predecessor.
+    assertEquals(lastDefined(loop.entry, x, ssa),
+                 atHeader.getOperand(loop.entry).getDesc());
+    assertEquals(atLatch.getResult(), atHeader.getOperand(latch).getDesc());
+    assertEquals(lastDefined(then, x, ssa),
+                 atLatch.getOperand(then).getDesc());
+    assertEquals(atHeader.getResult(),
+                 atLatch.getOperand(loop.body).getDesc());
+    // The exit reads the version from the header.
+    assertEquals(atHeader.getResult(),
+                 ((OpStatement) loop.exit.getLastStatement()).getArg1()
+                 .getDesc());
+    assertSame(atHeader, ssa.getDef(atHeader.getResult()));
+    assertTrue(ssa.getUses(atHeader.getResult()).contains(atLatch));
+  }
+
+  public void testSharedStatementRenamedInEachBlock() {
+    // body: i = i + 1; c = i >= n; if c goto exit, with the header's test
+    // shared, as block construction does for loop tests.
+    loop.body.addStatement(loop.increment());
+    loop.body.addStatement(loop.test);
+    loop.body.setBranchTarget(loop.exit);
+
+    SsaForm ssa = SsaForm.build(loop.entry);
+    OpStatement top = (OpStatement) loop.header.getLastStatement();
+    OpStatement bottom = (OpStatement) loop.body.getLastStatement();
+    assertNotSame(top, bottom);
+    assertNotSame(top.getResult(), bottom.getResult());
+    assertEquals(loop.c, ssa.getOriginal(top.getResult()));
+    assertEquals(loop.c, ssa.getOriginal(bottom.getResult()));
+    assertSame(top, ssa.getDef(top.getResult()));
+    assertSame(bottom, ssa.getDef(bottom.getResult()));
+    assertSame(loop.header, ssa.getBlock(top));
+    assertSame(loop.body, ssa.getBlock(bottom));
+
+    // Each copy reads the version of i reaching it.
+    assertEquals(phi(ssa, loop.header, loop.i).getResult(),
+                 top.getArg1().getDesc());
+    assertEquals(lastDefined(loop.body, loop.i, ssa),
+                 bottom.getArg1().getDesc());
+  }
+
+  public void testSequentializeSwap() {
+    SsaForm ssa = SsaForm.build(loop.entry);
+    LocalDescriptor a = loop.local("a"), b = loop.local("b");
+    List<BasicStatement> copies = ssa.sequentialize(loop.root,
+        Arrays.<TypedDescriptor>asList(a, b),
+        Arrays.asList(MockLoop.arg(b), MockLoop.arg(a)));
+
+    // One temporary breaks the cycle.
+    assertEquals(3, copies.size());
+    Map<TypedDescriptor, Integer> values =
+      new HashMap<TypedDescriptor, Integer>();
+    values.put(a, 1);
+    values.put(b, 2);
+    Map<TypedDescriptor, Integer> after = run(copies, values);
+    assertEquals(Integer.valueOf(2), after.get(a));
+    assertEquals(Integer.valueOf(1), after.get(b));
+  }
+
+  public void testSequentializeThreeCycle() {
+    SsaForm ssa = SsaForm.build(loop.entry);
+    LocalDescriptor a = loop.local("a"), b = loop.local("b"),
+                    d = loop.local("d"), e = loop.local("e");
+    // a = b, b = d, d = a all at once, along with e = a.
+    List<BasicStatement> copies = ssa.sequentialize(loop.root,
+        Arrays.<TypedDescriptor>asList(a, b, d, e),
+        Arrays.asList(MockLoop.arg(b), MockLoop.arg(d), MockLoop.arg(a),
+                      MockLoop.arg(a)));
+
+    assertEquals(5, copies.size());
+    Map<TypedDescriptor, Integer> values =
+      new HashMap<TypedDescriptor, Integer>();
+    values.put(a, 1);
+    values.put(b, 2);
+    values.put(d, 3);
+    Map<TypedDescriptor, Integer> after = run(copies, values);
+    assertEquals(Integer.valueOf(2), after.get(a));
+    assertEquals(Integer.valueOf(3), after.get(b));
+    assertEquals(Integer.valueOf(1), after.get(d));
+    assertEquals(Integer.valueOf(1), after.get(e));
+  }
+
+  public void testSequentializeChainNeedsNoTemporary() {
+    SsaForm ssa = SsaForm.build(loop.entry);
+    LocalDescriptor a = loop.local("a"), b = loop.local("b");
+    List<BasicStatement> copies = ssa.sequentialize(loop.root,
+        Arrays.<TypedDescriptor>asList(b, a),
+        Arrays.asList(MockLoop.arg(5), MockLoop.arg(b)));
+
+    assertEquals(2, copies.size());
+    Map<TypedDescriptor, Integer> values =
+      new HashMap<TypedDescriptor, Integer>();
+    values.put(b, 2);
+    Map<TypedDescriptor, Integer> after = run(copies, values);
+    assertEquals(Integer.valueOf(2), after.get(a));
+    assertEquals(Integer.valueOf(5), after.get(b));
+  }
+
+  public void testLostCopyOnSplitEdge() {
+    // A loop tested at the bottom, which exits with the old value of x:
+    //   entry: ...; goto body
+    //   body:  t = x; x = x + 1; d = x < n; if d goto body
+    //   exit:  return t
+    LocalDescriptor t = loop.local("t");
+    LocalDescriptor d = loop.local("d");
+    loop.entry.setNext(loop.body);
+    OpStatement save = loop.move(x, t);
+    loop.body.addStatement(save);
+    loop.body.addStatement(loop.op(AsmOp.ADD, x, 1, x));
+    loop.body.addStatement(loop.op(AsmOp.LESS_THAN, x, loop.n, d));
+    loop.body.setBranchTarget(loop.body);
+    loop.body.setNext(loop.exit);
+    OpStatement ret = (OpStatement) loop.exit.getLastStatement();
+    ret.setArg1(MockLoop.arg(t));
+
+    SsaForm ssa = SsaForm.build(loop.entry);
+    PhiStatement xPhi = phi(ssa, loop.body, x);
+    TypedDescriptor x2 = xPhi.getResult();
+    TypedDescriptor x3 = xPhi.getOperand(loop.body).getDesc();
+    TypedDescriptor t2 = phi(ssa, loop.body, t).getResult();
+
+    // Propagate t = x2, so that x2 is live out of the loop alongside x3.
+    Map<TypedDescriptor, Argument> map =
+      new HashMap<TypedDescriptor, Argument>();
+    map.put(save.getArg2().getDesc(), Argument.makeArgument(x2));
+    TypedDescriptor t1 = save.getArg2().getDesc();
+    for (BasicStatement use :
+         new ArrayList<BasicStatement>(ssa.getUses(t1))) {
+      SsaForm.replaceUses(use, map);
+    }
+    assertEquals(x2, ret.getArg1().getDesc());
+
+    List<BasicBlockNode> split = ssa.destroy();
+    // The back edge is critical, so its copies get a block of their own
+    // rather than clobbering x2 on the way to the exit too.
+    assertEquals(1, split.size());
+    BasicBlockNode edge = split.get(0);
+    assertSame(edge, loop.body.getBranchTarget());
+    assertSame(loop.body, edge.getNext());
+    assertSame(loop.exit, loop.body.getNext());
+    for (BasicStatement stmt : loop.body.getStatements()) {
+      assertFalse(stmt.toString(), stmt instanceof PhiStatement);
+      assertFalse(stmt.toString(),
+                  x2.equals(SsaForm.definedVariable(stmt)));
+    }
+    assertEquals(x2, ret.getArg1().getDesc());
+
+    // On the back edge, the old x2 is saved for t before x2 takes x3.
+    Map<TypedDescriptor, Integer> values =
+      new HashMap<TypedDescriptor, Integer>();
+    values.put(x2, 1);
+    values.put(x3, 2);
+    Map<TypedDescriptor, Integer> after = run(edge.getStatements(), values);
+    assertEquals(Integer.valueOf(1), after.get(t2));
+    assertEquals(Integer.valueOf(2), after.get(x2));
+  }
+}